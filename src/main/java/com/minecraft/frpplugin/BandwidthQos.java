@@ -0,0 +1,231 @@
+package com.minecraft.frpplugin;
+
+import com.minecraft.frpplugin.version.TaskScheduler;
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.plugin.Plugin;
+
+import java.lang.reflect.Method;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.regex.Pattern;
+
+/**
+ * BandwidthQos - 服务器卡顿时降低非关键代理(网页地图、语音等)的带宽上限，给游戏流量让出上行带宽
+ * 每tick在主线程(Folia上为全局区域线程)记录一次时间，按检查间隔计算TPS；Paper系服务器上同时读取平均每tick耗时(MSPT)
+ * 限速和恢复使用不同的阈值，并且都要求状态持续一段时间，避免在临界值附近反复切换
+ * 新的带宽上限通过frpc reload热重载生效，不会为此重启frpc
+ */
+public class BandwidthQos {
+    
+    private static final Pattern LIMIT_PATTERN = Pattern.compile("\\d+(KB|MB)");
+    private static final double MAX_TPS = 20.0;
+    
+    private final Plugin plugin;
+    private final FrpManager frpManager;
+    private final TaskScheduler scheduler;
+    private final Map<String, String> limits = new LinkedHashMap<>();
+    private final long checkTicks;
+    private final double throttleTps;
+    private final double throttleMspt;
+    private final long throttleAfterMillis;
+    private final double recoverTps;
+    private final double recoverMspt;
+    private final long recoverAfterMillis;
+    private final AtomicBoolean applying = new AtomicBoolean();
+    private final AtomicBoolean pending = new AtomicBoolean();
+    
+    private TaskScheduler.Task task;
+    private Method averageTickTime;
+    private long windowStartNanos;
+    private long windowTicks;
+    private long conditionSinceMillis;
+    private volatile boolean throttled;
+    private volatile long throttledSinceMillis;
+    private volatile double tps = -1;
+    private volatile double mspt = -1;
+    
+    /**
+     * 构造函数
+     * @param plugin 插件实例
+     * @param frpManager frp管理器
+     * @param scheduler 任务调度器
+     * @param section 配置中的bandwidth_qos部分
+     */
+    public BandwidthQos(Plugin plugin, FrpManager frpManager, TaskScheduler scheduler, ConfigurationSection section) {
+        this.plugin = plugin;
+        this.frpManager = frpManager;
+        this.scheduler = scheduler;
+        ConfigurationSection proxies = section.getConfigurationSection("proxies");
+        if (proxies != null) {
+            for (String name : proxies.getKeys(false)) {
+                String limit = proxies.getString(name, "").trim().toUpperCase();
+                if (LIMIT_PATTERN.matcher(limit).matches()) {
+                    limits.put(name, limit);
+                } else {
+                    plugin.getLogger().warning("代理 " + name + " 的带宽上限格式无效(应为例如256KB或1MB): " + limit);
+                }
+            }
+        }
+        this.checkTicks = Math.max(1L, section.getLong("check_interval_seconds", 5L)) * 20L;
+        this.throttleTps = section.getDouble("throttle_tps", 18.5);
+        this.throttleMspt = section.getDouble("throttle_mspt", 45.0);
+        this.throttleAfterMillis = section.getLong("throttle_after_seconds", 15L) * 1000L;
+        this.recoverTps = Math.max(throttleTps, section.getDouble("recover_tps", 19.5));
+        this.recoverMspt = Math.min(throttleMspt, section.getDouble("recover_mspt", 35.0));
+        this.recoverAfterMillis = section.getLong("recover_after_seconds", 60L) * 1000L;
+    }
+    
+    /**
+     * 开始采样
+     * @return 是否启动，没有有效的代理配置时返回false
+     */
+    public boolean start() {
+        if (limits.isEmpty()) {
+            plugin.getLogger().warning("带宽QoS没有配置任何代理，未启用");
+            return false;
+        }
+        try {
+            averageTickTime = plugin.getServer().getClass().getMethod("getAverageTickTime");
+        } catch (NoSuchMethodException e) {
+            averageTickTime = null;
+        }
+        // 从一开始就使用生成的配置文件，之后的限速和恢复都能热重载
+        frpManager.setBandwidthLimits(Collections.emptyMap());
+        task = scheduler.runGlobalTimer(this::tick, 1L, 1L);
+        return true;
+    }
+    
+    /**
+     * 停止采样，frpc保持当前的带宽上限直到下次启动
+     */
+    public void stop() {
+        if (task != null) {
+            task.cancel();
+            task = null;
+        }
+    }
+    
+    /**
+     * 当前是否处于限速状态
+     * @return 是否限速
+     */
+    public boolean isThrottled() {
+        return throttled;
+    }
+    
+    /**
+     * 获取进入或退出限速状态的时间
+     * @return 时间戳(毫秒)，从未切换过时为0
+     */
+    public long getThrottledSinceMillis() {
+        return throttledSinceMillis;
+    }
+    
+    /**
+     * 获取最近一个检查间隔内的TPS
+     * @return TPS，还没有完成第一次检查时为-1
+     */
+    public double getTps() {
+        return tps;
+    }
+    
+    /**
+     * 获取服务器报告的平均每tick耗时
+     * @return 毫秒，服务器不支持或还没有完成第一次检查时为-1
+     */
+    public double getMspt() {
+        return mspt;
+    }
+    
+    /**
+     * 获取受控代理的带宽上限
+     * @return 代理名称到限速时带宽上限的映射
+     */
+    public Map<String, String> getLimits() {
+        return Collections.unmodifiableMap(limits);
+    }
+    
+    /**
+     * 每tick调用一次，满一个检查间隔时计算TPS并判断是否需要切换状态
+     */
+    private void tick() {
+        long now = System.nanoTime();
+        if (windowTicks == 0) {
+            windowStartNanos = now;
+        }
+        if (windowTicks++ < checkTicks) {
+            return;
+        }
+        // 第一次调用只记录起点，窗口内实际经过了checkTicks个tick
+        tps = Math.min(MAX_TPS, checkTicks * 1e9 / Math.max(1L, now - windowStartNanos));
+        windowStartNanos = now;
+        windowTicks = 1;
+        mspt = readMspt();
+        evaluate(System.currentTimeMillis());
+    }
+    
+    /**
+     * 通过反射读取Paper的平均每tick耗时，其他服务器(以及Folia)只使用TPS
+     */
+    private double readMspt() {
+        if (averageTickTime == null) {
+            return -1;
+        }
+        try {
+            return ((Number) averageTickTime.invoke(plugin.getServer())).doubleValue();
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            averageTickTime = null;
+            return -1;
+        }
+    }
+    
+    /**
+     * 按滞回规则判断是否切换状态：卡顿条件满足任一即计时，恢复条件需要全部满足
+     */
+    private void evaluate(long nowMillis) {
+        boolean condition;
+        if (throttled) {
+            condition = tps >= recoverTps && (mspt < 0 || mspt <= recoverMspt);
+        } else {
+            condition = tps <= throttleTps || (mspt >= 0 && mspt >= throttleMspt);
+        }
+        if (!condition) {
+            conditionSinceMillis = 0;
+            return;
+        }
+        if (conditionSinceMillis == 0) {
+            conditionSinceMillis = nowMillis;
+        }
+        if (nowMillis - conditionSinceMillis < (throttled ? recoverAfterMillis : throttleAfterMillis)) {
+            return;
+        }
+        conditionSinceMillis = 0;
+        throttled = !throttled;
+        throttledSinceMillis = nowMillis;
+        String load = "TPS " + String.format("%.1f", tps) + (mspt >= 0 ? "，MSPT " + String.format("%.1f", mspt) : "");
+        if (throttled) {
+            plugin.getLogger().warning("服务器持续卡顿(" + load + ")，限制非关键代理的带宽: " + limits);
+        } else {
+            plugin.getLogger().info("服务器已恢复(" + load + ")，还原非关键代理的带宽");
+        }
+        frpManager.setBandwidthLimits(throttled ? limits : Collections.emptyMap());
+        pending.set(true);
+        scheduler.runAsync(this::applyPending);
+    }
+    
+    /**
+     * 在异步线程热重载frpc，同一时间只进行一次，期间发生的切换在结束后再应用一次
+     */
+    private void applyPending() {
+        while (pending.get() && applying.compareAndSet(false, true)) {
+            try {
+                pending.set(false);
+                frpManager.applyConfigChange(false);
+            } finally {
+                applying.set(false);
+            }
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.minecraft.frpplugin;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.util.function.BooleanSupplier;
+
+/**
+ * FollowingInputStream - 持续读取一个正在被写入的文件(类似tail -f)
+ * 读到文件末尾时等待新内容，直到条件不再成立且剩余内容读完才返回流结束
+ */
+class FollowingInputStream extends InputStream {
+    
+    private final RandomAccessFile file;
+    private final BooleanSupplier following;
+    private final long pollMillis;
+    
+    /**
+     * 构造函数
+     * @param file 要读取的文件
+     * @param offset 开始读取的位置
+     * @param following 是否继续等待新内容
+     * @param pollMillis 没有新内容时的等待间隔(毫秒)
+     * @throws IOException 如果无法打开文件
+     */
+    FollowingInputStream(File file, long offset, BooleanSupplier following, long pollMillis) throws IOException {
+        this.file = new RandomAccessFile(file, "r");
+        this.file.seek(offset);
+        this.following = following;
+        this.pollMillis = pollMillis;
+    }
+    
+    @Override
+    public int read() throws IOException {
+        byte[] single = new byte[1];
+        return read(single, 0, 1) == -1 ? -1 : single[0] & 0xFF;
+    }
+    
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+        while (true) {
+            // 文件被截断(frpc被重新启动)时从头开始读
+            if (file.getFilePointer() > file.length()) {
+                file.seek(0);
+            }
+            int read = file.read(buffer, offset, length);
+            if (read > 0) {
+                return read;
+            }
+            if (!following.getAsBoolean()) {
+                // 条件不再成立前可能还写入了最后一部分内容
+                read = file.read(buffer, offset, length);
+                return read > 0 ? read : -1;
+            }
+            try {
+                Thread.sleep(pollMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return -1;
+            }
+        }
+    }
+    
+    @Override
+    public void close() throws IOException {
+        file.close();
+    }
+}
@@ -1,5 +1,11 @@
 package com.minecraft.frpplugin;
 
+import com.minecraft.frpplugin.api.TunnelState;
+import com.minecraft.frpplugin.metrics.LatencyTimer;
+import com.minecraft.frpplugin.metrics.MetricsRegistry;
+import com.minecraft.frpplugin.metrics.TimeSeries;
+import com.minecraft.frpplugin.network.ConnectionRelay;
+import com.moandjiezana.toml.Toml;
 import org.bukkit.ChatColor;
 import org.bukkit.command.Command;
 import org.bukkit.command.CommandExecutor;
@@ -9,15 +15,32 @@ import org.bukkit.entity.Player;
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
 
 /**
  * FrpCommandExecutor - 处理插件命令
  */
 public class FrpCommandExecutor implements CommandExecutor {
     
+    private static final char[] SPARKLINE_LEVELS = "▁▂▃▄▅▆▇█".toCharArray();
+    private static final int HISTORY_COLUMNS = 40;
+    
     private final FrpPlugin plugin;
     private final FrpManager frpManager;
     
+    /**
+     * 保证同一时间只有一个修改frpc.toml的任务
+     */
+    private final Object configLock = new Object();
+    
     /**
      * 构造函数
      * @param plugin 插件实例
@@ -60,6 +83,18 @@ public class FrpCommandExecutor implements CommandExecutor {
             case "config":
                 handleConfig(sender, args);
                 break;
+            case "metrics":
+                handleMetrics(sender);
+                break;
+            case "proxy":
+                handleProxy(sender, args);
+                break;
+            case "tune":
+                handleTune(sender, args);
+                break;
+            case "history":
+                handleHistory(sender, args);
+                break;
             default:
                 sendHelp(sender);
                 break;
@@ -79,6 +114,10 @@ public class FrpCommandExecutor implements CommandExecutor {
         sender.sendMessage(ChatColor.YELLOW + "/frp restart" + ChatColor.WHITE + " - 重启frp进程");
         sender.sendMessage(ChatColor.YELLOW + "/frp status" + ChatColor.WHITE + " - 查看frp运行状态");
         sender.sendMessage(ChatColor.YELLOW + "/frp config [view|edit] [client|server]" + ChatColor.WHITE + " - 查看或编辑frp配置");
+        sender.sendMessage(ChatColor.YELLOW + "/frp proxy <list|add|remove|set>" + ChatColor.WHITE + " - 在游戏内管理frpc代理");
+        sender.sendMessage(ChatColor.YELLOW + "/frp tune [clear]" + ChatColor.WHITE + " - 测试并选出最好的传输协议");
+        sender.sendMessage(ChatColor.YELLOW + "/frp metrics" + ChatColor.WHITE + " - 查看各操作的耗时统计");
+        sender.sendMessage(ChatColor.YELLOW + "/frp history <指标> [second|minute|hour]" + ChatColor.WHITE + " - 查看延迟、流量等指标的历史");
     }
     
     /**
@@ -88,11 +127,14 @@ public class FrpCommandExecutor implements CommandExecutor {
      */
     private void handleStart(CommandSender sender, String[] args) {
         sender.sendMessage(ChatColor.YELLOW + "正在启动frpc客户端...");
-        if (frpManager.startFrpClient()) {
-            sender.sendMessage(ChatColor.GREEN + "frpc客户端已成功启动!");
-        } else {
-            sender.sendMessage(ChatColor.RED + "frpc客户端启动失败，请查看控制台日志!");
-        }
+        // 启动前检查需要解析域名并连接frps，不能在主线程进行
+        plugin.getTaskScheduler().runAsync(() -> {
+            if (frpManager.startFrpClient()) {
+                reply(sender, ChatColor.GREEN + "frpc客户端已成功启动!");
+            } else {
+                reply(sender, ChatColor.RED + "frpc客户端启动失败，请查看控制台日志!");
+            }
+        });
     }
     
     /**
@@ -102,8 +144,11 @@ public class FrpCommandExecutor implements CommandExecutor {
      */
     private void handleStop(CommandSender sender, String[] args) {
         sender.sendMessage(ChatColor.YELLOW + "正在停止frpc客户端...");
-        frpManager.stopFrpClient();
-        sender.sendMessage(ChatColor.GREEN + "frpc客户端已停止!");
+        // 停止时要等待进程树退出，正在启动时还要等待启动完成
+        plugin.getTaskScheduler().runAsync(() -> {
+            frpManager.stopFrpClient();
+            reply(sender, ChatColor.GREEN + "frpc客户端已停止!");
+        });
     }
     
     /**
@@ -112,8 +157,13 @@ public class FrpCommandExecutor implements CommandExecutor {
      */
     private void handleRestart(CommandSender sender) {
         sender.sendMessage(ChatColor.YELLOW + "正在重启frp进程...");
-        frpManager.restartFrp();
-        sender.sendMessage(ChatColor.GREEN + "frp进程已重启!");
+        plugin.getTaskScheduler().runAsync(() -> {
+            if (frpManager.restartFrp()) {
+                reply(sender, ChatColor.GREEN + "frp进程已重启!");
+            } else {
+                reply(sender, ChatColor.RED + "frp进程重启失败，请查看控制台日志!");
+            }
+        });
     }
     
     /**
@@ -122,8 +172,89 @@ public class FrpCommandExecutor implements CommandExecutor {
      */
     private void handleStatus(CommandSender sender) {
         sender.sendMessage(ChatColor.GREEN + "===== FrpPlugin 状态 =====");
+        TunnelState state = frpManager.getState();
         sender.sendMessage(ChatColor.YELLOW + "frpc客户端: " + 
-                (frpManager.isClientRunning() ? ChatColor.GREEN + "运行中" : ChatColor.RED + "已停止"));
+                (state.isActive() ? ChatColor.GREEN : ChatColor.RED) + state.getDisplayName());
+        
+        ProcessRecord record = frpManager.getProcessRecord();
+        if (record != null) {
+            sender.sendMessage(ChatColor.YELLOW + "累计重启次数: " + ChatColor.WHITE + record.getRestartCount()
+                    + ChatColor.YELLOW + "，上次退出码: " + ChatColor.WHITE
+                    + (record.getLastExitCode() < 0 ? "无" : String.valueOf(record.getLastExitCode())));
+        }
+        
+        String schedulingDescription = frpManager.getSchedulingDescription();
+        if (!schedulingDescription.isEmpty()) {
+            sender.sendMessage(ChatColor.YELLOW + "frpc调度设置: " + ChatColor.WHITE + schedulingDescription);
+        }
+        
+        ResourceMonitor monitor = plugin.getResourceMonitor();
+        if (monitor != null && state.isActive() && monitor.getRssBytes() >= 0) {
+            sender.sendMessage(ChatColor.YELLOW + "frpc资源占用: " + ChatColor.WHITE
+                    + "CPU " + (monitor.getCpuPermille() < 0 ? "-" : ResourceMonitor.formatPercent(monitor.getCpuPermille()))
+                    + "，内存 " + (monitor.getRssBytes() >> 20) + " MB(峰值 " + (monitor.getPeakRssBytes() >> 20) + " MB)"
+                    + "，线程 " + monitor.getThreads() + "，文件描述符 " + monitor.getFileDescriptors());
+        }
+        
+        PoolPrewarmer prewarmer = plugin.getPoolPrewarmer();
+        if (prewarmer != null && prewarmer.getTargetPool() >= 0) {
+            int running = frpManager.getRunningPoolCount();
+            sender.sendMessage(ChatColor.YELLOW + "连接池: " + ChatColor.WHITE + "目标 " + prewarmer.getTargetPool()
+                    + "，当前 " + (running < 0 ? "按frpc.toml" : String.valueOf(running))
+                    + "，预测加入速率 " + String.format("%.1f", prewarmer.getForecastPerMinute()) + " 人/分钟");
+        }
+        
+        BandwidthQos qos = plugin.getBandwidthQos();
+        if (qos != null) {
+            StringBuilder line = new StringBuilder(qos.isThrottled()
+                    ? ChatColor.RED + "已限速 " + qos.getLimits() : ChatColor.GREEN + "正常");
+            line.append(ChatColor.WHITE);
+            if (qos.getThrottledSinceMillis() > 0) {
+                line.append("，已持续 ").append((System.currentTimeMillis() - qos.getThrottledSinceMillis()) / 60_000L).append(" 分钟");
+            }
+            if (qos.getTps() >= 0) {
+                line.append("，TPS ").append(String.format("%.1f", qos.getTps()));
+            }
+            if (qos.getMspt() >= 0) {
+                line.append("，MSPT ").append(String.format("%.1f", qos.getMspt()));
+            }
+            sender.sendMessage(ChatColor.YELLOW + "带宽QoS: " + line);
+        }
+        
+        ConnectionRelay relay = frpManager.getRelay();
+        if (relay != null) {
+            sender.sendMessage(ChatColor.YELLOW + "连接中转: " + ChatColor.WHITE + "活动 " + relay.getActiveSessions()
+                    + "，已接受 " + relay.getAcceptedConnections() + "，已拦截 " + relay.getRejectedConnections());
+            sender.sendMessage(ChatColor.YELLOW + "中转建连延迟: " + ChatColor.WHITE + "平均 "
+                    + relay.getAverageConnectLatencyMicros() + " μs，最大 " + relay.getMaxConnectLatencyMicros() + " μs");
+        }
+    }
+    
+    /**
+     * 处理耗时统计命令
+     * @param sender 命令发送者
+     */
+    private void handleMetrics(CommandSender sender) {
+        List<LatencyTimer> timers = plugin.getMetrics().getTimers();
+        sender.sendMessage(ChatColor.GREEN + "===== FrpPlugin 耗时统计 (毫秒) =====");
+        if (timers.isEmpty()) {
+            sender.sendMessage(ChatColor.GRAY + "暂无数据");
+            return;
+        }
+        for (LatencyTimer timer : timers) {
+            sender.sendMessage(ChatColor.YELLOW + timer.getName() + ChatColor.WHITE + String.format(
+                    " 次数 %d, 平均 %.1f, p95 %.1f, 最大 %.1f",
+                    timer.getCount(), timer.getMeanMillis(), timer.getP95Millis(), timer.getMaxMillis()));
+        }
+        PluginExecutor executor = plugin.getExecutor();
+        if (executor != null) {
+            sender.sendMessage(ChatColor.YELLOW + "后台任务" + ChatColor.WHITE + String.format(
+                    " %s, 执行中 %d(其中长期任务 %d), 排队 %d, 线程 %d(峰值 %d), 已完成 %d",
+                    executor.isVirtualThreads() ? "虚拟线程" : "平台线程池", executor.getActiveTasks(),
+                    executor.getLongRunningTasks(), executor.getQueuedTasks(), executor.getThreadCount(), executor.getPeakThreadCount(),
+                    executor.getCompletedTasks()));
+        }
+        sender.sendMessage(ChatColor.GRAY + "以上数据同时通过JMX域 " + MetricsRegistry.JMX_DOMAIN + " 提供");
     }
     
     /**
@@ -147,28 +278,283 @@ public class FrpCommandExecutor implements CommandExecutor {
         }
         
         if (action.equals("view")) {
-            try {
-                String content = new String(Files.readAllBytes(configFile.toPath()));
-                sender.sendMessage(ChatColor.GREEN + "===== " + configFile.getName() + " =====");
-                for (String line : content.split("\n")) {
-                    sender.sendMessage(ChatColor.WHITE + line);
+            // 在异步线程中读取文件，读取完成后一次性发送
+            plugin.getTaskScheduler().runAsync(() -> {
+                try {
+                    String[] lines = Files.readString(configFile.toPath()).split("\r?\n");
+                    List<String> messages = new ArrayList<>(lines.length + 1);
+                    messages.add(ChatColor.GREEN + "===== " + configFile.getName() + " =====");
+                    for (String line : lines) {
+                        messages.add(ChatColor.WHITE + line);
+                    }
+                    reply(sender, messages.toArray(new String[0]));
+                } catch (IOException e) {
+                    reply(sender, ChatColor.RED + "读取配置文件时出错: " + e.getMessage());
+                    plugin.getLogger().severe("读取配置文件时出错: " + e.getMessage());
                 }
-            } catch (IOException e) {
-                sender.sendMessage(ChatColor.RED + "读取配置文件时出错: " + e.getMessage());
-                plugin.getLogger().severe("读取配置文件时出错: " + e.getMessage());
-            }
+            });
         } else if (action.equals("edit")) {
             if (!(sender instanceof Player)) {
                 sender.sendMessage(ChatColor.RED + "只有玩家可以编辑配置文件!");
                 return;
             }
             
-            sender.sendMessage(ChatColor.YELLOW + "目前不支持在游戏内编辑配置文件。请直接编辑服务器插件目录中的配置文件。");
-            sender.sendMessage(ChatColor.YELLOW + "配置文件路径: " + configFile.getAbsolutePath());
+            sender.sendMessage(ChatColor.YELLOW + "可以使用 /frp proxy 命令在游戏内添加、删除和修改代理。");
+            sender.sendMessage(ChatColor.YELLOW + "其他配置请直接编辑服务器插件目录中的配置文件: " + configFile.getAbsolutePath());
             sender.sendMessage(ChatColor.YELLOW + "编辑完成后，使用 /frp restart 命令重启frp进程。");
         } else {
             sender.sendMessage(ChatColor.RED + "未知操作: " + action);
             sender.sendMessage(ChatColor.RED + "用法: /frp config [view|edit]");
         }
     }
+    
+    /**
+     * 处理代理管理命令
+     * @param sender 命令发送者
+     * @param args 命令参数
+     */
+    private void handleProxy(CommandSender sender, String[] args) {
+        String action = args.length < 2 ? "" : args[1].toLowerCase();
+        switch (action) {
+            case "list":
+                editConfig(sender, document -> {
+                    List<String> names = document.getProxyNames();
+                    return names.isEmpty() ? "当前没有配置任何代理" : "当前的代理: " + String.join(", ", names);
+                });
+                break;
+            case "add":
+                if (args.length < 4 || !isPort(args[3]) || (args.length >= 5 && !isPort(args[4]))) {
+                    sender.sendMessage(ChatColor.RED + "用法: /frp proxy add <名称> <本地端口> [远程端口] [类型]");
+                    return;
+                }
+                String type = args.length >= 6 ? args[5].toLowerCase() : "tcp";
+                if (!PreflightChecker.isSupportedProxyType(type)) {
+                    sender.sendMessage(ChatColor.RED + "不支持的代理类型: " + type);
+                    return;
+                }
+                Map<String, String> values = new LinkedHashMap<>();
+                values.put("type", type);
+                values.put("localIP", "127.0.0.1");
+                values.put("localPort", args[3]);
+                if (args.length >= 5) {
+                    values.put("remotePort", args[4]);
+                }
+                editConfig(sender, document -> {
+                    document.addProxy(args[2], values);
+                    return "已添加代理 " + args[2];
+                });
+                break;
+            case "remove":
+                if (args.length < 3) {
+                    sender.sendMessage(ChatColor.RED + "用法: /frp proxy remove <名称>");
+                    return;
+                }
+                editConfig(sender, document -> {
+                    if (!document.removeProxy(args[2])) {
+                        throw new IllegalArgumentException("代理 " + args[2] + " 不存在");
+                    }
+                    return "已删除代理 " + args[2];
+                });
+                break;
+            case "set":
+                if (args.length < 5) {
+                    sender.sendMessage(ChatColor.RED + "用法: /frp proxy set <名称> <配置项> <值>");
+                    return;
+                }
+                String value = String.join(" ", Arrays.copyOfRange(args, 4, args.length));
+                editConfig(sender, document -> {
+                    if (args[3].equals("type") && !PreflightChecker.isSupportedProxyType(value)) {
+                        throw new IllegalArgumentException("不支持的代理类型: " + value);
+                    }
+                    document.setProxyValue(args[2], args[3], value);
+                    return "已将代理 " + args[2] + " 的 " + args[3] + " 设置为 " + value;
+                });
+                break;
+            default:
+                sender.sendMessage(ChatColor.RED + "用法: /frp proxy <list|add|remove|set>");
+                break;
+        }
+    }
+    
+    /**
+     * 在异步线程中修改frpc.toml：读取、修改、校验后原子写入，再让frpc以代价最小的方式应用修改
+     * @param sender 命令发送者
+     * @param edit 对文档的修改，返回成功提示，参数不合法时抛出IllegalArgumentException
+     */
+    private void editConfig(CommandSender sender, Function<FrpcConfigDocument, String> edit) {
+        File configFile = plugin.getFrpConfigFile();
+        plugin.getTaskScheduler().runAsync(() -> {
+            synchronized (configLock) {
+                String message;
+                try {
+                    FrpcConfigDocument document = FrpcConfigDocument.load(configFile);
+                    message = edit.apply(document);
+                    if (!document.isModified()) {
+                        reply(sender, ChatColor.GREEN + message);
+                        return;
+                    }
+                    // 写入前确认修改后的配置仍然是合法的TOML
+                    new Toml().read(document.render());
+                    document.save(configFile);
+                } catch (IllegalArgumentException e) {
+                    reply(sender, ChatColor.RED + e.getMessage());
+                    return;
+                } catch (IOException | RuntimeException e) {
+                    reply(sender, ChatColor.RED + "修改frpc.toml失败: " + e.getMessage());
+                    return;
+                }
+                reply(sender, ChatColor.GREEN + message + "，正在应用修改...");
+                if (frpManager.applyConfigChange()) {
+                    reply(sender, ChatColor.GREEN + "修改已生效" + (frpManager.getState().isActive() ? "" : "，将在frpc下次启动时使用"));
+                } else {
+                    reply(sender, ChatColor.RED + "修改已保存，但应用失败，请查看控制台日志!");
+                }
+            }
+        });
+    }
+    
+    /**
+     * 处理传输测试命令，测试在异步线程进行，可能需要一分钟左右
+     * @param sender 命令发送者
+     * @param args 命令参数
+     */
+    private void handleTune(CommandSender sender, String[] args) {
+        if (args.length >= 2 && args[1].equalsIgnoreCase("clear")) {
+            if (TransportTuner.clearSelection(plugin.getDataFolder())) {
+                sender.sendMessage(ChatColor.GREEN + "已清除测试选出的传输设置，重启frpc后将按frpc.toml运行");
+            } else {
+                sender.sendMessage(ChatColor.YELLOW + "当前没有测试选出的传输设置");
+            }
+            return;
+        }
+        
+        plugin.getTaskScheduler().runAsync(() -> {
+            List<TransportTuner.Result> results = frpManager.tuneTransport(
+                    message -> reply(sender, ChatColor.YELLOW + message));
+            if (results == null) {
+                return;
+            }
+            TransportTuner.Result best = results.get(0);
+            if (best.isSuccess()) {
+                reply(sender, ChatColor.GREEN + "最佳传输设置: " + best.getCandidate().getName()
+                        + "，使用 /frp restart 后生效，/frp tune clear 可以撤销");
+            }
+        });
+    }
+    
+    /**
+     * 处理历史命令，以字符图的形式显示一个指标在所选分辨率下保存的整个时间范围
+     * @param sender 命令发送者
+     * @param args 命令参数
+     */
+    private void handleHistory(CommandSender sender, String[] args) {
+        TunnelHistory history = plugin.getTunnelHistory();
+        if (history == null) {
+            sender.sendMessage(ChatColor.RED + "历史记录未启用");
+            return;
+        }
+        TunnelHistory.Metric metric = args.length >= 2 ? TunnelHistory.Metric.fromKey(args[1]) : null;
+        if (metric == null) {
+            StringBuilder names = new StringBuilder();
+            for (TunnelHistory.Metric available : TunnelHistory.Metric.values()) {
+                names.append(names.length() == 0 ? "" : "，").append(available.getKey())
+                        .append('(').append(available.getDisplayName()).append(')');
+            }
+            sender.sendMessage(ChatColor.RED + "用法: /frp history <指标> [second|minute|hour]");
+            sender.sendMessage(ChatColor.YELLOW + "可用指标: " + ChatColor.WHITE + names);
+            return;
+        }
+        TimeSeries.Resolution resolution = TimeSeries.Resolution.MINUTE;
+        if (args.length >= 3) {
+            try {
+                resolution = TimeSeries.Resolution.valueOf(args[2].toUpperCase());
+            } catch (IllegalArgumentException e) {
+                sender.sendMessage(ChatColor.RED + "分辨率只能是second、minute或hour");
+                return;
+            }
+        }
+        
+        long now = System.currentTimeMillis();
+        TimeSeries.View view = history.get(metric).view(resolution, now, HISTORY_COLUMNS);
+        String range;
+        switch (resolution) {
+            case SECOND:
+                range = "每秒，最近10分钟";
+                break;
+            case HOUR:
+                range = "每小时，最近30天";
+                break;
+            default:
+                range = "每分钟，最近24小时";
+                break;
+        }
+        sender.sendMessage(ChatColor.GREEN + "===== " + metric.getDisplayName() + " 历史(" + range + ") =====");
+        if (view.getSamples() == 0) {
+            sender.sendMessage(ChatColor.YELLOW + "这段时间内没有数据");
+            return;
+        }
+        DateTimeFormatter formatter = DateTimeFormatter.ofPattern(
+                resolution == TimeSeries.Resolution.SECOND ? "HH:mm:ss" : "MM-dd HH:mm").withZone(ZoneId.systemDefault());
+        sender.sendMessage(sparkline(view));
+        sender.sendMessage(ChatColor.GRAY + formatter.format(Instant.ofEpochMilli(view.getStartMillis()))
+                + " ~ " + formatter.format(Instant.ofEpochMilli(now)));
+        sender.sendMessage(ChatColor.YELLOW + "最小 " + ChatColor.WHITE + formatMetric(view.getMin(), metric)
+                + ChatColor.YELLOW + "，平均 " + ChatColor.WHITE + formatMetric(view.getMean(), metric)
+                + ChatColor.YELLOW + "，最大 " + ChatColor.WHITE + formatMetric(view.getMax(), metric)
+                + ChatColor.GRAY + " (" + formatter.format(Instant.ofEpochMilli(view.getMaxAtMillis())) + ")");
+    }
+    
+    /**
+     * 按各列的平均值生成字符图，没有数据的列显示为灰色
+     */
+    private static String sparkline(TimeSeries.View view) {
+        double low = Double.POSITIVE_INFINITY;
+        double high = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < view.getColumns(); i++) {
+            double value = view.getAverage(i);
+            if (!Double.isNaN(value)) {
+                low = Math.min(low, value);
+                high = Math.max(high, value);
+            }
+        }
+        StringBuilder line = new StringBuilder();
+        ChatColor current = null;
+        for (int i = 0; i < view.getColumns(); i++) {
+            double value = view.getAverage(i);
+            ChatColor color = Double.isNaN(value) ? ChatColor.DARK_GRAY : ChatColor.GREEN;
+            int level = Double.isNaN(value) || high <= low ? 0
+                    : (int) Math.round((value - low) / (high - low) * (SPARKLINE_LEVELS.length - 1));
+            if (color != current) {
+                line.append(color);
+                current = color;
+            }
+            line.append(SPARKLINE_LEVELS[level]);
+        }
+        return line.toString();
+    }
+    
+    private static String formatMetric(double value, TunnelHistory.Metric metric) {
+        String unit = metric.getUnit();
+        return String.format("%.1f", value) + (unit.isEmpty() || unit.equals("%") ? unit : " " + unit);
+    }
+    
+    /**
+     * 在主线程向命令发送者发送消息
+     * @param sender 命令发送者
+     * @param messages 消息
+     */
+    private void reply(CommandSender sender, String... messages) {
+        if (plugin.isEnabled()) {
+            plugin.getTaskScheduler().runGlobal(() -> sender.sendMessage(messages));
+        }
+    }
+    
+    private static boolean isPort(String value) {
+        try {
+            int port = Integer.parseInt(value);
+            return port >= 0 && port <= 65535;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
 }
\ No newline at end of file
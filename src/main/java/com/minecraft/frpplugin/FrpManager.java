@@ -1,10 +1,33 @@
 package com.minecraft.frpplugin;
 
+import com.minecraft.frpplugin.api.FrpTunnelStateChangeEvent;
+import com.minecraft.frpplugin.api.ProxyEndpoint;
+import com.minecraft.frpplugin.api.TunnelSnapshot;
+import com.minecraft.frpplugin.api.TunnelState;
+import com.minecraft.frpplugin.metrics.MetricsRegistry;
+import com.minecraft.frpplugin.network.ConnectionRelay;
+import com.minecraft.frpplugin.version.TaskScheduler;
 import org.bukkit.plugin.Plugin;
 
 import java.io.File;
 import java.io.IOException;
-import java.lang.reflect.Field;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.StringJoiner;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -13,31 +36,87 @@ import java.util.logging.Logger;
  */
 public class FrpManager {
     
+    /**
+     * 插件实际传给frpc的配置文件名
+     */
+    static final String EFFECTIVE_CONFIG_NAME = "frpc.effective.toml";
+    
+    /**
+     * 独立进程模式下frpc的输出文件名
+     */
+    static final String LOG_FILE_NAME = "frpc.log";
+    /**
+     * 独立进程模式下上一次运行的frpc输出，每次启动frpc时由frpc.log轮换而来
+     */
+    static final String PREVIOUS_LOG_FILE_NAME = "frpc.log.1";
+    /**
+     * 接管frpc时最多回放的输出，只需要最近的代理启动结果来推断状态
+     */
+    static final long LOG_REPLAY_BYTES = 256L * 1024L;
+    
+    /**
+     * 跟随日志文件时没有新内容的等待间隔(毫秒)
+     */
+    private static final long LOG_POLL_MILLIS = 250L;
+    
+    /**
+     * 停止请求等待正在进行的启动完成的最长时间，启动前检查可能需要连接frps
+     */
+    private static final long START_SETTLE_MILLIS = 10_000L;
+    
     private final Plugin plugin;
     private final Logger logger;
-    private Process frpcProcess;
-    private boolean isClientRunning;
+    private final MetricsRegistry metrics;
+    private final PluginExecutor executor;
+    private final TaskScheduler scheduler;
+    private volatile ProcessHandle frpcHandle;
+    private volatile boolean detached;
+    private volatile File activeConfigFile;
+    private volatile ProcessScheduling scheduling;
+    private final AtomicBoolean tuning = new AtomicBoolean();
+    private final AtomicReference<TunnelState> state = new AtomicReference<>(TunnelState.STOPPED);
+    /**
+     * 切换到STARTING和替换startSettled在同一把锁内完成，看到STARTING的线程总能拿到对应的Future
+     */
+    private final Object startLock = new Object();
+    private CompletableFuture<Void> startSettled = CompletableFuture.completedFuture(null);
+    private volatile TunnelSnapshot snapshot = TunnelSnapshot.EMPTY;
+    private volatile List<ProxyEndpoint> endpoints = Collections.emptyList();
+    private volatile List<ProxyEndpoint> serverEndpoints = Collections.emptyList();
+    private volatile long rttMillis = -1L;
+    private volatile int poolCount = -1;
+    private volatile int runningPoolCount = -1;
+    private volatile Map<String, String> bandwidthLimits;
+    private volatile Consumer<String> logListener;
+    private volatile boolean probeDegraded;
+    private volatile long startedAtMillis;
+    private volatile boolean proxyProtocolEnabled;
+    private volatile ConnectionRelay relay;
     private ProcessManager processManager;
+    private final Thread shutdownHook;
     
     /**
      * 构造函数
      * @param plugin 插件实例
+     * @param metrics 计时器注册表
+     * @param executor 插件的后台任务执行器
+     * @param scheduler 任务调度器
      */
-    public FrpManager(Plugin plugin) {
+    public FrpManager(Plugin plugin, MetricsRegistry metrics, PluginExecutor executor, TaskScheduler scheduler) {
         this.plugin = plugin;
         this.logger = plugin.getLogger();
-        this.isClientRunning = false;
-        this.processManager = new ProcessManager(plugin.getDataFolder(), logger);
+        this.metrics = metrics;
+        this.executor = executor;
+        this.scheduler = scheduler;
+        this.processManager = new ProcessManager(plugin.getDataFolder(), logger, metrics);
         
-        // 检查是否有未正常关闭的frpc进程
-        checkExistingProcess();
-        
-        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
-            if (isClientRunning && frpcProcess != null) {
+        this.shutdownHook = new Thread(() -> {
+            if (state.get().isActive() && frpcHandle != null) {
                 logger.info("检测到JVM关闭，正在停止frpc进程...");
                 stopFrpClient();
             }
-        }));
+        }, "FrpPlugin-ShutdownHook");
+        Runtime.getRuntime().addShutdownHook(shutdownHook);
     }
     
     /**
@@ -45,120 +124,188 @@ public class FrpManager {
      * @return 是否成功启动
      */
     public boolean startFrpClient() {
-        if (isClientRunning) {
-            logger.info("frpc已经在运行中");
-            return true;
-        }
-        
+        long startNanos = System.nanoTime();
+        CompletableFuture<Void> settled = null;
         try {
-            // 获取frpc可执行文件
-            File frpcFile = new File(plugin.getDataFolder(), getExecutableName("frpc"));
-            if (!frpcFile.exists()) {
-                logger.severe("找不到frpc可执行文件");
-                return false;
+            // 只有成功从STOPPED或CRASHED切换到STARTING的调用者才会启动进程，避免重复启动
+            settled = beginStart(TunnelState.STOPPED);
+            if (settled == null) {
+                settled = beginStart(TunnelState.CRASHED);
             }
-            
-            // 获取配置文件
-            File configFile = new File(plugin.getDataFolder(), "frpc.toml");
-            if (!configFile.exists()) {
-                logger.severe("找不到frpc.toml配置文件");
+            if (settled == null) {
+                TunnelState current = state.get();
+                if (current.isActive()) {
+                    logger.info("frpc已经在运行中");
+                    return true;
+                }
+                logger.info("frpc当前状态为" + current.getDisplayName() + "，忽略启动请求");
                 return false;
             }
             
-            // 读取并处理配置文件
-            String configContent = java.nio.file.Files.readString(configFile.toPath());
-            com.moandjiezana.toml.Toml toml = new com.moandjiezana.toml.Toml().read(configContent);
-            
-            // 对openfrp进行特殊处理,以到达兼容
-            java.util.List<java.util.Map<String, Object>> proxies = toml.getList("proxies");
-            boolean hasAutoTLS = false;
-            if (proxies != null && !proxies.isEmpty()) {
-                for (java.util.Map<String, Object> proxy : proxies) {
-                    if (proxy.containsKey("autoTLS")) {
-                        hasAutoTLS = true;
-                        break;
-                    }
+            boolean started = false;
+            ProcessHandle spawned = null;
+            try {
+                // 获取frpc可执行文件
+                File frpcFile = getFrpcFile();
+                if (!frpcFile.exists()) {
+                    logger.severe("找不到frpc可执行文件");
+                    return false;
                 }
-            }
-            
-            if (hasAutoTLS) {
-                logger.info("检测到为openfrp的配置文件，已自动去除autoTLS配置");
-                StringBuilder newConfig = new StringBuilder();
-                for (String line : configContent.split("\n")) {
-                    if (!line.trim().startsWith("autoTLS")) {
-                        newConfig.append(line).append("\n");
-                    }
+                
+                // 获取配置文件
+                File configFile = new File(plugin.getDataFolder(), "frpc.toml");
+                if (!configFile.exists()) {
+                    logger.severe("找不到frpc.toml配置文件");
+                    return false;
                 }
-                java.nio.file.Files.writeString(configFile.toPath(), newConfig.toString());
-            }
-            ProcessBuilder pb = new ProcessBuilder(
-                frpcFile.getAbsolutePath(),
-                "-c",
-                configFile.getAbsolutePath()
-            );
-            pb.directory(plugin.getDataFolder());
-            pb.redirectErrorStream(true);
-            frpcProcess = pb.start();
-            
-            // 创建日志线程
-            new Thread(() -> {
-                try (java.io.BufferedReader reader = new java.io.BufferedReader(
-                        new java.io.InputStreamReader(frpcProcess.getInputStream()))) {
-                    String line;
-                    while ((line = reader.readLine()) != null) {
-                        logger.info("[frpc] " + line);
+                
+                // 读取并处理配置文件
+                String configContent = java.nio.file.Files.readString(configFile.toPath());
+                com.moandjiezana.toml.Toml toml;
+                long parseStartNanos = System.nanoTime();
+                try {
+                    toml = new com.moandjiezana.toml.Toml().read(configContent);
+                } catch (RuntimeException e) {
+                    logger.severe("frpc.toml格式错误，请检查是否有未填写的配置项: " + e.getMessage());
+                    return false;
+                } finally {
+                    metrics.record("FrpManager.parseConfig", parseStartNanos);
+                }
+                
+                // 启动前检查配置和连通性，避免启动注定会失败的frpc
+                if (plugin.getConfig().getBoolean("preflight.enabled", true)) {
+                    List<String> errors = new PreflightChecker(logger,
+                            plugin.getConfig().getLong("preflight.timeout_ms", 2000L), executor).check(toml.toMap());
+                    if (!errors.isEmpty()) {
+                        logger.severe("frpc启动前检查未通过:");
+                        for (String error : errors) {
+                            logger.severe(" - " + error);
+                        }
+                        return false;
                     }
-                } catch (IOException e) {
-                    logger.log(Level.SEVERE, "读取frpc输出时出错", e);
                 }
-            }).start();
-            
-            // 监控进程状态
-            new Thread(() -> {
-                try {
-                    int exitCode = frpcProcess.waitFor();
-                    isClientRunning = false;
-                    logger.info("frpc进程已退出，退出码: " + exitCode);
-                    // 清除PID记录
-                    processManager.clearProcessPid("frpc");
-                } catch (InterruptedException e) {
-                    logger.log(Level.SEVERE, "监控frpc进程时出错", e);
+                
+                // 对openfrp进行特殊处理,以到达兼容
+                java.util.List<java.util.Map<String, Object>> proxies = toml.getList("proxies");
+                String strippedContent = stripAutoTLS(configContent);
+                if (!strippedContent.equals(configContent)) {
+                    logger.info("检测到为openfrp的配置文件，已自动去除autoTLS配置");
+                    configContent = strippedContent;
+                    java.nio.file.Files.writeString(configFile.toPath(), configContent);
                 }
-            }).start();
-            
-            isClientRunning = true;
-            
-            // 记录进程PID
-            try {
-                long pid = getPid(frpcProcess);
-                processManager.recordProcessPid("frpc", pid);
-            } catch (Exception e) {
-                logger.log(Level.WARNING, "获取进程PID时出错", e);
-            }
-            
-            logger.info("frpc已成功启动");
-            
-            // 读取并显示公网地址信息
-            try {
-                // 重用之前读取的配置内容
-                String serverAddr = toml.getString("serverAddr");
-                Long remotePort = toml.getLong("proxies[0].remotePort");
-                if (serverAddr != null && remotePort != null) {
-                    logger.info("您的公网地址为: " + serverAddr + ":" + remotePort);
+                endpoints = parseEndpoints(toml);
+                
+                // 在用户配置的基础上生成实际使用的配置
+                RuntimeOverrides overrides = currentOverrides();
+                String effectiveConfig = buildEffectiveConfig(configContent, proxies, overrides);
+                File effectiveConfigFile = writeEffectiveConfig(configFile, configContent, effectiveConfig, overrides);
+                
+                // 按配置限制frpc的CPU和I/O优先级，避免与服务器主线程争抢
+                ProcessScheduling processScheduling = new ProcessScheduling(
+                        plugin.getConfig().getConfigurationSection("scheduling"), logger);
+                ProcessBuilder pb = new ProcessBuilder(processScheduling.wrap(List.of(
+                    frpcFile.getAbsolutePath(),
+                    "-c",
+                    effectiveConfigFile.getAbsolutePath()
+                )));
+                pb.directory(plugin.getDataFolder());
+                pb.redirectErrorStream(true);
+                // 限制frpc的Go调度器和垃圾回收，环境变量会经过taskset等工具传给frpc
+                new GoRuntimeTuning(plugin.getConfig().getConfigurationSection("go_runtime"),
+                        plugin.getConfig().getLong("resource_monitor.max_rss_mb", 0),
+                        processScheduling.getPinnedCpuCount()).apply(pb.environment(), logger);
+                // 独立进程模式下frpc的输出写入文件，插件重载后输出管道不会因无人读取而阻塞frpc
+                boolean detachedMode = isDetachedMode();
+                File logFile = new File(plugin.getDataFolder(), LOG_FILE_NAME);
+                if (detachedMode) {
+                    rotateLogFile(logFile);
+                    pb.redirectOutput(ProcessBuilder.Redirect.to(logFile));
+                }
+                Process process = pb.start();
+                ProcessHandle handle = process.toHandle();
+                spawned = handle;
+                detached = false;
+                frpcHandle = handle;
+                // 先记录PID、指纹、配置哈希和运行时覆盖值再启动监控线程，进程立即退出时记录也会被正确清除
+                processManager.recordProcessStart("frpc", handle, realPath(frpcFile),
+                        computeConfigHash(frpcFile, effectiveConfig), overrides.encode());
+                activeConfigFile = effectiveConfigFile;
+                runningPoolCount = overrides.poolCount;
+                processScheduling.applyAfterStart(handle);
+                scheduling = processScheduling;
+                if (!processScheduling.describe().isEmpty()) {
+                    logger.info("frpc调度设置: " + processScheduling.describe());
+                }
+                rttMillis = -1L;
+                probeDegraded = false;
+                startedAtMillis = System.currentTimeMillis();
+                transition(TunnelState.STARTING, TunnelState.CONNECTING);
+                started = true;
+                
+                // 创建日志线程
+                if (detachedMode) {
+                    followLogFile(handle, logFile, 0L);
+                } else {
+                    String logCharset = plugin.getConfig().getString("frpc_log_charset", "auto");
+                    executor.executeLongRunning("frpc-Output", () -> {
+                        try (java.io.InputStream in = process.getInputStream()) {
+                            new FrpcLogReader(in, logCharset, line -> handleLogLine(handle, line)).readAll();
+                        } catch (IOException e) {
+                            logger.log(Level.SEVERE, "读取frpc输出时出错", e);
+                        }
+                    });
+                }
+                
+                // 进程退出时由JDK回调，不需要专门阻塞等待的线程
+                process.onExit().thenAcceptAsync(exited -> handleExit(handle, exited.exitValue()),
+                        task -> executor.execute("frpc-Exit", task));
+                
+                logger.info("frpc已成功启动");
+                
+                // 显示公网地址信息
+                for (ProxyEndpoint endpoint : endpoints) {
+                    logger.info("您的公网地址为: " + endpoint);
+                }
+                
+                return true;
+                
+            } catch (IOException e) {
+                logger.log(Level.SEVERE, "启动frpc时出错", e);
+                return false;
+            } finally {
+                if (!started) {
+                    // 进程已创建但启动流程中途失败时不能留下无人管理的frpc
+                    if (spawned != null) {
+                        spawned.destroyForcibly();
+                        processManager.clearProcessPid("frpc");
+                    }
+                    transition(TunnelState.STARTING, TunnelState.STOPPED);
                 }
-            } catch (Exception e) {
-                logger.warning("读取配置文件获取公网地址信息时出错: " + e.getMessage());
             }
-            
-            return true;
-            
-        } catch (IOException e) {
-            logger.log(Level.SEVERE, "启动frpc时出错", e);
-            return false;
+        } finally {
+            if (settled != null) {
+                settled.complete(null);
+            }
+            metrics.record("FrpManager.startFrpClient", startNanos);
         }
     }
     
-
+    /**
+     * 开始一次启动流程
+     * @param from 期望的当前状态
+     * @return 启动流程结束(离开STARTING)时完成的Future，当前状态不是from时返回null
+     */
+    private CompletableFuture<Void> beginStart(TunnelState from) {
+        synchronized (startLock) {
+            if (!transition(from, TunnelState.STARTING)) {
+                return null;
+            }
+            startSettled = new CompletableFuture<>();
+            return startSettled;
+        }
+    }
+    
+    
     
     /**
      * 停止frp进程
@@ -166,7 +313,7 @@ public class FrpManager {
     public void stopFrp() {
         stopFrpClient();
     }
-
+    
     /**
      * 处理进程关闭命令
      * @param pid 进程ID
@@ -187,62 +334,199 @@ public class FrpManager {
      * 停止frpc客户端
      */
     public void stopFrpClient() {
-        if (frpcProcess != null && isClientRunning) {
-            try {
-                // 先尝试正常终止进程
-                frpcProcess.destroy();
-                
-                // 等待进程结束，最多等待3秒
-                if (!frpcProcess.waitFor(3, java.util.concurrent.TimeUnit.SECONDS)) {
-                    // 如果3秒后进程仍未结束，强制终止
-                    logger.info("frpc进程未在预期时间内终止，正在强制终止...");
-                    frpcProcess.destroyForcibly();
-                    
-                    // 再等待2秒确保进程被终止
-                    if (!frpcProcess.waitFor(2, java.util.concurrent.TimeUnit.SECONDS)) {
-                        logger.warning("无法完全终止frpc进程，可能需要手动清理");
-                    }
+        long startNanos = System.nanoTime();
+        try {
+            // 只有成功切换到STOPPING的调用者才会执行终止，并发的停止请求直接返回
+            // 其他线程正在启动时等待启动完成后再停止，否则刚启动的frpc会无人管理(例如插件在此时被禁用)
+            long settleDeadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(START_SETTLE_MILLIS);
+            while (true) {
+                TunnelState current;
+                CompletableFuture<Void> settled;
+                synchronized (startLock) {
+                    current = state.get();
+                    settled = startSettled;
                 }
-                
-                // 获取进程ID并尝试使用系统命令终止（仅Windows系统）
-                String osName = System.getProperty("os.name").toLowerCase();
-                if (osName.contains("win")) {
+                if (current == TunnelState.STARTING) {
                     try {
-                        // 使用taskkill命令强制终止所有frpc.exe进程
-                        ProcessBuilder pb = new ProcessBuilder("taskkill", "/F", "/IM", "frpc.exe");
-                        pb.start();
-                        logger.info("已执行系统命令终止所有frpc.exe进程");
-                    } catch (Exception e) {
-                        logger.log(Level.WARNING, "使用系统命令终止frpc进程时出错", e);
+                        settled.get(Math.max(0L, settleDeadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+                    } catch (TimeoutException e) {
+                        logger.warning("frpc启动时间过长，未能停止，请稍后再试");
+                        return;
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    } catch (ExecutionException e) {
+                        // 启动流程只会正常完成这个Future
                     }
+                    continue;
+                }
+                if (!current.isActive()) {
+                    return;
+                }
+                if (transition(current, TunnelState.STOPPING)) {
+                    break;
                 }
-                
-                isClientRunning = false;
-                // 清除PID记录
-                processManager.clearProcessPid("frpc");
-                logger.info("frpc已停止");
-            } catch (InterruptedException e) {
-                logger.log(Level.SEVERE, "停止frpc时出错", e);
-                // 即使出现异常，也标记为已停止，避免状态不一致
-                isClientRunning = false;
             }
+            
+            ProcessHandle handle = frpcHandle;
+            if (handle != null) {
+                // 只终止本插件启动的frpc及其子进程，不影响机器上其他frpc实例
+                long timeoutMillis = plugin.getConfig().getLong("shutdown.timeout_ms", 3000L);
+                if (!processManager.terminateProcessTree(handle, timeoutMillis)) {
+                    logger.warning("无法完全终止frpc进程，可能需要手动清理");
+                }
+            }
+            
+            // 清除PID记录，旧进程延迟到达的退出回调不能再与句柄匹配
+            processManager.clearProcessPid("frpc");
+            frpcHandle = null;
+            transition(TunnelState.STOPPING, TunnelState.STOPPED);
+            logger.info("frpc已停止");
+        } finally {
+            metrics.record("FrpManager.stopFrpClient", startNanos);
         }
     }
     
-
+    
     
     /**
      * 重启frp进程
+     * @return 是否成功重新启动
      */
-    public void restartFrp() {
-        stopFrp();
-        // 等待一段时间确保进程完全停止
+    public boolean restartFrp() {
+        long startNanos = System.nanoTime();
         try {
-            Thread.sleep(1000);
-        } catch (InterruptedException e) {
-            logger.log(Level.WARNING, "重启frp时等待被中断", e);
+            // stopFrp会等待进程树退出后才返回，无需额外等待
+            stopFrp();
+            return startFrpClient();
+        } finally {
+            metrics.record("FrpManager.restartFrp", startNanos);
         }
-        startFrpClient();
+    }
+    
+    /**
+     * 依次用配置中的候选传输设置临时运行frpc并测量，把最好的设置保存下来，在frpc下次启动时写入实际使用的配置
+     * 测量期间正在运行的frpc不受影响，不应在主线程调用
+     * @param progress 接收进度和结果说明
+     * @return 按得分排列的测量结果，无法开始测量时返回null
+     */
+    public List<TransportTuner.Result> tuneTransport(Consumer<String> progress) {
+        if (!tuning.compareAndSet(false, true)) {
+            progress.accept("传输测试已经在进行中");
+            return null;
+        }
+        try {
+            int remotePort = plugin.getConfig().getInt("transport_tune.remote_port", 0);
+            if (remotePort <= 0) {
+                progress.accept("请先在config.yml中设置transport_tune.remote_port(frps允许使用的空闲端口)");
+                return null;
+            }
+            File frpcFile = getFrpcFile();
+            File configFile = new File(plugin.getDataFolder(), "frpc.toml");
+            String configContent;
+            Object serverAddr;
+            try {
+                configContent = stripAutoTLS(java.nio.file.Files.readString(configFile.toPath()));
+                serverAddr = new com.moandjiezana.toml.Toml().read(configContent).toMap().get("serverAddr");
+            } catch (IOException | RuntimeException e) {
+                progress.accept("frpc.toml无法读取或格式错误: " + e.getMessage());
+                return null;
+            }
+            if (!frpcFile.exists() || !(serverAddr instanceof String)) {
+                progress.accept("找不到frpc可执行文件或frpc.toml中没有serverAddr");
+                return null;
+            }
+            
+            List<TransportTuner.Candidate> candidates = new ArrayList<>();
+            for (String name : plugin.getConfig().getStringList("transport_tune.candidates")) {
+                switch (name.toLowerCase()) {
+                    case "tcp":
+                        candidates.add(new TransportTuner.Candidate("tcp", "tcp", true, 0));
+                        break;
+                    case "tcp-nomux":
+                        candidates.add(new TransportTuner.Candidate("tcp-nomux", "tcp", false, 0));
+                        break;
+                    case "kcp":
+                        candidates.add(new TransportTuner.Candidate("kcp", "kcp", true,
+                                plugin.getConfig().getInt("transport_tune.kcp_port", 0)));
+                        break;
+                    case "quic":
+                        candidates.add(new TransportTuner.Candidate("quic", "quic", true,
+                                plugin.getConfig().getInt("transport_tune.quic_port", 0)));
+                        break;
+                    default:
+                        logger.warning("未知的传输测试候选: " + name);
+                }
+            }
+            if (candidates.isEmpty()) {
+                progress.accept("transport_tune.candidates中没有可用的候选");
+                return null;
+            }
+            
+            progress.accept("开始测试 " + candidates.size() + " 种传输设置，每种最多需要 "
+                    + plugin.getConfig().getInt("transport_tune.timeout_seconds", 15) + " 秒...");
+            TransportTuner tuner = new TransportTuner(frpcFile, plugin.getDataFolder(), configContent,
+                    (String) serverAddr, remotePort, plugin.getConfig().getInt("transport_tune.timeout_seconds", 15) * 1000L,
+                    plugin.getConfig().getString("frpc_log_charset", "auto"), executor, logger);
+            List<TransportTuner.Result> results = tuner.run(candidates, result -> progress.accept(result.describe()));
+            
+            TransportTuner.Result best = results.get(0);
+            if (!best.isSuccess()) {
+                progress.accept("所有传输设置都测试失败，保留原有设置");
+                return results;
+            }
+            try {
+                TransportTuner.saveSelection(plugin.getDataFolder(), best);
+            } catch (IOException e) {
+                logger.log(Level.WARNING, "保存传输测试结果时出错", e);
+                progress.accept("保存测试结果失败: " + e.getMessage());
+                return results;
+            }
+            logger.info("传输测试选出 " + best.getCandidate().getName() + "，将在frpc下次启动时使用");
+            return results;
+        } finally {
+            tuning.set(false);
+        }
+    }
+    
+    /**
+     * 设置frpc预先建立的工作连接数，覆盖frpc.toml中的transport.poolCount
+     * frpc只在登录时把连接数告诉frps，新的值在frpc下次启动时生效
+     * @param count 连接数，-1表示使用frpc.toml中的值
+     * @return 值是否改变
+     */
+    public boolean setPoolCount(int count) {
+        if (poolCount == count) {
+            return false;
+        }
+        poolCount = count;
+        return true;
+    }
+    
+    /**
+     * 设置代理的带宽上限，覆盖frpc.toml中各代理的transport.bandwidthLimit
+     * 调用过一次之后总是通过插件生成的配置文件启动frpc，之后的修改都可以热重载，不需要切换配置文件
+     * 新的值在下次热重载或启动时生效
+     * @param limits 代理名称到带宽上限(frpc格式，例如256KB)的映射，为空时使用frpc.toml中的值
+     */
+    public void setBandwidthLimits(Map<String, String> limits) {
+        bandwidthLimits = Map.copyOf(limits);
+    }
+    
+    /**
+     * 设置frpc输出的监听器，在读取输出的线程中调用，不能阻塞
+     * @param listener 监听器，为null时移除
+     */
+    public void setLogListener(Consumer<String> listener) {
+        logListener = listener;
+    }
+    
+    /**
+     * 获取运行中的frpc启动时使用的连接数
+     * @return 连接数，使用frpc.toml中的值或frpc未由本插件启动时为-1
+     */
+    public int getRunningPoolCount() {
+        return runningPoolCount;
     }
     
     /**
@@ -250,7 +534,854 @@ public class FrpManager {
      * @return 是否正在运行
      */
     public boolean isClientRunning() {
-        return isClientRunning;
+        return state.get().isActive();
+    }
+    
+    /**
+     * 获取隧道当前状态
+     * @return 隧道状态
+     */
+    public TunnelState getState() {
+        return state.get();
+    }
+    
+    /**
+     * 设置是否为指向本服务器的代理启用PROXY protocol
+     * 只有在解码器成功注入服务器后才能启用，否则服务器无法识别frpc发送的头部
+     * @param enabled 是否启用，下次启动frpc时生效
+     */
+    public void setProxyProtocolEnabled(boolean enabled) {
+        this.proxyProtocolEnabled = enabled;
+    }
+    
+    /**
+     * 设置连接中转，设置后指向本服务器的代理将改为连接中转端口
+     * @param relay 连接中转，为null时直接连接服务器
+     */
+    public void setRelay(ConnectionRelay relay) {
+        this.relay = relay;
+    }
+    
+    /**
+     * 获取连接中转
+     * @return 连接中转，未启用时为null
+     */
+    public ConnectionRelay getRelay() {
+        return relay;
+    }
+    
+    /**
+     * 获取当前frpc进程
+     * @return 进程句柄，从未启动时为null
+     */
+    public ProcessHandle getProcessHandle() {
+        return frpcHandle;
+    }
+    
+    /**
+     * 获取frpc实际生效的调度设置
+     * @return 例如"CPU 2-3, nice 10"，没有生效的设置时返回空字符串
+     */
+    public String getSchedulingDescription() {
+        ProcessScheduling current = scheduling;
+        return current == null || !state.get().isActive() ? "" : current.describe();
+    }
+    
+    /**
+     * 获取指向本服务器端口的tcp代理的公网端点，供健康检查使用
+     * @return 端点列表
+     */
+    public List<ProxyEndpoint> getServerEndpoints() {
+        return serverEndpoints;
+    }
+    
+    /**
+     * 记录一次成功的健康检查，之前因检查失败被标记为异常的隧道恢复为在线
+     * @param rtt 从公网完成状态查询的耗时(毫秒)
+     */
+    public void reportProbeSuccess(long rtt) {
+        rttMillis = rtt;
+        if (probeDegraded) {
+            probeDegraded = false;
+            transition(TunnelState.DEGRADED, TunnelState.ONLINE);
+        }
+    }
+    
+    /**
+     * 记录健康检查连续失败，将在线的隧道标记为异常
+     */
+    public void reportProbeFailure() {
+        rttMillis = -1L;
+        if (transition(TunnelState.ONLINE, TunnelState.DEGRADED)) {
+            probeDegraded = true;
+        }
+    }
+    
+    /**
+     * 获取frpc的持久化进程记录
+     * @return 进程记录，从未启动过时为null
+     */
+    public ProcessRecord getProcessRecord() {
+        return processManager.getRecord("frpc");
+    }
+    
+    /**
+     * 释放资源，等待进程状态写入完成
+     */
+    public void close() {
+        // 移除关闭钩子，否则每次重载插件都会留下一个引用旧实例的钩子
+        try {
+            Runtime.getRuntime().removeShutdownHook(shutdownHook);
+            // 独立进程模式下frpc在插件禁用后继续运行，换成只持有进程句柄的钩子，JVM真正关闭时仍会停止frpc
+            // 插件重新启用并接管后旧钩子仍会保留，但进程退出后它什么也不做
+            ProcessHandle handle = frpcHandle;
+            if (detached && handle != null && handle.isAlive()) {
+                long timeoutMillis = plugin.getConfig().getLong("shutdown.timeout_ms", 3000L);
+                Runtime.getRuntime().addShutdownHook(new Thread(
+                        new DetachedShutdownHook(handle, timeoutMillis), "FrpPlugin-DetachedShutdownHook"));
+            }
+        } catch (IllegalStateException e) {
+            // JVM正在关闭，钩子已经在运行
+        }
+        processManager.close();
+    }
+    
+    /**
+     * 插件禁用后仍在运行的frpc的关闭钩子
+     * 只持有进程句柄，不引用插件实例，JVM关闭时终止frpc及其子进程
+     */
+    private static final class DetachedShutdownHook implements Runnable {
+        
+        private final ProcessHandle root;
+        private final long timeoutMillis;
+        
+        DetachedShutdownHook(ProcessHandle root, long timeoutMillis) {
+            this.root = root;
+            this.timeoutMillis = timeoutMillis;
+        }
+        
+        @Override
+        public void run() {
+            if (!root.isAlive()) {
+                return;
+            }
+            List<ProcessHandle> tree = new ArrayList<>();
+            root.descendants().forEach(tree::add);
+            tree.add(root);
+            tree.forEach(ProcessHandle::destroy);
+            try {
+                root.onExit().get(timeoutMillis, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException | ExecutionException e) {
+                // 超时后强制终止
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            for (ProcessHandle handle : tree) {
+                if (handle.isAlive()) {
+                    handle.destroyForcibly();
+                }
+            }
+        }
+    }
+    
+    /**
+     * 处理上次留下的frpc进程
+     * 独立进程模式下，如果进程指纹和配置都与记录一致则直接接管；指纹一致但不能接管(例如配置已修改)时
+     * 立即停止它，否则它会继续占用frps上的代理名称，随后启动的新frpc会因代理已存在而失败；
+     * 其他情况按原方式提示管理员关闭
+     * @return 是否接管了仍在运行的frpc
+     */
+    public boolean recoverExistingProcess() {
+        if (isDetachedMode()) {
+            if (adoptExistingProcess()) {
+                return true;
+            }
+            ProcessRecord record = processManager.getRecord("frpc");
+            ProcessHandle handle = record == null ? null
+                    : ProcessHandle.of(record.getPid()).filter(record::matches).orElse(null);
+            if (handle != null) {
+                logger.info("正在停止上次保留但无法接管的frpc进程(PID: " + handle.pid() + ")");
+                long timeoutMillis = plugin.getConfig().getLong("shutdown.timeout_ms", 3000L);
+                if (processManager.terminateProcessTree(handle, timeoutMillis)) {
+                    processManager.clearProcessPid("frpc");
+                    return false;
+                }
+                logger.warning("无法停止上次保留的frpc进程(PID: " + handle.pid() + ")");
+            }
+        }
+        checkExistingProcess();
+        return false;
+    }
+    
+    /**
+     * 插件禁用时调用，独立进程模式下让frpc继续运行，等待重新启用时接管
+     * JVM关闭时仍会由关闭钩子停止frpc
+     * @return 是否保留了frpc，返回false时调用者应停止frpc
+     */
+    public boolean detach() {
+        ProcessHandle handle = frpcHandle;
+        if (!isDetachedMode() || !state.get().isActive() || handle == null || !handle.isAlive()) {
+            return false;
+        }
+        detached = true;
+        logger.info("独立进程模式: frpc(PID: " + handle.pid() + ")将继续运行，插件重新启用后会自动接管");
+        return true;
+    }
+    
+    /**
+     * 尝试接管仍在运行的frpc进程
+     * @return 是否接管成功
+     */
+    private boolean adoptExistingProcess() {
+        ProcessRecord record = processManager.getRecord("frpc");
+        if (record == null || record.getPid() <= 0 || record.getConfigHash().isEmpty()) {
+            return false;
+        }
+        ProcessHandle handle = ProcessHandle.of(record.getPid()).filter(record::matches).orElse(null);
+        File logFile = new File(plugin.getDataFolder(), LOG_FILE_NAME);
+        if (handle == null || !logFile.exists()) {
+            return false;
+        }
+        
+        File frpcFile = getFrpcFile();
+        File configFile = new File(plugin.getDataFolder(), "frpc.toml");
+        String configContent;
+        com.moandjiezana.toml.Toml toml;
+        try {
+            configContent = stripAutoTLS(java.nio.file.Files.readString(configFile.toPath()));
+            toml = new com.moandjiezana.toml.Toml().read(configContent);
+        } catch (IOException | RuntimeException e) {
+            logger.warning("读取frpc.toml失败，不接管仍在运行的frpc进程: " + e.getMessage());
+            return false;
+        }
+        // 连接池大小和带宽上限由运行时的统计决定，重新启用时还没有恢复，按启动frpc时记录的值计算哈希
+        RuntimeOverrides recorded = RuntimeOverrides.decode(record.getOverrides());
+        String effectiveConfig = buildEffectiveConfig(configContent, toml.getList("proxies"), recorded);
+        String configHash = computeConfigHash(frpcFile, effectiveConfig);
+        if (!configHash.equals(record.getConfigHash())) {
+            logger.info("frpc配置自上次启动后已变化，不接管仍在运行的frpc进程(PID: " + handle.pid() + ")");
+            return false;
+        }
+        
+        CompletableFuture<Void> settled = beginStart(TunnelState.STOPPED);
+        if (settled == null) {
+            return false;
+        }
+        try {
+            detached = false;
+            frpcHandle = handle;
+            activeConfigFile = effectiveConfig.equals(configContent) && recorded.bandwidthLimits == null
+                    ? configFile : new File(plugin.getDataFolder(), EFFECTIVE_CONFIG_NAME);
+            restoreOverrides(recorded);
+            rttMillis = -1L;
+            probeDegraded = false;
+            endpoints = parseEndpoints(toml);
+            startedAtMillis = record.getStartedAtMillis();
+            transition(TunnelState.STARTING, TunnelState.CONNECTING);
+        } finally {
+            settled.complete(null);
+        }
+        
+        // 回放最近的输出来推断当前状态，这部分输出之前已经显示过，不再重复显示
+        // 长时间运行的frpc输出可能很大，只读取末尾一段，避免拖慢插件启用
+        String logCharset = plugin.getConfig().getString("frpc_log_charset", "auto");
+        boolean truncated = logFile.length() > LOG_REPLAY_BYTES;
+        long offset;
+        try {
+            offset = replayLogTail(logFile, LOG_REPLAY_BYTES, logCharset, this::updateStateFromLog);
+        } catch (IOException e) {
+            offset = logFile.length();
+        }
+        // 代理启动结果在回放范围之前，frpc已经稳定运行了很久，视为在线，之后由健康检查确认
+        if (truncated && transition(TunnelState.CONNECTING, TunnelState.ONLINE)) {
+            logger.info("frpc输出的最近 " + (LOG_REPLAY_BYTES / 1024) + " KB 中没有代理启动结果，按在线处理");
+        }
+        followLogFile(handle, logFile, offset);
+        handle.onExit().thenAcceptAsync(exited -> handleExit(exited, -1),
+                task -> executor.execute("frpc-Exit", task));
+        
+        logger.info("已接管仍在运行的frpc进程(PID: " + handle.pid() + ")，隧道无需重新连接");
+        if (!Objects.equals(bandwidthLimits, recorded.bandwidthLimits)) {
+            logger.info("frpc启动时的带宽上限与当前设置不同，通过热重载更新");
+            executor.execute("frpc-Reload", () -> applyConfigChange(false));
+        }
+        return true;
+    }
+    
+    /**
+     * 接管frpc后还原它启动时使用的运行时覆盖值
+     * 连接池大小没有重新统计前沿用记录的值；带宽上限以当前设置为准，与记录不同时由调用者热重载
+     * @param recorded 启动frpc时记录的覆盖值
+     */
+    private void restoreOverrides(RuntimeOverrides recorded) {
+        runningPoolCount = recorded.poolCount;
+        if (poolCount < 0) {
+            poolCount = recorded.poolCount;
+        }
+        // 带宽QoS已关闭时改为不限速，但继续使用生成的配置文件，这样才能热重载
+        if (bandwidthLimits == null && recorded.bandwidthLimits != null) {
+            bandwidthLimits = Collections.emptyMap();
+        }
+    }
+    
+    /**
+     * 读取输出文件末尾的一段，从中间开始时跳过不完整的第一行
+     * @param logFile 输出文件
+     * @param maxBytes 最多读取的字节数
+     * @param logCharset 输出的编码
+     * @param handler 每一行的处理函数
+     * @return 读取结束的位置，之后从这里继续跟随
+     * @throws IOException 如果读取失败
+     */
+    static long replayLogTail(File logFile, long maxBytes, String logCharset, Consumer<String> handler) throws IOException {
+        try (java.io.FileInputStream in = new java.io.FileInputStream(logFile)) {
+            long start = Math.max(0L, in.getChannel().size() - maxBytes);
+            if (start > 0) {
+                in.getChannel().position(start - 1);
+                // 前一个字节就是换行时，起点正好是完整一行的开头
+                int b;
+                do {
+                    b = in.read();
+                } while (b >= 0 && b != '\n');
+            }
+            new FrpcLogReader(in, logCharset, handler).readAll();
+            return in.getChannel().position();
+        }
+    }
+    
+    /**
+     * 把上一次运行的输出轮换为frpc.log.1，新的frpc从空文件开始写，输出文件的大小不会跨越多次运行累积
+     * @param logFile 输出文件
+     */
+    private void rotateLogFile(File logFile) {
+        if (!logFile.exists()) {
+            return;
+        }
+        try {
+            java.nio.file.Files.move(logFile.toPath(), new File(plugin.getDataFolder(), PREVIOUS_LOG_FILE_NAME).toPath(),
+                    java.nio.file.StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            logger.warning("无法轮换frpc输出文件，上一次运行的输出将被覆盖: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * 在后台线程中跟随frpc的输出文件
+     * @param handle frpc进程，进程退出后读完剩余内容即结束
+     * @param logFile 输出文件
+     * @param offset 开始读取的位置
+     */
+    private void followLogFile(ProcessHandle handle, File logFile, long offset) {
+        String logCharset = plugin.getConfig().getString("frpc_log_charset", "auto");
+        executor.executeLongRunning("LogFollower", () -> {
+            try (java.io.InputStream in = new FollowingInputStream(logFile, offset,
+                    () -> !detached && handle.isAlive(), LOG_POLL_MILLIS)) {
+                new FrpcLogReader(in, logCharset, line -> handleLogLine(handle, line)).readAll();
+            } catch (IOException e) {
+                logger.log(Level.SEVERE, "读取frpc输出时出错", e);
+            }
+        });
+    }
+    
+    /**
+     * 输出frpc的一行日志并据此更新隧道状态，耗时计入FrpManager.handleLogLine，调用次数即为日志行数
+     * @param handle 输出这行日志的frpc进程
+     * @param line 日志行
+     */
+    private void handleLogLine(ProcessHandle handle, String line) {
+        long startNanos = System.nanoTime();
+        logger.info("[frpc] " + line);
+        Consumer<String> listener = logListener;
+        if (listener != null) {
+            listener.accept(line);
+        }
+        // 重启后旧进程剩余的输出不能改变新进程的状态
+        if (handle == frpcHandle) {
+            updateStateFromLog(line);
+        }
+        metrics.record("FrpManager.handleLogLine", startNanos);
+    }
+    
+    /**
+     * 处理frpc进程退出
+     * @param handle 已退出的进程
+     * @param exitCode 退出码，接管的进程无法获取退出码，此时为-1
+     */
+    private void handleExit(ProcessHandle handle, int exitCode) {
+        // 已交给下一个插件实例接管的进程由新实例负责
+        if (detached) {
+            return;
+        }
+        logger.info("frpc进程已退出，退出码: " + (exitCode < 0 ? "未知" : String.valueOf(exitCode)));
+        if (exitCode >= 0) {
+            processManager.recordExitCode("frpc", exitCode);
+        }
+        // 主动停止时由stopFrpClient负责状态切换，旧进程的退出也不能影响新进程的状态
+        if (handle == frpcHandle && markCrashed()) {
+            processManager.clearProcessPid("frpc");
+        }
+    }
+    
+    /**
+     * 是否启用了独立进程模式
+     */
+    private boolean isDetachedMode() {
+        return plugin.getConfig().getBoolean("detached.enabled", false);
+    }
+    
+    /**
+     * 去除openfrp配置中frpc不支持的autoTLS配置
+     * @param configContent 配置内容
+     * @return 去除后的配置内容，没有autoTLS时返回原内容
+     */
+    private static String stripAutoTLS(String configContent) {
+        boolean hasAutoTLS = false;
+        StringBuilder newConfig = new StringBuilder();
+        for (String line : configContent.split("\n")) {
+            if (line.trim().startsWith("autoTLS")) {
+                hasAutoTLS = true;
+            } else {
+                newConfig.append(line).append("\n");
+            }
+        }
+        return hasAutoTLS ? newConfig.toString() : configContent;
+    }
+    
+    /**
+     * 在用户配置的基础上生成实际传给frpc的配置
+     * @param configContent 用户配置内容
+     * @param proxies 已解析的代理列表
+     * @param overrides 运行时覆盖值
+     * @return 实际使用的配置内容，不需要修改时返回原内容
+     */
+    private String buildEffectiveConfig(String configContent, List<Map<String, Object>> proxies,
+                                        RuntimeOverrides overrides) {
+        FrpcConfigGenerator generator = new FrpcConfigGenerator(configContent);
+        TransportTuner.Candidate tuned = TransportTuner.loadSelection(plugin.getDataFolder());
+        if (tuned != null) {
+            tuned.applyTo(generator);
+            logger.info("使用/frp tune选出的传输设置: " + tuned.getName());
+        }
+        if (overrides.poolCount >= 0) {
+            generator.setGlobal("transport.poolCount", String.valueOf(overrides.poolCount));
+        }
+        configureServerProxies(generator, proxies);
+        configureBandwidthLimits(generator, proxies, overrides.bandwidthLimits);
+        return generator.hasOverrides() ? generator.generate() : configContent;
+    }
+    
+    /**
+     * 写入实际传给frpc的配置
+     * @param configFile 用户配置文件
+     * @param configContent 用户配置内容
+     * @param effectiveConfig 实际使用的配置内容
+     * @param overrides 生成配置时使用的运行时覆盖值
+     * @return 传给frpc的配置文件，与用户配置相同时直接使用用户配置文件
+     * @throws IOException 如果写入失败
+     */
+    private File writeEffectiveConfig(File configFile, String configContent, String effectiveConfig,
+                                      RuntimeOverrides overrides) throws IOException {
+        // 设置过带宽上限时始终使用生成的配置文件，限速和恢复才能通过热重载切换
+        if (effectiveConfig.equals(configContent) && overrides.bandwidthLimits == null) {
+            return configFile;
+        }
+        File effectiveConfigFile = new File(plugin.getDataFolder(), EFFECTIVE_CONFIG_NAME);
+        java.nio.file.Files.writeString(effectiveConfigFile.toPath(), effectiveConfig);
+        return effectiveConfigFile;
+    }
+    
+    /**
+     * 让运行中的frpc应用修改后的frpc.toml
+     * 配置了webServer管理接口时通过frpc reload热重载，已建立的连接不受影响；否则重启frpc
+     * 不应在主线程调用
+     * @return 是否成功应用，frpc未运行时配置会在下次启动时生效，直接返回true
+     */
+    public boolean applyConfigChange() {
+        return applyConfigChange(true);
+    }
+    
+    /**
+     * 让运行中的frpc应用修改后的配置
+     * 不应在主线程调用
+     * @param allowRestart 无法热重载时是否重启frpc，为false时放弃应用，修改在frpc下次启动时生效
+     * @return 是否成功应用，frpc未运行时配置会在下次启动时生效，直接返回true
+     */
+    public boolean applyConfigChange(boolean allowRestart) {
+        long startNanos = System.nanoTime();
+        try {
+            ProcessHandle handle = frpcHandle;
+            if (!state.get().isActive() || handle == null) {
+                return true;
+            }
+            
+            File frpcFile = getFrpcFile();
+            File configFile = new File(plugin.getDataFolder(), "frpc.toml");
+            String configContent;
+            com.moandjiezana.toml.Toml toml;
+            try {
+                configContent = stripAutoTLS(java.nio.file.Files.readString(configFile.toPath()));
+                toml = new com.moandjiezana.toml.Toml().read(configContent);
+            } catch (IOException | RuntimeException e) {
+                logger.severe("frpc.toml无法读取或格式错误，未应用修改: " + e.getMessage());
+                return false;
+            }
+            
+            Object webServer = toml.toMap().get("webServer");
+            if (!(webServer instanceof Map) || !(((Map<?, ?>) webServer).get("port") instanceof Number)) {
+                if (!allowRestart) {
+                    logger.warning("frpc.toml未配置webServer管理接口，无法热重载，修改将在frpc下次启动时生效");
+                    return false;
+                }
+                logger.info("frpc.toml未配置webServer管理接口，通过重启frpc应用修改");
+                return restartFrp();
+            }
+            
+            RuntimeOverrides overrides = currentOverrides();
+            String effectiveConfig = buildEffectiveConfig(configContent, toml.getList("proxies"), overrides);
+            File effectiveConfigFile;
+            try {
+                effectiveConfigFile = writeEffectiveConfig(configFile, configContent, effectiveConfig, overrides);
+            } catch (IOException e) {
+                logger.log(Level.SEVERE, "写入frpc配置时出错", e);
+                return false;
+            }
+            // 热重载只会让frpc重新读取启动时指定的文件
+            if (!effectiveConfigFile.equals(activeConfigFile)) {
+                if (!allowRestart) {
+                    logger.warning("frpc需要改用另一个配置文件，无法热重载，修改将在frpc下次启动时生效");
+                    return false;
+                }
+                logger.info("frpc需要改用另一个配置文件，通过重启frpc应用修改");
+                return restartFrp();
+            }
+            
+            if (!runReload(frpcFile, effectiveConfigFile)) {
+                if (!allowRestart) {
+                    logger.warning("frpc热重载失败，修改将在frpc下次启动时生效");
+                    return false;
+                }
+                logger.warning("frpc热重载失败，改为重启frpc");
+                return restartFrp();
+            }
+            endpoints = parseEndpoints(toml);
+            processManager.recordConfigReload("frpc", computeConfigHash(frpcFile, effectiveConfig), overrides.encode());
+            refreshSnapshot();
+            logger.info("frpc已热重载配置");
+            return true;
+        } finally {
+            metrics.record("FrpManager.applyConfigChange", startNanos);
+        }
+    }
+    
+    /**
+     * 执行frpc reload，通过管理接口让运行中的frpc重新读取配置
+     * @return 是否成功
+     */
+    private boolean runReload(File frpcFile, File configFile) {
+        try {
+            ProcessBuilder pb = new ProcessBuilder(frpcFile.getAbsolutePath(), "reload", "-c", configFile.getAbsolutePath());
+            pb.directory(plugin.getDataFolder());
+            pb.redirectErrorStream(true);
+            Process process = pb.start();
+            String logCharset = plugin.getConfig().getString("frpc_log_charset", "auto");
+            try (java.io.InputStream in = process.getInputStream()) {
+                new FrpcLogReader(in, logCharset, line -> logger.info("[frpc reload] " + line)).readAll();
+            }
+            if (!process.waitFor(10, TimeUnit.SECONDS)) {
+                process.destroyForcibly();
+                return false;
+            }
+            return process.exitValue() == 0;
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "执行frpc reload时出错", e);
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+    
+    /**
+     * 获取文件的真实路径，与操作系统报告的进程可执行文件路径一致
+     */
+    private static String realPath(File file) {
+        try {
+            return file.toPath().toRealPath().toString();
+        } catch (IOException e) {
+            return file.getAbsolutePath();
+        }
+    }
+    
+    /**
+     * 计算frpc可执行文件路径和实际配置的哈希，用于判断运行中的frpc是否与当前配置一致
+     */
+    private static String computeConfigHash(File frpcFile, String effectiveConfig) {
+        try {
+            java.security.MessageDigest digest = java.security.MessageDigest.getInstance("SHA-256");
+            digest.update(frpcFile.getAbsolutePath().getBytes(java.nio.charset.StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(effectiveConfig.getBytes(java.nio.charset.StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder();
+            for (byte b : digest.digest()) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        } catch (java.security.NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256不可用", e);
+        }
+    }
+    
+    /**
+     * 获取当前的运行时覆盖值
+     */
+    private RuntimeOverrides currentOverrides() {
+        return new RuntimeOverrides(poolCount, bandwidthLimits);
+    }
+    
+    /**
+     * 插件在用户配置之外按运行时统计覆盖的值，启动frpc时与配置哈希一起保存在进程记录中
+     * 插件重新启用时这些值还没有重新统计出来，接管frpc前需要用记录的值重新生成配置才能与记录的哈希比较
+     */
+    static final class RuntimeOverrides {
+        
+        final int poolCount;
+        final Map<String, String> bandwidthLimits;
+        
+        RuntimeOverrides(int poolCount, Map<String, String> bandwidthLimits) {
+            this.poolCount = poolCount;
+            this.bandwidthLimits = bandwidthLimits == null ? null : new TreeMap<>(bandwidthLimits);
+        }
+        
+        /**
+         * 编码为一行文本，代理名称经过URL编码，例如poolCount=3&bandwidth=map:256KB,voice:1MB
+         * bandwidth为空表示设置过带宽上限但没有限速，不存在表示从未设置
+         */
+        String encode() {
+            StringBuilder encoded = new StringBuilder("poolCount=").append(poolCount);
+            if (bandwidthLimits != null) {
+                StringJoiner limits = new StringJoiner(",");
+                bandwidthLimits.forEach((name, limit) ->
+                        limits.add(URLEncoder.encode(name, StandardCharsets.UTF_8) + ":" + limit));
+                encoded.append("&bandwidth=").append(limits);
+            }
+            return encoded.toString();
+        }
+        
+        /**
+         * 解码进程记录中的覆盖值
+         * @param encoded 编码，旧版本的记录为空字符串
+         * @return 覆盖值，格式不正确的部分视为未设置
+         */
+        static RuntimeOverrides decode(String encoded) {
+            int poolCount = -1;
+            Map<String, String> bandwidthLimits = null;
+            for (String field : encoded.split("&")) {
+                int equals = field.indexOf('=');
+                if (equals <= 0) {
+                    continue;
+                }
+                String value = field.substring(equals + 1);
+                switch (field.substring(0, equals)) {
+                    case "poolCount":
+                        try {
+                            poolCount = Integer.parseInt(value);
+                        } catch (NumberFormatException e) {
+                            poolCount = -1;
+                        }
+                        break;
+                    case "bandwidth":
+                        bandwidthLimits = new TreeMap<>();
+                        for (String entry : value.split(",")) {
+                            int colon = entry.lastIndexOf(':');
+                            if (colon > 0) {
+                                bandwidthLimits.put(URLDecoder.decode(entry.substring(0, colon), StandardCharsets.UTF_8),
+                                        entry.substring(colon + 1));
+                            }
+                        }
+                        break;
+                    default:
+                        break;
+                }
+            }
+            return new RuntimeOverrides(poolCount, bandwidthLimits);
+        }
+    }
+    
+    /**
+     * 调整指向本服务器端口的tcp代理
+     * 启用中转时代理改为连接中转端口，并由frpc发送PROXY protocol v2头部供中转识别真实IP
+     * @param generator 配置生成器
+     * @param proxies 已解析的代理列表
+     */
+    private void configureServerProxies(FrpcConfigGenerator generator, List<Map<String, Object>> proxies) {
+        ConnectionRelay currentRelay = relay;
+        if (proxies == null || (currentRelay == null && !proxyProtocolEnabled)) {
+            return;
+        }
+        int serverPort = plugin.getServer().getPort();
+        for (int i = 0; i < proxies.size(); i++) {
+            Map<String, Object> proxy = proxies.get(i);
+            Object localPort = proxy.get("localPort");
+            if (!"tcp".equals(proxy.getOrDefault("type", "tcp"))
+                    || !(localPort instanceof Number) || ((Number) localPort).intValue() != serverPort) {
+                continue;
+            }
+            generator.setProxy(i, "transport.proxyProtocolVersion", "\"v2\"");
+            if (currentRelay != null) {
+                generator.setProxy(i, "localIP", "\"127.0.0.1\"");
+                generator.setProxy(i, "localPort", String.valueOf(currentRelay.getPort()));
+                logger.info("代理 " + proxy.get("name") + " 将通过连接中转(端口 " + currentRelay.getPort() + ")访问服务器");
+            } else {
+                logger.info("已为代理 " + proxy.get("name") + " 启用PROXY protocol v2");
+            }
+        }
+    }
+    
+    /**
+     * 按setBandwidthLimits设置的值覆盖代理的带宽上限
+     * @param generator 配置生成器
+     * @param proxies 已解析的代理列表
+     * @param limits 代理名称到带宽上限的映射，可以为null
+     */
+    private void configureBandwidthLimits(FrpcConfigGenerator generator, List<Map<String, Object>> proxies,
+                                          Map<String, String> limits) {
+        if (proxies == null || limits == null || limits.isEmpty()) {
+            return;
+        }
+        for (int i = 0; i < proxies.size(); i++) {
+            String limit = limits.get(String.valueOf(proxies.get(i).get("name")));
+            if (limit != null) {
+                generator.setProxy(i, "transport.bandwidthLimit", "\"" + limit + "\"");
+            }
+        }
+    }
+    
+    /**
+     * 获取缓存的隧道快照，只是一次volatile读取
+     * @return 隧道快照
+     */
+    public TunnelSnapshot getSnapshot() {
+        return snapshot;
+    }
+    
+    /**
+     * 根据当前状态重新生成隧道快照，状态变化时以及插件的定时任务中调用
+     * 加锁保证并发刷新时最后发布的快照总是反映最新的状态
+     */
+    public synchronized void refreshSnapshot() {
+        TunnelState current = state.get();
+        TunnelSnapshot previous = snapshot;
+        long stateSince = previous.getState() == current ? previous.getStateSinceMillis() : System.currentTimeMillis();
+        ConnectionRelay currentRelay = relay;
+        snapshot = new TunnelSnapshot(current, stateSince, current.isActive() ? startedAtMillis : 0L, endpoints,
+                currentRelay != null ? currentRelay.getBytesIn() : -1L,
+                currentRelay != null ? currentRelay.getBytesOut() : -1L, current.isActive() ? rttMillis : -1L);
+    }
+    
+    /**
+     * 从frpc配置中解析各代理的公网端点
+     * @param toml 已解析的配置
+     * @return 端点列表
+     */
+    private List<ProxyEndpoint> parseEndpoints(com.moandjiezana.toml.Toml toml) {
+        List<ProxyEndpoint> result = new ArrayList<>();
+        try {
+            String serverAddr = toml.getString("serverAddr");
+            List<Map<String, Object>> proxies = toml.getList("proxies");
+            List<ProxyEndpoint> serverResult = new ArrayList<>();
+            serverEndpoints = serverResult;
+            if (proxies == null) {
+                return result;
+            }
+            int serverPort = plugin.getServer().getPort();
+            for (Map<String, Object> proxy : proxies) {
+                String name = String.valueOf(proxy.getOrDefault("name", ""));
+                String type = String.valueOf(proxy.getOrDefault("type", "tcp"));
+                Object remotePort = proxy.get("remotePort");
+                Object customDomains = proxy.get("customDomains");
+                Object localPort = proxy.get("localPort");
+                if (remotePort instanceof Number && serverAddr != null) {
+                    ProxyEndpoint endpoint = new ProxyEndpoint(name, type, serverAddr, ((Number) remotePort).intValue());
+                    result.add(endpoint);
+                    // 指向本服务器端口的tcp代理可以用状态查询检测
+                    if ("tcp".equals(type) && localPort instanceof Number && ((Number) localPort).intValue() == serverPort) {
+                        serverResult.add(endpoint);
+                    }
+                } else if (customDomains instanceof List && !((List<?>) customDomains).isEmpty()) {
+                    // http/https代理通过域名访问
+                    result.add(new ProxyEndpoint(name, type, String.valueOf(((List<?>) customDomains).get(0)), -1));
+                }
+            }
+        } catch (Exception e) {
+            logger.warning("读取配置文件获取公网地址信息时出错: " + e.getMessage());
+        }
+        return result;
+    }
+    
+    /**
+     * 以CAS方式切换隧道状态，成功后在主线程触发状态变化事件
+     * @param expected 期望的当前状态
+     * @param next 目标状态
+     * @return 是否切换成功
+     */
+    private boolean transition(TunnelState expected, TunnelState next) {
+        if (!state.compareAndSet(expected, next)) {
+            return false;
+        }
+        refreshSnapshot();
+        fireStateChange(expected, next);
+        return true;
+    }
+    
+    /**
+     * 将仍处于活动状态的隧道标记为已崩溃
+     * 启动中的状态属于正在进行的启动流程，不会被切换，否则另一个线程可以在它完成前再次启动frpc
+     * @return 是否由本次调用完成切换
+     */
+    private boolean markCrashed() {
+        TunnelState current = state.get();
+        while (current.isActive() && current != TunnelState.STARTING) {
+            if (transition(current, TunnelState.CRASHED)) {
+                return true;
+            }
+            current = state.get();
+        }
+        return false;
+    }
+    
+    /**
+     * 根据frpc的日志输出推断隧道状态
+     * @param line frpc日志行
+     */
+    private void updateStateFromLog(String line) {
+        if (line.contains("start proxy success")) {
+            if (!transition(TunnelState.CONNECTING, TunnelState.ONLINE)) {
+                transition(TunnelState.DEGRADED, TunnelState.ONLINE);
+            }
+        } else if (line.contains("login to server failed") || line.contains("start error")) {
+            if (!transition(TunnelState.CONNECTING, TunnelState.DEGRADED)) {
+                transition(TunnelState.ONLINE, TunnelState.DEGRADED);
+            }
+        }
+    }
+    
+    /**
+     * 在主线程触发隧道状态变化事件
+     * @param previous 变化前的状态
+     * @param current 变化后的状态
+     */
+    private void fireStateChange(TunnelState previous, TunnelState current) {
+        logger.info("隧道状态: " + previous.getDisplayName() + " -> " + current.getDisplayName());
+        // 插件禁用后不能再向调度器提交任务
+        if (!plugin.isEnabled()) {
+            return;
+        }
+        FrpTunnelStateChangeEvent event = new FrpTunnelStateChangeEvent(previous, current);
+        if (scheduler.isGlobalThread()) {
+            plugin.getServer().getPluginManager().callEvent(event);
+        } else {
+            scheduler.runGlobal(() -> plugin.getServer().getPluginManager().callEvent(event));
+        }
     }
     
     /**
@@ -261,6 +1392,20 @@ public class FrpManager {
         return false;
     }
     
+    /**
+     * 获取frpc可执行文件
+     * 配置了frpc_executable时使用指定的文件(相对路径相对于插件目录)，可以是模拟frpc行为的脚本，用于离线测试启动和停止流程
+     * @return frpc可执行文件
+     */
+    File getFrpcFile() {
+        String configured = plugin.getConfig().getString("frpc_executable", "").trim();
+        if (configured.isEmpty()) {
+            return new File(plugin.getDataFolder(), getExecutableName("frpc"));
+        }
+        File file = new File(configured);
+        return file.isAbsolute() ? file : new File(plugin.getDataFolder(), configured);
+    }
+    
     /**
      * 根据操作系统获取可执行文件名
      * @param baseName 基本名称
@@ -282,8 +1427,8 @@ public class FrpManager {
         long pid = processManager.checkProcess("frpc");
         if (pid > 0) {
             logger.warning("检测到未正常关闭的frpc进程(PID: " + pid + ")");
-            // 使用Bukkit的调度器在主线程中运行，因为涉及到玩家交互
-            plugin.getServer().getScheduler().runTask(plugin, () -> {
+            // 在主线程(Folia上为全局区域线程)中运行，因为涉及到玩家交互
+            scheduler.runGlobal(() -> {
                 // 获取所有在线玩家
                 plugin.getServer().getOnlinePlayers().forEach(player -> {
                     if (player.hasPermission("frpplugin.admin")) {
@@ -303,7 +1448,7 @@ public class FrpManager {
                 });
             });
             // 设置一个延迟任务，如果30秒内没有人处理，则自动关闭进程
-            plugin.getServer().getScheduler().runTaskLater(plugin, () -> {
+            scheduler.runGlobalLater(() -> {
                 if (processManager.checkProcess("frpc") == pid) {
                     logger.warning("30秒内没有管理员处理进程，将自动关闭进程");
                     if (processManager.killProcess("frpc", pid)) {
@@ -315,20 +1460,4 @@ public class FrpManager {
             }, 600L); // 30秒 = 20 ticks/s * 30s = 600 ticks
         }
     }
-    
-    /**
-     * 获取进程的PID
-     * @param process 进程对象
-     * @return 进程ID
-     * @throws Exception 如果获取失败
-     */
-    private long getPid(Process process) {
-        try {
-            // 使用Java 9引入的pid()方法
-            return process.pid();
-        } catch (Exception e) {
-            logger.warning("获取进程PID时出错: " + e.getMessage());
-            return -1;
-        }
-    }
 }
\ No newline at end of file
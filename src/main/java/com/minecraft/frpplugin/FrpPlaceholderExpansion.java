@@ -0,0 +1,139 @@
+package com.minecraft.frpplugin;
+
+import com.minecraft.frpplugin.api.ProxyEndpoint;
+import com.minecraft.frpplugin.api.TunnelSnapshot;
+import com.minecraft.frpplugin.version.TaskScheduler;
+import me.clip.placeholderapi.expansion.PlaceholderExpansion;
+import org.bukkit.OfflinePlayer;
+import org.bukkit.plugin.java.JavaPlugin;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * FrpPlaceholderExpansion - PlaceholderAPI扩展
+ * 占位符的值由异步定时任务预先格式化，解析占位符时只需一次volatile读取和一次查表
+ * 只有在PlaceholderAPI存在时才会加载此类
+ */
+public class FrpPlaceholderExpansion extends PlaceholderExpansion {
+    
+    private final JavaPlugin plugin;
+    private final FrpManager frpManager;
+    private final TaskScheduler scheduler;
+    private volatile Map<String, String> values = Collections.emptyMap();
+    private TaskScheduler.Task refreshTask;
+    
+    /**
+     * 构造函数
+     * @param plugin 插件实例
+     * @param frpManager frp管理器
+     * @param scheduler 任务调度器
+     */
+    public FrpPlaceholderExpansion(JavaPlugin plugin, FrpManager frpManager, TaskScheduler scheduler) {
+        this.plugin = plugin;
+        this.frpManager = frpManager;
+        this.scheduler = scheduler;
+    }
+    
+    @Override
+    public String getIdentifier() {
+        return "frp";
+    }
+    
+    @Override
+    public String getAuthor() {
+        return String.join(", ", plugin.getDescription().getAuthors());
+    }
+    
+    @Override
+    public String getVersion() {
+        return plugin.getDescription().getVersion();
+    }
+    
+    @Override
+    public boolean persist() {
+        return true;
+    }
+    
+    @Override
+    public String onRequest(OfflinePlayer player, String params) {
+        return values.get(params.toLowerCase());
+    }
+    
+    /**
+     * 注册扩展并启动异步刷新任务
+     * @param intervalTicks 刷新间隔(tick)
+     * @return 是否注册成功
+     */
+    public boolean start(long intervalTicks) {
+        refresh();
+        refreshTask = scheduler.runAsyncTimer(this::refresh, intervalTicks, intervalTicks);
+        return register();
+    }
+    
+    /**
+     * 停止刷新任务并注销扩展
+     */
+    public void stop() {
+        if (refreshTask != null) {
+            refreshTask.cancel();
+            refreshTask = null;
+        }
+        unregister();
+    }
+    
+    /**
+     * 根据最新的隧道快照重新生成所有占位符的值
+     */
+    private void refresh() {
+        TunnelSnapshot snapshot = frpManager.getSnapshot();
+        Map<String, String> next = new HashMap<>();
+        String address = snapshot.getPrimaryAddress();
+        next.put("address", address != null ? address : "");
+        next.put("state", snapshot.getState().getDisplayName());
+        next.put("state_raw", snapshot.getState().name());
+        next.put("online", String.valueOf(snapshot.getState().isActive()));
+        next.put("uptime", formatDuration(snapshot.getUptimeMillis()));
+        next.put("rtt", snapshot.getRttMillis() >= 0 ? String.valueOf(snapshot.getRttMillis()) : "N/A");
+        next.put("traffic_in", formatBytes(snapshot.getBytesIn()));
+        next.put("traffic_out", formatBytes(snapshot.getBytesOut()));
+        next.put("proxy_count", String.valueOf(snapshot.getEndpoints().size()));
+        for (ProxyEndpoint endpoint : snapshot.getEndpoints()) {
+            next.put("address_" + endpoint.getName().toLowerCase(), endpoint.getAddress());
+        }
+        values = next;
+    }
+    
+    /**
+     * 格式化时长
+     * @param millis 毫秒数
+     * @return 形如01:02:03的字符串
+     */
+    private static String formatDuration(long millis) {
+        long seconds = millis / 1000;
+        return String.format("%02d:%02d:%02d", seconds / 3600, (seconds / 60) % 60, seconds % 60);
+    }
+    
+    /**
+     * 格式化字节数
+     * @param bytes 字节数，负数表示不可用
+     * @return 带单位的字符串
+     */
+    private static String formatBytes(long bytes) {
+        if (bytes < 0) {
+            return "N/A";
+        }
+        if (bytes < 1024) {
+            return bytes + " B";
+        }
+        String[] units = {"KB", "MB", "GB", "TB"};
+        double value = bytes;
+        int unit = -1;
+        while (value >= 1024 && unit < units.length - 1) {
+            value /= 1024;
+            unit++;
+        }
+        return String.format("%.1f %s", value, units[unit]);
+    }
+}
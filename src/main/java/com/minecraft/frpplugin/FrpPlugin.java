@@ -1,8 +1,14 @@
 package com.minecraft.frpplugin;
 
+import org.bukkit.plugin.ServicePriority;
 import org.bukkit.plugin.java.JavaPlugin;
 import org.bukkit.configuration.file.FileConfiguration;
 
+import com.minecraft.frpplugin.api.FrpTunnelService;
+import com.minecraft.frpplugin.metrics.MetricsRegistry;
+import com.minecraft.frpplugin.network.ConnectionRelay;
+import com.minecraft.frpplugin.network.FloodGuard;
+import com.minecraft.frpplugin.version.TaskScheduler;
 import com.minecraft.frpplugin.version.VersionAdapter;
 import com.minecraft.frpplugin.version.VersionAdapterFactory;
 
@@ -11,10 +17,15 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.UnknownHostException;
 import java.net.URL;
 import java.nio.file.Files;
 import java.nio.file.StandardCopyOption;
 import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.Set;
 import java.util.logging.Level;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
@@ -29,6 +40,17 @@ public class FrpPlugin extends JavaPlugin {
     private FileConfiguration frpConfig;
     private static final String GITHUB_API_URL = "https://api.github.com/repos/fatedier/frp/releases/latest";
     private VersionAdapter versionAdapter;
+    private TaskScheduler taskScheduler;
+    private FrpPlaceholderExpansion placeholderExpansion;
+    private ConnectionRelay relay;
+    private MetricsRegistry metrics;
+    private PluginExecutor executor;
+    private HealthProbe healthProbe;
+    private ResourceMonitor resourceMonitor;
+    private PoolPrewarmer poolPrewarmer;
+    private BandwidthQos bandwidthQos;
+    private TunnelHistory tunnelHistory;
+    private WebDashboard webDashboard;
     
     /**
      * 获取frp的最新版本号
@@ -89,6 +111,11 @@ public class FrpPlugin extends JavaPlugin {
     
     @Override
     public void onEnable() {
+        // 计时器需要在下载frpc之前就可用
+        metrics = new MetricsRegistry(getLogger());
+        executor = new PluginExecutor(getLogger());
+        metrics.registerMBean("Executor", "PluginExecutor", executor);
+        
         // 初始化版本适配器
         versionAdapter = VersionAdapterFactory.createAdapter(this);
         if (!versionAdapter.isCompatible()) {
@@ -96,6 +123,7 @@ public class FrpPlugin extends JavaPlugin {
         }
         versionAdapter.initialize();
         logInfo("使用 " + versionAdapter.getVersionName() + " 版本适配器");
+        taskScheduler = VersionAdapterFactory.createScheduler(this);
         
         // 创建插件目录
         if (!getDataFolder().exists()) {
@@ -106,45 +134,232 @@ public class FrpPlugin extends JavaPlugin {
         loadConfig();
         
         // 初始化frp管理器
-        frpManager = new FrpManager(this);
+        frpManager = new FrpManager(this, metrics, executor, taskScheduler);
+        
+        // 注入PROXY protocol解码器，成功后才让frpc发送PROXY头部
+        boolean proxyProtocolInstalled = false;
+        if (getConfig().getBoolean("proxy_protocol.enabled", false)) {
+            proxyProtocolInstalled = installProxyProtocol();
+            frpManager.setProxyProtocolEnabled(proxyProtocolInstalled);
+        }
+        
+        // 启动连接中转，服务器能识别PROXY头部时继续转发头部
+        if (getConfig().getBoolean("relay.enabled", false)) {
+            startRelay(proxyProtocolInstalled);
+        }
+        
+        // 定时刷新隧道快照中的流量等实时数据
+        taskScheduler.runAsyncTimer(frpManager::refreshSnapshot, 20L, 20L);
         
         // 注册命令执行器
         getCommand("frp").setExecutor(new FrpCommandExecutor(this, frpManager));
         
+        // 向其他插件提供隧道服务
+        getServer().getServicesManager().register(FrpTunnelService.class,
+                new FrpTunnelServiceProvider(frpManager, taskScheduler), this, ServicePriority.Normal);
+        
+        // PlaceholderAPI为可选依赖，不存在时不加载扩展类
+        if (getConfig().getBoolean("placeholders.enabled", true)
+                && getServer().getPluginManager().getPlugin("PlaceholderAPI") != null) {
+            placeholderExpansion = new FrpPlaceholderExpansion(this, frpManager, taskScheduler);
+            if (placeholderExpansion.start(getConfig().getLong("placeholders.refresh_interval", 20L))) {
+                logInfo("已注册PlaceholderAPI扩展");
+            }
+        }
+        
+        // 从公网地址定期做状态查询，检测隧道是否真的可用
+        if (getConfig().getBoolean("health_probe.enabled", true)) {
+            healthProbe = new HealthProbe(frpManager, getLogger(),
+                    getConfig().getInt("health_probe.timeout_ms", 3000),
+                    getConfig().getInt("health_probe.max_concurrency", 2),
+                    getConfig().getInt("health_probe.failure_threshold", 3),
+                    getConfig().getBoolean("health_probe.restart_on_failure", false),
+                    getConfig().getLong("health_probe.restart_cooldown_seconds", 300L) * 1000L);
+            healthProbe.start(Math.max(5L, getConfig().getLong("health_probe.interval_seconds", 30L)) * 1000L);
+        }
+        
+        // 定期采样frpc的资源占用，发现泄漏或占满CPU时告警
+        if (getConfig().getBoolean("resource_monitor.enabled", true)) {
+            resourceMonitor = new ResourceMonitor(frpManager, getLogger(),
+                    new ResourceMonitor.Thresholds(
+                            getConfig().getDouble("resource_monitor.max_cpu_percent", 80.0),
+                            getConfig().getLong("resource_monitor.max_rss_mb", 256L),
+                            getConfig().getLong("resource_monitor.max_threads", 0L),
+                            getConfig().getLong("resource_monitor.max_fds", 4096L),
+                            getConfig().getInt("resource_monitor.sustained_samples", 6)),
+                    getConfig().getBoolean("resource_monitor.restart_on_alert", false),
+                    getConfig().getLong("resource_monitor.restart_cooldown_seconds", 600L) * 1000L);
+            resourceMonitor.start(Math.max(1L, getConfig().getLong("resource_monitor.interval_seconds", 10L)) * 1000L);
+        }
+        
+        // 记录延迟、流量等指标的历史，供/frp history查看
+        if (getConfig().getBoolean("history.enabled", true)) {
+            tunnelHistory = new TunnelHistory(frpManager, resourceMonitor, getDataFolder(), executor, getLogger());
+            tunnelHistory.start();
+        }
+        
+        // 按玩家加入速率调整frpc预先建立的工作连接数
+        if (getConfig().getBoolean("pool_prewarm.enabled", false)) {
+            poolPrewarmer = new PoolPrewarmer(this, frpManager, taskScheduler,
+                    getConfig().getLong("pool_prewarm.window_seconds", 60L),
+                    getConfig().getDouble("pool_prewarm.smoothing", 0.3),
+                    getConfig().getDouble("pool_prewarm.peak_half_life_minutes", 360.0),
+                    getConfig().getInt("pool_prewarm.burst_seconds", 10),
+                    getConfig().getInt("pool_prewarm.min_pool", 1),
+                    getConfig().getInt("pool_prewarm.max_pool", 5),
+                    getConfig().getBoolean("pool_prewarm.restart_when_empty", true),
+                    getConfig().getLong("pool_prewarm.restart_interval_minutes", 30L) * 60_000L);
+            poolPrewarmer.start();
+        }
+        
+        // 服务器卡顿时降低非关键代理的带宽上限
+        if (getConfig().getBoolean("bandwidth_qos.enabled", false)) {
+            bandwidthQos = new BandwidthQos(this, frpManager, taskScheduler,
+                    getConfig().getConfigurationSection("bandwidth_qos"));
+            if (!bandwidthQos.start()) {
+                bandwidthQos = null;
+            }
+        }
+        
+        // 只监听本机的网页面板，查看实时日志、代理状态和指标历史
+        if (getConfig().getBoolean("dashboard.enabled", false)) {
+            webDashboard = new WebDashboard(this, frpManager,
+                    getConfig().getInt("dashboard.port", 8765),
+                    getConfig().getString("dashboard.token", ""),
+                    getConfig().getInt("dashboard.max_clients", 8));
+            if (!webDashboard.start()) {
+                webDashboard = null;
+            }
+        }
+        
+        // 检查上次留下的frpc进程，独立进程模式下配置未变时直接接管，无需重新启动
+        boolean adopted = frpManager.recoverExistingProcess();
+        
         // 检查是否需要自动启动frpc
-        if (getConfig().getBoolean("auto_start", true)) {
+        if (!adopted && getConfig().getBoolean("auto_start", true)) {
             logInfo("根据配置自动启动frpc客户端...");
-            frpManager.startFrpClient();
+            // 启动前检查需要解析域名并连接frps，放到异步线程，避免拖慢服务器启动
+            taskScheduler.runAsync(frpManager::startFrpClient);
         }
         
         logInfo("FrpPlugin 已启用!");
     }
     
-    // 添加日志输出方法，使用版本适配器处理编码
+    // 日志输出方法，frpc输出的编码已在FrpcLogReader中按字节处理，这里无需再转换
     private void logInfo(String message) {
-        if (versionAdapter instanceof com.minecraft.frpplugin.version.Version_1_12_Adapter) {
-            message = ((com.minecraft.frpplugin.version.Version_1_12_Adapter) versionAdapter).fixEncoding(message);
-        }
         getLogger().info(message);
     }
     
     private void logWarning(String message) {
-        if (versionAdapter instanceof com.minecraft.frpplugin.version.Version_1_12_Adapter) {
-            message = ((com.minecraft.frpplugin.version.Version_1_12_Adapter) versionAdapter).fixEncoding(message);
-        }
         getLogger().warning(message);
     }
     
     @Override
     public void onDisable() {
+        getServer().getServicesManager().unregisterAll(this);
+        if (placeholderExpansion != null) {
+            placeholderExpansion.stop();
+            placeholderExpansion = null;
+        }
+        if (webDashboard != null) {
+            webDashboard.stop();
+            webDashboard = null;
+        }
+        
+        if (healthProbe != null) {
+            healthProbe.stop();
+            healthProbe = null;
+        }
+        if (resourceMonitor != null) {
+            resourceMonitor.stop();
+            resourceMonitor = null;
+        }
+        if (tunnelHistory != null) {
+            tunnelHistory.stop();
+            tunnelHistory = null;
+        }
+        if (poolPrewarmer != null) {
+            poolPrewarmer.stop();
+            poolPrewarmer = null;
+        }
+        if (bandwidthQos != null) {
+            bandwidthQos.stop();
+            bandwidthQos = null;
+        }
+        
         // 关闭frp进程
         if (frpManager != null) {
-            frpManager.stopFrp();
+            // 独立进程模式下frpc继续运行，由重新启用的插件接管
+            if (!frpManager.detach()) {
+                frpManager.stopFrp();
+            }
+            frpManager.close();
+        }
+        // frpc已停止或已交给下一个实例，读取输出的任务会随之结束
+        if (executor != null) {
+            executor.shutdown(2000L);
+            executor = null;
+        }
+        if (relay != null) {
+            relay.stop();
+            relay = null;
+        }
+        if (versionAdapter != null) {
+            versionAdapter.uninstallProxyProtocol();
+        }
+        
+        if (metrics != null) {
+            metrics.close();
         }
         
         logInfo("FrpPlugin 已禁用!");
     }
     
+    /**
+     * 向服务器网络管线注入PROXY protocol解码器
+     * @return 是否注入成功
+     */
+    private boolean installProxyProtocol() {
+        Set<InetAddress> trusted = new HashSet<>();
+        for (String address : getConfig().getStringList("proxy_protocol.trusted_addresses")) {
+            try {
+                trusted.add(InetAddress.getByName(address));
+            } catch (UnknownHostException e) {
+                logWarning("无效的可信地址: " + address);
+            }
+        }
+        if (trusted.isEmpty()) {
+            trusted.add(InetAddress.getLoopbackAddress());
+        }
+        
+        if (versionAdapter.installProxyProtocol(trusted)) {
+            logInfo("已启用PROXY protocol，可信来源: " + trusted);
+            return true;
+        }
+        logWarning("PROXY protocol解码器注入失败，frpc将不会发送PROXY头部");
+        return false;
+    }
+    
+    /**
+     * 启动连接中转
+     * @param forwardHeader 是否把PROXY头部继续转发给服务器
+     */
+    private void startRelay(boolean forwardHeader) {
+        FloodGuard floodGuard = new FloodGuard(
+                getConfig().getDouble("relay.connections_per_second", 2.0),
+                getConfig().getInt("relay.burst", 5),
+                getConfig().getInt("relay.max_connections_per_ip", 3));
+        InetSocketAddress target = new InetSocketAddress(InetAddress.getLoopbackAddress(), getServer().getPort());
+        ConnectionRelay newRelay = new ConnectionRelay(target, forwardHeader, floodGuard, getLogger());
+        try {
+            newRelay.start(getConfig().getInt("relay.port", 0));
+            relay = newRelay;
+            frpManager.setRelay(relay);
+        } catch (IOException e) {
+            logWarning("启动连接中转失败，frpc将直接连接服务器: " + e.getMessage());
+        }
+    }
+    
     /**
      * 加载配置文件
      */
@@ -152,6 +367,13 @@ public class FrpPlugin extends JavaPlugin {
         // 保存默认配置
         saveDefaultConfig();
         
+        // 输出编码在读取frpc输出的线程中才会用到，无效时在那里抛出异常会让读取中断，这里提前检查
+        String logCharset = getConfig().getString("frpc_log_charset", "auto");
+        if (!FrpcLogReader.isSupportedCharset(logCharset)) {
+            logWarning("frpc_log_charset 指定的编码无效或不受支持: " + logCharset + "，改为自动检测");
+            getConfig().set("frpc_log_charset", "auto");
+        }
+        
         // 加载frp配置文件
         configFile = new File(getDataFolder(), "frpc.toml");
         if (!configFile.exists()) {
@@ -180,8 +402,8 @@ public class FrpPlugin extends JavaPlugin {
         
         File frpcFile = new File(getDataFolder(), frpcExeName);
         
-        // 如果frpc可执行文件不存在，尝试从GitHub下载
-        if (!frpcFile.exists()) {
+        // 如果frpc可执行文件不存在，尝试从GitHub下载；指定了frpc_executable时由用户负责提供
+        if (!frpcFile.exists() && getConfig().getString("frpc_executable", "").trim().isEmpty()) {
             getLogger().info("正在从GitHub下载最新版本的frpc...");
             downloadFrpcFromGitHub();
         }
@@ -284,19 +506,24 @@ public class FrpPlugin extends JavaPlugin {
      * @param outputFile 输出文件
      */
     private void downloadFromUrl(String downloadUrl, File outputFile) throws IOException {
-        URL url = new URL(downloadUrl);
-        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
-        connection.setRequestProperty("User-Agent", "Mozilla/5.0");
-        connection.setConnectTimeout(10000); // 设置连接超时为10秒
-        connection.setReadTimeout(30000);    // 设置读取超时为30秒
-        
-        try (InputStream in = connection.getInputStream();
-             FileOutputStream out = new FileOutputStream(outputFile)) {
-            byte[] buffer = new byte[4096];
-            int bytesRead;
-            while ((bytesRead = in.read(buffer)) != -1) {
-                out.write(buffer, 0, bytesRead);
+        long startNanos = System.nanoTime();
+        try {
+            URL url = new URL(downloadUrl);
+            HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+            connection.setRequestProperty("User-Agent", "Mozilla/5.0");
+            connection.setConnectTimeout(10000); // 设置连接超时为10秒
+            connection.setReadTimeout(30000);    // 设置读取超时为30秒
+            
+            try (InputStream in = connection.getInputStream();
+                 FileOutputStream out = new FileOutputStream(outputFile)) {
+                byte[] buffer = new byte[4096];
+                int bytesRead;
+                while ((bytesRead = in.read(buffer)) != -1) {
+                    out.write(buffer, 0, bytesRead);
+                }
             }
+        } finally {
+            metrics.record("FrpPlugin.downloadFromUrl", startNanos);
         }
     }
     
@@ -305,29 +532,34 @@ public class FrpPlugin extends JavaPlugin {
      * @param zipFile zip文件
      */
     private void extractFrpcFromZip(File zipFile) throws IOException {
-        String frpcName = System.getProperty("os.name").toLowerCase().contains("win") ? "frpc.exe" : "frpc";
-        File frpcFile = new File(getDataFolder(), frpcName);
-        
-        try (ZipFile zip = new ZipFile(zipFile, ZipFile.OPEN_READ)) {
-            Enumeration<? extends ZipEntry> entries = zip.entries();
-            while (entries.hasMoreElements()) {
-                ZipEntry entry = entries.nextElement();
-                String entryName = entry.getName();
-                
-                // 查找frpc可执行文件
-                if (entryName.endsWith(frpcName)) {
-                    getLogger().info("找到frpc: " + entryName);
+        long startNanos = System.nanoTime();
+        try {
+            String frpcName = System.getProperty("os.name").toLowerCase().contains("win") ? "frpc.exe" : "frpc";
+            File frpcFile = new File(getDataFolder(), frpcName);
+            
+            try (ZipFile zip = new ZipFile(zipFile, ZipFile.OPEN_READ)) {
+                Enumeration<? extends ZipEntry> entries = zip.entries();
+                while (entries.hasMoreElements()) {
+                    ZipEntry entry = entries.nextElement();
+                    String entryName = entry.getName();
                     
-                    // 提取frpc
-                    try (InputStream in = zip.getInputStream(entry)) {
-                        Files.copy(in, frpcFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                    // 查找frpc可执行文件
+                    if (entryName.endsWith(frpcName)) {
+                        getLogger().info("找到frpc: " + entryName);
+                        
+                        // 提取frpc
+                        try (InputStream in = zip.getInputStream(entry)) {
+                            Files.copy(in, frpcFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                        }
+                        
+                        // 设置可执行权限
+                        frpcFile.setExecutable(true);
+                        break;
                     }
-                    
-                    // 设置可执行权限
-                    frpcFile.setExecutable(true);
-                    break;
                 }
             }
+        } finally {
+            metrics.record("FrpPlugin.extractFrpcFromZip", startNanos);
         }
     }
     
@@ -354,15 +586,79 @@ public class FrpPlugin extends JavaPlugin {
     }
     
     /**
-     * 重新加载配置
+     * 重新加载配置，frpc在异步线程中重启
      */
     public void reloadFrpConfig() {
         loadConfig();
         if (frpManager != null) {
-            frpManager.restartFrp();
+            taskScheduler.runAsync(frpManager::restartFrp);
         }
     }
     
+    /**
+     * 获取frpc资源监控
+     * @return 资源监控，未启用时为null
+     */
+    public ResourceMonitor getResourceMonitor() {
+        return resourceMonitor;
+    }
+    
+    /**
+     * 获取连接池预热
+     * @return 连接池预热，未启用时为null
+     */
+    public PoolPrewarmer getPoolPrewarmer() {
+        return poolPrewarmer;
+    }
+    
+    /**
+     * 获取指标历史
+     * @return 指标历史，未启用时为null
+     */
+    public TunnelHistory getTunnelHistory() {
+        return tunnelHistory;
+    }
+    
+    /**
+     * 获取带宽QoS
+     * @return 带宽QoS，未启用时为null
+     */
+    public BandwidthQos getBandwidthQos() {
+        return bandwidthQos;
+    }
+    
+    /**
+     * 获取网页面板
+     * @return 网页面板，未启用时为null
+     */
+    public WebDashboard getWebDashboard() {
+        return webDashboard;
+    }
+    
+    /**
+     * 获取任务调度器
+     * @return 任务调度器，Folia上为区域化调度器
+     */
+    public TaskScheduler getTaskScheduler() {
+        return taskScheduler;
+    }
+    
+    /**
+     * 获取后台任务执行器
+     * @return 执行器
+     */
+    public PluginExecutor getExecutor() {
+        return executor;
+    }
+    
+    /**
+     * 获取计时器注册表
+     * @return 计时器注册表
+     */
+    public MetricsRegistry getMetrics() {
+        return metrics;
+    }
+    
     /**
      * 获取frp配置文件
      * @return frp配置文件
@@ -0,0 +1,67 @@
+package com.minecraft.frpplugin;
+
+import com.minecraft.frpplugin.api.FrpTunnelService;
+import com.minecraft.frpplugin.api.TunnelSnapshot;
+import com.minecraft.frpplugin.version.TaskScheduler;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+/**
+ * FrpTunnelServiceProvider - 通过ServicesManager向其他插件提供的隧道服务实现
+ */
+public class FrpTunnelServiceProvider implements FrpTunnelService {
+    
+    private final FrpManager frpManager;
+    private final TaskScheduler scheduler;
+    
+    /**
+     * 构造函数
+     * @param frpManager frp管理器
+     * @param scheduler 任务调度器
+     */
+    public FrpTunnelServiceProvider(FrpManager frpManager, TaskScheduler scheduler) {
+        this.frpManager = frpManager;
+        this.scheduler = scheduler;
+    }
+    
+    @Override
+    public TunnelSnapshot getSnapshot() {
+        return frpManager.getSnapshot();
+    }
+    
+    @Override
+    public CompletableFuture<Boolean> start() {
+        return runAsync(frpManager::startFrpClient);
+    }
+    
+    @Override
+    public CompletableFuture<Void> stop() {
+        return runAsync(() -> {
+            frpManager.stopFrpClient();
+            return null;
+        });
+    }
+    
+    @Override
+    public CompletableFuture<Boolean> restart() {
+        return runAsync(frpManager::restartFrp);
+    }
+    
+    /**
+     * 在异步线程中执行操作，避免阻塞调用者(通常是主线程)
+     * @param action 要执行的操作
+     * @return 操作结果
+     */
+    private <T> CompletableFuture<T> runAsync(Supplier<T> action) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        scheduler.runAsync(() -> {
+            try {
+                future.complete(action.get());
+            } catch (Throwable t) {
+                future.completeExceptionally(t);
+            }
+        });
+        return future;
+    }
+}
@@ -0,0 +1,446 @@
+package com.minecraft.frpplugin;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * FrpcConfigDocument - 按行保存的frpc.toml文档模型
+ * 只修改被操作的[[proxies]]段落中的相关行，其余内容(注释、空行、键的顺序和缩进)原样保留
+ * 段落包括代理自己的子表，例如[proxies.plugin]、[proxies.transport]和[proxies.healthCheck]
+ */
+public class FrpcConfigDocument {
+    
+    private static final Pattern KEY_PATTERN = Pattern.compile("[A-Za-z][A-Za-z0-9_]*(\\.[A-Za-z][A-Za-z0-9_]*)*");
+    private static final Pattern INTEGER_PATTERN = Pattern.compile("-?\\d+");
+    /**
+     * 值为整数的配置项，按键的最后一段匹配；其他配置项的值即使是数字也作为字符串写入，例如subdomain = "123"
+     */
+    private static final Set<String> INTEGER_KEYS = Set.of("localPort", "remotePort", "timeoutSeconds",
+            "maxFailed", "intervalSeconds");
+    /**
+     * 值为布尔值的配置项，按键的最后一段匹配
+     */
+    private static final Set<String> BOOLEAN_KEYS = Set.of("useEncryption", "useCompression");
+    
+    private final List<String> lines;
+    private final String lineSeparator;
+    private final boolean trailingNewline;
+    private boolean modified;
+    
+    /**
+     * 构造函数
+     * @param content 配置文件内容
+     */
+    public FrpcConfigDocument(String content) {
+        this.lineSeparator = content.contains("\r\n") ? "\r\n" : "\n";
+        this.trailingNewline = content.endsWith("\n");
+        String body = trailingNewline ? content.substring(0, content.length() - (content.endsWith("\r\n") ? 2 : 1)) : content;
+        this.lines = new ArrayList<>(List.of(body.split("\r?\n", -1)));
+    }
+    
+    /**
+     * 读取配置文件
+     * @param file 配置文件
+     * @return 文档
+     * @throws IOException 如果读取失败
+     */
+    public static FrpcConfigDocument load(File file) throws IOException {
+        return new FrpcConfigDocument(Files.readString(file.toPath()));
+    }
+    
+    /**
+     * 原子地保存到文件：先写入临时文件并fsync，再替换原文件，写入中途崩溃也不会留下半个文件
+     * @param file 配置文件
+     * @throws IOException 如果写入失败
+     */
+    public void save(File file) throws IOException {
+        File temp = new File(file.getPath() + ".tmp");
+        try (FileChannel out = FileChannel.open(temp.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.wrap(render().getBytes(StandardCharsets.UTF_8));
+            while (buffer.hasRemaining()) {
+                out.write(buffer);
+            }
+            out.force(true);
+        }
+        try {
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+        modified = false;
+    }
+    
+    /**
+     * 生成文档内容
+     * @return 配置文件内容
+     */
+    public String render() {
+        String body = String.join(lineSeparator, lines);
+        return trailingNewline ? body + lineSeparator : body;
+    }
+    
+    /**
+     * 文档自加载或上次保存以来是否被修改
+     * @return 是否被修改
+     */
+    public boolean isModified() {
+        return modified;
+    }
+    
+    /**
+     * 获取所有代理的名称
+     * @return 按文件中顺序排列的名称
+     */
+    public List<String> getProxyNames() {
+        List<String> names = new ArrayList<>();
+        for (int header : proxyHeaders()) {
+            String name = proxyName(header);
+            if (name != null) {
+                names.add(name);
+            }
+        }
+        return names;
+    }
+    
+    /**
+     * 在文件末尾添加一个代理
+     * @param name 代理名称
+     * @param values 其他配置项，值按配置项的类型自动加引号
+     * @throws IllegalArgumentException 如果名称已存在或键不合法
+     */
+    public void addProxy(String name, Map<String, String> values) {
+        if (findProxy(name) >= 0) {
+            throw new IllegalArgumentException("代理 " + name + " 已存在");
+        }
+        List<String> block = new ArrayList<>();
+        if (!lines.isEmpty() && !lines.get(lines.size() - 1).trim().isEmpty()) {
+            block.add("");
+        }
+        block.add("[[proxies]]");
+        block.add("name = " + formatString(name));
+        for (Map.Entry<String, String> entry : values.entrySet()) {
+            block.add(checkKey(entry.getKey()) + " = " + formatValue(entry.getKey(), entry.getValue(), null));
+        }
+        // 文件原本为空时不保留开头的空行
+        if (lines.size() == 1 && lines.get(0).isEmpty()) {
+            lines.clear();
+        }
+        lines.addAll(block);
+        modified = true;
+    }
+    
+    /**
+     * 删除一个代理，连同紧挨在表头上方的说明注释，其余注释和空行保留
+     * @param name 代理名称
+     * @return 是否找到并删除
+     */
+    public boolean removeProxy(String name) {
+        int header = findProxy(name);
+        if (header < 0) {
+            return false;
+        }
+        int start = header;
+        while (start > 0 && lines.get(start - 1).trim().startsWith("#")) {
+            start--;
+        }
+        int end = blockEnd(header);
+        // 紧挨着下一个表头的注释属于下一个段落
+        while (end > header + 1 && isBlankOrComment(lines.get(end - 1))) {
+            end--;
+        }
+        lines.subList(start, end).clear();
+        // 删除后不留下连续的空行
+        while (start > 0 && start < lines.size()
+                && lines.get(start - 1).trim().isEmpty() && lines.get(start).trim().isEmpty()) {
+            lines.remove(start);
+        }
+        if (start == lines.size() && start > 0 && lines.get(start - 1).trim().isEmpty()) {
+            lines.remove(start - 1);
+        }
+        modified = true;
+        return true;
+    }
+    
+    /**
+     * 设置代理的某个配置项，已有的行原地替换并保留缩进和行尾注释，不存在时追加到段落末尾
+     * 点分形式的键写入对应的子表，例如transport.bandwidthLimit写入[proxies.transport]，子表不存在时在段落末尾创建
+     * @param name 代理名称
+     * @param key 键，可以是点分形式，例如transport.useCompression
+     * @param value 值，替换已有的行时沿用原来的类型，否则按配置项的类型自动加引号
+     * @throws IllegalArgumentException 如果代理不存在或键不合法
+     */
+    public void setProxyValue(String name, String key, String value) {
+        int header = findProxy(name);
+        if (header < 0) {
+            throw new IllegalArgumentException("代理 " + name + " 不存在");
+        }
+        checkKey(key);
+        if (key.equals("name") && !value.equals(name) && findProxy(value) >= 0) {
+            throw new IllegalArgumentException("代理 " + value + " 已存在");
+        }
+        String formatted = formatValue(key, value, null);
+        // 点分键写入最长的已有子表，例如transport.bandwidthLimit写入[proxies.transport]的bandwidthLimit
+        int section = header;
+        String sectionKey = key;
+        int block = blockEnd(header);
+        for (int dot = key.lastIndexOf('.'); dot > 0; dot = key.lastIndexOf('.', dot - 1)) {
+            int table = findTable(header, block, "proxies." + key.substring(0, dot));
+            if (table >= 0) {
+                section = table;
+                sectionKey = key.substring(dot + 1);
+                break;
+            }
+        }
+        
+        int end = bodyEnd(section);
+        if (sectionKey.indexOf('.') > 0 && findLine(section, end, sectionKey) < 0) {
+            // toml4j不支持点分键，也不允许同一个表既有点分键又有子表，没有对应子表时在段落末尾创建
+            int insertAt = block;
+            while (insertAt > header + 1 && isBlankOrComment(lines.get(insertAt - 1))) {
+                insertAt--;
+            }
+            int dot = key.lastIndexOf('.');
+            lines.addAll(insertAt, List.of("", "[proxies." + key.substring(0, dot) + "]",
+                    key.substring(dot + 1) + " = " + formatted));
+            modified = true;
+            return;
+        }
+        for (int i = section + 1; i < end; i++) {
+            String line = lines.get(i);
+            if (sectionKey.equals(lineKey(line))) {
+                String indent = line.substring(0, line.length() - line.stripLeading().length());
+                String replaced = indent + sectionKey + " = " + formatValue(key, value, rawValue(line))
+                        + inlineComment(line);
+                if (!replaced.equals(line)) {
+                    lines.set(i, replaced);
+                    modified = true;
+                }
+                return;
+            }
+        }
+        int insertAt = end;
+        while (insertAt > section + 1 && isBlankOrComment(lines.get(insertAt - 1))) {
+            insertAt--;
+        }
+        lines.add(insertAt, sectionKey + " = " + formatted);
+        modified = true;
+    }
+    
+    /**
+     * 按配置项的类型格式化值：整数、布尔值和数组原样写入，其余作为字符串
+     * name总是字符串；替换已有的值时沿用原值的类型，否则只有已知的整数和布尔配置项才写成裸值，
+     * 否则/frp proxy add 25565 ...会写出name = 25565，frpc会因类型不对拒绝整个配置
+     * @param key 键，可以是点分形式
+     * @param value 值
+     * @param current 被替换的原值(TOML格式)，没有时为null
+     * @return TOML格式的值
+     */
+    private static String formatValue(String key, String value, String current) {
+        if (key.equals("name")) {
+            return formatString(value);
+        }
+        if (value.startsWith("[") && value.endsWith("]")) {
+            return value;
+        }
+        String field = key.substring(key.lastIndexOf('.') + 1);
+        boolean integer = current != null ? INTEGER_PATTERN.matcher(current).matches() : INTEGER_KEYS.contains(field);
+        boolean bool = current != null ? current.equals("true") || current.equals("false") : BOOLEAN_KEYS.contains(field);
+        if ((integer && INTEGER_PATTERN.matcher(value).matches())
+                || (bool && (value.equals("true") || value.equals("false")))) {
+            return value;
+        }
+        return formatString(value);
+    }
+    
+    /**
+     * 格式化为TOML字符串
+     * @param value 值
+     * @return 加引号并转义后的值
+     */
+    static String formatString(String value) {
+        return "\"" + value.replace("\\", "\\\\").replace("\"", "\\\"") + "\"";
+    }
+    
+    private static String checkKey(String key) {
+        if (!KEY_PATTERN.matcher(key).matches()) {
+            throw new IllegalArgumentException("配置项名称不合法: " + key);
+        }
+        return key;
+    }
+    
+    private List<Integer> proxyHeaders() {
+        List<Integer> headers = new ArrayList<>();
+        for (int i = 0; i < lines.size(); i++) {
+            if (lines.get(i).trim().startsWith("[[proxies]]")) {
+                headers.add(i);
+            }
+        }
+        return headers;
+    }
+    
+    /**
+     * 查找代理的表头行
+     * @return 行号，未找到时返回-1
+     */
+    private int findProxy(String name) {
+        for (int header : proxyHeaders()) {
+            if (name.equals(proxyName(header))) {
+                return header;
+            }
+        }
+        return -1;
+    }
+    
+    private String proxyName(int header) {
+        int end = bodyEnd(header);
+        for (int i = header + 1; i < end; i++) {
+            String line = lines.get(i);
+            if ("name".equals(lineKey(line))) {
+                String value = rawValue(line);
+                if (value.length() >= 2 && (value.startsWith("\"") || value.startsWith("'"))) {
+                    return value.substring(1, value.length() - 1);
+                }
+                return value;
+            }
+        }
+        return null;
+    }
+    
+    /**
+     * 表头下方键值行结束的位置(下一个表头所在行或文件末尾)
+     */
+    private int bodyEnd(int header) {
+        for (int i = header + 1; i < lines.size(); i++) {
+            if (tableName(lines.get(i)) != null) {
+                return i;
+            }
+        }
+        return lines.size();
+    }
+    
+    /**
+     * 代理段落结束的位置(下一个不属于该代理的表头所在行或文件末尾)，[proxies.xxx]子表属于当前代理
+     */
+    private int blockEnd(int header) {
+        for (int i = header + 1; i < lines.size(); i++) {
+            String table = tableName(lines.get(i));
+            if (table != null && !table.startsWith("proxies.")) {
+                return i;
+            }
+        }
+        return lines.size();
+    }
+    
+    /**
+     * 在表头下方查找键值行
+     * @return 行号，未找到时返回-1
+     */
+    private int findLine(int header, int end, String key) {
+        for (int i = header + 1; i < end; i++) {
+            if (key.equals(lineKey(lines.get(i)))) {
+                return i;
+            }
+        }
+        return -1;
+    }
+    
+    /**
+     * 在代理段落中查找子表的表头行
+     * @return 行号，未找到时返回-1
+     */
+    private int findTable(int header, int end, String table) {
+        for (int i = header + 1; i < end; i++) {
+            if (table.equals(tableName(lines.get(i)))) {
+                return i;
+            }
+        }
+        return -1;
+    }
+    
+    /**
+     * 获取表头行的表名，例如[[proxies]]为proxies，[proxies.plugin]为proxies.plugin
+     * @return 表名，不是表头行时返回null
+     */
+    private static String tableName(String line) {
+        String trimmed = line.trim();
+        if (!trimmed.startsWith("[")) {
+            return null;
+        }
+        int comment = trimmed.indexOf('#');
+        if (comment > 0) {
+            trimmed = trimmed.substring(0, comment).trim();
+        }
+        String name = trimmed.startsWith("[[") && trimmed.endsWith("]]")
+                ? trimmed.substring(2, trimmed.length() - 2)
+                : trimmed.endsWith("]") ? trimmed.substring(1, trimmed.length() - 1) : trimmed.substring(1);
+        return name.replace(" ", "").replace("\t", "");
+    }
+    
+    /**
+     * 获取键值行的键
+     * @return 键，不是键值行时返回null
+     */
+    private static String lineKey(String line) {
+        String trimmed = line.trim();
+        int equals = trimmed.indexOf('=');
+        if (trimmed.startsWith("#") || equals <= 0) {
+            return null;
+        }
+        return trimmed.substring(0, equals).trim();
+    }
+    
+    /**
+     * 获取键值行中未经解析的值，不包括行尾注释
+     * @return TOML格式的值
+     */
+    private static String rawValue(String line) {
+        String value = line.substring(line.indexOf('=') + 1);
+        return value.substring(0, value.length() - inlineComment(line).length()).trim();
+    }
+    
+    /**
+     * 获取行尾注释(包括前面的空白)，引号内的#不算注释
+     * @return 注释，没有时返回空字符串
+     */
+    private static String inlineComment(String line) {
+        int equals = line.indexOf('=');
+        char quote = 0;
+        for (int i = equals + 1; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quote != 0) {
+                if (c == '\\' && quote == '"') {
+                    i++;
+                } else if (c == quote) {
+                    quote = 0;
+                }
+            } else if (c == '"' || c == '\'') {
+                quote = c;
+            } else if (c == '#') {
+                int start = i;
+                while (start > equals + 1 && Character.isWhitespace(line.charAt(start - 1))) {
+                    start--;
+                }
+                return line.substring(start);
+            }
+        }
+        return "";
+    }
+    
+    private static boolean isBlankOrComment(String line) {
+        String trimmed = line.trim();
+        return trimmed.isEmpty() || trimmed.startsWith("#");
+    }
+}
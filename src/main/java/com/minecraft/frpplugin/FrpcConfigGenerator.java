@@ -0,0 +1,180 @@
+package com.minecraft.frpplugin;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * FrpcConfigGenerator - 在用户的frpc.toml基础上生成插件实际使用的配置
+ * 只按行覆盖或插入指定的键，其余内容(包括注释)原样保留，用户的配置文件不会被修改
+ */
+public class FrpcConfigGenerator {
+    
+    private final String source;
+    private final Map<String, String> globalOverrides = new LinkedHashMap<>();
+    private final Map<Integer, Map<String, String>> proxyOverrides = new HashMap<>();
+    
+    /**
+     * 构造函数
+     * @param source 用户配置文件的内容
+     */
+    public FrpcConfigGenerator(String source) {
+        this.source = source;
+    }
+    
+    /**
+     * 设置顶层配置项
+     * @param key 键，可以是点分形式，例如transport.poolCount
+     * @param value TOML格式的值，字符串需要自带引号
+     */
+    public void setGlobal(String key, String value) {
+        globalOverrides.put(key, value);
+    }
+    
+    /**
+     * 设置某个代理的配置项
+     * @param proxyIndex 代理在[[proxies]]中的序号，从0开始
+     * @param key 键，可以是点分形式，例如transport.proxyProtocolVersion
+     * @param value TOML格式的值，字符串需要自带引号
+     */
+    public void setProxy(int proxyIndex, String key, String value) {
+        proxyOverrides.computeIfAbsent(proxyIndex, i -> new LinkedHashMap<>()).put(key, value);
+    }
+    
+    /**
+     * 是否有任何需要覆盖的配置项
+     * @return 如果生成结果与原内容相同返回false
+     */
+    public boolean hasOverrides() {
+        return !globalOverrides.isEmpty() || !proxyOverrides.isEmpty();
+    }
+    
+    /**
+     * 生成最终配置
+     * 点分形式的配置项在用户已经写了对应表(例如[transport]或代理的[proxies.transport])时写入该表，避免与表中的键重复定义
+     * @return 配置内容
+     */
+    public String generate() {
+        List<String> lines = new ArrayList<>(List.of(source.split("\r?\n", -1)));
+        
+        // 找出各个表头所在的行，代理部分从对应的[[proxies]]行延续到下一个表头之前
+        List<Integer> headers = new ArrayList<>();
+        List<Integer> proxyHeaders = new ArrayList<>();
+        Map<String, Integer> tableHeaders = new HashMap<>();
+        for (int i = 0; i < lines.size(); i++) {
+            String trimmed = lines.get(i).trim();
+            if (trimmed.startsWith("[")) {
+                headers.add(i);
+                if (trimmed.startsWith("[[proxies]]")) {
+                    proxyHeaders.add(i);
+                } else if (!trimmed.startsWith("[[") && trimmed.indexOf(']') > 0) {
+                    tableHeaders.putIfAbsent(trimmed.substring(1, trimmed.indexOf(']')).trim(), i);
+                }
+            }
+        }
+        
+        // 按起始行分组，同一范围内的配置项一起处理
+        TreeMap<Integer, Map<String, String>> edits = new TreeMap<>();
+        for (int p = 0; p < proxyHeaders.size(); p++) {
+            Map<String, String> overrides = proxyOverrides.get(p);
+            if (overrides == null) {
+                continue;
+            }
+            // 代理的子表(例如[proxies.transport])从属于它前面最近的[[proxies]]
+            int proxyHeader = proxyHeaders.get(p);
+            Map<String, Integer> subTables = new HashMap<>();
+            for (int header : headers) {
+                String trimmed = lines.get(header).trim();
+                if (header <= proxyHeader) {
+                    continue;
+                }
+                if (trimmed.startsWith("[[")) {
+                    break;
+                }
+                if (trimmed.startsWith("[proxies.") && trimmed.indexOf(']') > 0) {
+                    subTables.putIfAbsent(trimmed.substring("[proxies.".length(), trimmed.indexOf(']')).trim(), header);
+                }
+            }
+            for (Map.Entry<String, String> entry : overrides.entrySet()) {
+                addEdit(edits, subTables, proxyHeader + 1, entry.getKey(), entry.getValue());
+            }
+        }
+        for (Map.Entry<String, String> entry : globalOverrides.entrySet()) {
+            addEdit(edits, tableHeaders, 0, entry.getKey(), entry.getValue());
+        }
+        
+        // 从后往前处理，避免插入行后影响前面的行号
+        for (Map.Entry<Integer, Map<String, String>> edit : edits.descendingMap().entrySet()) {
+            int start = edit.getKey();
+            int end = start == 0 ? (headers.isEmpty() ? lines.size() : headers.get(0))
+                    : nextHeader(headers, start - 1, lines.size());
+            applyOverrides(lines, start, end, edit.getValue());
+        }
+        
+        return String.join("\n", lines);
+    }
+    
+    /**
+     * 记录一个配置项应写入的位置
+     * 优先写入最长匹配的表，例如transport.tls.enable写入[transport.tls]，没有匹配的表时写入默认范围
+     */
+    private void addEdit(TreeMap<Integer, Map<String, String>> edits, Map<String, Integer> tables,
+                         int defaultStart, String key, String value) {
+        int start = defaultStart;
+        for (int dot = key.lastIndexOf('.'); dot > 0; dot = key.lastIndexOf('.', dot - 1)) {
+            Integer header = tables.get(key.substring(0, dot));
+            if (header != null) {
+                start = header + 1;
+                key = key.substring(dot + 1);
+                break;
+            }
+        }
+        edits.computeIfAbsent(start, i -> new LinkedHashMap<>()).put(key, value);
+    }
+    
+    /**
+     * 在指定的行范围内覆盖已有的键，不存在的键插入到范围开头
+     */
+    private void applyOverrides(List<String> lines, int start, int end, Map<String, String> overrides) {
+        List<String> inserts = new ArrayList<>();
+        for (Map.Entry<String, String> entry : overrides.entrySet()) {
+            String line = entry.getKey() + " = " + entry.getValue();
+            int existing = findKey(lines, start, end, entry.getKey());
+            if (existing >= 0) {
+                lines.set(existing, line);
+            } else {
+                inserts.add(line);
+            }
+        }
+        lines.addAll(start, inserts);
+    }
+    
+    /**
+     * 在指定的行范围内查找键
+     * @return 行号，未找到时返回-1
+     */
+    private int findKey(List<String> lines, int start, int end, String key) {
+        for (int i = start; i < end; i++) {
+            String trimmed = lines.get(i).trim();
+            if (trimmed.startsWith(key)) {
+                String rest = trimmed.substring(key.length()).trim();
+                if (rest.startsWith("=")) {
+                    return i;
+                }
+            }
+        }
+        return -1;
+    }
+    
+    private int nextHeader(List<Integer> headers, int current, int fallback) {
+        for (int header : headers) {
+            if (header > current) {
+                return header;
+            }
+        }
+        return fallback;
+    }
+}
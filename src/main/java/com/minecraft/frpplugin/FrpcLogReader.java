@@ -0,0 +1,178 @@
+package com.minecraft.frpplugin;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.IllegalCharsetNameException;
+import java.nio.charset.StandardCharsets;
+import java.util.function.Consumer;
+
+/**
+ * FrpcLogReader - 按字节读取frpc的输出并逐行解码
+ * 输出编码只在第一次遇到非ASCII内容时判断一次，之后复用同一个CharsetDecoder和缓冲区
+ * 不依赖也不修改JVM的默认编码
+ */
+public class FrpcLogReader {
+    
+    private static final int READ_BUFFER_SIZE = 8192;
+    
+    private final InputStream input;
+    private final Consumer<String> lineConsumer;
+    private Charset charset;
+    private CharsetDecoder decoder;
+    private ByteBuffer line = ByteBuffer.allocate(1024);
+    private CharBuffer chars = CharBuffer.allocate(1024);
+    
+    /**
+     * 构造函数
+     * @param input frpc的标准输出
+     * @param charsetName 配置的编码，auto表示自动检测
+     * @param lineConsumer 每行解码后的回调
+     */
+    public FrpcLogReader(InputStream input, String charsetName, Consumer<String> lineConsumer) {
+        this.input = input;
+        this.lineConsumer = lineConsumer;
+        if (charsetName != null && !charsetName.equalsIgnoreCase("auto")) {
+            useCharset(Charset.forName(charsetName));
+        }
+    }
+    
+    /**
+     * 判断配置的编码是否可以使用
+     * @param charsetName 配置的编码，auto表示自动检测
+     * @return 是否为auto或JVM支持的编码
+     */
+    public static boolean isSupportedCharset(String charsetName) {
+        if (charsetName == null || charsetName.equalsIgnoreCase("auto")) {
+            return true;
+        }
+        try {
+            return Charset.isSupported(charsetName);
+        } catch (IllegalCharsetNameException e) {
+            return false;
+        }
+    }
+    
+    /**
+     * 读取直到输出流结束
+     * @throws IOException 如果读取失败
+     */
+    public void readAll() throws IOException {
+        byte[] buffer = new byte[READ_BUFFER_SIZE];
+        int read;
+        while ((read = input.read(buffer)) != -1) {
+            for (int i = 0; i < read; i++) {
+                byte b = buffer[i];
+                if (b == '\n') {
+                    emitLine();
+                } else {
+                    appendByte(b);
+                }
+            }
+        }
+        if (line.position() > 0) {
+            emitLine();
+        }
+    }
+    
+    /**
+     * 获取检测到的编码
+     * @return 编码，尚未检测时为null
+     */
+    public Charset getCharset() {
+        return charset;
+    }
+    
+    private void appendByte(byte b) {
+        if (!line.hasRemaining()) {
+            ByteBuffer larger = ByteBuffer.allocate(line.capacity() * 2);
+            line.flip();
+            larger.put(line);
+            line = larger;
+        }
+        line.put(b);
+    }
+    
+    private void emitLine() {
+        int length = line.position();
+        if (length > 0 && line.get(length - 1) == '\r') {
+            length--;
+        }
+        line.flip();
+        line.limit(length);
+        
+        if (charset == null && !isAscii(line)) {
+            detectCharset(line);
+        }
+        lineConsumer.accept(charset == null ? decodeAscii(line) : decode(line));
+        line.clear();
+    }
+    
+    /**
+     * 第一次遇到非ASCII内容时判断编码：能按UTF-8严格解码就是UTF-8，否则使用系统本地编码
+     */
+    private void detectCharset(ByteBuffer bytes) {
+        try {
+            StandardCharsets.UTF_8.newDecoder()
+                    .onMalformedInput(CodingErrorAction.REPORT)
+                    .onUnmappableCharacter(CodingErrorAction.REPORT)
+                    .decode(bytes.duplicate());
+            useCharset(StandardCharsets.UTF_8);
+        } catch (CharacterCodingException e) {
+            useCharset(nativeCharset());
+        }
+    }
+    
+    private void useCharset(Charset charset) {
+        this.charset = charset;
+        this.decoder = charset.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    }
+    
+    private String decode(ByteBuffer bytes) {
+        int required = (int) Math.ceil(bytes.remaining() * (double) decoder.maxCharsPerByte());
+        if (chars.capacity() < required) {
+            chars = CharBuffer.allocate(required);
+        }
+        chars.clear();
+        decoder.reset();
+        decoder.decode(bytes, chars, true);
+        decoder.flush(chars);
+        chars.flip();
+        return chars.toString();
+    }
+    
+    private static String decodeAscii(ByteBuffer bytes) {
+        return new String(bytes.array(), bytes.position(), bytes.remaining(), StandardCharsets.US_ASCII);
+    }
+    
+    private static boolean isAscii(ByteBuffer bytes) {
+        for (int i = bytes.position(); i < bytes.limit(); i++) {
+            if (bytes.get(i) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    /**
+     * 获取操作系统的本地编码(例如中文Windows上的GBK)
+     */
+    private static Charset nativeCharset() {
+        String name = System.getProperty("native.encoding", System.getProperty("sun.jnu.encoding"));
+        try {
+            if (name != null) {
+                return Charset.forName(name);
+            }
+        } catch (IllegalArgumentException e) {
+            // 无法识别的编码名称，使用默认编码
+        }
+        return Charset.defaultCharset();
+    }
+}
@@ -0,0 +1,112 @@
+package com.minecraft.frpplugin;
+
+import org.bukkit.configuration.ConfigurationSection;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+import java.util.logging.Logger;
+
+/**
+ * GoRuntimeTuning - 为frpc(Go程序)设置GOMAXPROCS、GOGC和GOMEMLIMIT
+ * 默认情况下frpc会使用主机上的所有核心并且没有内存上限，它的调度器和垃圾回收会与服务器的JVM争抢资源
+ * 优先级: 配置中的值 &gt; 服务器进程已有的环境变量 &gt; 根据核心数和JVM最大堆自动计算的值
+ */
+public class GoRuntimeTuning {
+    
+    private static final long MIB = 1L << 20;
+    private static final long MIN_MEMORY_LIMIT = 64 * MIB;
+    private static final long MAX_MEMORY_LIMIT = 512 * MIB;
+    
+    private final boolean enabled;
+    private final int maxProcs;
+    private final int gcPercent;
+    private final long memoryLimitMegabytes;
+    private final long rssAlertMegabytes;
+    private final int pinnedCpus;
+    
+    /**
+     * 构造函数
+     * @param section 配置中的go_runtime部分，不存在时为null
+     * @param rssAlertMegabytes 资源监控的常驻内存告警阈值(MB)，0表示未设置
+     * @param pinnedCpus frpc被限制在的CPU数量，0表示未限制
+     */
+    public GoRuntimeTuning(ConfigurationSection section, long rssAlertMegabytes, int pinnedCpus) {
+        this.enabled = section == null || section.getBoolean("enabled", true);
+        this.maxProcs = section == null ? 0 : section.getInt("gomaxprocs", 0);
+        this.gcPercent = section == null ? 0 : section.getInt("gogc", 0);
+        this.memoryLimitMegabytes = section == null ? 0 : section.getLong("gomemlimit_mb", 0);
+        this.rssAlertMegabytes = rssAlertMegabytes;
+        this.pinnedCpus = pinnedCpus;
+    }
+    
+    /**
+     * 将计算出的变量写入frpc的环境
+     * @param environment ProcessBuilder的环境
+     * @param logger 日志记录器
+     */
+    public void apply(Map<String, String> environment, Logger logger) {
+        if (!enabled) {
+            return;
+        }
+        Map<String, String> effective = new LinkedHashMap<>();
+        effective.put("GOMAXPROCS", resolve(environment, "GOMAXPROCS",
+                maxProcs > 0 ? String.valueOf(maxProcs) : null, () -> String.valueOf(autoMaxProcs())));
+        effective.put("GOGC", resolve(environment, "GOGC",
+                gcPercent > 0 ? String.valueOf(gcPercent) : null, () -> String.valueOf(autoGcPercent())));
+        effective.put("GOMEMLIMIT", resolve(environment, "GOMEMLIMIT",
+                memoryLimitMegabytes > 0 ? memoryLimitMegabytes + "MiB" : null, () -> autoMemoryLimit() / MIB + "MiB"));
+        environment.putAll(effective);
+        
+        StringBuilder message = new StringBuilder("frpc运行时设置:");
+        effective.forEach((key, value) -> message.append(' ').append(key).append('=').append(value));
+        logger.info(message.toString());
+    }
+    
+    /**
+     * 按优先级确定一个变量的值
+     */
+    private static String resolve(Map<String, String> environment, String key, String configured,
+                                  Supplier<String> auto) {
+        if (configured != null) {
+            return configured;
+        }
+        String inherited = environment.get(key);
+        if (inherited != null && !inherited.isBlank()) {
+            return inherited;
+        }
+        return auto.get();
+    }
+    
+    /**
+     * frpc只转发流量，四分之一的核心(1到4个)已经足够；限制了CPU时不超过限制的数量
+     */
+    private long autoMaxProcs() {
+        int cores = Runtime.getRuntime().availableProcessors();
+        int procs = Math.max(1, Math.min(4, cores / 4));
+        return pinnedCpus > 0 ? Math.min(procs, pinnedCpus) : procs;
+    }
+    
+    /**
+     * 服务器堆较小说明主机内存紧张，此时让frpc更积极地回收
+     */
+    private long autoGcPercent() {
+        long maxHeap = Runtime.getRuntime().maxMemory();
+        return maxHeap != Long.MAX_VALUE && maxHeap < 2048 * MIB ? 50 : 100;
+    }
+    
+    /**
+     * 设置了资源监控的内存阈值时取其75%，让垃圾回收在告警前介入；
+     * 否则取JVM最大堆的1/16，限制在64MiB到512MiB之间
+     */
+    private long autoMemoryLimit() {
+        if (rssAlertMegabytes > 0) {
+            return Math.max(MIN_MEMORY_LIMIT, rssAlertMegabytes * MIB * 3 / 4);
+        }
+        long maxHeap = Runtime.getRuntime().maxMemory();
+        if (maxHeap == Long.MAX_VALUE) {
+            return 256 * MIB;
+        }
+        return Math.max(MIN_MEMORY_LIMIT, Math.min(MAX_MEMORY_LIMIT, maxHeap / 16));
+    }
+}
@@ -0,0 +1,148 @@
+package com.minecraft.frpplugin;
+
+import com.minecraft.frpplugin.api.ProxyEndpoint;
+import com.minecraft.frpplugin.api.TunnelState;
+import com.minecraft.frpplugin.network.StatusPing;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.logging.Logger;
+
+/**
+ * HealthProbe - 定期从公网地址对服务器做状态查询，检测隧道是否真的可用
+ * frpc进程存活不代表隧道可用，连续多次查询失败时将隧道标记为异常，并可选择重启frpc
+ * 查询在独立的有界线程池中进行，不占用服务器主线程
+ */
+public class HealthProbe {
+    
+    private final FrpManager frpManager;
+    private final Logger logger;
+    private final int timeoutMillis;
+    private final int failureThreshold;
+    private final boolean restartOnFailure;
+    private final long restartCooldownMillis;
+    private final ScheduledExecutorService scheduler;
+    private final ExecutorService probes;
+    private int consecutiveFailures;
+    private long lastRestartMillis;
+    
+    /**
+     * 构造函数
+     * @param frpManager frp管理器
+     * @param logger 日志记录器
+     * @param timeoutMillis 单次查询的超时时间(毫秒)
+     * @param maxConcurrency 同时进行的查询数上限
+     * @param failureThreshold 连续失败多少轮后标记为异常
+     * @param restartOnFailure 标记为异常后是否重启frpc
+     * @param restartCooldownMillis 两次自动重启之间的最短间隔(毫秒)
+     */
+    public HealthProbe(FrpManager frpManager, Logger logger, int timeoutMillis, int maxConcurrency,
+                       int failureThreshold, boolean restartOnFailure, long restartCooldownMillis) {
+        this.frpManager = frpManager;
+        this.logger = logger;
+        this.timeoutMillis = timeoutMillis;
+        this.failureThreshold = Math.max(1, failureThreshold);
+        this.restartOnFailure = restartOnFailure;
+        this.restartCooldownMillis = restartCooldownMillis;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> daemon(runnable, "FrpPlugin-HealthProbe"));
+        this.probes = Executors.newFixedThreadPool(Math.max(1, maxConcurrency),
+                runnable -> daemon(runnable, "FrpPlugin-HealthProbe-Worker"));
+    }
+    
+    /**
+     * 开始定期检测，每轮结束后等待一个间隔再开始下一轮，轮与轮之间不会重叠
+     * @param intervalMillis 检测间隔(毫秒)
+     */
+    public void start(long intervalMillis) {
+        scheduler.scheduleWithFixedDelay(this::runRound, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+    
+    /**
+     * 停止检测
+     */
+    public void stop() {
+        scheduler.shutdownNow();
+        probes.shutdownNow();
+    }
+    
+    /**
+     * 执行一轮检测：对所有指向本服务器的代理并发查询，任意一个成功即视为隧道可用
+     */
+    private void runRound() {
+        TunnelState state = frpManager.getState();
+        List<ProxyEndpoint> targets = frpManager.getServerEndpoints();
+        if ((state != TunnelState.ONLINE && state != TunnelState.DEGRADED) || targets.isEmpty()) {
+            consecutiveFailures = 0;
+            return;
+        }
+        
+        List<Future<Long>> results = new ArrayList<>();
+        for (ProxyEndpoint endpoint : targets) {
+            results.add(probes.submit(() -> StatusPing.ping(
+                    new InetSocketAddress(endpoint.getHost(), endpoint.getPort()), timeoutMillis)));
+        }
+        
+        long bestRtt = -1;
+        String lastError = null;
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis * 2L);
+        for (int i = 0; i < results.size(); i++) {
+            try {
+                long rtt = results.get(i).get(Math.max(0L, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+                bestRtt = bestRtt < 0 ? rtt : Math.min(bestRtt, rtt);
+            } catch (ExecutionException e) {
+                lastError = targets.get(i) + ": " + e.getCause().getMessage();
+            } catch (TimeoutException | CancellationException e) {
+                results.get(i).cancel(true);
+                lastError = targets.get(i) + ": 超时";
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+        
+        if (bestRtt >= 0) {
+            if (consecutiveFailures >= failureThreshold) {
+                logger.info("隧道健康检查已恢复，延迟 " + bestRtt + " ms");
+            }
+            consecutiveFailures = 0;
+            frpManager.reportProbeSuccess(bestRtt);
+            return;
+        }
+        
+        consecutiveFailures++;
+        logger.warning("隧道健康检查失败(连续 " + consecutiveFailures + " 次): " + lastError);
+        if (consecutiveFailures >= failureThreshold) {
+            frpManager.reportProbeFailure();
+            recover();
+        }
+    }
+    
+    /**
+     * 隧道被标记为异常后重启frpc，冷却时间内不会重复重启
+     */
+    private void recover() {
+        long now = System.currentTimeMillis();
+        if (!restartOnFailure || now - lastRestartMillis < restartCooldownMillis) {
+            return;
+        }
+        lastRestartMillis = now;
+        logger.warning("隧道连续 " + failureThreshold + " 次无法从公网访问，正在重启frpc...");
+        consecutiveFailures = 0;
+        frpManager.restartFrp();
+    }
+    
+    private static Thread daemon(Runnable runnable, String name) {
+        Thread thread = new Thread(runnable, name);
+        thread.setDaemon(true);
+        return thread;
+    }
+}
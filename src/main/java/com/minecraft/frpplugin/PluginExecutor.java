@@ -0,0 +1,249 @@
+package com.minecraft.frpplugin;
+
+import com.minecraft.frpplugin.metrics.ExecutorMXBean;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * PluginExecutor - 插件内所有后台任务(frpc输出读取、进程退出处理、传输测试等)共用的执行器
+ * Java 21及以上每个任务一个虚拟线程；Java 17上短任务使用有上限的平台线程池，
+ * 读取输出、跟随日志这类一直运行的循环使用按需创建线程的池，不会占满短任务的线程，空闲线程都会自动回收
+ * 周期任务由一个只负责计时的线程按时提交到短任务的线程上执行
+ * 任务执行期间线程以任务名命名，插件禁用时统一关闭
+ */
+public class PluginExecutor implements Executor, ExecutorMXBean {
+    
+    private static final String THREAD_PREFIX = "FrpPlugin-";
+    private static final int MAX_PLATFORM_THREADS = 16;
+    private static final long KEEP_ALIVE_SECONDS = 30L;
+    
+    private final Logger logger;
+    private final ExecutorService delegate;
+    private final ExecutorService longRunningDelegate;
+    private final ThreadPoolExecutor pool;
+    private final ThreadPoolExecutor longRunningPool;
+    private final ScheduledThreadPoolExecutor timer;
+    private final AtomicInteger activeTasks = new AtomicInteger();
+    private final AtomicInteger longRunningTasks = new AtomicInteger();
+    private final AtomicInteger peakActiveTasks = new AtomicInteger();
+    private final AtomicLong completedTasks = new AtomicLong();
+    
+    /**
+     * 构造函数
+     * @param logger 日志记录器
+     */
+    public PluginExecutor(Logger logger) {
+        this.logger = logger;
+        ExecutorService virtual = createVirtualThreadExecutor();
+        if (virtual != null) {
+            this.pool = null;
+            this.longRunningPool = null;
+            this.delegate = virtual;
+            this.longRunningDelegate = virtual;
+        } else {
+            this.pool = new ThreadPoolExecutor(MAX_PLATFORM_THREADS, MAX_PLATFORM_THREADS,
+                    KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), daemonFactory("Worker-"));
+            this.pool.allowCoreThreadTimeOut(true);
+            // 长期任务的数量由frpc进程数、日志跟随和网页面板连接数决定，每个任务独占一个线程
+            this.longRunningPool = new ThreadPoolExecutor(0, Integer.MAX_VALUE,
+                    KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new SynchronousQueue<>(), daemonFactory("Loop-"));
+            this.delegate = pool;
+            this.longRunningDelegate = longRunningPool;
+        }
+        this.timer = new ScheduledThreadPoolExecutor(1, daemonFactory("Timer-"));
+        this.timer.setRemoveOnCancelPolicy(true);
+    }
+    
+    private static ThreadFactory daemonFactory(String prefix) {
+        AtomicInteger threadNumber = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, THREAD_PREFIX + prefix + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+    
+    /**
+     * 通过反射创建虚拟线程执行器，插件按Java 17编译
+     * @return 执行器，运行在Java 21以下时返回null
+     */
+    private static ExecutorService createVirtualThreadExecutor() {
+        try {
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, THREAD_PREFIX + "Virtual-", 0L);
+            ThreadFactory factory = (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+            return (ExecutorService) Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class)
+                    .invoke(null, factory);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+    
+    /**
+     * 执行一个很快结束的后台任务
+     * @param name 任务名，执行期间线程名为FrpPlugin-任务名
+     * @param task 任务
+     * @throws java.util.concurrent.RejectedExecutionException 如果执行器已关闭
+     */
+    public void execute(String name, Runnable task) {
+        delegate.execute(wrap(name, task, false));
+    }
+    
+    /**
+     * 执行一个长期运行的后台任务，例如读取frpc输出或跟随日志文件的循环
+     * 这类任务不占用短任务的线程，进程退出回调和命令的异步处理不会因此排队
+     * @param name 任务名，执行期间线程名为FrpPlugin-任务名
+     * @param task 任务
+     * @throws java.util.concurrent.RejectedExecutionException 如果执行器已关闭
+     */
+    public void executeLongRunning(String name, Runnable task) {
+        longRunningDelegate.execute(wrap(name, task, true));
+    }
+    
+    /**
+     * 按固定间隔执行一个很快结束的任务
+     * 上一次执行尚未结束时跳过本次，不会在多个线程上同时执行同一个任务
+     * @param name 任务名，执行期间线程名为FrpPlugin-任务名
+     * @param task 任务
+     * @param initialDelayMillis 首次执行前的延迟(毫秒)
+     * @param periodMillis 执行间隔(毫秒)
+     * @return 用于取消的Future，取消不会中断正在执行的任务
+     * @throws RejectedExecutionException 如果执行器已关闭
+     */
+    public ScheduledFuture<?> scheduleAtFixedRate(String name, Runnable task, long initialDelayMillis, long periodMillis) {
+        AtomicBoolean running = new AtomicBoolean();
+        Runnable guarded = () -> {
+            try {
+                task.run();
+            } finally {
+                running.set(false);
+            }
+        };
+        return timer.scheduleAtFixedRate(() -> {
+            if (!running.compareAndSet(false, true)) {
+                return;
+            }
+            try {
+                execute(name, guarded);
+            } catch (RejectedExecutionException e) {
+                // 执行器正在关闭
+                running.set(false);
+            }
+        }, initialDelayMillis, periodMillis, TimeUnit.MILLISECONDS);
+    }
+    
+    /**
+     * 获取执行长期任务的Executor，用于需要Executor参数的API(例如HttpServer)
+     * @param name 任务名
+     * @return Executor
+     */
+    public Executor longRunning(String name) {
+        return task -> executeLongRunning(name, task);
+    }
+    
+    private Runnable wrap(String name, Runnable task, boolean longRunning) {
+        return () -> {
+            Thread thread = Thread.currentThread();
+            String originalName = thread.getName();
+            thread.setName(THREAD_PREFIX + name);
+            peakActiveTasks.accumulateAndGet(activeTasks.incrementAndGet(), Math::max);
+            if (longRunning) {
+                longRunningTasks.incrementAndGet();
+            }
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                logger.log(Level.SEVERE, "后台任务 " + name + " 出错", e);
+            } finally {
+                if (longRunning) {
+                    longRunningTasks.decrementAndGet();
+                }
+                activeTasks.decrementAndGet();
+                completedTasks.incrementAndGet();
+                thread.setName(originalName);
+            }
+        };
+    }
+    
+    @Override
+    public void execute(Runnable command) {
+        execute("Task", command);
+    }
+    
+    /**
+     * 关闭执行器，等待正在执行的任务结束，超时后中断它们
+     * @param timeoutMillis 等待时间(毫秒)
+     * @return 是否所有任务都已结束
+     */
+    public boolean shutdown(long timeoutMillis) {
+        // 先停止计时，之后不会再有周期任务被提交
+        timer.shutdownNow();
+        delegate.shutdown();
+        longRunningDelegate.shutdown();
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        try {
+            if (delegate.awaitTermination(timeoutMillis, TimeUnit.MILLISECONDS)
+                    && longRunningDelegate.awaitTermination(Math.max(0L, deadline - System.nanoTime()),
+                    TimeUnit.NANOSECONDS)) {
+                return true;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        logger.warning("仍有 " + activeTasks.get() + " 个后台任务未结束，正在中断");
+        delegate.shutdownNow();
+        longRunningDelegate.shutdownNow();
+        return false;
+    }
+    
+    @Override
+    public boolean isVirtualThreads() {
+        return pool == null;
+    }
+    
+    @Override
+    public int getActiveTasks() {
+        return activeTasks.get();
+    }
+    
+    @Override
+    public int getLongRunningTasks() {
+        return longRunningTasks.get();
+    }
+    
+    @Override
+    public int getQueuedTasks() {
+        return pool == null ? 0 : pool.getQueue().size();
+    }
+    
+    @Override
+    public int getThreadCount() {
+        return pool == null ? activeTasks.get() : pool.getPoolSize() + longRunningPool.getPoolSize();
+    }
+    
+    @Override
+    public int getPeakThreadCount() {
+        return pool == null ? peakActiveTasks.get() : pool.getLargestPoolSize() + longRunningPool.getLargestPoolSize();
+    }
+    
+    @Override
+    public long getCompletedTasks() {
+        return completedTasks.get();
+    }
+}
@@ -0,0 +1,142 @@
+package com.minecraft.frpplugin;
+
+import com.minecraft.frpplugin.version.TaskScheduler;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.HandlerList;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerLoginEvent;
+import org.bukkit.plugin.Plugin;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * PoolPrewarmer - 根据玩家加入的速率调整frpc预先建立的工作连接数(transport.poolCount)
+ * 每个窗口统计一次加入人数，用指数移动平均预测速率，同时记录缓慢衰减的峰值，
+ * 这样活动结束、服务器变空后连接池仍按上次高峰的大小保持预热，下一次活动开始时的排队能直接用上
+ * frpc只在登录frps时发送poolCount，热重载不会改变它，因此新的大小只在服务器没有玩家时通过重启frpc生效
+ * 统计任务在主线程(Folia上为全局区域线程)执行，Folia上登录事件可能在其他线程触发，因此计数使用原子变量
+ */
+public class PoolPrewarmer implements Listener {
+    
+    private final Plugin plugin;
+    private final FrpManager frpManager;
+    private final TaskScheduler scheduler;
+    private final long windowSeconds;
+    private final double smoothing;
+    private final double peakDecay;
+    private final int burstSeconds;
+    private final int minPool;
+    private final int maxPool;
+    private final boolean restartWhenEmpty;
+    private final long restartIntervalMillis;
+    
+    private TaskScheduler.Task task;
+    private final AtomicInteger joins = new AtomicInteger();
+    private double averageRate;
+    private double peakRate;
+    private int targetPool = -1;
+    private long lastRestartMillis;
+    
+    /**
+     * 构造函数
+     * @param plugin 插件实例
+     * @param frpManager frp管理器
+     * @param scheduler 任务调度器
+     * @param windowSeconds 统计窗口(秒)
+     * @param smoothing 移动平均中新窗口的权重(0到1)
+     * @param peakHalfLifeMinutes 峰值衰减一半所需的时间(分钟)
+     * @param burstSeconds 连接池需要覆盖多少秒内的加入人数
+     * @param minPool 最小连接数
+     * @param maxPool 最大连接数，不应超过frps的transport.maxPoolCount
+     * @param restartWhenEmpty 服务器没有玩家时是否重启frpc以应用新的大小
+     * @param restartIntervalMillis 两次重启之间的最短间隔(毫秒)
+     */
+    public PoolPrewarmer(Plugin plugin, FrpManager frpManager, TaskScheduler scheduler,
+                         long windowSeconds, double smoothing,
+                         double peakHalfLifeMinutes, int burstSeconds, int minPool, int maxPool,
+                         boolean restartWhenEmpty, long restartIntervalMillis) {
+        this.plugin = plugin;
+        this.frpManager = frpManager;
+        this.scheduler = scheduler;
+        this.windowSeconds = Math.max(10L, windowSeconds);
+        this.smoothing = Math.max(0.01, Math.min(1.0, smoothing));
+        this.peakDecay = Math.pow(0.5, this.windowSeconds / 60.0 / Math.max(1.0, peakHalfLifeMinutes));
+        this.burstSeconds = Math.max(1, burstSeconds);
+        this.minPool = Math.max(0, minPool);
+        this.maxPool = Math.max(this.minPool, maxPool);
+        this.restartWhenEmpty = restartWhenEmpty;
+        this.restartIntervalMillis = restartIntervalMillis;
+    }
+    
+    /**
+     * 开始统计
+     */
+    public void start() {
+        plugin.getServer().getPluginManager().registerEvents(this, plugin);
+        long ticks = windowSeconds * 20L;
+        task = scheduler.runGlobalTimer(this::tick, ticks, ticks);
+    }
+    
+    /**
+     * 停止统计
+     */
+    public void stop() {
+        HandlerList.unregisterAll(this);
+        if (task != null) {
+            task.cancel();
+            task = null;
+        }
+    }
+    
+    /**
+     * 获取预测的加入速率
+     * @return 每分钟加入的人数
+     */
+    public double getForecastPerMinute() {
+        return Math.max(averageRate, peakRate);
+    }
+    
+    /**
+     * 获取当前的目标连接数
+     * @return 连接数，还没有统计完一个窗口时为-1
+     */
+    public int getTargetPool() {
+        return targetPool;
+    }
+    
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerLogin(PlayerLoginEvent event) {
+        if (event.getResult() == PlayerLoginEvent.Result.ALLOWED) {
+            joins.incrementAndGet();
+        }
+    }
+    
+    /**
+     * 每个窗口结束时更新预测并调整连接池
+     */
+    private void tick() {
+        double rate = joins.getAndSet(0) * 60.0 / windowSeconds;
+        averageRate = smoothing * rate + (1 - smoothing) * averageRate;
+        peakRate = Math.max(averageRate, peakRate * peakDecay);
+        
+        int target = (int) Math.ceil(getForecastPerMinute() * burstSeconds / 60.0);
+        targetPool = Math.max(minPool, Math.min(maxPool, target));
+        if (frpManager.setPoolCount(targetPool)) {
+            plugin.getLogger().info("玩家加入速率预测为每分钟 " + String.format("%.1f", getForecastPerMinute())
+                    + " 人，frpc连接池大小调整为 " + targetPool);
+        }
+        
+        if (!restartWhenEmpty || !frpManager.isClientRunning() || frpManager.getRunningPoolCount() == targetPool
+                || !plugin.getServer().getOnlinePlayers().isEmpty()) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        if (now - lastRestartMillis < restartIntervalMillis) {
+            return;
+        }
+        lastRestartMillis = now;
+        plugin.getLogger().info("服务器当前没有玩家，重启frpc以应用新的连接池大小");
+        scheduler.runAsync(frpManager::restartFrp);
+    }
+}
@@ -0,0 +1,315 @@
+package com.minecraft.frpplugin;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.UnknownHostException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.logging.Logger;
+
+/**
+ * PreflightChecker - 启动frpc前的配置和连通性检查
+ * 配置项不合法、frps不可达时直接报错，避免启动一个注定会退出的frpc进程
+ * 所有TCP连通性测试通过同一个Selector并发进行，域名解析在后台线程进行，总耗时不超过设定的时限
+ * 检查会阻塞调用线程直到完成或超时，不应在主线程调用
+ */
+public class PreflightChecker {
+    
+    private static final Set<String> PROXY_TYPES = new HashSet<>(Arrays.asList(
+            "tcp", "udp", "http", "https", "tcpmux", "stcp", "sudp", "xtcp"));
+    /**
+     * frpc在未配置serverPort时使用的端口
+     */
+    private static final int DEFAULT_SERVER_PORT = 7000;
+    private static final Set<String> TCP_TRANSPORTS = new HashSet<>(Arrays.asList(
+            "tcp", "websocket", "wss"));
+    
+    private final Logger logger;
+    private final long timeoutMillis;
+    private final Executor resolver;
+    
+    /**
+     * 构造函数
+     * @param logger 日志记录器
+     * @param timeoutMillis 域名解析和连通性测试的总时限(毫秒)
+     * @param resolver 执行域名解析的线程池，解析超时后结果会被丢弃
+     */
+    public PreflightChecker(Logger logger, long timeoutMillis, Executor resolver) {
+        this.logger = logger;
+        this.timeoutMillis = timeoutMillis;
+        this.resolver = resolver;
+    }
+    
+    /**
+     * 判断代理类型是否受frpc支持
+     * @param type 代理类型
+     * @return 是否支持
+     */
+    public static boolean isSupportedProxyType(String type) {
+        return PROXY_TYPES.contains(type);
+    }
+    
+    /**
+     * 执行检查
+     * @param config 已解析的frpc配置
+     * @return 错误信息列表，为空表示可以启动
+     */
+    public List<String> check(Map<String, Object> config) {
+        long startNanos = System.nanoTime();
+        List<String> errors = new ArrayList<>();
+        
+        String serverAddr = asString(config.get("serverAddr"));
+        if (serverAddr == null || serverAddr.isEmpty()) {
+            errors.add("serverAddr 未填写");
+        }
+        // serverPort可以省略，与frpc一样默认使用7000
+        Object rawServerPort = config.get("serverPort");
+        int serverPort = rawServerPort == null ? DEFAULT_SERVER_PORT : asPort(rawServerPort);
+        if (serverPort <= 0) {
+            errors.add("serverPort 不是1-65535之间的整数: " + rawServerPort);
+        }
+        
+        List<InetSocketAddress> localTargets = new ArrayList<>();
+        validateProxies(config.get("proxies"), errors, localTargets);
+        if (!errors.isEmpty()) {
+            return errors;
+        }
+        
+        long deadline = startNanos + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        // 系统的域名解析没有超时参数，放到后台线程进行，这里最多等到时限为止
+        CompletableFuture<InetAddress[]> resolution = CompletableFuture.supplyAsync(() -> resolve(serverAddr), resolver);
+        try (Selector selector = Selector.open()) {
+            try {
+                // 先发起本地端口的连接，再等待frps地址解析，两者互相重叠
+                Map<SelectionKey, InetSocketAddress> localProbes = new HashMap<>();
+                for (InetSocketAddress target : localTargets) {
+                    SelectionKey key = connect(selector, target);
+                    if (key != null) {
+                        localProbes.put(key, target);
+                    }
+                }
+            
+                Map<SelectionKey, InetSocketAddress> serverProbes = new HashMap<>();
+                boolean tcpTransport = TCP_TRANSPORTS.contains(transportProtocol(config));
+                InetAddress[] addresses;
+                try {
+                    addresses = resolution.get(Math.max(0L, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+                } catch (TimeoutException e) {
+                    errors.add("无法在 " + timeoutMillis + " ms 内解析frps地址 " + serverAddr);
+                    return errors;
+                } catch (ExecutionException e) {
+                    errors.add("无法解析frps地址 " + serverAddr + ": " + e.getCause().getMessage());
+                    return errors;
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    errors.add("启动前检查被中断");
+                    return errors;
+                }
+                if (tcpTransport) {
+                    for (InetAddress address : addresses) {
+                        SelectionKey key = connect(selector, new InetSocketAddress(address, serverPort));
+                        if (key != null) {
+                            serverProbes.put(key, new InetSocketAddress(address, serverPort));
+                        }
+                    }
+                }
+            
+                Set<SelectionKey> reachable = awaitConnections(selector, deadline);
+            
+                if (tcpTransport) {
+                    boolean anyReachable = serverProbes.keySet().stream().anyMatch(reachable::contains);
+                    if (!anyReachable) {
+                        errors.add("无法在 " + timeoutMillis + " ms 内连接到frps " + serverAddr + ":" + serverPort
+                                + " (已尝试 " + Arrays.toString(addresses) + ")");
+                    }
+                }
+                for (Map.Entry<SelectionKey, InetSocketAddress> probe : localProbes.entrySet()) {
+                    if (!reachable.contains(probe.getKey())) {
+                        logger.warning("本地端口 " + probe.getValue() + " 当前没有服务在监听，玩家暂时无法通过该代理连接");
+                    }
+                }
+            } finally {
+                // 包括提前返回在内，所有已注册的探测连接都要关闭
+                for (SelectionKey key : selector.keys()) {
+                    closeQuietly((SocketChannel) key.channel());
+                }
+            }
+        } catch (IOException e) {
+            logger.warning("执行连通性检查时出错: " + e.getMessage());
+        }
+        
+        logger.info("启动前检查完成，耗时 " + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos) + " ms");
+        return errors;
+    }
+    
+    /**
+     * 校验代理列表，并收集需要检查的本地端口
+     */
+    private void validateProxies(Object value, List<String> errors, List<InetSocketAddress> localTargets) {
+        // 只使用访问者([[visitors]])或通过includes引入代理的配置没有[[proxies]]，frpc可以正常启动
+        if (!(value instanceof List) || ((List<?>) value).isEmpty()) {
+            logger.warning("frpc.toml中没有配置任何 [[proxies]]，如果只使用 [[visitors]] 或 includes 可以忽略此提示");
+            return;
+        }
+        Set<String> names = new HashSet<>();
+        int index = 0;
+        for (Object element : (List<?>) value) {
+            String where = "第 " + (index + 1) + " 个代理";
+            index++;
+            if (!(element instanceof Map)) {
+                errors.add(where + " 格式不正确");
+                continue;
+            }
+            Map<?, ?> proxy = (Map<?, ?>) element;
+            
+            String name = asString(proxy.get("name"));
+            if (name == null || name.isEmpty()) {
+                errors.add(where + " 的 name 未填写");
+            } else if (!names.add(name)) {
+                errors.add(where + " 的 name 重复: " + name);
+            } else {
+                where = "代理 " + name;
+            }
+            
+            Object rawType = proxy.get("type");
+            String type = rawType == null ? "tcp" : asString(rawType);
+            if (type == null || !PROXY_TYPES.contains(type)) {
+                errors.add(where + " 的 type 不受支持: " + rawType);
+                continue;
+            }
+            
+            // 使用插件(plugin)的代理不需要本地端口
+            if (proxy.get("plugin") == null) {
+                int localPort = asPort(proxy.get("localPort"));
+                if (localPort <= 0) {
+                    errors.add(where + " 的 localPort 未填写或不正确: " + proxy.get("localPort"));
+                } else if ("tcp".equals(type) || "http".equals(type) || "https".equals(type)) {
+                    String localIP = asString(proxy.get("localIP"));
+                    localTargets.add(new InetSocketAddress(localIP == null || localIP.isEmpty() ? "127.0.0.1" : localIP, localPort));
+                }
+            }
+            
+            if (("tcp".equals(type) || "udp".equals(type)) && proxy.get("remotePort") != null
+                    && asPort(proxy.get("remotePort")) < 0) {
+                errors.add(where + " 的 remotePort 不是0-65535之间的整数: " + proxy.get("remotePort"));
+            }
+        }
+    }
+    
+    /**
+     * 发起非阻塞连接
+     * @return 选择键，连接无法发起时返回null
+     */
+    private SelectionKey connect(Selector selector, InetSocketAddress target) {
+        if (target.isUnresolved()) {
+            return null;
+        }
+        SocketChannel channel = null;
+        try {
+            channel = SocketChannel.open();
+            channel.configureBlocking(false);
+            channel.connect(target);
+            return channel.register(selector, SelectionKey.OP_CONNECT);
+        } catch (IOException e) {
+            if (channel != null) {
+                closeQuietly(channel);
+            }
+            return null;
+        }
+    }
+    
+    /**
+     * 在时限内等待连接完成
+     * @param deadline 截止时间(System.nanoTime)
+     * @return 成功建立连接的选择键
+     */
+    private Set<SelectionKey> awaitConnections(Selector selector, long deadline) throws IOException {
+        Set<SelectionKey> reachable = new HashSet<>();
+        int remaining = selector.keys().size();
+        while (remaining > 0) {
+            long waitMillis = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+            if (waitMillis <= 0) {
+                break;
+            }
+            selector.select(waitMillis);
+            for (SelectionKey key : selector.selectedKeys()) {
+                SocketChannel channel = (SocketChannel) key.channel();
+                try {
+                    if (channel.finishConnect()) {
+                        reachable.add(key);
+                    }
+                } catch (IOException e) {
+                    // 连接被拒绝或不可达
+                }
+                closeQuietly(channel);
+                remaining--;
+            }
+            selector.selectedKeys().clear();
+        }
+        return reachable;
+    }
+    
+    /**
+     * 解析域名的所有地址
+     * @throws CompletionException 包装无法解析时的UnknownHostException
+     */
+    private static InetAddress[] resolve(String host) {
+        try {
+            return InetAddress.getAllByName(host);
+        } catch (UnknownHostException e) {
+            throw new CompletionException(e);
+        }
+    }
+    
+    private static void closeQuietly(SocketChannel channel) {
+        try {
+            channel.close();
+        } catch (IOException ignored) {
+            // 探测连接，关闭失败无影响
+        }
+    }
+    
+    private static String transportProtocol(Map<String, Object> config) {
+        Object transport = config.get("transport");
+        if (transport instanceof Map) {
+            String protocol = asString(((Map<?, ?>) transport).get("protocol"));
+            if (protocol != null) {
+                return protocol;
+            }
+        }
+        return "tcp";
+    }
+    
+    private static String asString(Object value) {
+        return value instanceof String ? ((String) value).trim() : null;
+    }
+    
+    /**
+     * 把配置值解析为端口
+     * @return 端口，不合法时返回-1
+     */
+    private static int asPort(Object value) {
+        if (value instanceof Number) {
+            long port = ((Number) value).longValue();
+            if (port >= 0 && port <= 65535) {
+                return (int) port;
+            }
+        }
+        return -1;
+    }
+}
@@ -1,191 +1,251 @@
 package com.minecraft.frpplugin;
 
+import com.minecraft.frpplugin.metrics.MetricsRegistry;
+
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.util.Properties;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
  * ProcessManager - 管理进程的PID记录和检测
+ * 进程记录保存在崩溃安全的ProcessStateStore中
  */
 public class ProcessManager {
     
-    private final File pidFile;
+    /**
+     * 强制终止后等待进程退出的时间(毫秒)
+     */
+    private static final long FORCE_KILL_GRACE_MILLIS = 500L;
+    
     private final Logger logger;
-    private Properties pidProperties;
+    private final MetricsRegistry metrics;
+    private final ProcessStateStore stateStore;
     
     /**
      * 构造函数
      * @param dataFolder 插件数据文件夹
      * @param logger 日志记录器
+     * @param metrics 计时器注册表
      */
-    public ProcessManager(File dataFolder, Logger logger) {
-        this.pidFile = new File(dataFolder, "frpc_pid.properties");
+    public ProcessManager(File dataFolder, Logger logger, MetricsRegistry metrics) {
         this.logger = logger;
-        this.pidProperties = new Properties();
-        loadPidFile();
+        this.metrics = metrics;
+        this.stateStore = new ProcessStateStore(dataFolder, logger);
     }
     
     /**
-     * 加载PID文件
+     * 记录新启动的进程，同时保存进程指纹并累加重启次数
+     * @param processName 进程名称
+     * @param handle 进程句柄
+     * @param command 进程的可执行文件路径，通过taskset等工具启动时与刚启动时报告的路径不同
+     * @param configHash 进程使用的配置的哈希
+     * @param overrides 生成配置时使用的运行时覆盖值的编码
      */
-    private void loadPidFile() {
-        if (pidFile.exists()) {
-            try (FileInputStream fis = new FileInputStream(pidFile)) {
-                pidProperties.load(fis);
-                logger.info("已加载进程PID记录文件");
-            } catch (IOException e) {
-                logger.log(Level.WARNING, "加载进程PID记录文件时出错", e);
-                // 如果加载失败，创建新的Properties对象
-                pidProperties = new Properties();
-            }
+    public void recordProcessStart(String processName, ProcessHandle handle, String command, String configHash,
+                                   String overrides) {
+        ProcessRecord previous = stateStore.get(processName);
+        if (previous == null) {
+            previous = new ProcessRecord(processName, -1, 0, "", 0, 0, -1, "", "");
         }
+        stateStore.put(previous.started(handle, command, System.currentTimeMillis(), configHash, overrides));
+        logger.info("已记录进程 " + processName + " 的PID: " + handle.pid());
     }
     
     /**
-     * 保存PID文件
+     * 记录进程的退出码
+     * @param processName 进程名称
+     * @param exitCode 退出码
      */
-    private void savePidFile() {
-        try (FileOutputStream fos = new FileOutputStream(pidFile)) {
-            pidProperties.store(fos, "FrpPlugin进程PID记录");
-            logger.info("已保存进程PID记录文件");
-        } catch (IOException e) {
-            logger.log(Level.WARNING, "保存进程PID记录文件时出错", e);
+    public void recordExitCode(String processName, int exitCode) {
+        ProcessRecord record = stateStore.get(processName);
+        if (record != null) {
+            stateStore.put(record.exited(exitCode));
         }
     }
     
     /**
-     * 记录进程PID
+     * 记录运行中的进程热重载了配置
      * @param processName 进程名称
-     * @param pid 进程ID
+     * @param configHash 新配置的哈希
+     * @param overrides 新配置使用的运行时覆盖值的编码
      */
-    public void recordProcessPid(String processName, long pid) {
-        pidProperties.setProperty(processName, String.valueOf(pid));
-        savePidFile();
-        logger.info("已记录进程 " + processName + " 的PID: " + pid);
+    public void recordConfigReload(String processName, String configHash, String overrides) {
+        ProcessRecord record = stateStore.get(processName);
+        if (record != null && record.getPid() > 0) {
+            stateStore.put(record.withConfigHash(configHash, overrides));
+        }
     }
     
     /**
-     * 清除进程PID记录
+     * 清除进程PID记录，重启次数和退出码保留
      * @param processName 进程名称
      */
     public void clearProcessPid(String processName) {
-        if (pidProperties.containsKey(processName)) {
-            pidProperties.remove(processName);
-            savePidFile();
+        ProcessRecord record = stateStore.get(processName);
+        if (record != null && record.getPid() > 0) {
+            stateStore.put(record.cleared());
             logger.info("已清除进程 " + processName + " 的PID记录");
         }
     }
     
+    /**
+     * 获取进程的持久化记录
+     * @param processName 进程名称
+     * @return 记录，不存在时返回null
+     */
+    public ProcessRecord getRecord(String processName) {
+        return stateStore.get(processName);
+    }
+    
     /**
      * 检查进程是否存在
+     * 除PID外还会比对进程启动时间和可执行文件，PID被其他进程复用时视为不存在
      * @param processName 进程名称
      * @return 如果进程存在返回PID，否则返回-1
      */
     public long checkProcess(String processName) {
-        if (!pidProperties.containsKey(processName)) {
-            return -1;
-        }
-        
-        long pid;
+        long startNanos = System.nanoTime();
         try {
-            pid = Long.parseLong(pidProperties.getProperty(processName));
-        } catch (NumberFormatException e) {
-            logger.warning("无效的PID记录: " + pidProperties.getProperty(processName));
-            return -1;
-        }
-        
-        // 检查进程是否存在
-        boolean exists = isProcessRunning(processName, pid);
-        if (exists) {
-            logger.info("检测到进程 " + processName + " (PID: " + pid + ") 仍在运行");
-            return pid;
-        } else {
-            // 如果进程不存在，清除记录
-            clearProcessPid(processName);
-            return -1;
+            ProcessRecord record = stateStore.get(processName);
+            if (record == null || record.getPid() <= 0) {
+                return -1;
+            }
+            
+            long pid = record.getPid();
+            boolean exists = ProcessHandle.of(pid).map(record::matches).orElse(false);
+            if (exists) {
+                logger.info("检测到进程 " + processName + " (PID: " + pid + ") 仍在运行");
+                return pid;
+            } else {
+                // 如果进程不存在，清除记录
+                clearProcessPid(processName);
+                return -1;
+            }
+        } finally {
+            metrics.record("ProcessManager.checkProcess", startNanos);
         }
     }
     
     /**
-     * 检查指定PID的进程是否正在运行
+     * 等待状态写入完成并关闭状态文件
+     */
+    public void close() {
+        stateStore.close();
+    }
+    
+    /**
+     * 终止指定PID的进程
      * @param processName 进程名称
      * @param pid 进程ID
-     * @return 如果进程正在运行返回true
+     * @return 是否成功终止
      */
-    private boolean isProcessRunning(String processName, long pid) {
-        boolean isRunning = false;
-        String osName = System.getProperty("os.name").toLowerCase();
-        
+    public boolean killProcess(String processName, long pid) {
+        long startNanos = System.nanoTime();
         try {
-            if (osName.contains("win")) {
-                // Windows系统使用tasklist命令
-                ProcessBuilder pb = new ProcessBuilder("tasklist", "/FI", "PID eq " + pid, "/FO", "CSV", "/NH");
-                Process process = pb.start();
-                
-                java.io.BufferedReader reader = new java.io.BufferedReader(
-                        new java.io.InputStreamReader(process.getInputStream()));
-                String line;
-                while ((line = reader.readLine()) != null) {
-                    // 检查输出中是否包含进程名和PID
-                    if (line.toLowerCase().contains(processName.toLowerCase()) && line.contains(String.valueOf(pid))) {
-                        isRunning = true;
-                        break;
-                    }
+            boolean success = false;
+            String osName = System.getProperty("os.name").toLowerCase();
+            
+            try {
+                if (osName.contains("win")) {
+                    // Windows系统使用taskkill命令
+                    ProcessBuilder pb = new ProcessBuilder("taskkill", "/F", "/PID", String.valueOf(pid));
+                    Process process = pb.start();
+                    success = (process.waitFor() == 0);
+                } else {
+                    // Linux/Mac系统使用kill命令
+                    ProcessBuilder pb = new ProcessBuilder("kill", "-9", String.valueOf(pid));
+                    Process process = pb.start();
+                    success = (process.waitFor() == 0);
                 }
                 
-                process.waitFor();
-            } else {
-                // Linux/Mac系统使用ps命令
-                ProcessBuilder pb = new ProcessBuilder("ps", "-p", String.valueOf(pid));
-                Process process = pb.start();
-                
-                int exitCode = process.waitFor();
-                isRunning = (exitCode == 0); // 如果进程存在，exitCode为0
+                if (success) {
+                    logger.info("已终止进程 " + processName + " (PID: " + pid + ")");
+                    clearProcessPid(processName);
+                } else {
+                    logger.warning("无法终止进程 " + processName + " (PID: " + pid + ")");
+                }
+            } catch (IOException | InterruptedException e) {
+                logger.log(Level.WARNING, "终止进程时出错", e);
             }
-        } catch (IOException | InterruptedException e) {
-            logger.log(Level.WARNING, "检查进程状态时出错", e);
+            
+            return success;
+        } finally {
+            metrics.record("ProcessManager.killProcess", startNanos);
         }
-        
-        return isRunning;
     }
     
     /**
-     * 终止指定PID的进程
-     * @param processName 进程名称
-     * @param pid 进程ID
-     * @return 是否成功终止
+     * 终止进程及其所有子进程
+     * 先向整个进程树发送正常终止信号，在总时限内等待全部退出，超时后仅强制终止仍存活的进程
+     * @param root 根进程
+     * @param timeoutMillis 等待正常退出的总时限(毫秒)
+     * @return 进程树是否已全部退出
      */
-    public boolean killProcess(String processName, long pid) {
-        boolean success = false;
-        String osName = System.getProperty("os.name").toLowerCase();
-        
+    public boolean terminateProcessTree(ProcessHandle root, long timeoutMillis) {
+        long startNanos = System.nanoTime();
         try {
-            if (osName.contains("win")) {
-                // Windows系统使用taskkill命令
-                ProcessBuilder pb = new ProcessBuilder("taskkill", "/F", "/PID", String.valueOf(pid));
-                Process process = pb.start();
-                success = (process.waitFor() == 0);
-            } else {
-                // Linux/Mac系统使用kill命令
-                ProcessBuilder pb = new ProcessBuilder("kill", "-9", String.valueOf(pid));
-                Process process = pb.start();
-                success = (process.waitFor() == 0);
+            // 子进程必须在根进程退出前收集，否则它们会被重新挂到其他父进程下而无法追踪
+            List<ProcessHandle> tree = new ArrayList<>();
+            root.descendants().forEach(tree::add);
+            tree.add(root);
+            
+            List<CompletableFuture<ProcessHandle>> exits = new ArrayList<>();
+            for (ProcessHandle handle : tree) {
+                if (handle.isAlive()) {
+                    handle.destroy();
+                }
+                exits.add(handle.onExit());
             }
             
-            if (success) {
-                logger.info("已终止进程 " + processName + " (PID: " + pid + ")");
-                clearProcessPid(processName);
-            } else {
-                logger.warning("无法终止进程 " + processName + " (PID: " + pid + ")");
+            boolean exited = awaitExit(exits, startNanos + TimeUnit.MILLISECONDS.toNanos(timeoutMillis));
+            long gracefulMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+            
+            if (!exited) {
+                int forced = 0;
+                for (ProcessHandle handle : tree) {
+                    if (handle.isAlive() && handle.destroyForcibly()) {
+                        forced++;
+                    }
+                }
+                logger.info("有 " + forced + " 个进程未在 " + timeoutMillis + " ms 内退出，已强制终止");
+                exited = awaitExit(exits, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(FORCE_KILL_GRACE_MILLIS));
             }
-        } catch (IOException | InterruptedException e) {
-            logger.log(Level.WARNING, "终止进程时出错", e);
+            
+            long totalMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+            logger.info("终止进程树(PID: " + root.pid() + "，共 " + tree.size() + " 个进程)耗时 "
+                    + totalMillis + " ms，其中正常退出等待 " + gracefulMillis + " ms");
+            return exited;
+        } finally {
+            metrics.record("ProcessManager.terminateProcessTree", startNanos);
+        }
+    }
+    
+    /**
+     * 在截止时间前等待所有进程退出
+     * @param exits 进程退出的Future
+     * @param deadlineNanos 截止时间(System.nanoTime)
+     * @return 是否全部退出
+     */
+    private boolean awaitExit(List<CompletableFuture<ProcessHandle>> exits, long deadlineNanos) {
+        try {
+            CompletableFuture.allOf(exits.toArray(new CompletableFuture[0]))
+                    .get(Math.max(0L, deadlineNanos - System.nanoTime()), TimeUnit.NANOSECONDS);
+            return true;
+        } catch (TimeoutException e) {
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (ExecutionException e) {
+            logger.log(Level.WARNING, "等待进程退出时出错", e);
+            return false;
         }
-        
-        return success;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,179 @@
+package com.minecraft.frpplugin;
+
+/**
+ * ProcessRecord - 一个受管进程实例的持久化状态
+ * 不可变对象，每次状态变化都生成新的记录
+ */
+public final class ProcessRecord {
+    
+    private final String name;
+    private final long pid;
+    private final long processStartMillis;
+    private final String command;
+    private final long startedAtMillis;
+    private final int restartCount;
+    private final int lastExitCode;
+    private final String configHash;
+    private final String overrides;
+    
+    /**
+     * 构造函数
+     * @param name 实例名称
+     * @param pid 进程ID，没有运行中的进程时为-1
+     * @param processStartMillis 操作系统记录的进程启动时间，与PID一起作为进程指纹，未知时为0
+     * @param command 进程的可执行文件路径，作为进程指纹的一部分，未知时为空字符串
+     * @param startedAtMillis 插件启动该进程的时间
+     * @param restartCount 累计重启次数
+     * @param lastExitCode 上一次退出的退出码，未知时为-1
+     * @param configHash 启动进程时实际使用的配置的哈希，未知时为空字符串
+     * @param overrides 生成配置时使用的运行时覆盖值(连接池大小、带宽上限等)的编码，没有时为空字符串
+     */
+    public ProcessRecord(String name, long pid, long processStartMillis, String command,
+                         long startedAtMillis, int restartCount, int lastExitCode, String configHash,
+                         String overrides) {
+        this.name = name;
+        this.pid = pid;
+        this.processStartMillis = processStartMillis;
+        this.command = command == null ? "" : command;
+        this.startedAtMillis = startedAtMillis;
+        this.restartCount = restartCount;
+        this.lastExitCode = lastExitCode;
+        this.configHash = configHash == null ? "" : configHash;
+        this.overrides = overrides == null ? "" : overrides;
+    }
+    
+    /**
+     * 生成进程重新启动后的记录
+     * @param handle 新进程
+     * @param command 进程的可执行文件路径
+     * @param nowMillis 当前时间
+     * @param configHash 启动时使用的配置的哈希
+     * @param overrides 生成配置时使用的运行时覆盖值的编码
+     * @return 新记录
+     */
+    public ProcessRecord started(ProcessHandle handle, String command, long nowMillis, String configHash,
+                                 String overrides) {
+        long processStart = handle.info().startInstant().map(instant -> instant.toEpochMilli()).orElse(0L);
+        return new ProcessRecord(name, handle.pid(), processStart, command,
+                nowMillis, startedAtMillis > 0 ? restartCount + 1 : restartCount, lastExitCode, configHash,
+                overrides);
+    }
+    
+    /**
+     * 生成进程退出后的记录
+     * @param exitCode 退出码
+     * @return 新记录
+     */
+    public ProcessRecord exited(int exitCode) {
+        return new ProcessRecord(name, pid, processStartMillis, command, startedAtMillis, restartCount, exitCode,
+                configHash, overrides);
+    }
+    
+    /**
+     * 生成清除PID后的记录，其余统计保留
+     * @return 新记录
+     */
+    public ProcessRecord cleared() {
+        return new ProcessRecord(name, -1, 0, "", startedAtMillis, restartCount, lastExitCode, "", "");
+    }
+    
+    /**
+     * 生成配置被热重载后的记录
+     * @param configHash 新配置的哈希
+     * @param overrides 新配置使用的运行时覆盖值的编码
+     * @return 新记录
+     */
+    public ProcessRecord withConfigHash(String configHash, String overrides) {
+        return new ProcessRecord(name, pid, processStartMillis, command, startedAtMillis, restartCount, lastExitCode,
+                configHash, overrides);
+    }
+    
+    /**
+     * 判断进程是否仍是记录中的那个进程，防止PID被其他进程复用后误判
+     * @param handle 当前持有该PID的进程
+     * @return 指纹是否一致
+     */
+    public boolean matches(ProcessHandle handle) {
+        if (pid <= 0 || handle.pid() != pid || !handle.isAlive()) {
+            return false;
+        }
+        ProcessHandle.Info info = handle.info();
+        if (processStartMillis > 0 && info.startInstant().isPresent()
+                && info.startInstant().get().toEpochMilli() != processStartMillis) {
+            return false;
+        }
+        return command.isEmpty() || !info.command().isPresent() || info.command().get().equals(command);
+    }
+    
+    /**
+     * 获取实例名称
+     * @return 实例名称
+     */
+    public String getName() {
+        return name;
+    }
+    
+    /**
+     * 获取进程ID
+     * @return 进程ID，没有运行中的进程时为-1
+     */
+    public long getPid() {
+        return pid;
+    }
+    
+    /**
+     * 获取操作系统记录的进程启动时间
+     * @return 启动时间(毫秒)，未知时为0
+     */
+    public long getProcessStartMillis() {
+        return processStartMillis;
+    }
+    
+    /**
+     * 获取进程的可执行文件路径
+     * @return 可执行文件路径，未知时为空字符串
+     */
+    public String getCommand() {
+        return command;
+    }
+    
+    /**
+     * 获取插件最近一次启动该进程的时间
+     * @return 启动时间(毫秒)，从未启动时为0
+     */
+    public long getStartedAtMillis() {
+        return startedAtMillis;
+    }
+    
+    /**
+     * 获取累计重启次数
+     * @return 重启次数
+     */
+    public int getRestartCount() {
+        return restartCount;
+    }
+    
+    /**
+     * 获取上一次退出的退出码
+     * @return 退出码，未知时为-1
+     */
+    public int getLastExitCode() {
+        return lastExitCode;
+    }
+    
+    /**
+     * 获取启动进程时实际使用的配置的哈希
+     * @return 配置哈希，未知时为空字符串
+     */
+    public String getConfigHash() {
+        return configHash;
+    }
+    
+    /**
+     * 获取生成配置时使用的运行时覆盖值，重新启用插件时据此还原，才能算出与记录一致的配置哈希
+     * @return 覆盖值的编码，没有时为空字符串
+     */
+    public String getOverrides() {
+        return overrides;
+    }
+}
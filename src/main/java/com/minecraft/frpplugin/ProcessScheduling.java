@@ -0,0 +1,170 @@
+package com.minecraft.frpplugin;
+
+import org.bukkit.configuration.ConfigurationSection;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.logging.Logger;
+import java.util.regex.Pattern;
+
+/**
+ * ProcessScheduling - 控制frpc的CPU亲和性、nice值、I/O优先级和cgroup，避免与服务器主线程争抢CPU
+ * CPU亲和性、nice和ionice通过taskset/nice/ionice依次exec到frpc实现，不会留下额外的进程；
+ * cgroup在frpc启动后直接写入cgroup.procs。只在Linux上生效，其他系统上不做任何处理
+ */
+public class ProcessScheduling {
+    
+    private static final Pattern CPU_LIST_PATTERN = Pattern.compile("\\d+(-\\d+)?(,\\d+(-\\d+)?)*");
+    private static final String CGROUP_ROOT = "/sys/fs/cgroup";
+    
+    private final Logger logger;
+    private final String cpus;
+    private final int nice;
+    private final String ioniceClass;
+    private final int ioniceLevel;
+    private final String cgroup;
+    private final boolean linux = System.getProperty("os.name").toLowerCase().contains("linux");
+    private final List<String> applied = new ArrayList<>();
+    
+    /**
+     * 构造函数
+     * @param section 配置中的scheduling部分，不存在时为null
+     * @param logger 日志记录器
+     */
+    public ProcessScheduling(ConfigurationSection section, Logger logger) {
+        this.logger = logger;
+        this.cpus = section == null ? "" : section.getString("cpus", "").trim();
+        this.nice = section == null ? 0 : section.getInt("nice", 0);
+        this.ioniceClass = section == null ? "" : section.getString("ionice", "").trim().toLowerCase();
+        this.ioniceLevel = section == null ? 7 : section.getInt("ionice_level", 7);
+        this.cgroup = section == null ? "" : section.getString("cgroup", "").trim();
+    }
+    
+    /**
+     * 是否配置了任何调度选项
+     * @return 是否配置
+     */
+    public boolean isConfigured() {
+        return !cpus.isEmpty() || nice != 0 || !ioniceClass.isEmpty() || !cgroup.isEmpty();
+    }
+    
+    /**
+     * 获取frpc被限制在的CPU数量
+     * @return CPU数量，未限制或不在Linux上时为0
+     */
+    public int getPinnedCpuCount() {
+        if (!linux || !CPU_LIST_PATTERN.matcher(cpus).matches()) {
+            return 0;
+        }
+        int count = 0;
+        for (String range : cpus.split(",")) {
+            int dash = range.indexOf('-');
+            count += dash < 0 ? 1
+                    : Math.max(0, Integer.parseInt(range.substring(dash + 1)) - Integer.parseInt(range.substring(0, dash)) + 1);
+        }
+        return count;
+    }
+    
+    /**
+     * 在frpc命令前加上调度工具
+     * @param command frpc命令
+     * @return 实际执行的命令
+     */
+    public List<String> wrap(List<String> command) {
+        applied.clear();
+        if (!isConfigured()) {
+            return command;
+        }
+        if (!linux) {
+            logger.info("frpc调度设置仅在Linux上生效，已忽略");
+            return command;
+        }
+        
+        List<String> wrapped = new ArrayList<>();
+        if (!cpus.isEmpty()) {
+            if (!CPU_LIST_PATTERN.matcher(cpus).matches()) {
+                logger.warning("scheduling.cpus格式不正确(例如 2-3 或 1,3): " + cpus);
+            } else if (findExecutable("taskset") == null) {
+                logger.warning("找不到taskset命令，无法设置frpc的CPU亲和性");
+            } else {
+                Collections.addAll(wrapped, "taskset", "-c", cpus);
+                applied.add("CPU " + cpus);
+            }
+        }
+        if (nice != 0) {
+            if (findExecutable("nice") == null) {
+                logger.warning("找不到nice命令，无法设置frpc的nice值");
+            } else {
+                Collections.addAll(wrapped, "nice", "-n", String.valueOf(nice));
+                applied.add("nice " + nice);
+            }
+        }
+        if (!ioniceClass.isEmpty()) {
+            String classId = ioniceClass.equals("idle") ? "3" : ioniceClass.equals("best-effort") ? "2" : null;
+            if (classId == null) {
+                logger.warning("scheduling.ionice只能是idle或best-effort: " + ioniceClass);
+            } else if (findExecutable("ionice") == null) {
+                logger.warning("找不到ionice命令，无法设置frpc的I/O优先级");
+            } else {
+                Collections.addAll(wrapped, "ionice", "-c", classId);
+                if (classId.equals("2")) {
+                    Collections.addAll(wrapped, "-n", String.valueOf(Math.max(0, Math.min(7, ioniceLevel))));
+                    applied.add("ionice best-effort " + Math.max(0, Math.min(7, ioniceLevel)));
+                } else {
+                    applied.add("ionice idle");
+                }
+            }
+        }
+        wrapped.addAll(command);
+        return wrapped;
+    }
+    
+    /**
+     * frpc启动后将其移入配置的cgroup
+     * @param handle frpc进程
+     */
+    public void applyAfterStart(ProcessHandle handle) {
+        if (!linux || cgroup.isEmpty()) {
+            return;
+        }
+        File directory = cgroup.startsWith("/") ? new File(cgroup) : new File(CGROUP_ROOT, cgroup);
+        File procs = new File(directory, "cgroup.procs");
+        try {
+            Files.write(procs.toPath(), String.valueOf(handle.pid()).getBytes(StandardCharsets.US_ASCII));
+            applied.add("cgroup " + directory.getPath());
+        } catch (IOException e) {
+            logger.warning("无法将frpc移入cgroup " + directory.getPath() + ": " + e.getMessage());
+        }
+    }
+    
+    /**
+     * 获取实际生效的设置
+     * @return 例如"CPU 2-3, nice 10"，没有生效的设置时返回空字符串
+     */
+    public String describe() {
+        return String.join(", ", applied);
+    }
+    
+    /**
+     * 在PATH中查找可执行文件，不创建子进程
+     * @return 可执行文件，找不到时返回null
+     */
+    private static File findExecutable(String name) {
+        String path = System.getenv("PATH");
+        if (path == null) {
+            return null;
+        }
+        for (String directory : path.split(File.pathSeparator)) {
+            File candidate = new File(directory, name);
+            if (candidate.isFile() && candidate.canExecute()) {
+                return candidate;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,323 @@
+package com.minecraft.frpplugin;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+/**
+ * ProcessStateStore - 崩溃安全的进程状态存储
+ * 每次变化只向日志文件追加一行带CRC校验的记录并fsync，加载时丢弃写到一半的记录；
+ * 记录数超过阈值时写入临时文件后原子替换，完成压缩。文件写入在独立线程中进行，不阻塞调用者
+ */
+public class ProcessStateStore {
+    
+    /**
+     * 追加多少条记录后压缩一次
+     */
+    private static final int COMPACT_THRESHOLD = 256;
+    private static final String JOURNAL_NAME = "frpc_state.journal";
+    private static final String LEGACY_PID_FILE = "frpc_pid.properties";
+    
+    private final File journalFile;
+    private final File legacyFile;
+    private final Logger logger;
+    private final Map<String, ProcessRecord> records = new ConcurrentHashMap<>();
+    private final ExecutorService writer;
+    private FileChannel channel;
+    private int appendedSinceCompact;
+    
+    /**
+     * 构造函数，同步加载已有的记录
+     * @param dataFolder 插件数据文件夹
+     * @param logger 日志记录器
+     */
+    public ProcessStateStore(File dataFolder, Logger logger) {
+        this.journalFile = new File(dataFolder, JOURNAL_NAME);
+        this.legacyFile = new File(dataFolder, LEGACY_PID_FILE);
+        this.logger = logger;
+        this.writer = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "FrpPlugin-StateStore");
+            thread.setDaemon(true);
+            return thread;
+        });
+        load();
+    }
+    
+    /**
+     * 获取实例的记录
+     * @param name 实例名称
+     * @return 记录，不存在时返回null
+     */
+    public ProcessRecord get(String name) {
+        return records.get(name);
+    }
+    
+    /**
+     * 获取所有记录
+     * @return 不可修改的记录集合
+     */
+    public Collection<ProcessRecord> getAll() {
+        return Collections.unmodifiableCollection(records.values());
+    }
+    
+    /**
+     * 更新实例的记录，内存状态立即生效，文件在后台写入
+     * @param record 新记录
+     */
+    public void put(ProcessRecord record) {
+        records.put(record.getName(), record);
+        String line = encode(record);
+        submit(() -> append(line));
+    }
+    
+    /**
+     * 等待已提交的写入完成并关闭文件
+     */
+    public void close() {
+        writer.shutdown();
+        try {
+            if (!writer.awaitTermination(2, TimeUnit.SECONDS)) {
+                logger.warning("进程状态写入未在2秒内完成");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (this) {
+            closeChannel();
+        }
+    }
+    
+    /**
+     * 提交写入任务，写入线程已关闭(例如JVM关闭钩子中)时直接在当前线程写入
+     */
+    private void submit(Runnable task) {
+        try {
+            writer.execute(task);
+        } catch (RejectedExecutionException e) {
+            task.run();
+        }
+    }
+    
+    /**
+     * 加载日志文件，然后压缩一次，保证文件以完整的记录结尾
+     */
+    private void load() {
+        int discarded = 0;
+        if (journalFile.exists()) {
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                    new FileInputStream(journalFile), StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    ProcessRecord record = decode(line);
+                    if (record == null) {
+                        discarded++;
+                    } else {
+                        records.put(record.getName(), record);
+                    }
+                }
+            } catch (IOException e) {
+                logger.log(Level.WARNING, "读取进程状态文件时出错", e);
+            }
+        }
+        if (discarded > 0) {
+            logger.warning("进程状态文件中有 " + discarded + " 条损坏的记录已被丢弃");
+        }
+        
+        boolean migrated = migrateLegacyFile();
+        synchronized (this) {
+            compact();
+        }
+        if (migrated && !legacyFile.delete()) {
+            logger.warning("无法删除旧的PID记录文件 " + legacyFile.getName());
+        }
+    }
+    
+    /**
+     * 导入旧版本的frpc_pid.properties
+     * @return 是否导入了旧文件
+     */
+    private boolean migrateLegacyFile() {
+        if (!legacyFile.exists()) {
+            return false;
+        }
+        Properties properties = new Properties();
+        try (FileInputStream input = new FileInputStream(legacyFile)) {
+            properties.load(input);
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "读取旧的PID记录文件时出错", e);
+            return true;
+        }
+        for (String name : properties.stringPropertyNames()) {
+            if (records.containsKey(name)) {
+                continue;
+            }
+            try {
+                long pid = Long.parseLong(properties.getProperty(name).trim());
+                records.put(name, new ProcessRecord(name, pid, 0, "", 0, 0, -1, "", ""));
+            } catch (NumberFormatException e) {
+                logger.warning("忽略无效的PID记录: " + name + "=" + properties.getProperty(name));
+            }
+        }
+        logger.info("已将旧的PID记录文件迁移到 " + JOURNAL_NAME);
+        return true;
+    }
+    
+    /**
+     * 追加一条记录，超过阈值时压缩
+     */
+    private synchronized void append(String line) {
+        if (appendedSinceCompact >= COMPACT_THRESHOLD) {
+            compact();
+            return;
+        }
+        try {
+            if (channel == null) {
+                channel = FileChannel.open(journalFile.toPath(), StandardOpenOption.CREATE,
+                        StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+            }
+            ByteBuffer buffer = ByteBuffer.wrap(line.getBytes(StandardCharsets.UTF_8));
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(false);
+            appendedSinceCompact++;
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "写入进程状态文件时出错", e);
+            closeChannel();
+        }
+    }
+    
+    /**
+     * 将当前所有记录写入临时文件，fsync后原子替换日志文件
+     * 内存中的记录总是最新的，因此压缩结果已经包含触发压缩的那条记录
+     */
+    private void compact() {
+        closeChannel();
+        File temp = new File(journalFile.getPath() + ".tmp");
+        StringBuilder content = new StringBuilder();
+        for (ProcessRecord record : new HashMap<>(records).values()) {
+            content.append(encode(record));
+        }
+        try {
+            File parent = journalFile.getParentFile();
+            if (parent != null && !parent.exists()) {
+                parent.mkdirs();
+            }
+            try (FileChannel out = FileChannel.open(temp.toPath(), StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                ByteBuffer buffer = ByteBuffer.wrap(content.toString().getBytes(StandardCharsets.UTF_8));
+                while (buffer.hasRemaining()) {
+                    out.write(buffer);
+                }
+                out.force(true);
+            }
+            try {
+                Files.move(temp.toPath(), journalFile.toPath(), StandardCopyOption.ATOMIC_MOVE,
+                        StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp.toPath(), journalFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+            appendedSinceCompact = 0;
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "压缩进程状态文件时出错", e);
+        }
+    }
+    
+    private void closeChannel() {
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException ignored) {
+                // 文件已经fsync，关闭失败不影响数据
+            }
+            channel = null;
+        }
+    }
+    
+    /**
+     * 将记录编码为一行：CRC32校验值后跟制表符分隔的键值对
+     */
+    private static String encode(ProcessRecord record) {
+        String body = "name=" + sanitize(record.getName())
+                + "\tpid=" + record.getPid()
+                + "\tprocessStart=" + record.getProcessStartMillis()
+                + "\tcommand=" + sanitize(record.getCommand())
+                + "\tstartedAt=" + record.getStartedAtMillis()
+                + "\trestarts=" + record.getRestartCount()
+                + "\texitCode=" + record.getLastExitCode()
+                + "\tconfigHash=" + sanitize(record.getConfigHash())
+                + "\toverrides=" + sanitize(record.getOverrides());
+        return Long.toHexString(checksum(body)) + "\t" + body + "\n";
+    }
+    
+    /**
+     * 解码一行记录
+     * @return 记录，校验失败或格式不正确时返回null
+     */
+    private static ProcessRecord decode(String line) {
+        int separator = line.indexOf('\t');
+        if (separator <= 0) {
+            return null;
+        }
+        String body = line.substring(separator + 1);
+        try {
+            if (Long.parseLong(line.substring(0, separator), 16) != checksum(body)) {
+                return null;
+            }
+            Map<String, String> fields = new HashMap<>();
+            for (String field : body.split("\t")) {
+                int equals = field.indexOf('=');
+                if (equals > 0) {
+                    fields.put(field.substring(0, equals), field.substring(equals + 1));
+                }
+            }
+            String name = fields.get("name");
+            if (name == null || name.isEmpty()) {
+                return null;
+            }
+            return new ProcessRecord(name,
+                    Long.parseLong(fields.getOrDefault("pid", "-1")),
+                    Long.parseLong(fields.getOrDefault("processStart", "0")),
+                    fields.getOrDefault("command", ""),
+                    Long.parseLong(fields.getOrDefault("startedAt", "0")),
+                    Integer.parseInt(fields.getOrDefault("restarts", "0")),
+                    Integer.parseInt(fields.getOrDefault("exitCode", "-1")),
+                    fields.getOrDefault("configHash", ""),
+                    fields.getOrDefault("overrides", ""));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+    
+    private static long checksum(String body) {
+        CRC32 crc = new CRC32();
+        crc.update(body.getBytes(StandardCharsets.UTF_8));
+        return crc.getValue();
+    }
+    
+    private static String sanitize(String value) {
+        return value.replace('\t', ' ').replace('\n', ' ').replace('\r', ' ');
+    }
+}
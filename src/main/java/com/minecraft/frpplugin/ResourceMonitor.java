@@ -0,0 +1,308 @@
+package com.minecraft.frpplugin;
+
+import com.minecraft.frpplugin.metrics.LongRingBuffer;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * ResourceMonitor - 定期采样frpc进程的CPU、内存、线程数和文件描述符数
+ * Linux上直接读取/proc/&lt;pid&gt;下的文件，不创建子进程；其他系统只能通过ProcessHandle.Info获取CPU时间
+ * 最近的采样保存在基本类型的环形缓冲区中，连续多次超过阈值时告警，并可选择重启frpc
+ */
+public class ResourceMonitor {
+    
+    /**
+     * 环形缓冲区保存的采样数
+     */
+    private static final int HISTORY_SIZE = 60;
+    private static final long DEFAULT_CLOCK_TICKS = 100L;
+    private static final long AT_CLKTCK = 17L;
+    
+    private final FrpManager frpManager;
+    private final Logger logger;
+    private final Thresholds thresholds;
+    private final boolean restartOnAlert;
+    private final long restartCooldownMillis;
+    private final boolean procfs = new File("/proc/self/stat").canRead();
+    private final long clockTicks = procfs ? readClockTicks() : DEFAULT_CLOCK_TICKS;
+    private final ScheduledExecutorService scheduler;
+    
+    private final LongRingBuffer cpuPermille = new LongRingBuffer(HISTORY_SIZE);
+    private final LongRingBuffer rssBytes = new LongRingBuffer(HISTORY_SIZE);
+    private final LongRingBuffer threads = new LongRingBuffer(HISTORY_SIZE);
+    private final LongRingBuffer fds = new LongRingBuffer(HISTORY_SIZE);
+    
+    private long sampledPid = -1;
+    private long lastCpuNanos = -1;
+    private long lastSampleNanos;
+    private boolean alerting;
+    private long lastRestartMillis;
+    
+    /**
+     * 构造函数
+     * @param frpManager frp管理器
+     * @param logger 日志记录器
+     * @param thresholds 告警阈值
+     * @param restartOnAlert 告警时是否重启frpc
+     * @param restartCooldownMillis 两次自动重启之间的最短间隔(毫秒)
+     */
+    public ResourceMonitor(FrpManager frpManager, Logger logger, Thresholds thresholds,
+                           boolean restartOnAlert, long restartCooldownMillis) {
+        this.frpManager = frpManager;
+        this.logger = logger;
+        this.thresholds = thresholds;
+        this.restartOnAlert = restartOnAlert;
+        this.restartCooldownMillis = restartCooldownMillis;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "FrpPlugin-ResourceMonitor");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+    
+    /**
+     * 开始定期采样
+     * @param intervalMillis 采样间隔(毫秒)
+     */
+    public void start(long intervalMillis) {
+        scheduler.scheduleWithFixedDelay(this::sample, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+    
+    /**
+     * 停止采样
+     */
+    public void stop() {
+        scheduler.shutdownNow();
+    }
+    
+    /**
+     * 获取最近一次采样的CPU占用
+     * @return 占用率(千分比，1000表示占满一个核心)，不可用时为-1
+     */
+    public long getCpuPermille() {
+        return cpuPermille.latest(-1L);
+    }
+    
+    /**
+     * 获取最近一次采样的常驻内存
+     * @return 字节数，不可用时为-1
+     */
+    public long getRssBytes() {
+        return rssBytes.latest(-1L);
+    }
+    
+    /**
+     * 获取最近一次采样的线程数
+     * @return 线程数，不可用时为-1
+     */
+    public long getThreads() {
+        return threads.latest(-1L);
+    }
+    
+    /**
+     * 获取最近一次采样的文件描述符数
+     * @return 文件描述符数，不可用时为-1
+     */
+    public long getFileDescriptors() {
+        return fds.latest(-1L);
+    }
+    
+    /**
+     * 获取采样窗口内的最大常驻内存
+     * @return 字节数，不可用时为-1
+     */
+    public long getPeakRssBytes() {
+        return rssBytes.max(-1L);
+    }
+    
+    /**
+     * 采样一次并检查阈值
+     */
+    private void sample() {
+        ProcessHandle handle = frpManager.getProcessHandle();
+        if (handle == null || !handle.isAlive()) {
+            reset(-1);
+            return;
+        }
+        if (handle.pid() != sampledPid) {
+            reset(handle.pid());
+        }
+        
+        long nowNanos = System.nanoTime();
+        long cpuNanos;
+        long rss = -1;
+        long threadCount = -1;
+        long fdCount = -1;
+        if (procfs) {
+            String pidDir = "/proc/" + handle.pid();
+            try {
+                cpuNanos = readCpuNanos(pidDir + "/stat");
+                for (String line : Files.readAllLines(new File(pidDir, "status").toPath(), StandardCharsets.US_ASCII)) {
+                    if (line.startsWith("VmRSS:")) {
+                        rss = parseLeadingLong(line.substring(6)) * 1024L;
+                    } else if (line.startsWith("Threads:")) {
+                        threadCount = parseLeadingLong(line.substring(8));
+                    }
+                }
+                String[] entries = new File(pidDir, "fd").list();
+                fdCount = entries == null ? -1 : entries.length;
+            } catch (IOException | RuntimeException e) {
+                // 进程恰好退出，下一次采样会重置
+                return;
+            }
+        } else {
+            cpuNanos = handle.info().totalCpuDuration().map(Duration::toNanos).orElse(-1L);
+        }
+        
+        if (cpuNanos >= 0 && lastCpuNanos >= 0 && nowNanos > lastSampleNanos) {
+            cpuPermille.add((cpuNanos - lastCpuNanos) * 1000L / (nowNanos - lastSampleNanos));
+        }
+        lastCpuNanos = cpuNanos;
+        lastSampleNanos = nowNanos;
+        if (rss >= 0) {
+            rssBytes.add(rss);
+        }
+        if (threadCount >= 0) {
+            threads.add(threadCount);
+        }
+        if (fdCount >= 0) {
+            fds.add(fdCount);
+        }
+        checkThresholds();
+    }
+    
+    /**
+     * 任一指标连续超过阈值时告警，所有指标恢复后才会再次告警
+     */
+    private void checkThresholds() {
+        int samples = thresholds.sustainedSamples;
+        String reason = null;
+        if (thresholds.maxCpuPermille > 0 && cpuPermille.allAtLeast(samples, thresholds.maxCpuPermille)) {
+            reason = "CPU占用 " + formatPercent(getCpuPermille());
+        } else if (thresholds.maxRssBytes > 0 && rssBytes.allAtLeast(samples, thresholds.maxRssBytes)) {
+            reason = "内存占用 " + (getRssBytes() >> 20) + " MB";
+        } else if (thresholds.maxThreads > 0 && threads.allAtLeast(samples, thresholds.maxThreads)) {
+            reason = "线程数 " + getThreads();
+        } else if (thresholds.maxFileDescriptors > 0 && fds.allAtLeast(samples, thresholds.maxFileDescriptors)) {
+            reason = "文件描述符数 " + getFileDescriptors();
+        }
+        
+        if (reason == null) {
+            alerting = false;
+            return;
+        }
+        if (alerting) {
+            return;
+        }
+        alerting = true;
+        logger.warning("frpc(PID: " + sampledPid + ")资源占用异常: " + reason + "，已连续 " + samples + " 次超过阈值");
+        
+        long now = System.currentTimeMillis();
+        if (restartOnAlert && now - lastRestartMillis >= restartCooldownMillis) {
+            lastRestartMillis = now;
+            logger.warning("正在重启frpc以释放资源...");
+            frpManager.restartFrp();
+        }
+    }
+    
+    private void reset(long pid) {
+        sampledPid = pid;
+        lastCpuNanos = -1;
+        alerting = false;
+        cpuPermille.clear();
+        rssBytes.clear();
+        threads.clear();
+        fds.clear();
+    }
+    
+    /**
+     * 从/proc/&lt;pid&gt;/stat读取用户态和内核态CPU时间之和
+     * 进程名可能包含空格和括号，因此从最后一个右括号之后开始按空格拆分
+     */
+    private long readCpuNanos(String statPath) throws IOException {
+        String stat = new String(Files.readAllBytes(new File(statPath).toPath()), StandardCharsets.US_ASCII);
+        String[] fields = stat.substring(stat.lastIndexOf(')') + 2).split(" ");
+        // 拆分后第0个字段是stat中的第3个字段(state)，utime和stime是第14、15个字段
+        long ticks = Long.parseLong(fields[11]) + Long.parseLong(fields[12]);
+        return ticks * (1_000_000_000L / clockTicks);
+    }
+    
+    /**
+     * 从/proc/self/auxv读取内核的时钟频率(AT_CLKTCK)，避免执行getconf
+     */
+    private static long readClockTicks() {
+        try {
+            ByteBuffer auxv = ByteBuffer.wrap(Files.readAllBytes(new File("/proc/self/auxv").toPath()))
+                    .order(ByteOrder.nativeOrder());
+            while (auxv.remaining() >= 16) {
+                long type = auxv.getLong();
+                long value = auxv.getLong();
+                if (type == AT_CLKTCK && value > 0) {
+                    return value;
+                }
+                if (type == 0) {
+                    break;
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            // 使用默认值
+        }
+        return DEFAULT_CLOCK_TICKS;
+    }
+    
+    private static long parseLeadingLong(String text) {
+        String trimmed = text.trim();
+        int end = 0;
+        while (end < trimmed.length() && Character.isDigit(trimmed.charAt(end))) {
+            end++;
+        }
+        return Long.parseLong(trimmed.substring(0, end));
+    }
+    
+    /**
+     * 将千分比格式化为百分比
+     * @param permille 千分比
+     * @return 例如12.5%
+     */
+    static String formatPercent(long permille) {
+        return (permille / 10) + "." + (permille % 10) + "%";
+    }
+    
+    /**
+     * 告警阈值，0表示不检查
+     */
+    public static final class Thresholds {
+        final long maxCpuPermille;
+        final long maxRssBytes;
+        final long maxThreads;
+        final long maxFileDescriptors;
+        final int sustainedSamples;
+        
+        /**
+         * 构造函数
+         * @param maxCpuPercent CPU占用阈值(百分比，100表示占满一个核心)
+         * @param maxRssMegabytes 常驻内存阈值(MB)
+         * @param maxThreads 线程数阈值
+         * @param maxFileDescriptors 文件描述符数阈值
+         * @param sustainedSamples 连续多少次采样超过阈值才告警
+         */
+        public Thresholds(double maxCpuPercent, long maxRssMegabytes, long maxThreads,
+                          long maxFileDescriptors, int sustainedSamples) {
+            this.maxCpuPermille = Math.round(maxCpuPercent * 10);
+            this.maxRssBytes = maxRssMegabytes << 20;
+            this.maxThreads = maxThreads;
+            this.maxFileDescriptors = maxFileDescriptors;
+            this.sustainedSamples = Math.max(1, Math.min(HISTORY_SIZE, sustainedSamples));
+        }
+    }
+}
@@ -0,0 +1,466 @@
+package com.minecraft.frpplugin;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.logging.Logger;
+
+/**
+ * TransportTuner - 依次用不同的传输协议(tcp、kcp、quic，是否多路复用)临时运行frpc，测量哪一种对当前frps最好
+ * 每个候选都会启动一个独立的frpc，只带一个指向本地回显服务的临时代理，测量登录耗时、
+ * 通过隧道的往返延迟和抖动以及吞吐量，不影响正在运行的frpc
+ * 把serverAddr指向本机运行的frps即可在本地验证整个流程
+ */
+public class TransportTuner {
+    
+    /**
+     * 保存选中的传输设置的文件
+     */
+    static final String SELECTION_FILE_NAME = "frpc_tune.properties";
+    private static final String TUNE_CONFIG_NAME = "frpc.tune.toml";
+    private static final int PING_SAMPLES = 20;
+    private static final int THROUGHPUT_BYTES = 1 << 20;
+    
+    private final File frpcFile;
+    private final File workDir;
+    private final String baseConfig;
+    private final String serverHost;
+    private final int remotePort;
+    private final long timeoutMillis;
+    private final String logCharset;
+    private final PluginExecutor executor;
+    private final Logger logger;
+    
+    /**
+     * 构造函数
+     * @param frpcFile frpc可执行文件
+     * @param workDir 工作目录，临时配置写在这里
+     * @param baseConfig 用户的frpc.toml内容，其中的代理和管理接口不会被使用
+     * @param serverHost frps的地址，用于通过隧道连接回本地
+     * @param remotePort 临时代理在frps上使用的远程端口，必须是frps允许的空闲端口
+     * @param timeoutMillis 每个候选登录和连接的超时时间(毫秒)
+     * @param logCharset frpc输出的编码
+     * @param executor 执行读取输出、回显等后台任务的执行器
+     * @param logger 日志记录器
+     */
+    public TransportTuner(File frpcFile, File workDir, String baseConfig, String serverHost, int remotePort,
+                          long timeoutMillis, String logCharset, PluginExecutor executor, Logger logger) {
+        this.frpcFile = frpcFile;
+        this.workDir = workDir;
+        this.baseConfig = baseConfig;
+        this.serverHost = serverHost;
+        this.remotePort = remotePort;
+        this.timeoutMillis = timeoutMillis;
+        this.logCharset = logCharset;
+        this.executor = executor;
+        this.logger = logger;
+    }
+    
+    /**
+     * 依次测量所有候选
+     * @param candidates 候选传输设置
+     * @param progress 每完成一个候选时调用
+     * @return 测量结果，按得分从好到差排列，失败的候选排在最后
+     */
+    public List<Result> run(List<Candidate> candidates, Consumer<Result> progress) {
+        List<Result> results = new ArrayList<>();
+        for (Candidate candidate : candidates) {
+            Result result = measure(candidate);
+            logger.info("传输测试 " + result.describe());
+            results.add(result);
+            progress.accept(result);
+        }
+        rank(results);
+        return results;
+    }
+    
+    /**
+     * 排序：先去掉吞吐量不到最好结果一半的候选，再按延迟加两倍抖动排序，游戏流量对延迟比带宽敏感
+     */
+    static void rank(List<Result> results) {
+        long bestThroughput = results.stream().filter(Result::isSuccess)
+                .mapToLong(result -> result.throughputKBps).max().orElse(0L);
+        results.sort(Comparator.comparing((Result result) -> !result.isSuccess())
+                .thenComparing(result -> result.throughputKBps * 2 < bestThroughput)
+                .thenComparingDouble(Result::getScore));
+    }
+    
+    private Result measure(Candidate candidate) {
+        File configFile = new File(workDir, TUNE_CONFIG_NAME);
+        Process process = null;
+        try (ServerSocket echo = new ServerSocket(0, 50, InetAddress.getLoopbackAddress())) {
+            startEchoServer(echo);
+            Files.writeString(configFile.toPath(), buildConfig(candidate, echo.getLocalPort()));
+            
+            ProcessBuilder pb = new ProcessBuilder(frpcFile.getAbsolutePath(), "-c", configFile.getAbsolutePath());
+            pb.directory(workDir);
+            pb.redirectErrorStream(true);
+            long startNanos = System.nanoTime();
+            process = pb.start();
+            
+            // 从frpc的输出判断登录和代理是否成功
+            long[] loginNanos = {-1L};
+            String[] failure = {null};
+            CountDownLatch ready = new CountDownLatch(1);
+            Process running = process;
+            executor.executeLongRunning("Tune-Log", () -> {
+                try (InputStream in = running.getInputStream()) {
+                    new FrpcLogReader(in, logCharset, line -> {
+                        if (line.contains("login to server success") && loginNanos[0] < 0) {
+                            loginNanos[0] = System.nanoTime();
+                        } else if (line.contains("start proxy success")) {
+                            ready.countDown();
+                        } else if (line.contains("login to server failed") || line.contains("start error")) {
+                            failure[0] = line;
+                            ready.countDown();
+                        }
+                    }).readAll();
+                } catch (IOException e) {
+                    // 进程被结束时输出流会关闭
+                }
+                ready.countDown();
+            });
+            
+            if (!ready.await(timeoutMillis, TimeUnit.MILLISECONDS)) {
+                return Result.failed(candidate, "等待frpc登录超时");
+            }
+            if (failure[0] != null || !process.isAlive()) {
+                return Result.failed(candidate, failure[0] != null ? failure[0] : "frpc已退出");
+            }
+            long handshakeMillis = loginNanos[0] < 0 ? -1L : TimeUnit.NANOSECONDS.toMillis(loginNanos[0] - startNanos);
+            return measureTunnel(candidate, handshakeMillis);
+        } catch (IOException e) {
+            return Result.failed(candidate, e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return Result.failed(candidate, "已中断");
+        } finally {
+            if (process != null) {
+                process.destroy();
+                try {
+                    if (!process.waitFor(3, TimeUnit.SECONDS)) {
+                        process.destroyForcibly();
+                    }
+                } catch (InterruptedException e) {
+                    process.destroyForcibly();
+                    Thread.currentThread().interrupt();
+                }
+            }
+            configFile.delete();
+        }
+    }
+    
+    /**
+     * 通过frps的远程端口连回本地回显服务，测量往返延迟、抖动和吞吐量
+     */
+    private Result measureTunnel(Candidate candidate, long handshakeMillis) throws IOException, InterruptedException {
+        try (Socket socket = new Socket()) {
+            socket.setTcpNoDelay(true);
+            long connectStart = System.nanoTime();
+            socket.connect(new InetSocketAddress(serverHost, remotePort), (int) timeoutMillis);
+            socket.setSoTimeout((int) timeoutMillis);
+            InputStream in = socket.getInputStream();
+            OutputStream out = socket.getOutputStream();
+            
+            // 第一个字节的往返包含frpc建立工作连接的时间，单独记录为首包延迟
+            long[] samples = new long[PING_SAMPLES];
+            long firstByteMicros = 0;
+            for (int i = -1; i < PING_SAMPLES; i++) {
+                long sendNanos = System.nanoTime();
+                out.write(i & 0x7F);
+                out.flush();
+                if (in.read() < 0) {
+                    return Result.failed(candidate, "隧道连接被关闭");
+                }
+                long micros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - (i < 0 ? connectStart : sendNanos));
+                if (i < 0) {
+                    firstByteMicros = micros;
+                } else {
+                    samples[i] = micros;
+                }
+            }
+            
+            long totalMicros = 0;
+            long jitterMicros = 0;
+            for (int i = 0; i < PING_SAMPLES; i++) {
+                totalMicros += samples[i];
+                if (i > 0) {
+                    jitterMicros += Math.abs(samples[i] - samples[i - 1]);
+                }
+            }
+            
+            // 写入和读取回显同时进行，避免两端的缓冲区都被填满
+            CountDownLatch written = new CountDownLatch(1);
+            long transferStart = System.nanoTime();
+            executor.executeLongRunning("Tune-Writer", () -> {
+                byte[] chunk = new byte[16 * 1024];
+                try {
+                    for (int sent = 0; sent < THROUGHPUT_BYTES; sent += chunk.length) {
+                        out.write(chunk, 0, Math.min(chunk.length, THROUGHPUT_BYTES - sent));
+                    }
+                    out.flush();
+                } catch (IOException e) {
+                    // 读取端会因超时或连接关闭而失败
+                } finally {
+                    written.countDown();
+                }
+            });
+            byte[] buffer = new byte[16 * 1024];
+            int received = 0;
+            while (received < THROUGHPUT_BYTES) {
+                int read = in.read(buffer);
+                if (read < 0) {
+                    return Result.failed(candidate, "测量吞吐量时隧道连接被关闭");
+                }
+                received += read;
+            }
+            long transferNanos = Math.max(1L, System.nanoTime() - transferStart);
+            written.await(timeoutMillis, TimeUnit.MILLISECONDS);
+            
+            return new Result(candidate, null, handshakeMillis, firstByteMicros / 1000,
+                    totalMicros / PING_SAMPLES, jitterMicros / (PING_SAMPLES - 1),
+                    THROUGHPUT_BYTES * 1_000_000_000L / transferNanos);
+        }
+    }
+    
+    /**
+     * 本地回显服务，每个连接一个后台任务
+     */
+    private void startEchoServer(ServerSocket server) {
+        executor.executeLongRunning("Tune-Accept", () -> {
+            while (!server.isClosed()) {
+                try {
+                    Socket socket = server.accept();
+                    executor.executeLongRunning("Tune-Echo", () -> {
+                        try (Socket s = socket) {
+                            s.setTcpNoDelay(true);
+                            s.getInputStream().transferTo(s.getOutputStream());
+                        } catch (IOException e) {
+                            // 连接关闭
+                        }
+                    });
+                } catch (IOException e) {
+                    return;
+                }
+            }
+        });
+    }
+    
+    /**
+     * 生成测量用的配置：保留服务器地址、认证等全局设置，去掉用户的代理、访问者和管理接口，
+     * 换成一个指向本地回显服务的临时代理
+     */
+    String buildConfig(Candidate candidate, int echoPort) {
+        StringBuilder kept = new StringBuilder();
+        boolean skipping = false;
+        for (String line : baseConfig.split("\r?\n")) {
+            String trimmed = line.trim();
+            if (trimmed.startsWith("[")) {
+                // 代理和访问者的子表(例如[proxies.transport])属于同一个段落，要一起去掉
+                String table = trimmed.replaceAll("[\\[\\]\\s]", "");
+                skipping = table.equals("proxies") || table.startsWith("proxies.")
+                        || table.equals("visitors") || table.startsWith("visitors.")
+                        || table.equals("webServer") || table.startsWith("webServer.");
+            } else if (trimmed.startsWith("webServer.") || trimmed.startsWith("includes")) {
+                continue;
+            }
+            if (!skipping) {
+                kept.append(line).append('\n');
+            }
+        }
+        
+        FrpcConfigGenerator generator = new FrpcConfigGenerator(kept.toString());
+        candidate.applyTo(generator);
+        generator.setGlobal("transport.poolCount", "0");
+        generator.setGlobal("loginFailExit", "true");
+        generator.setGlobal("log.to", "\"console\"");
+        generator.setGlobal("log.level", "\"info\"");
+        
+        FrpcConfigDocument document = new FrpcConfigDocument(generator.generate());
+        Map<String, String> proxy = new LinkedHashMap<>();
+        proxy.put("type", "tcp");
+        proxy.put("localIP", "127.0.0.1");
+        proxy.put("localPort", String.valueOf(echoPort));
+        proxy.put("remotePort", String.valueOf(remotePort));
+        document.addProxy("frp-tune-" + UUID.randomUUID().toString().substring(0, 8), proxy);
+        return document.render();
+    }
+    
+    /**
+     * 读取上次选中的传输设置
+     * @param dataFolder 插件数据目录
+     * @return 传输设置，没有选中或文件损坏时返回null
+     */
+    static Candidate loadSelection(File dataFolder) {
+        File file = new File(dataFolder, SELECTION_FILE_NAME);
+        if (!file.exists()) {
+            return null;
+        }
+        Properties properties = new Properties();
+        try (InputStream in = new FileInputStream(file)) {
+            properties.load(in);
+            return new Candidate(properties.getProperty("name"), properties.getProperty("protocol"),
+                    Boolean.parseBoolean(properties.getProperty("tcpMux", "true")),
+                    Integer.parseInt(properties.getProperty("serverPort", "0")));
+        } catch (IOException | RuntimeException e) {
+            return null;
+        }
+    }
+    
+    /**
+     * 保存选中的传输设置和它的测量结果
+     * @param dataFolder 插件数据目录
+     * @param result 选中的结果
+     * @throws IOException 如果写入失败
+     */
+    static void saveSelection(File dataFolder, Result result) throws IOException {
+        Properties properties = new Properties();
+        Candidate candidate = result.candidate;
+        properties.setProperty("name", candidate.name);
+        properties.setProperty("protocol", candidate.protocol);
+        properties.setProperty("tcpMux", String.valueOf(candidate.tcpMux));
+        properties.setProperty("serverPort", String.valueOf(candidate.serverPort));
+        properties.setProperty("rttMillis", String.valueOf(result.rttMicros / 1000.0));
+        properties.setProperty("jitterMillis", String.valueOf(result.jitterMicros / 1000.0));
+        properties.setProperty("throughputKBps", String.valueOf(result.throughputKBps));
+        try (OutputStream out = new FileOutputStream(new File(dataFolder, SELECTION_FILE_NAME))) {
+            properties.store(out, "Selected by /frp tune, delete this file or run /frp tune clear to use frpc.toml as is");
+        }
+    }
+    
+    /**
+     * 删除选中的传输设置
+     * @param dataFolder 插件数据目录
+     * @return 是否存在并已删除
+     */
+    static boolean clearSelection(File dataFolder) {
+        return new File(dataFolder, SELECTION_FILE_NAME).delete();
+    }
+    
+    /**
+     * 一种候选传输设置
+     */
+    public static final class Candidate {
+        final String name;
+        final String protocol;
+        final boolean tcpMux;
+        final int serverPort;
+        
+        /**
+         * 构造函数
+         * @param name 显示名称
+         * @param protocol transport.protocol的值: tcp、kcp、quic或websocket
+         * @param tcpMux 是否启用多路复用
+         * @param serverPort 使用的frps端口，0表示沿用frpc.toml中的serverPort(kcp和quic使用frps的UDP端口)
+         */
+        public Candidate(String name, String protocol, boolean tcpMux, int serverPort) {
+            this.name = name;
+            this.protocol = protocol;
+            this.tcpMux = tcpMux;
+            this.serverPort = serverPort;
+        }
+        
+        /**
+         * 获取显示名称
+         * @return 名称
+         */
+        public String getName() {
+            return name;
+        }
+        
+        /**
+         * 把传输设置写入配置
+         * @param generator 配置生成器
+         */
+        void applyTo(FrpcConfigGenerator generator) {
+            generator.setGlobal("transport.protocol", FrpcConfigDocument.formatString(protocol));
+            generator.setGlobal("transport.tcpMux", String.valueOf(tcpMux));
+            if (serverPort > 0) {
+                generator.setGlobal("serverPort", String.valueOf(serverPort));
+            }
+        }
+    }
+    
+    /**
+     * 一个候选的测量结果
+     */
+    public static final class Result {
+        final Candidate candidate;
+        final String error;
+        final long handshakeMillis;
+        final long firstByteMillis;
+        final long rttMicros;
+        final long jitterMicros;
+        final long throughputKBps;
+        
+        Result(Candidate candidate, String error, long handshakeMillis, long firstByteMillis,
+               long rttMicros, long jitterMicros, long throughputBytesPerSecond) {
+            this.candidate = candidate;
+            this.error = error;
+            this.handshakeMillis = handshakeMillis;
+            this.firstByteMillis = firstByteMillis;
+            this.rttMicros = rttMicros;
+            this.jitterMicros = jitterMicros;
+            this.throughputKBps = throughputBytesPerSecond / 1024;
+        }
+        
+        static Result failed(Candidate candidate, String error) {
+            return new Result(candidate, error == null ? "未知错误" : error, -1, -1, -1, -1, 0);
+        }
+        
+        /**
+         * 是否测量成功
+         * @return 是否成功
+         */
+        public boolean isSuccess() {
+            return error == null;
+        }
+        
+        /**
+         * 获取候选传输设置
+         * @return 候选
+         */
+        public Candidate getCandidate() {
+            return candidate;
+        }
+        
+        /**
+         * 得分，越小越好
+         * @return 平均往返延迟加两倍抖动(毫秒)
+         */
+        public double getScore() {
+            return isSuccess() ? (rttMicros + 2.0 * jitterMicros) / 1000.0 : Double.MAX_VALUE;
+        }
+        
+        /**
+         * 格式化为一行说明
+         * @return 说明
+         */
+        public String describe() {
+            if (!isSuccess()) {
+                return candidate.name + ": 失败 - " + error;
+            }
+            return String.format("%s: 登录 %s, 首包 %d ms, 延迟 %.1f ms, 抖动 %.1f ms, 吞吐 %d KB/s",
+                    candidate.name, handshakeMillis < 0 ? "未知" : handshakeMillis + " ms", firstByteMillis,
+                    rttMicros / 1000.0, jitterMicros / 1000.0, throughputKBps);
+        }
+    }
+}
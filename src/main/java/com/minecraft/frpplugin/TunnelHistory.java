@@ -0,0 +1,214 @@
+package com.minecraft.frpplugin;
+
+import com.minecraft.frpplugin.api.TunnelSnapshot;
+import com.minecraft.frpplugin.metrics.TimeSeries;
+import com.minecraft.frpplugin.metrics.TimeSeriesStore;
+import com.minecraft.frpplugin.network.ConnectionRelay;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * TunnelHistory - 每秒采样一次隧道指标，保存最近一个月的历史，用于/frp history
+ * 采样只读取已有的快照和计数器并写入固定大小的数组，不产生对象；插件禁用时保存到history.dat，启用时恢复
+ */
+public class TunnelHistory {
+    
+    private static final String FILE_NAME = "history.dat";
+    
+    /**
+     * 记录的指标
+     */
+    public enum Metric {
+        RTT("rtt", "隧道延迟", "ms"),
+        UP("up", "在线率", "%"),
+        TRAFFIC_IN("in", "入站流量", "KB/s"),
+        TRAFFIC_OUT("out", "出站流量", "KB/s"),
+        SESSIONS("sessions", "中转连接数", ""),
+        CPU("cpu", "frpc CPU占用", "%"),
+        RSS("rss", "frpc内存", "MB");
+        
+        private final String key;
+        private final String displayName;
+        private final String unit;
+        
+        Metric(String key, String displayName, String unit) {
+            this.key = key;
+            this.displayName = displayName;
+            this.unit = unit;
+        }
+        
+        /**
+         * 获取命令中使用的名称
+         * @return 名称
+         */
+        public String getKey() {
+            return key;
+        }
+        
+        /**
+         * 获取显示名称
+         * @return 显示名称
+         */
+        public String getDisplayName() {
+            return displayName;
+        }
+        
+        /**
+         * 获取单位
+         * @return 单位，没有单位时为空字符串
+         */
+        public String getUnit() {
+            return unit;
+        }
+        
+        /**
+         * 根据命令中使用的名称查找指标
+         * @param key 名称
+         * @return 指标，不存在时返回null
+         */
+        public static Metric fromKey(String key) {
+            for (Metric metric : values()) {
+                if (metric.key.equalsIgnoreCase(key)) {
+                    return metric;
+                }
+            }
+            return null;
+        }
+    }
+    
+    private final FrpManager frpManager;
+    private final ResourceMonitor resourceMonitor;
+    private final Logger logger;
+    private final File file;
+    private final TimeSeriesStore store;
+    private final TimeSeries rtt;
+    private final TimeSeries up;
+    private final TimeSeries trafficIn;
+    private final TimeSeries trafficOut;
+    private final TimeSeries sessions;
+    private final TimeSeries cpu;
+    private final TimeSeries rss;
+    private final PluginExecutor executor;
+    private ScheduledFuture<?> samplingTask;
+    
+    private long lastBytesIn = -1;
+    private long lastBytesOut = -1;
+    private long lastSampleNanos;
+    
+    /**
+     * 构造函数
+     * @param frpManager frp管理器
+     * @param resourceMonitor frpc资源监控，未启用时为null
+     * @param dataFolder 插件数据文件夹
+     * @param executor 执行采样的执行器
+     * @param logger 日志记录器
+     */
+    public TunnelHistory(FrpManager frpManager, ResourceMonitor resourceMonitor, File dataFolder,
+                         PluginExecutor executor, Logger logger) {
+        this.frpManager = frpManager;
+        this.executor = executor;
+        this.resourceMonitor = resourceMonitor;
+        this.logger = logger;
+        this.file = new File(dataFolder, FILE_NAME);
+        Metric[] metrics = Metric.values();
+        String[] names = new String[metrics.length];
+        for (int i = 0; i < metrics.length; i++) {
+            names[i] = metrics[i].getKey();
+        }
+        this.store = new TimeSeriesStore(names);
+        this.rtt = store.get(Metric.RTT.getKey());
+        this.up = store.get(Metric.UP.getKey());
+        this.trafficIn = store.get(Metric.TRAFFIC_IN.getKey());
+        this.trafficOut = store.get(Metric.TRAFFIC_OUT.getKey());
+        this.sessions = store.get(Metric.SESSIONS.getKey());
+        this.cpu = store.get(Metric.CPU.getKey());
+        this.rss = store.get(Metric.RSS.getKey());
+    }
+    
+    /**
+     * 恢复上次保存的历史并开始每秒采样
+     */
+    public void start() {
+        try {
+            int loaded = store.load(file);
+            if (loaded > 0) {
+                logger.info("已恢复 " + loaded + " 项指标的历史数据");
+            }
+        } catch (IOException e) {
+            logger.warning("无法读取历史数据，将重新开始记录: " + e.getMessage());
+        }
+        samplingTask = executor.scheduleAtFixedRate("History", this::sample, 1000L, 1000L);
+    }
+    
+    /**
+     * 停止采样并保存历史
+     */
+    public void stop() {
+        if (samplingTask != null) {
+            samplingTask.cancel(false);
+            samplingTask = null;
+        }
+        // 与可能仍在进行的采样互斥，保存的是完整的一次采样
+        synchronized (this) {
+            try {
+                store.save(file);
+            } catch (IOException e) {
+                logger.log(Level.WARNING, "保存历史数据时出错", e);
+            }
+        }
+    }
+    
+    /**
+     * 获取指标的时间序列
+     * @param metric 指标
+     * @return 时间序列
+     */
+    public TimeSeries get(Metric metric) {
+        return store.get(metric.getKey());
+    }
+    
+    /**
+     * 采样一次，不可用的指标(例如frpc未运行时的延迟)不记录
+     */
+    private synchronized void sample() {
+        long now = System.currentTimeMillis();
+        long nanos = System.nanoTime();
+        TunnelSnapshot snapshot = frpManager.getSnapshot();
+        boolean active = snapshot.getState().isActive();
+        up.record(now, active ? 100.0 : 0.0);
+        if (snapshot.getRttMillis() >= 0) {
+            rtt.record(now, snapshot.getRttMillis());
+        }
+        
+        // 直接读取中转的计数器，快照每秒才刷新一次，与采样错开时会得到0或两秒的流量
+        ConnectionRelay relay = frpManager.getRelay();
+        long bytesIn = relay != null ? relay.getBytesIn() : -1L;
+        long bytesOut = relay != null ? relay.getBytesOut() : -1L;
+        double seconds = (nanos - lastSampleNanos) / 1e9;
+        if (lastBytesIn >= 0 && bytesIn >= lastBytesIn && seconds > 0) {
+            trafficIn.record(now, (bytesIn - lastBytesIn) / 1024.0 / seconds);
+        }
+        if (lastBytesOut >= 0 && bytesOut >= lastBytesOut && seconds > 0) {
+            trafficOut.record(now, (bytesOut - lastBytesOut) / 1024.0 / seconds);
+        }
+        lastBytesIn = bytesIn;
+        lastBytesOut = bytesOut;
+        lastSampleNanos = nanos;
+        
+        if (relay != null) {
+            sessions.record(now, relay.getActiveSessions());
+        }
+        if (resourceMonitor != null && active) {
+            if (resourceMonitor.getCpuPermille() >= 0) {
+                cpu.record(now, resourceMonitor.getCpuPermille() / 10.0);
+            }
+            if (resourceMonitor.getRssBytes() >= 0) {
+                rss.record(now, resourceMonitor.getRssBytes() / (double) (1L << 20));
+            }
+        }
+    }
+}
@@ -0,0 +1,614 @@
+package com.minecraft.frpplugin;
+
+import com.minecraft.frpplugin.api.ProxyEndpoint;
+import com.minecraft.frpplugin.api.TunnelSnapshot;
+import com.minecraft.frpplugin.api.TunnelState;
+import com.minecraft.frpplugin.metrics.TimeSeries;
+import com.minecraft.frpplugin.network.ConnectionRelay;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * WebDashboard - 只监听本机回环地址的网页面板，使用JDK自带的HttpServer
+ * 页面通过/api/status和/api/history获取隧道状态与历史，通过/api/events(Server-Sent Events)接收frpc日志和每秒的指标
+ * 日志和指标由一个广播任务统一格式化并编码一次，放入每个页面自己的发送队列，由该页面的请求线程写出，
+ * 查看的人数不会增加格式化和采样的开销，一个页面接收缓慢也不会拖慢其他页面，积压过多或写入卡住的页面会被断开
+ * 所有请求都需要config.yml中的令牌，可以放在查询参数token中，或者使用Authorization: Bearer请求头
+ */
+public class WebDashboard {
+    
+    private static final int LOG_BACKLOG = 200;
+    private static final int LOG_QUEUE = 2000;
+    private static final long BROADCAST_MILLIS = 500L;
+    private static final long CLIENT_BUFFER_BYTES = 1L << 20;
+    private static final long WRITE_TIMEOUT_MILLIS = 10_000L;
+    private static final int DEFAULT_HISTORY_COLUMNS = 120;
+    private static final Pattern PROXY_LOG = Pattern.compile("\\[([^\\[\\]]+)]\\s+(start proxy success|start error)(?::\\s*(.*))?");
+    
+    private final FrpPlugin plugin;
+    private final FrpManager frpManager;
+    private final Logger logger;
+    private final int port;
+    private final byte[] token;
+    private final int maxClients;
+    private final List<Client> clients = new CopyOnWriteArrayList<>();
+    private final ArrayBlockingQueue<String> pendingLogs = new ArrayBlockingQueue<>(LOG_QUEUE);
+    private final AtomicLong droppedLogs = new AtomicLong();
+    private final String[] backlog = new String[LOG_BACKLOG];
+    private final Map<String, ProxyStatus> proxyStatus = new ConcurrentHashMap<>();
+    
+    private HttpServer server;
+    private ScheduledFuture<?> broadcaster;
+    private byte[] page;
+    private int backlogNext;
+    private int backlogSize;
+    private boolean metricsDue;
+    private long lastBytesIn = -1;
+    private long lastBytesOut = -1;
+    private long lastSampleNanos;
+    
+    /**
+     * 构造函数
+     * @param plugin 插件实例
+     * @param frpManager frp管理器
+     * @param port 监听端口
+     * @param token 访问令牌
+     * @param maxClients 同时打开实时日志的页面数上限
+     */
+    public WebDashboard(FrpPlugin plugin, FrpManager frpManager, int port, String token, int maxClients) {
+        this.plugin = plugin;
+        this.frpManager = frpManager;
+        this.logger = plugin.getLogger();
+        this.port = port;
+        this.token = token.getBytes(StandardCharsets.UTF_8);
+        this.maxClients = Math.max(1, maxClients);
+    }
+    
+    /**
+     * 启动面板
+     * @return 是否启动成功
+     */
+    public boolean start() {
+        if (token.length == 0) {
+            logger.warning("未设置dashboard.token，网页面板不会启动");
+            return false;
+        }
+        try (InputStream in = plugin.getResource("dashboard.html")) {
+            if (in == null) {
+                logger.warning("插件中缺少dashboard.html，网页面板不会启动");
+                return false;
+            }
+            page = in.readAllBytes();
+            server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        } catch (IOException e) {
+            logger.warning("无法启动网页面板(端口 " + port + "): " + e.getMessage());
+            return false;
+        }
+        server.createContext("/", this::handle);
+        server.setExecutor(plugin.getExecutor().longRunning("Dashboard-Http"));
+        server.start();
+        
+        broadcaster = plugin.getExecutor().scheduleAtFixedRate("Dashboard", this::broadcast, BROADCAST_MILLIS, BROADCAST_MILLIS);
+        frpManager.setLogListener(this::onLogLine);
+        logger.info("网页面板已启动: http://" + InetAddress.getLoopbackAddress().getHostAddress() + ":" + port + "/?token=...");
+        return true;
+    }
+    
+    /**
+     * 停止面板并关闭所有连接
+     */
+    public void stop() {
+        frpManager.setLogListener(null);
+        if (broadcaster != null) {
+            broadcaster.cancel(false);
+            broadcaster = null;
+        }
+        for (Client client : clients) {
+            client.close();
+        }
+        clients.clear();
+        if (server != null) {
+            server.stop(0);
+            server = null;
+        }
+    }
+    
+    /**
+     * 获取当前打开实时日志的页面数
+     * @return 页面数
+     */
+    public int getClientCount() {
+        return clients.size();
+    }
+    
+    /**
+     * 接收frpc的一行输出，在读取输出的线程中调用，队列已满时丢弃
+     */
+    private void onLogLine(String line) {
+        Matcher matcher = PROXY_LOG.matcher(line);
+        if (matcher.find()) {
+            boolean success = matcher.group(2).startsWith("start proxy");
+            proxyStatus.put(matcher.group(1), new ProxyStatus(success,
+                    success ? "" : String.valueOf(matcher.group(3)), System.currentTimeMillis()));
+        }
+        if (!pendingLogs.offer(line)) {
+            droppedLogs.incrementAndGet();
+        }
+    }
+    
+    /**
+     * 广播任务：把新的日志和每秒一次的指标编码为一段SSE数据，放入所有页面的发送队列
+     * 没有页面时只维护日志缓存，不采样指标
+     */
+    private void broadcast() {
+        try {
+            StringBuilder events = new StringBuilder();
+            List<Client> targets;
+            synchronized (backlog) {
+                for (String line; (line = pendingLogs.poll()) != null; ) {
+                    backlog[backlogNext] = line;
+                    backlogNext = (backlogNext + 1) % backlog.length;
+                    backlogSize = Math.min(backlogSize + 1, backlog.length);
+                    appendEvent(events, "log", quote(line));
+                }
+                long dropped = droppedLogs.getAndSet(0);
+                if (dropped > 0) {
+                    appendEvent(events, "log", quote("[面板] 日志过多，已丢弃 " + dropped + " 行"));
+                }
+                targets = new ArrayList<>(clients);
+            }
+            metricsDue = !metricsDue;
+            long now = System.nanoTime();
+            for (Client client : targets) {
+                if (client.isStalled(now)) {
+                    evict(client, "写入超过 " + WRITE_TIMEOUT_MILLIS + " ms 未完成");
+                }
+            }
+            if (targets.isEmpty()) {
+                lastBytesIn = -1;
+                lastBytesOut = -1;
+                return;
+            }
+            if (metricsDue) {
+                appendEvent(events, "metrics", buildMetrics());
+            }
+            if (events.length() == 0) {
+                return;
+            }
+            byte[] payload = events.toString().getBytes(StandardCharsets.UTF_8);
+            for (Client client : targets) {
+                if (!client.offer(payload)) {
+                    evict(client, "未发送的数据超过 " + (CLIENT_BUFFER_BYTES >> 10) + " KB");
+                }
+            }
+        } catch (RuntimeException e) {
+            logger.log(Level.WARNING, "网页面板广播时出错", e);
+        }
+    }
+    
+    /**
+     * 断开接收过慢的页面，它的请求线程会随之结束
+     */
+    private void evict(Client client, String reason) {
+        if (clients.remove(client)) {
+            logger.info("网页面板的一个页面接收过慢(" + reason + ")，已断开连接");
+        }
+        client.close();
+    }
+    
+    /**
+     * 生成每秒推送的实时指标
+     */
+    private String buildMetrics() {
+        TunnelSnapshot snapshot = frpManager.getSnapshot();
+        ConnectionRelay relay = frpManager.getRelay();
+        long nanos = System.nanoTime();
+        double seconds = (nanos - lastSampleNanos) / 1e9;
+        long bytesIn = relay != null ? relay.getBytesIn() : -1L;
+        long bytesOut = relay != null ? relay.getBytesOut() : -1L;
+        double rateIn = lastBytesIn >= 0 && bytesIn >= lastBytesIn ? (bytesIn - lastBytesIn) / 1024.0 / seconds : Double.NaN;
+        double rateOut = lastBytesOut >= 0 && bytesOut >= lastBytesOut ? (bytesOut - lastBytesOut) / 1024.0 / seconds : Double.NaN;
+        lastBytesIn = bytesIn;
+        lastBytesOut = bytesOut;
+        lastSampleNanos = nanos;
+        
+        ResourceMonitor monitor = plugin.getResourceMonitor();
+        boolean active = snapshot.getState().isActive();
+        BandwidthQos qos = plugin.getBandwidthQos();
+        StringBuilder json = new StringBuilder("{");
+        json.append("\"state\":").append(quote(snapshot.getState().name()));
+        json.append(",\"stateName\":").append(quote(snapshot.getState().getDisplayName()));
+        json.append(",\"uptime\":").append(snapshot.getUptimeMillis());
+        json.append(",\"rtt\":").append(snapshot.getRttMillis() >= 0 ? String.valueOf(snapshot.getRttMillis()) : "null");
+        json.append(",\"in\":").append(number(rateIn));
+        json.append(",\"out\":").append(number(rateOut));
+        json.append(",\"sessions\":").append(relay != null ? String.valueOf(relay.getActiveSessions()) : "null");
+        json.append(",\"cpu\":").append(monitor != null && active && monitor.getCpuPermille() >= 0
+                ? number(monitor.getCpuPermille() / 10.0) : "null");
+        json.append(",\"rss\":").append(monitor != null && active && monitor.getRssBytes() >= 0
+                ? number(monitor.getRssBytes() / (double) (1L << 20)) : "null");
+        json.append(",\"throttled\":").append(qos != null && qos.isThrottled());
+        json.append(",\"tps\":").append(qos != null && qos.getTps() >= 0 ? number(qos.getTps()) : "null");
+        return json.append('}').toString();
+    }
+    
+    /**
+     * 处理所有请求
+     */
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            if (!"GET".equals(exchange.getRequestMethod())) {
+                send(exchange, 405, "text/plain", "Method Not Allowed");
+                return;
+            }
+            Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+            if (!isAuthorized(exchange, query)) {
+                send(exchange, 401, "text/plain", "Unauthorized");
+                return;
+            }
+            switch (exchange.getRequestURI().getPath()) {
+                case "/":
+                    send(exchange, 200, "text/html", page);
+                    break;
+                case "/api/status":
+                    send(exchange, 200, "application/json", buildStatus());
+                    break;
+                case "/api/history":
+                    handleHistory(exchange, query);
+                    break;
+                case "/api/events":
+                    openEventStream(exchange);
+                    break;
+                default:
+                    send(exchange, 404, "text/plain", "Not Found");
+                    break;
+            }
+        } catch (IOException | RuntimeException e) {
+            logger.log(Level.FINE, "处理网页面板请求时出错", e);
+            exchange.close();
+        }
+    }
+    
+    /**
+     * 比较令牌，使用与内容无关的耗时比较，避免通过响应时间猜测令牌
+     */
+    private boolean isAuthorized(HttpExchange exchange, Map<String, String> query) {
+        String provided = query.get("token");
+        String header = exchange.getRequestHeaders().getFirst("Authorization");
+        if (header != null && header.startsWith("Bearer ")) {
+            provided = header.substring("Bearer ".length()).trim();
+        }
+        return provided != null && MessageDigest.isEqual(token, provided.getBytes(StandardCharsets.UTF_8));
+    }
+    
+    /**
+     * 生成隧道状态，包括每个代理最近一次启动的结果
+     */
+    private String buildStatus() {
+        TunnelSnapshot snapshot = frpManager.getSnapshot();
+        TunnelState state = snapshot.getState();
+        StringBuilder json = new StringBuilder("{");
+        json.append("\"state\":").append(quote(state.name()));
+        json.append(",\"stateName\":").append(quote(state.getDisplayName()));
+        json.append(",\"stateSince\":").append(snapshot.getStateSinceMillis());
+        json.append(",\"uptime\":").append(snapshot.getUptimeMillis());
+        json.append(",\"address\":").append(snapshot.getPrimaryAddress() != null ? quote(snapshot.getPrimaryAddress()) : "null");
+        json.append(",\"rtt\":").append(snapshot.getRttMillis() >= 0 ? String.valueOf(snapshot.getRttMillis()) : "null");
+        
+        json.append(",\"proxies\":[");
+        List<ProxyEndpoint> endpoints = snapshot.getEndpoints();
+        for (int i = 0; i < endpoints.size(); i++) {
+            ProxyEndpoint endpoint = endpoints.get(i);
+            ProxyStatus status = state.isActive() ? proxyStatus.get(endpoint.getName()) : null;
+            json.append(i == 0 ? "{" : ",{");
+            json.append("\"name\":").append(quote(endpoint.getName()));
+            json.append(",\"type\":").append(quote(endpoint.getType()));
+            json.append(",\"address\":").append(quote(endpoint.getAddress()));
+            json.append(",\"running\":").append(status == null ? "null" : String.valueOf(status.success));
+            json.append(",\"message\":").append(status == null ? "null" : quote(status.message));
+            json.append(",\"since\":").append(status == null ? "null" : String.valueOf(status.sinceMillis));
+            json.append('}');
+        }
+        json.append(']');
+        
+        ConnectionRelay relay = frpManager.getRelay();
+        json.append(",\"relay\":");
+        if (relay != null) {
+            json.append("{\"active\":").append(relay.getActiveSessions());
+            json.append(",\"accepted\":").append(relay.getAcceptedConnections());
+            json.append(",\"rejected\":").append(relay.getRejectedConnections());
+            json.append(",\"bytesIn\":").append(relay.getBytesIn());
+            json.append(",\"bytesOut\":").append(relay.getBytesOut());
+            json.append(",\"connectLatencyMicros\":").append(relay.getAverageConnectLatencyMicros()).append('}');
+        } else {
+            json.append("null");
+        }
+        
+        ProcessRecord record = frpManager.getProcessRecord();
+        json.append(",\"restarts\":").append(record != null ? String.valueOf(record.getRestartCount()) : "null");
+        BandwidthQos qos = plugin.getBandwidthQos();
+        json.append(",\"throttled\":").append(qos != null ? String.valueOf(qos.isThrottled()) : "null");
+        json.append(",\"scheduling\":").append(quote(frpManager.getSchedulingDescription()));
+        json.append(",\"viewers\":").append(clients.size());
+        return json.append('}').toString();
+    }
+    
+    /**
+     * 返回一个指标在所选分辨率下的历史
+     */
+    private void handleHistory(HttpExchange exchange, Map<String, String> query) throws IOException {
+        TunnelHistory history = plugin.getTunnelHistory();
+        TunnelHistory.Metric metric = TunnelHistory.Metric.fromKey(query.getOrDefault("metric", "rtt"));
+        if (history == null || metric == null) {
+            send(exchange, 404, "application/json", "{\"error\":\"history unavailable\"}");
+            return;
+        }
+        TimeSeries.Resolution resolution;
+        int columns;
+        try {
+            resolution = TimeSeries.Resolution.valueOf(query.getOrDefault("resolution", "minute").toUpperCase());
+            columns = Math.max(1, Math.min(720, Integer.parseInt(
+                    query.getOrDefault("columns", String.valueOf(DEFAULT_HISTORY_COLUMNS)))));
+        } catch (IllegalArgumentException e) {
+            send(exchange, 400, "application/json", "{\"error\":\"bad request\"}");
+            return;
+        }
+        
+        TimeSeries.View view = history.get(metric).view(resolution, System.currentTimeMillis(), columns);
+        StringBuilder json = new StringBuilder("{");
+        json.append("\"metric\":").append(quote(metric.getKey()));
+        json.append(",\"name\":").append(quote(metric.getDisplayName()));
+        json.append(",\"unit\":").append(quote(metric.getUnit()));
+        json.append(",\"start\":").append(view.getStartMillis());
+        json.append(",\"columnMillis\":").append(view.getColumnMillis());
+        json.append(",\"min\":").append(number(view.getMin()));
+        json.append(",\"mean\":").append(number(view.getMean()));
+        json.append(",\"max\":").append(number(view.getMax()));
+        json.append(",\"maxAt\":").append(view.getMaxAtMillis());
+        String[] names = {"average", "minimum", "maximum"};
+        for (int series = 0; series < names.length; series++) {
+            json.append(",\"").append(names[series]).append("\":[");
+            for (int i = 0; i < view.getColumns(); i++) {
+                double value = series == 0 ? view.getAverage(i) : series == 1 ? view.getMinimum(i) : view.getMaximum(i);
+                json.append(i == 0 ? "" : ",").append(number(value));
+            }
+            json.append(']');
+        }
+        send(exchange, 200, "application/json", json.append('}').toString());
+    }
+    
+    /**
+     * 打开SSE连接：缓存的最近日志作为第一段数据放入发送队列，再加入广播列表，
+     * 之后处理线程一直负责把队列中的数据写给这个页面，直到连接断开
+     */
+    private void openEventStream(HttpExchange exchange) throws IOException {
+        if (clients.size() >= maxClients) {
+            send(exchange, 503, "text/plain", "Too many viewers");
+            return;
+        }
+        exchange.getResponseHeaders().set("Content-Type", "text/event-stream; charset=utf-8");
+        exchange.getResponseHeaders().set("Cache-Control", "no-store");
+        exchange.sendResponseHeaders(200, 0);
+        Client client = new Client(exchange);
+        StringBuilder initial = new StringBuilder("retry: 3000\n\n");
+        // 在广播任务取出新日志的同一把锁内入队，新数据不会插到缓存的日志前面
+        synchronized (backlog) {
+            int start = (backlogNext - backlogSize + backlog.length) % backlog.length;
+            for (int i = 0; i < backlogSize; i++) {
+                appendEvent(initial, "log", quote(backlog[(start + i) % backlog.length]));
+            }
+            client.offer(initial.toString().getBytes(StandardCharsets.UTF_8));
+            clients.add(client);
+        }
+        try {
+            client.writeLoop();
+        } finally {
+            clients.remove(client);
+        }
+    }
+    
+    private static void appendEvent(StringBuilder events, String name, String data) {
+        events.append("event: ").append(name).append("\ndata: ").append(data).append("\n\n");
+    }
+    
+    private static void send(HttpExchange exchange, int status, String contentType, String body) throws IOException {
+        send(exchange, status, contentType, body.getBytes(StandardCharsets.UTF_8));
+    }
+    
+    private static void send(HttpExchange exchange, int status, String contentType, byte[] body) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", contentType + "; charset=utf-8");
+        exchange.getResponseHeaders().set("Cache-Control", "no-store");
+        exchange.getResponseHeaders().set("X-Content-Type-Options", "nosniff");
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+    
+    private static Map<String, String> parseQuery(String rawQuery) {
+        Map<String, String> query = new HashMap<>();
+        if (rawQuery == null || rawQuery.isEmpty()) {
+            return query;
+        }
+        for (String pair : rawQuery.split("&")) {
+            int eq = pair.indexOf('=');
+            String key = URLDecoder.decode(eq < 0 ? pair : pair.substring(0, eq), StandardCharsets.UTF_8);
+            String value = eq < 0 ? "" : URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8);
+            query.putIfAbsent(key, value);
+        }
+        return query;
+    }
+    
+    /**
+     * 将字符串编码为JSON字符串，结果不含换行，可以直接作为SSE的一行data
+     */
+    private static String quote(String value) {
+        StringBuilder json = new StringBuilder(value.length() + 2).append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    json.append("\\\"");
+                    break;
+                case '\\':
+                    json.append("\\\\");
+                    break;
+                case '\n':
+                    json.append("\\n");
+                    break;
+                case '\r':
+                    json.append("\\r");
+                    break;
+                case '\t':
+                    json.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        json.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        json.append(c);
+                    }
+                    break;
+            }
+        }
+        return json.append('"').toString();
+    }
+    
+    private static String number(double value) {
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            return "null";
+        }
+        return String.format(Locale.ROOT, "%.2f", value);
+    }
+    
+    /**
+     * 一个打开的SSE连接，广播任务只向发送队列放入数据，由连接自己的请求线程写出
+     */
+    private static final class Client {
+        
+        private final HttpExchange exchange;
+        private final OutputStream out;
+        private final LinkedBlockingQueue<byte[]> queue = new LinkedBlockingQueue<>();
+        private final AtomicLong queuedBytes = new AtomicLong();
+        private volatile boolean closed;
+        private volatile long writeStartedNanos;
+        private Thread writer;
+        
+        Client(HttpExchange exchange) {
+            this.exchange = exchange;
+            this.out = exchange.getResponseBody();
+        }
+        
+        /**
+         * 放入一段待发送的数据
+         * @return 是否成功，连接已关闭或积压超过上限时返回false
+         */
+        boolean offer(byte[] payload) {
+            if (closed) {
+                return false;
+            }
+            // 队列为空时总是接受，单段数据超过上限的页面不会因此被断开
+            long queued = queuedBytes.addAndGet(payload.length);
+            if (queued > CLIENT_BUFFER_BYTES && queued != payload.length) {
+                queuedBytes.addAndGet(-payload.length);
+                return false;
+            }
+            queue.offer(payload);
+            return true;
+        }
+        
+        /**
+         * 检查当前的写入是否已经卡住太久
+         * @param now 当前时间(System.nanoTime)
+         * @return 是否卡住
+         */
+        boolean isStalled(long now) {
+            long started = writeStartedNanos;
+            return started != 0L && now - started > TimeUnit.MILLISECONDS.toNanos(WRITE_TIMEOUT_MILLIS);
+        }
+        
+        /**
+         * 在请求线程中循环写出队列中的数据，直到连接断开或被关闭
+         */
+        void writeLoop() {
+            synchronized (this) {
+                writer = Thread.currentThread();
+            }
+            try {
+                while (!closed) {
+                    byte[] payload = queue.take();
+                    queuedBytes.addAndGet(-payload.length);
+                    writeStartedNanos = System.nanoTime();
+                    out.write(payload);
+                    out.flush();
+                    writeStartedNanos = 0L;
+                }
+            } catch (IOException | InterruptedException e) {
+                // 页面已关闭，或者接收过慢被断开
+            } finally {
+                closed = true;
+                synchronized (this) {
+                    writer = null;
+                }
+                // 中断只用于唤醒本连接的写入，不能留给执行器中的下一个任务
+                Thread.interrupted();
+                queue.clear();
+                exchange.close();
+            }
+        }
+        
+        /**
+         * 关闭连接：中断请求线程，正在阻塞的写入会因通道被关闭而立即失败
+         */
+        void close() {
+            closed = true;
+            queue.clear();
+            synchronized (this) {
+                if (writer != null) {
+                    writer.interrupt();
+                }
+            }
+        }
+    }
+    
+    /**
+     * 代理最近一次启动的结果，从frpc日志中解析
+     */
+    private static final class ProxyStatus {
+        
+        private final boolean success;
+        private final String message;
+        private final long sinceMillis;
+        
+        ProxyStatus(boolean success, String message, long sinceMillis) {
+            this.success = success;
+            this.message = message;
+            this.sinceMillis = sinceMillis;
+        }
+    }
+}
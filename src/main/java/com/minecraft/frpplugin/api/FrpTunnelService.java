@@ -0,0 +1,45 @@
+package com.minecraft.frpplugin.api;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 供其他插件使用的frp隧道服务，通过Bukkit的ServicesManager获取:
+ * <pre>
+ * FrpTunnelService service = Bukkit.getServicesManager().load(FrpTunnelService.class);
+ * </pre>
+ * 所有查询方法只读取缓存的快照，可以在每个tick调用；耗时操作以异步方式执行
+ */
+public interface FrpTunnelService {
+    
+    /**
+     * 获取最新的隧道快照
+     * @return 隧道快照，不会为null
+     */
+    TunnelSnapshot getSnapshot();
+    
+    /**
+     * 获取隧道当前状态
+     * @return 隧道状态
+     */
+    default TunnelState getState() {
+        return getSnapshot().getState();
+    }
+    
+    /**
+     * 异步启动frpc
+     * @return 启动结果
+     */
+    CompletableFuture<Boolean> start();
+    
+    /**
+     * 异步停止frpc
+     * @return 停止完成后结束的Future
+     */
+    CompletableFuture<Void> stop();
+    
+    /**
+     * 异步重启frpc
+     * @return 重新启动的结果
+     */
+    CompletableFuture<Boolean> restart();
+}
@@ -0,0 +1,50 @@
+package com.minecraft.frpplugin.api;
+
+import org.bukkit.event.Event;
+import org.bukkit.event.HandlerList;
+
+/**
+ * frp隧道状态变化事件，始终在主线程触发
+ */
+public class FrpTunnelStateChangeEvent extends Event {
+    
+    private static final HandlerList HANDLERS = new HandlerList();
+    
+    private final TunnelState previousState;
+    private final TunnelState newState;
+    
+    /**
+     * 构造函数
+     * @param previousState 变化前的状态
+     * @param newState 变化后的状态
+     */
+    public FrpTunnelStateChangeEvent(TunnelState previousState, TunnelState newState) {
+        this.previousState = previousState;
+        this.newState = newState;
+    }
+    
+    /**
+     * 获取变化前的状态
+     * @return 变化前的状态
+     */
+    public TunnelState getPreviousState() {
+        return previousState;
+    }
+    
+    /**
+     * 获取变化后的状态
+     * @return 变化后的状态
+     */
+    public TunnelState getNewState() {
+        return newState;
+    }
+    
+    @Override
+    public HandlerList getHandlers() {
+        return HANDLERS;
+    }
+    
+    public static HandlerList getHandlerList() {
+        return HANDLERS;
+    }
+}
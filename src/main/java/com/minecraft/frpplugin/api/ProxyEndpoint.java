@@ -0,0 +1,71 @@
+package com.minecraft.frpplugin.api;
+
+/**
+ * 单个代理的公网访问端点
+ */
+public final class ProxyEndpoint {
+    
+    private final String name;
+    private final String type;
+    private final String host;
+    private final int port;
+    
+    /**
+     * 构造函数
+     * @param name 代理名称
+     * @param type 代理类型，例如tcp、udp、http
+     * @param host 公网主机名
+     * @param port 公网端口，未知时为-1
+     */
+    public ProxyEndpoint(String name, String type, String host, int port) {
+        this.name = name;
+        this.type = type;
+        this.host = host;
+        this.port = port;
+    }
+    
+    /**
+     * 获取代理名称
+     * @return 代理名称
+     */
+    public String getName() {
+        return name;
+    }
+    
+    /**
+     * 获取代理类型
+     * @return 代理类型
+     */
+    public String getType() {
+        return type;
+    }
+    
+    /**
+     * 获取公网主机名
+     * @return 公网主机名
+     */
+    public String getHost() {
+        return host;
+    }
+    
+    /**
+     * 获取公网端口
+     * @return 公网端口，未知时为-1
+     */
+    public int getPort() {
+        return port;
+    }
+    
+    /**
+     * 获取玩家可直接使用的地址
+     * @return 形如host:port的地址，端口未知时只返回主机名
+     */
+    public String getAddress() {
+        return port > 0 ? host + ":" + port : host;
+    }
+    
+    @Override
+    public String toString() {
+        return name + "(" + type + ") " + getAddress();
+    }
+}
@@ -0,0 +1,112 @@
+package com.minecraft.frpplugin.api;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 隧道状态的不可变快照，状态变化时整体替换，读取时不会阻塞
+ */
+public final class TunnelSnapshot {
+    
+    /**
+     * 尚未启动过frpc时的空快照
+     */
+    public static final TunnelSnapshot EMPTY = new TunnelSnapshot(
+            TunnelState.STOPPED, System.currentTimeMillis(), 0L, Collections.emptyList(), -1L, -1L, -1L);
+    
+    private final TunnelState state;
+    private final long stateSinceMillis;
+    private final long startedAtMillis;
+    private final List<ProxyEndpoint> endpoints;
+    private final long bytesIn;
+    private final long bytesOut;
+    private final long rttMillis;
+    
+    /**
+     * 构造函数
+     * @param state 隧道状态
+     * @param stateSinceMillis 进入当前状态的时间戳
+     * @param startedAtMillis frpc进程启动的时间戳，未运行时为0
+     * @param endpoints 各代理的公网端点
+     * @param bytesIn 入站字节数，不可用时为-1
+     * @param bytesOut 出站字节数，不可用时为-1
+     * @param rttMillis 最近一次测得的往返延迟(毫秒)，不可用时为-1
+     */
+    public TunnelSnapshot(TunnelState state, long stateSinceMillis, long startedAtMillis,
+                          List<ProxyEndpoint> endpoints, long bytesIn, long bytesOut, long rttMillis) {
+        this.state = state;
+        this.stateSinceMillis = stateSinceMillis;
+        this.startedAtMillis = startedAtMillis;
+        this.endpoints = Collections.unmodifiableList(endpoints);
+        this.bytesIn = bytesIn;
+        this.bytesOut = bytesOut;
+        this.rttMillis = rttMillis;
+    }
+    
+    /**
+     * 获取隧道状态
+     * @return 隧道状态
+     */
+    public TunnelState getState() {
+        return state;
+    }
+    
+    /**
+     * 获取进入当前状态的时间戳
+     * @return 毫秒时间戳
+     */
+    public long getStateSinceMillis() {
+        return stateSinceMillis;
+    }
+    
+    /**
+     * 获取frpc进程的运行时长
+     * @return 运行时长(毫秒)，未运行时为0
+     */
+    public long getUptimeMillis() {
+        if (startedAtMillis <= 0 || !state.isActive()) {
+            return 0L;
+        }
+        return System.currentTimeMillis() - startedAtMillis;
+    }
+    
+    /**
+     * 获取所有代理的公网端点
+     * @return 不可修改的端点列表
+     */
+    public List<ProxyEndpoint> getEndpoints() {
+        return endpoints;
+    }
+    
+    /**
+     * 获取第一个代理的公网地址，通常就是游戏端口
+     * @return 公网地址，没有代理时返回null
+     */
+    public String getPrimaryAddress() {
+        return endpoints.isEmpty() ? null : endpoints.get(0).getAddress();
+    }
+    
+    /**
+     * 获取入站字节数
+     * @return 入站字节数，不可用时为-1
+     */
+    public long getBytesIn() {
+        return bytesIn;
+    }
+    
+    /**
+     * 获取出站字节数
+     * @return 出站字节数，不可用时为-1
+     */
+    public long getBytesOut() {
+        return bytesOut;
+    }
+    
+    /**
+     * 获取最近一次测得的往返延迟
+     * @return 往返延迟(毫秒)，不可用时为-1
+     */
+    public long getRttMillis() {
+        return rttMillis;
+    }
+}
@@ -0,0 +1,66 @@
+package com.minecraft.frpplugin.api;
+
+/**
+ * frp隧道的运行状态
+ */
+public enum TunnelState {
+    
+    /**
+     * 已停止
+     */
+    STOPPED("已停止", false),
+    
+    /**
+     * 正在启动frpc进程
+     */
+    STARTING("启动中", true),
+    
+    /**
+     * frpc进程已启动，正在连接frps
+     */
+    CONNECTING("连接中", true),
+    
+    /**
+     * 隧道已建立
+     */
+    ONLINE("运行中", true),
+    
+    /**
+     * frpc进程存活，但隧道工作不正常
+     */
+    DEGRADED("异常", true),
+    
+    /**
+     * 正在停止frpc进程
+     */
+    STOPPING("停止中", false),
+    
+    /**
+     * frpc进程意外退出
+     */
+    CRASHED("已崩溃", false);
+    
+    private final String displayName;
+    private final boolean active;
+    
+    TunnelState(String displayName, boolean active) {
+        this.displayName = displayName;
+        this.active = active;
+    }
+    
+    /**
+     * 获取状态的显示名称
+     * @return 显示名称
+     */
+    public String getDisplayName() {
+        return displayName;
+    }
+    
+    /**
+     * 是否处于frpc进程存活(或即将存活)的状态
+     * @return 如果处于启动中、连接中、运行中或异常状态返回true
+     */
+    public boolean isActive() {
+        return active;
+    }
+}
@@ -0,0 +1,49 @@
+package com.minecraft.frpplugin.metrics;
+
+/**
+ * 通过JMX暴露的插件线程使用情况
+ */
+public interface ExecutorMXBean {
+    
+    /**
+     * 是否使用虚拟线程
+     * @return Java 21及以上为true
+     */
+    boolean isVirtualThreads();
+    
+    /**
+     * 获取正在执行的任务数
+     * @return 任务数
+     */
+    int getActiveTasks();
+    
+    /**
+     * 获取正在执行的长期任务数(读取frpc输出、跟随日志等循环)，包含在正在执行的任务数中
+     * @return 任务数
+     */
+    int getLongRunningTasks();
+    
+    /**
+     * 获取排队等待执行的任务数
+     * @return 任务数，虚拟线程和长期任务没有队列，不会排队
+     */
+    int getQueuedTasks();
+    
+    /**
+     * 获取当前的线程数
+     * @return 线程数，虚拟线程每个任务一个线程，与正在执行的任务数相同
+     */
+    int getThreadCount();
+    
+    /**
+     * 获取曾经同时存在的最大线程数
+     * @return 线程数
+     */
+    int getPeakThreadCount();
+    
+    /**
+     * 获取已完成的任务数
+     * @return 任务数
+     */
+    long getCompletedTasks();
+}
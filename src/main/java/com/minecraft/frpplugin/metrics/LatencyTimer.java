@@ -0,0 +1,116 @@
+package com.minecraft.frpplugin.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 低开销的耗时直方图
+ * 以微秒为单位按2的幂分桶，记录一次只需要几次无锁的原子加法，分位数按桶的上界估算
+ */
+public class LatencyTimer implements TimerMXBean {
+    
+    private static final int BUCKETS = 42;
+    
+    private final String name;
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private final AtomicLong maxNanos = new AtomicLong();
+    
+    /**
+     * 构造函数
+     * @param name 计时器名称
+     */
+    public LatencyTimer(String name) {
+        this.name = name;
+    }
+    
+    /**
+     * 获取计时器名称
+     * @return 名称
+     */
+    public String getName() {
+        return name;
+    }
+    
+    /**
+     * 记录一次耗时
+     * @param nanos 耗时(纳秒)
+     */
+    public void record(long nanos) {
+        if (nanos < 0) {
+            return;
+        }
+        long micros = nanos / 1000;
+        int bucket = Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(micros));
+        buckets.incrementAndGet(bucket);
+        count.increment();
+        totalNanos.add(nanos);
+        maxNanos.accumulateAndGet(nanos, Math::max);
+    }
+    
+    @Override
+    public long getCount() {
+        return count.sum();
+    }
+    
+    @Override
+    public double getTotalMillis() {
+        return totalNanos.sum() / 1_000_000d;
+    }
+    
+    @Override
+    public double getMeanMillis() {
+        long n = count.sum();
+        return n == 0 ? 0d : totalNanos.sum() / 1_000_000d / n;
+    }
+    
+    @Override
+    public double getMaxMillis() {
+        return maxNanos.get() / 1_000_000d;
+    }
+    
+    @Override
+    public double getP50Millis() {
+        return percentileMillis(0.50);
+    }
+    
+    @Override
+    public double getP95Millis() {
+        return percentileMillis(0.95);
+    }
+    
+    @Override
+    public double getP99Millis() {
+        return percentileMillis(0.99);
+    }
+    
+    /**
+     * 按桶估算分位数，结果不超过实际的最大值
+     * @param quantile 分位点，0到1之间
+     * @return 分位数(毫秒)
+     */
+    private double percentileMillis(double quantile) {
+        long[] snapshot = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = buckets.get(i);
+            total += snapshot[i];
+        }
+        if (total == 0) {
+            return 0d;
+        }
+        long target = (long) Math.ceil(total * quantile);
+        long cumulative = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            cumulative += snapshot[i];
+            if (cumulative >= target) {
+                // 第i个桶包含[2^(i-1), 2^i)微秒
+                double upperMillis = (i == 0 ? 1L : 1L << i) / 1000d;
+                return Math.min(upperMillis, getMaxMillis());
+            }
+        }
+        return getMaxMillis();
+    }
+}
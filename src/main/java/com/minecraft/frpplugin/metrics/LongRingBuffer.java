@@ -0,0 +1,107 @@
+package com.minecraft.frpplugin.metrics;
+
+/**
+ * LongRingBuffer - 固定容量的long环形缓冲区，写满后覆盖最旧的值
+ * 只保存基本类型，采样时不产生装箱对象；由单个线程写入，读取方可能看到略旧的值
+ */
+public class LongRingBuffer {
+    
+    private final long[] values;
+    private volatile int size;
+    private volatile int next;
+    
+    /**
+     * 构造函数
+     * @param capacity 容量
+     */
+    public LongRingBuffer(int capacity) {
+        this.values = new long[Math.max(1, capacity)];
+    }
+    
+    /**
+     * 追加一个值
+     * @param value 值
+     */
+    public void add(long value) {
+        values[next] = value;
+        next = (next + 1) % values.length;
+        if (size < values.length) {
+            size++;
+        }
+    }
+    
+    /**
+     * 清空缓冲区
+     */
+    public void clear() {
+        size = 0;
+        next = 0;
+    }
+    
+    /**
+     * 获取当前保存的值的数量
+     * @return 数量
+     */
+    public int size() {
+        return size;
+    }
+    
+    /**
+     * 按时间顺序获取值
+     * @param index 序号，0为最旧的值
+     * @return 值
+     */
+    public long get(int index) {
+        int count = size;
+        if (index < 0 || index >= count) {
+            throw new IndexOutOfBoundsException("index " + index + ", size " + count);
+        }
+        int start = (next - count + values.length) % values.length;
+        return values[(start + index) % values.length];
+    }
+    
+    /**
+     * 获取最新的值
+     * @param fallback 缓冲区为空时返回的值
+     * @return 最新的值
+     */
+    public long latest(long fallback) {
+        return size == 0 ? fallback : values[(next - 1 + values.length) % values.length];
+    }
+    
+    /**
+     * 获取最大值
+     * @param fallback 缓冲区为空时返回的值
+     * @return 最大值
+     */
+    public long max(long fallback) {
+        int count = size;
+        if (count == 0) {
+            return fallback;
+        }
+        long max = Long.MIN_VALUE;
+        for (int i = 0; i < count; i++) {
+            max = Math.max(max, get(i));
+        }
+        return max;
+    }
+    
+    /**
+     * 判断最近的count个值是否都不小于阈值
+     * @param count 值的个数
+     * @param threshold 阈值
+     * @return 值不足count个时返回false
+     */
+    public boolean allAtLeast(int count, long threshold) {
+        int available = size;
+        if (count <= 0 || available < count) {
+            return false;
+        }
+        for (int i = available - count; i < available; i++) {
+            if (get(i) < threshold) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
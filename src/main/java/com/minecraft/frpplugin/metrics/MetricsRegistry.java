@@ -0,0 +1,114 @@
+package com.minecraft.frpplugin.metrics;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Logger;
+
+/**
+ * MetricsRegistry - 插件的计时器注册表
+ * 每个计时器在第一次使用时注册为JMX MBean(com.minecraft.frpplugin:type=Timer,name=...)，插件禁用时全部注销
+ */
+public class MetricsRegistry {
+    
+    /**
+     * JMX域名
+     */
+    public static final String JMX_DOMAIN = "com.minecraft.frpplugin";
+    
+    private final Logger logger;
+    private final Map<String, LatencyTimer> timers = new ConcurrentHashMap<>();
+    private final List<ObjectName> registered = new ArrayList<>();
+    private volatile boolean closed;
+    
+    /**
+     * 构造函数
+     * @param logger 日志记录器
+     */
+    public MetricsRegistry(Logger logger) {
+        this.logger = logger;
+    }
+    
+    /**
+     * 获取计时器，不存在时创建并注册到JMX
+     * @param name 计时器名称
+     * @return 计时器
+     */
+    public LatencyTimer timer(String name) {
+        LatencyTimer timer = timers.get(name);
+        if (timer != null) {
+            return timer;
+        }
+        return timers.computeIfAbsent(name, key -> {
+            LatencyTimer created = new LatencyTimer(key);
+            registerMBean("Timer", key, created);
+            return created;
+        });
+    }
+    
+    /**
+     * 记录从startNanos到现在的耗时
+     * @param name 计时器名称
+     * @param startNanos 开始时间(System.nanoTime)
+     */
+    public void record(String name, long startNanos) {
+        timer(name).record(System.nanoTime() - startNanos);
+    }
+    
+    /**
+     * 获取所有计时器
+     * @return 按名称排序的计时器列表
+     */
+    public List<LatencyTimer> getTimers() {
+        List<LatencyTimer> result = new ArrayList<>(timers.values());
+        result.sort(Comparator.comparing(LatencyTimer::getName));
+        return result;
+    }
+    
+    /**
+     * 注册MBean
+     * @param type MBean类型
+     * @param name MBean名称
+     * @param bean MBean对象
+     */
+    public synchronized void registerMBean(String type, String name, Object bean) {
+        if (closed) {
+            return;
+        }
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName objectName = new ObjectName(JMX_DOMAIN + ":type=" + type + ",name=" + ObjectName.quote(name));
+            // 插件重载后上一次注册的MBean可能还在
+            if (server.isRegistered(objectName)) {
+                server.unregisterMBean(objectName);
+            }
+            server.registerMBean(bean, objectName);
+            registered.add(objectName);
+        } catch (Exception e) {
+            logger.warning("注册JMX MBean " + name + " 失败: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * 注销所有MBean
+     */
+    public synchronized void close() {
+        closed = true;
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        for (ObjectName objectName : registered) {
+            try {
+                if (server.isRegistered(objectName)) {
+                    server.unregisterMBean(objectName);
+                }
+            } catch (Exception e) {
+                logger.warning("注销JMX MBean " + objectName + " 失败: " + e.getMessage());
+            }
+        }
+        registered.clear();
+    }
+}
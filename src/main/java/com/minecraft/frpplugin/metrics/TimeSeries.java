@@ -0,0 +1,380 @@
+package com.minecraft.frpplugin.metrics;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * TimeSeries - 一个指标的多分辨率历史，内存大小固定
+ * 每个采样同时累加到每秒、每分钟、每小时三级环形数组中对应的时间桶，桶中只保存最小值、最大值、总和与采样数，
+ * 相当于在写入时完成降采样；所有数组在构造时分配，写入不产生任何对象
+ */
+public class TimeSeries {
+    
+    /**
+     * 时间分辨率
+     */
+    public enum Resolution {
+        /**
+         * 每秒一个桶，保存10分钟
+         */
+        SECOND(1_000L, 600),
+        /**
+         * 每分钟一个桶，保存一天
+         */
+        MINUTE(60_000L, 1_440),
+        /**
+         * 每小时一个桶，保存30天
+         */
+        HOUR(3_600_000L, 720);
+        
+        private final long bucketMillis;
+        private final int capacity;
+        
+        Resolution(long bucketMillis, int capacity) {
+            this.bucketMillis = bucketMillis;
+            this.capacity = capacity;
+        }
+        
+        /**
+         * 获取每个桶的时长
+         * @return 毫秒
+         */
+        public long getBucketMillis() {
+            return bucketMillis;
+        }
+        
+        /**
+         * 获取保存的桶数
+         * @return 桶数
+         */
+        public int getCapacity() {
+            return capacity;
+        }
+    }
+    
+    private final String name;
+    private final Tier[] tiers;
+    
+    /**
+     * 构造函数
+     * @param name 指标名称
+     */
+    public TimeSeries(String name) {
+        this.name = name;
+        Resolution[] resolutions = Resolution.values();
+        this.tiers = new Tier[resolutions.length];
+        for (int i = 0; i < resolutions.length; i++) {
+            tiers[i] = new Tier(resolutions[i]);
+        }
+    }
+    
+    /**
+     * 获取指标名称
+     * @return 指标名称
+     */
+    public String getName() {
+        return name;
+    }
+    
+    /**
+     * 记录一个采样
+     * @param timeMillis 采样时间(毫秒时间戳)
+     * @param value 值，NaN会被忽略
+     */
+    public synchronized void record(long timeMillis, double value) {
+        if (Double.isNaN(value)) {
+            return;
+        }
+        for (Tier tier : tiers) {
+            tier.record(timeMillis, value);
+        }
+    }
+    
+    /**
+     * 按指定分辨率读取到现在为止保存的整个时间范围，并合并为指定的列数
+     * @param resolution 分辨率
+     * @param nowMillis 当前时间(毫秒时间戳)
+     * @param columns 列数
+     * @return 读取结果
+     */
+    public synchronized View view(Resolution resolution, long nowMillis, int columns) {
+        return tiers[resolution.ordinal()].view(nowMillis, Math.max(1, columns));
+    }
+    
+    /**
+     * 写入所有桶
+     * @param out 输出流
+     * @throws IOException 如果写入失败
+     */
+    public synchronized void writeTo(DataOutputStream out) throws IOException {
+        for (Tier tier : tiers) {
+            tier.writeTo(out);
+        }
+    }
+    
+    /**
+     * 读取writeTo写入的桶，覆盖当前的内容
+     * @param in 输入流
+     * @throws IOException 如果读取失败或格式不匹配
+     */
+    public synchronized void readFrom(DataInputStream in) throws IOException {
+        for (Tier tier : tiers) {
+            tier.readFrom(in);
+        }
+    }
+    
+    /**
+     * 一种分辨率的环形数组，head指向最新的桶，headBucket是它对应的桶序号(时间戳除以桶时长)
+     */
+    private static final class Tier {
+        
+        private final long bucketMillis;
+        private final double[] min;
+        private final double[] max;
+        private final double[] sum;
+        private final long[] count;
+        private long headBucket = -1;
+        private int head;
+        
+        Tier(Resolution resolution) {
+            this.bucketMillis = resolution.getBucketMillis();
+            int capacity = resolution.getCapacity();
+            this.min = new double[capacity];
+            this.max = new double[capacity];
+            this.sum = new double[capacity];
+            this.count = new long[capacity];
+        }
+        
+        void record(long timeMillis, double value) {
+            long bucket = timeMillis / bucketMillis;
+            if (headBucket < 0 || bucket > headBucket) {
+                // 跳过的桶(例如插件未运行的时间)清空，超过容量时整个数组都会被清空
+                long steps = headBucket < 0 ? count.length : Math.min(bucket - headBucket, count.length);
+                for (long i = 0; i < steps; i++) {
+                    head = (head + 1) % count.length;
+                    count[head] = 0;
+                }
+                headBucket = bucket;
+            }
+            int slot = slotOf(bucket);
+            if (slot < 0) {
+                return;
+            }
+            if (count[slot] == 0) {
+                min[slot] = value;
+                max[slot] = value;
+                sum[slot] = value;
+            } else {
+                min[slot] = Math.min(min[slot], value);
+                max[slot] = Math.max(max[slot], value);
+                sum[slot] += value;
+            }
+            count[slot]++;
+        }
+        
+        /**
+         * 获取桶所在的位置
+         * @return 位置，桶已被覆盖或尚未到来时为-1
+         */
+        private int slotOf(long bucket) {
+            long age = headBucket - bucket;
+            if (headBucket < 0 || age < 0 || age >= count.length) {
+                return -1;
+            }
+            return (int) ((head - age + count.length) % count.length);
+        }
+        
+        View view(long nowMillis, int columns) {
+            int capacity = count.length;
+            int bucketsPerColumn = (capacity + columns - 1) / columns;
+            int columnCount = (capacity + bucketsPerColumn - 1) / bucketsPerColumn;
+            long lastBucket = nowMillis / bucketMillis;
+            long firstBucket = lastBucket - capacity + 1;
+            
+            View view = new View(firstBucket * bucketMillis, bucketsPerColumn * bucketMillis, columnCount);
+            long[] columnSamples = new long[columnCount];
+            double[] columnSum = new double[columnCount];
+            for (long bucket = firstBucket; bucket <= lastBucket; bucket++) {
+                int slot = slotOf(bucket);
+                if (slot < 0 || count[slot] == 0) {
+                    continue;
+                }
+                int column = (int) ((bucket - firstBucket) / bucketsPerColumn);
+                columnSamples[column] += count[slot];
+                columnSum[column] += sum[slot];
+                view.maximum[column] = Double.isNaN(view.maximum[column])
+                        ? max[slot] : Math.max(view.maximum[column], max[slot]);
+                view.minimum[column] = Double.isNaN(view.minimum[column])
+                        ? min[slot] : Math.min(view.minimum[column], min[slot]);
+                if (view.samples == 0 || max[slot] > view.max) {
+                    view.max = max[slot];
+                    view.maxAtMillis = bucket * bucketMillis;
+                }
+                if (view.samples == 0 || min[slot] < view.min) {
+                    view.min = min[slot];
+                }
+                view.samples += count[slot];
+                view.total += sum[slot];
+            }
+            for (int i = 0; i < columnCount; i++) {
+                if (columnSamples[i] > 0) {
+                    view.average[i] = columnSum[i] / columnSamples[i];
+                }
+            }
+            return view;
+        }
+        
+        void writeTo(DataOutputStream out) throws IOException {
+            out.writeLong(bucketMillis);
+            out.writeInt(count.length);
+            out.writeLong(headBucket);
+            out.writeInt(head);
+            for (int i = 0; i < count.length; i++) {
+                out.writeLong(count[i]);
+                out.writeDouble(min[i]);
+                out.writeDouble(max[i]);
+                out.writeDouble(sum[i]);
+            }
+        }
+        
+        void readFrom(DataInputStream in) throws IOException {
+            if (in.readLong() != bucketMillis || in.readInt() != count.length) {
+                throw new IOException("历史数据的分辨率与当前版本不一致");
+            }
+            long savedHeadBucket = in.readLong();
+            int savedHead = in.readInt();
+            if (savedHead < 0 || savedHead >= count.length) {
+                throw new IOException("历史数据已损坏");
+            }
+            for (int i = 0; i < count.length; i++) {
+                count[i] = in.readLong();
+                min[i] = in.readDouble();
+                max[i] = in.readDouble();
+                sum[i] = in.readDouble();
+            }
+            headBucket = savedHeadBucket;
+            head = savedHead;
+        }
+    }
+    
+    /**
+     * 按列合并后的历史，用于显示
+     */
+    public static final class View {
+        
+        private final long startMillis;
+        private final long columnMillis;
+        private final double[] average;
+        private final double[] minimum;
+        private final double[] maximum;
+        private long samples;
+        private double total;
+        private double min = Double.NaN;
+        private double max = Double.NaN;
+        private long maxAtMillis = -1;
+        
+        View(long startMillis, long columnMillis, int columns) {
+            this.startMillis = startMillis;
+            this.columnMillis = columnMillis;
+            this.average = new double[columns];
+            this.minimum = new double[columns];
+            this.maximum = new double[columns];
+            Arrays.fill(average, Double.NaN);
+            Arrays.fill(minimum, Double.NaN);
+            Arrays.fill(maximum, Double.NaN);
+        }
+        
+        /**
+         * 获取第一列的开始时间
+         * @return 毫秒时间戳
+         */
+        public long getStartMillis() {
+            return startMillis;
+        }
+        
+        /**
+         * 获取每列覆盖的时长
+         * @return 毫秒
+         */
+        public long getColumnMillis() {
+            return columnMillis;
+        }
+        
+        /**
+         * 获取列数
+         * @return 列数
+         */
+        public int getColumns() {
+            return average.length;
+        }
+        
+        /**
+         * 获取一列的平均值
+         * @param column 列序号，0为最早的一列
+         * @return 平均值，没有采样时为NaN
+         */
+        public double getAverage(int column) {
+            return average[column];
+        }
+        
+        /**
+         * 获取一列的最小值
+         * @param column 列序号，0为最早的一列
+         * @return 最小值，没有采样时为NaN
+         */
+        public double getMinimum(int column) {
+            return minimum[column];
+        }
+        
+        /**
+         * 获取一列的最大值
+         * @param column 列序号，0为最早的一列
+         * @return 最大值，没有采样时为NaN
+         */
+        public double getMaximum(int column) {
+            return maximum[column];
+        }
+        
+        /**
+         * 获取整个范围内的采样数
+         * @return 采样数
+         */
+        public long getSamples() {
+            return samples;
+        }
+        
+        /**
+         * 获取整个范围内的平均值
+         * @return 平均值，没有采样时为NaN
+         */
+        public double getMean() {
+            return samples == 0 ? Double.NaN : total / samples;
+        }
+        
+        /**
+         * 获取整个范围内的最小值
+         * @return 最小值，没有采样时为NaN
+         */
+        public double getMin() {
+            return min;
+        }
+        
+        /**
+         * 获取整个范围内的最大值
+         * @return 最大值，没有采样时为NaN
+         */
+        public double getMax() {
+            return max;
+        }
+        
+        /**
+         * 获取最大值所在的桶的开始时间
+         * @return 毫秒时间戳，没有采样时为-1
+         */
+        public long getMaxAtMillis() {
+            return maxAtMillis;
+        }
+    }
+}
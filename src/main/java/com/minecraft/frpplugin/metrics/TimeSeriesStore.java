@@ -0,0 +1,98 @@
+package com.minecraft.frpplugin.metrics;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * TimeSeriesStore - 一组固定的时间序列，可以整体保存到文件并在下次启用时恢复
+ * 指标集合在构造时确定，之后不再分配内存；文件中名称或分辨率与当前版本不一致的部分会被忽略
+ */
+public class TimeSeriesStore {
+    
+    private static final int MAGIC = 0x46525048;
+    private static final int FORMAT_VERSION = 1;
+    
+    private final Map<String, TimeSeries> series = new LinkedHashMap<>();
+    
+    /**
+     * 构造函数
+     * @param names 指标名称
+     */
+    public TimeSeriesStore(String... names) {
+        for (String name : names) {
+            series.put(name, new TimeSeries(name));
+        }
+    }
+    
+    /**
+     * 获取指标的时间序列
+     * @param name 指标名称
+     * @return 时间序列，不存在时返回null
+     */
+    public TimeSeries get(String name) {
+        return series.get(name);
+    }
+    
+    /**
+     * 保存到文件，先写入临时文件再替换，写到一半时原文件不受影响
+     * @param file 文件
+     * @throws IOException 如果写入失败
+     */
+    public void save(File file) throws IOException {
+        File temp = new File(file.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeInt(series.size());
+            for (TimeSeries timeSeries : series.values()) {
+                out.writeUTF(timeSeries.getName());
+                timeSeries.writeTo(out);
+            }
+        }
+        try {
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+    
+    /**
+     * 从文件恢复，遇到不认识的指标时停止读取，已读取的指标保留
+     * @param file 文件
+     * @return 恢复的指标数，文件不存在时为0
+     * @throws IOException 如果文件损坏或格式不匹配
+     */
+    public int load(File file) throws IOException {
+        if (!file.exists()) {
+            return 0;
+        }
+        int loaded = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+                throw new IOException("不是可识别的历史数据文件");
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                TimeSeries timeSeries = series.get(in.readUTF());
+                if (timeSeries == null) {
+                    // 每个指标的长度取决于分辨率，无法跳过不认识的指标
+                    break;
+                }
+                timeSeries.readFrom(in);
+                loaded++;
+            }
+        }
+        return loaded;
+    }
+}
@@ -0,0 +1,49 @@
+package com.minecraft.frpplugin.metrics;
+
+/**
+ * 通过JMX暴露的计时器，所有时间单位均为毫秒
+ */
+public interface TimerMXBean {
+    
+    /**
+     * 获取调用次数
+     * @return 调用次数
+     */
+    long getCount();
+    
+    /**
+     * 获取累计耗时
+     * @return 累计耗时(毫秒)
+     */
+    double getTotalMillis();
+    
+    /**
+     * 获取平均耗时
+     * @return 平均耗时(毫秒)
+     */
+    double getMeanMillis();
+    
+    /**
+     * 获取最大耗时
+     * @return 最大耗时(毫秒)
+     */
+    double getMaxMillis();
+    
+    /**
+     * 获取耗时的中位数(按直方图桶估算)
+     * @return 中位数(毫秒)
+     */
+    double getP50Millis();
+    
+    /**
+     * 获取耗时的95分位数(按直方图桶估算)
+     * @return 95分位数(毫秒)
+     */
+    double getP95Millis();
+    
+    /**
+     * 获取耗时的99分位数(按直方图桶估算)
+     * @return 99分位数(毫秒)
+     */
+    double getP99Millis();
+}
@@ -0,0 +1,514 @@
+package com.minecraft.frpplugin.network;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * ConnectionRelay - 位于frpc和服务器之间的NIO中转
+ * frpc把玩家连接转发到这里，并通过PROXY protocol v2告知真实IP；中转按IP限流后再转发到服务器端口
+ * 被拒绝的连接在中转线程中直接关闭，不会进入服务器的网络线程和主线程
+ */
+public class ConnectionRelay {
+    
+    private static final byte[] SIGNATURE = {
+        0x0D, 0x0A, 0x0D, 0x0A, 0x00, 0x0D, 0x0A, 0x51, 0x55, 0x49, 0x54, 0x0A
+    };
+    private static final int BUFFER_SIZE = 16 * 1024;
+    /**
+     * 头部缓冲区的初始大小，足够容纳不带TLV的任意地址族的PROXY v2头部
+     */
+    private static final int HEADER_BUFFER_SIZE = 16 + 216;
+    private static final int MAX_HEADER_SIZE = 4096;
+    private static final int MAX_POOLED_BUFFERS = 256;
+    private static final long HEADER_TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos(5);
+    private static final long SWEEP_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+    
+    private final InetSocketAddress target;
+    private final boolean forwardHeader;
+    private final FloodGuard floodGuard;
+    private final Logger logger;
+    private final ArrayDeque<ByteBuffer> bufferPool = new ArrayDeque<>();
+    private final Set<Session> pending = new HashSet<>();
+    
+    private final AtomicLong accepted = new AtomicLong();
+    private final AtomicLong bytesIn = new AtomicLong();
+    private final AtomicLong bytesOut = new AtomicLong();
+    private final AtomicLong connectLatencyTotalNanos = new AtomicLong();
+    private final AtomicLong connectLatencyCount = new AtomicLong();
+    private volatile long connectLatencyMaxNanos;
+    private volatile int activeSessions;
+    
+    private Selector selector;
+    private ServerSocketChannel serverChannel;
+    private Thread thread;
+    private volatile boolean running;
+    
+    /**
+     * 构造函数
+     * @param target 真实的服务器地址
+     * @param forwardHeader 是否把PROXY头部继续转发给服务器(服务器已安装解码器时使用)
+     * @param floodGuard 限流器
+     * @param logger 日志记录器
+     */
+    public ConnectionRelay(InetSocketAddress target, boolean forwardHeader, FloodGuard floodGuard, Logger logger) {
+        this.target = target;
+        this.forwardHeader = forwardHeader;
+        this.floodGuard = floodGuard;
+        this.logger = logger;
+    }
+    
+    /**
+     * 绑定本地端口并启动中转线程
+     * @param port 监听端口，0表示随机端口
+     * @throws IOException 如果绑定失败
+     */
+    public void start(int port) throws IOException {
+        selector = Selector.open();
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+        serverChannel.configureBlocking(false);
+        serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+        
+        running = true;
+        thread = new Thread(this::run, "FrpPlugin-Relay");
+        thread.setDaemon(true);
+        thread.start();
+        logger.info("连接中转已启动，监听 127.0.0.1:" + getPort() + " -> " + target);
+    }
+    
+    /**
+     * 停止中转并关闭所有连接
+     */
+    public void stop() {
+        running = false;
+        if (selector != null) {
+            selector.wakeup();
+        }
+        if (thread != null) {
+            try {
+                thread.join(TimeUnit.SECONDS.toMillis(2));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+    
+    /**
+     * 获取实际监听的端口
+     * @return 端口
+     */
+    public int getPort() {
+        return serverChannel.socket().getLocalPort();
+    }
+    
+    private void run() {
+        long lastSweep = System.nanoTime();
+        try {
+            while (running) {
+                selector.select(TimeUnit.NANOSECONDS.toMillis(SWEEP_INTERVAL_NANOS));
+                Iterator<SelectionKey> iterator = selector.selectedKeys().iterator();
+                while (iterator.hasNext()) {
+                    SelectionKey key = iterator.next();
+                    iterator.remove();
+                    handle(key);
+                }
+                
+                long now = System.nanoTime();
+                if (now - lastSweep >= SWEEP_INTERVAL_NANOS) {
+                    lastSweep = now;
+                    sweep(now);
+                }
+            }
+        } catch (IOException e) {
+            logger.log(Level.SEVERE, "连接中转出错", e);
+        } finally {
+            for (SelectionKey key : selector.keys()) {
+                if (key.attachment() instanceof Session) {
+                    ((Session) key.attachment()).close();
+                }
+            }
+            closeQuietly(serverChannel);
+            try {
+                selector.close();
+            } catch (IOException ignored) {
+                // 已经在关闭流程中
+            }
+            logger.info("连接中转已停止");
+        }
+    }
+    
+    private void handle(SelectionKey key) {
+        if (!key.isValid()) {
+            return;
+        }
+        if (key.isAcceptable()) {
+            accept();
+            return;
+        }
+        
+        Session session = (Session) key.attachment();
+        try {
+            boolean isClient = key.channel() == session.client;
+            if (key.isConnectable()) {
+                session.finishConnect();
+            }
+            if (key.isValid() && key.isReadable()) {
+                if (isClient) {
+                    session.readClient();
+                } else {
+                    session.readUpstream();
+                }
+            }
+            if (key.isValid() && key.isWritable()) {
+                if (isClient) {
+                    session.flush(session.toClient, session.client);
+                } else {
+                    session.flush(session.toUpstream, session.upstream);
+                }
+            }
+            session.updateInterest();
+        } catch (IOException e) {
+            session.close();
+        }
+    }
+    
+    private void accept() {
+        try {
+            SocketChannel client = serverChannel.accept();
+            if (client == null) {
+                return;
+            }
+            client.configureBlocking(false);
+            client.socket().setTcpNoDelay(true);
+            Session session = new Session(client, System.nanoTime());
+            session.clientKey = client.register(selector, SelectionKey.OP_READ, session);
+            pending.add(session);
+            accepted.incrementAndGet();
+            activeSessions++;
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "接受中转连接时出错", e);
+        }
+    }
+    
+    /**
+     * 关闭迟迟没有发送头部的连接，并清理限流器中的空闲IP
+     */
+    private void sweep(long now) {
+        List<Session> expired = new ArrayList<>();
+        for (Session session : pending) {
+            if (now - session.acceptedNanos > HEADER_TIMEOUT_NANOS) {
+                expired.add(session);
+            }
+        }
+        for (Session session : expired) {
+            session.close();
+        }
+        floodGuard.evictIdle(now);
+    }
+    
+    private ByteBuffer borrowBuffer() {
+        ByteBuffer buffer = bufferPool.poll();
+        return buffer != null ? buffer : ByteBuffer.allocateDirect(BUFFER_SIZE);
+    }
+    
+    private void returnBuffer(ByteBuffer buffer) {
+        if (buffer != null && bufferPool.size() < MAX_POOLED_BUFFERS) {
+            buffer.clear();
+            bufferPool.push(buffer);
+        }
+    }
+    
+    private static void closeQuietly(java.nio.channels.Channel channel) {
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException ignored) {
+                // 关闭失败时没有其他可做的
+            }
+        }
+    }
+    
+    /**
+     * 一对客户端(frpc)和服务器之间的连接
+     * 头部阶段只使用一个小的堆缓冲区，通过限流后才借出两个转发缓冲区，被拒绝的连接不占用直接内存
+     * 所有缓冲区始终处于写入模式，position表示尚未转发的字节数
+     */
+    private final class Session {
+        
+        final SocketChannel client;
+        final long acceptedNanos;
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BUFFER_SIZE);
+        ByteBuffer toUpstream;
+        ByteBuffer toClient;
+        SocketChannel upstream;
+        SelectionKey clientKey;
+        SelectionKey upstreamKey;
+        InetAddress source;
+        int headerLength = -1;
+        boolean connected;
+        boolean closed;
+        
+        Session(SocketChannel client, long acceptedNanos) {
+            this.client = client;
+            this.acceptedNanos = acceptedNanos;
+        }
+        
+        void readClient() throws IOException {
+            int read = client.read(headerLength < 0 ? header : toUpstream);
+            if (read < 0) {
+                // 尽量把剩余数据交给服务器后再关闭
+                if (connected) {
+                    flush(toUpstream, upstream);
+                }
+                close();
+                return;
+            }
+            bytesIn.addAndGet(read);
+            if (headerLength < 0) {
+                parseHeader();
+            } else if (connected) {
+                flush(toUpstream, upstream);
+            }
+        }
+        
+        void readUpstream() throws IOException {
+            int read = upstream.read(toClient);
+            if (read < 0) {
+                // 服务器断开时通常刚发送了断开原因，尽量先交给玩家
+                flush(toClient, client);
+                close();
+                return;
+            }
+            bytesOut.addAndGet(read);
+            flush(toClient, client);
+        }
+        
+        /**
+         * 解析PROXY v2头部并做限流判断，通过后才连接服务器
+         */
+        void parseHeader() throws IOException {
+            int available = header.position();
+            int compare = Math.min(available, SIGNATURE.length);
+            boolean hasSignature = true;
+            for (int i = 0; i < compare; i++) {
+                if (header.get(i) != SIGNATURE[i]) {
+                    hasSignature = false;
+                    break;
+                }
+            }
+            
+            if (!hasSignature) {
+                // 没有头部时只能按直接来源限流
+                headerLength = 0;
+                source = ((InetSocketAddress) client.getRemoteAddress()).getAddress();
+            } else {
+                if (available < 16) {
+                    return;
+                }
+                int length = header.getShort(14) & 0xFFFF;
+                if (available < 16 + length) {
+                    if (16 + length > MAX_HEADER_SIZE) {
+                        close();
+                    } else if (16 + length > header.capacity()) {
+                        // 带TLV的头部超出初始缓冲区时再扩大
+                        header.flip();
+                        header = ByteBuffer.allocate(16 + length).put(header);
+                    }
+                    return;
+                }
+                headerLength = 16 + length;
+                source = readSource(header.get(13) & 0xFF, length);
+                if (source == null) {
+                    source = ((InetSocketAddress) client.getRemoteAddress()).getAddress();
+                }
+            }
+            
+            pending.remove(this);
+            if (!floodGuard.tryAcquire(source, System.nanoTime())) {
+                source = null;
+                close();
+                return;
+            }
+            
+            toUpstream = borrowBuffer();
+            toClient = borrowBuffer();
+            header.flip();
+            if (!forwardHeader) {
+                header.position(headerLength);
+            }
+            toUpstream.put(header);
+            header = null;
+            
+            upstream = SocketChannel.open();
+            upstream.configureBlocking(false);
+            upstream.socket().setTcpNoDelay(true);
+            if (upstream.connect(target)) {
+                upstreamKey = upstream.register(selector, 0, this);
+                onConnected();
+            } else {
+                upstreamKey = upstream.register(selector, SelectionKey.OP_CONNECT, this);
+            }
+        }
+        
+        InetAddress readSource(int family, int length) throws IOException {
+            byte[] address;
+            if (family == 0x11 && length >= 12) {
+                address = new byte[4];
+            } else if (family == 0x21 && length >= 36) {
+                address = new byte[16];
+            } else {
+                return null;
+            }
+            for (int i = 0; i < address.length; i++) {
+                address[i] = header.get(16 + i);
+            }
+            return InetAddress.getByAddress(address);
+        }
+        
+        void finishConnect() throws IOException {
+            if (upstream.finishConnect()) {
+                onConnected();
+            }
+        }
+        
+        void onConnected() throws IOException {
+            connected = true;
+            long latency = System.nanoTime() - acceptedNanos;
+            connectLatencyTotalNanos.addAndGet(latency);
+            connectLatencyCount.incrementAndGet();
+            if (latency > connectLatencyMaxNanos) {
+                connectLatencyMaxNanos = latency;
+            }
+            flush(toUpstream, upstream);
+        }
+        
+        /**
+         * 把缓冲区中待转发的数据写到目标
+         */
+        void flush(ByteBuffer buffer, SocketChannel destination) throws IOException {
+            if (buffer == null || buffer.position() == 0) {
+                return;
+            }
+            buffer.flip();
+            destination.write(buffer);
+            buffer.compact();
+        }
+        
+        /**
+         * 根据缓冲区状态更新关注的事件，缓冲区满时暂停读取以形成背压
+         */
+        void updateInterest() {
+            if (closed) {
+                return;
+            }
+            int clientOps = 0;
+            if (toUpstream == null ? header.hasRemaining() : toUpstream.hasRemaining()) {
+                clientOps |= SelectionKey.OP_READ;
+            }
+            if (toClient != null && toClient.position() > 0) {
+                clientOps |= SelectionKey.OP_WRITE;
+            }
+            clientKey.interestOps(clientOps);
+            
+            if (upstreamKey != null && connected) {
+                int upstreamOps = 0;
+                if (toClient.hasRemaining()) {
+                    upstreamOps |= SelectionKey.OP_READ;
+                }
+                if (toUpstream.position() > 0) {
+                    upstreamOps |= SelectionKey.OP_WRITE;
+                }
+                upstreamKey.interestOps(upstreamOps);
+            }
+        }
+        
+        void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            pending.remove(this);
+            if (source != null) {
+                floodGuard.release(source);
+            }
+            closeQuietly(client);
+            closeQuietly(upstream);
+            returnBuffer(toUpstream);
+            returnBuffer(toClient);
+            activeSessions--;
+        }
+    }
+    
+    /**
+     * 获取已接受的连接总数
+     * @return 连接数
+     */
+    public long getAcceptedConnections() {
+        return accepted.get();
+    }
+    
+    /**
+     * 获取被限流拒绝的连接总数
+     * @return 连接数
+     */
+    public long getRejectedConnections() {
+        return floodGuard.getRejected();
+    }
+    
+    /**
+     * 获取当前活动的连接数
+     * @return 连接数
+     */
+    public int getActiveSessions() {
+        return activeSessions;
+    }
+    
+    /**
+     * 获取玩家到服务器方向的字节数
+     * @return 字节数
+     */
+    public long getBytesIn() {
+        return bytesIn.get();
+    }
+    
+    /**
+     * 获取服务器到玩家方向的字节数
+     * @return 字节数
+     */
+    public long getBytesOut() {
+        return bytesOut.get();
+    }
+    
+    /**
+     * 获取中转引入的平均建连延迟(从接受连接到连上服务器)
+     * @return 平均延迟(微秒)
+     */
+    public long getAverageConnectLatencyMicros() {
+        long count = connectLatencyCount.get();
+        return count == 0 ? 0 : TimeUnit.NANOSECONDS.toMicros(connectLatencyTotalNanos.get() / count);
+    }
+    
+    /**
+     * 获取中转引入的最大建连延迟
+     * @return 最大延迟(微秒)
+     */
+    public long getMaxConnectLatencyMicros() {
+        return TimeUnit.NANOSECONDS.toMicros(connectLatencyMaxNanos);
+    }
+}
@@ -0,0 +1,109 @@
+package com.minecraft.frpplugin.network;
+
+import java.net.InetAddress;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * FloodGuard - 按来源IP限制新连接速率和并发连接数
+ * 每个IP一个令牌桶，新连接消耗一个令牌；只在中转线程中使用，因此不做同步
+ */
+public class FloodGuard {
+    
+    private final double tokensPerNano;
+    private final double burst;
+    private final int maxConnectionsPerAddress;
+    private final Map<InetAddress, Bucket> buckets = new HashMap<>();
+    private volatile long rejected;
+    
+    /**
+     * 构造函数
+     * @param connectionsPerSecond 每个IP每秒允许的新连接数
+     * @param burst 每个IP允许的突发连接数
+     * @param maxConnectionsPerAddress 每个IP的最大并发连接数，0表示不限制
+     */
+    public FloodGuard(double connectionsPerSecond, int burst, int maxConnectionsPerAddress) {
+        this.tokensPerNano = connectionsPerSecond / 1_000_000_000d;
+        this.burst = Math.max(1, burst);
+        this.maxConnectionsPerAddress = maxConnectionsPerAddress;
+    }
+    
+    /**
+     * 尝试为新连接获取许可，成功后需要在连接关闭时调用release
+     * @param address 来源IP
+     * @param nowNanos 当前时间(System.nanoTime)
+     * @return 是否允许连接
+     */
+    public boolean tryAcquire(InetAddress address, long nowNanos) {
+        Bucket bucket = buckets.get(address);
+        if (bucket == null) {
+            bucket = new Bucket(burst, nowNanos);
+            buckets.put(address, bucket);
+        }
+        
+        bucket.tokens = Math.min(burst, bucket.tokens + (nowNanos - bucket.lastRefillNanos) * tokensPerNano);
+        bucket.lastRefillNanos = nowNanos;
+        
+        if (bucket.tokens < 1d || (maxConnectionsPerAddress > 0 && bucket.active >= maxConnectionsPerAddress)) {
+            rejected++;
+            return false;
+        }
+        bucket.tokens -= 1d;
+        bucket.active++;
+        return true;
+    }
+    
+    /**
+     * 释放连接许可
+     * @param address 来源IP
+     */
+    public void release(InetAddress address) {
+        Bucket bucket = buckets.get(address);
+        if (bucket != null && bucket.active > 0) {
+            bucket.active--;
+        }
+    }
+    
+    /**
+     * 清理没有活动连接且令牌已经回满的IP，保证内存占用有界
+     * @param nowNanos 当前时间(System.nanoTime)
+     */
+    public void evictIdle(long nowNanos) {
+        Iterator<Bucket> iterator = buckets.values().iterator();
+        while (iterator.hasNext()) {
+            Bucket bucket = iterator.next();
+            double refilled = bucket.tokens + (nowNanos - bucket.lastRefillNanos) * tokensPerNano;
+            if (bucket.active == 0 && refilled >= burst) {
+                iterator.remove();
+            }
+        }
+    }
+    
+    /**
+     * 获取被拒绝的连接总数
+     * @return 被拒绝的连接数
+     */
+    public long getRejected() {
+        return rejected;
+    }
+    
+    /**
+     * 获取正在跟踪的IP数量
+     * @return IP数量
+     */
+    public int getTrackedAddresses() {
+        return buckets.size();
+    }
+    
+    private static final class Bucket {
+        double tokens;
+        long lastRefillNanos;
+        int active;
+        
+        Bucket(double tokens, long lastRefillNanos) {
+            this.tokens = tokens;
+            this.lastRefillNanos = lastRefillNanos;
+        }
+    }
+}
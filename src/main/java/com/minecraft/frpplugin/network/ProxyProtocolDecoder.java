@@ -0,0 +1,116 @@
+package com.minecraft.frpplugin.network;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.ByteToMessageDecoder;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.UnknownHostException;
+import java.util.List;
+import java.util.Set;
+import java.util.function.BiConsumer;
+
+/**
+ * ProxyProtocolDecoder - 解析frpc发送的PROXY protocol v2头部
+ * 直接在入站ByteBuf上按下标读取，不复制数据；解析完成后将自身从管线中移除，剩余数据原样交给服务器
+ * 只有来自可信地址(本机frpc)的连接才会被解析，其他连接直接放行
+ */
+public class ProxyProtocolDecoder extends ByteToMessageDecoder {
+    
+    /**
+     * 在服务器管线中使用的处理器名称
+     */
+    public static final String HANDLER_NAME = "frp_proxy_protocol";
+    
+    private static final byte[] SIGNATURE = {
+        0x0D, 0x0A, 0x0D, 0x0A, 0x00, 0x0D, 0x0A, 0x51, 0x55, 0x49, 0x54, 0x0A
+    };
+    private static final int HEADER_LENGTH = 16;
+    private static final int COMMAND_PROXY = 0x01;
+    private static final int FAMILY_TCP4 = 0x11;
+    private static final int FAMILY_TCP6 = 0x21;
+    
+    private final Set<InetAddress> trustedSources;
+    private final BiConsumer<ChannelHandlerContext, InetSocketAddress> addressUpdater;
+    
+    /**
+     * 构造函数
+     * @param trustedSources 可信的来源地址，通常是本机frpc所在的回环地址
+     * @param addressUpdater 解析出真实地址后用于更新服务器连接对象的回调
+     */
+    public ProxyProtocolDecoder(Set<InetAddress> trustedSources,
+                                BiConsumer<ChannelHandlerContext, InetSocketAddress> addressUpdater) {
+        this.trustedSources = trustedSources;
+        this.addressUpdater = addressUpdater;
+    }
+    
+    @Override
+    protected void decode(ChannelHandlerContext ctx, ByteBuf in, List<Object> out) throws Exception {
+        SocketAddress remote = ctx.channel().remoteAddress();
+        if (!(remote instanceof InetSocketAddress)
+                || !trustedSources.contains(((InetSocketAddress) remote).getAddress())) {
+            // 非frpc转发的连接不信任任何PROXY头部
+            ctx.pipeline().remove(this);
+            return;
+        }
+        
+        int base = in.readerIndex();
+        int readable = in.readableBytes();
+        
+        // 逐字节比较已到达的签名部分，不匹配说明是直接连接的本地玩家
+        int compare = Math.min(readable, SIGNATURE.length);
+        for (int i = 0; i < compare; i++) {
+            if (in.getByte(base + i) != SIGNATURE[i]) {
+                ctx.pipeline().remove(this);
+                return;
+            }
+        }
+        if (readable < HEADER_LENGTH) {
+            return;
+        }
+        
+        int length = in.getUnsignedShort(base + 14);
+        if (readable < HEADER_LENGTH + length) {
+            return;
+        }
+        
+        int versionCommand = in.getUnsignedByte(base + 12);
+        int family = in.getUnsignedByte(base + 13);
+        if ((versionCommand >> 4) != 2) {
+            ctx.close();
+            return;
+        }
+        
+        InetSocketAddress source = null;
+        if ((versionCommand & 0x0F) == COMMAND_PROXY) {
+            source = readSource(in, base + HEADER_LENGTH, family, length);
+        }
+        
+        // 丢弃头部，剩余数据在移除处理器时交给后续处理器
+        in.skipBytes(HEADER_LENGTH + length);
+        if (source != null) {
+            addressUpdater.accept(ctx, source);
+        }
+        ctx.pipeline().remove(this);
+    }
+    
+    /**
+     * 读取源地址
+     * @return 源地址，LOCAL命令或不支持的地址族时返回null
+     */
+    private InetSocketAddress readSource(ByteBuf in, int offset, int family, int length) throws UnknownHostException {
+        if (family == FAMILY_TCP4 && length >= 12) {
+            byte[] address = new byte[4];
+            in.getBytes(offset, address);
+            return new InetSocketAddress(InetAddress.getByAddress(address), in.getUnsignedShort(offset + 8));
+        }
+        if (family == FAMILY_TCP6 && length >= 36) {
+            byte[] address = new byte[16];
+            in.getBytes(offset, address);
+            return new InetSocketAddress(InetAddress.getByAddress(address), in.getUnsignedShort(offset + 32));
+        }
+        return null;
+    }
+}
@@ -0,0 +1,109 @@
+package com.minecraft.frpplugin.network;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * StatusPing - 通过Minecraft的服务器列表协议(握手 + 状态请求)检测一个地址是否真的能连到服务器
+ * 只有完整经过frps、frpc到达服务器并收到状态响应才算成功，单纯端口可连接不算
+ */
+public final class StatusPing {
+    
+    /**
+     * 状态查询时协议版本可以填-1，服务器会按自己的版本响应
+     */
+    private static final int PROTOCOL_VERSION = -1;
+    private static final int NEXT_STATE_STATUS = 1;
+    private static final int MAX_RESPONSE_LENGTH = 1 << 20;
+    
+    private StatusPing() {
+    }
+    
+    /**
+     * 执行一次状态查询
+     * @param address 目标地址，通常是frps的公网地址和远程端口
+     * @param timeoutMillis 连接和读取的超时时间(毫秒)
+     * @return 从发送握手到收到完整状态响应的耗时(毫秒)
+     * @throws IOException 如果连接失败、超时或响应格式不正确
+     */
+    public static long ping(InetSocketAddress address, int timeoutMillis) throws IOException {
+        if (address.isUnresolved()) {
+            throw new IOException("无法解析地址 " + address.getHostString());
+        }
+        try (Socket socket = new Socket()) {
+            socket.setTcpNoDelay(true);
+            socket.connect(address, timeoutMillis);
+            socket.setSoTimeout(timeoutMillis);
+            long startNanos = System.nanoTime();
+            
+            ByteArrayOutputStream handshake = new ByteArrayOutputStream();
+            writeVarInt(handshake, 0x00);
+            writeVarInt(handshake, PROTOCOL_VERSION);
+            byte[] host = address.getHostString().getBytes(StandardCharsets.UTF_8);
+            writeVarInt(handshake, host.length);
+            handshake.write(host);
+            handshake.write((address.getPort() >> 8) & 0xFF);
+            handshake.write(address.getPort() & 0xFF);
+            writeVarInt(handshake, NEXT_STATE_STATUS);
+            
+            ByteArrayOutputStream request = new ByteArrayOutputStream();
+            writePacket(request, handshake.toByteArray());
+            // 状态请求包只有包ID 0x00
+            writePacket(request, new byte[] {0x00});
+            OutputStream out = socket.getOutputStream();
+            out.write(request.toByteArray());
+            out.flush();
+            
+            DataInputStream in = new DataInputStream(socket.getInputStream());
+            int length = readVarInt(in);
+            if (length <= 0 || length > MAX_RESPONSE_LENGTH) {
+                throw new IOException("状态响应长度不正确: " + length);
+            }
+            if (readVarInt(in) != 0x00) {
+                throw new IOException("收到的不是状态响应");
+            }
+            int jsonLength = readVarInt(in);
+            if (jsonLength <= 0 || jsonLength >= length) {
+                throw new IOException("状态响应内容长度不正确: " + jsonLength);
+            }
+            in.readFully(new byte[jsonLength]);
+            return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+        }
+    }
+    
+    private static void writePacket(ByteArrayOutputStream out, byte[] payload) {
+        writeVarInt(out, payload.length);
+        out.write(payload, 0, payload.length);
+    }
+    
+    private static void writeVarInt(ByteArrayOutputStream out, int value) {
+        while ((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+    
+    private static int readVarInt(InputStream in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            int b = in.read();
+            if (b == -1) {
+                throw new EOFException("连接在状态响应结束前关闭");
+            }
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("VarInt过长");
+    }
+}
@@ -0,0 +1,57 @@
+package com.minecraft.frpplugin.version;
+
+import org.bukkit.plugin.Plugin;
+import org.bukkit.scheduler.BukkitScheduler;
+
+/**
+ * 基于BukkitScheduler的任务调度器，用于Spigot、Paper等只有一个主线程的服务器
+ */
+public class BukkitTaskScheduler implements TaskScheduler {
+    
+    private final Plugin plugin;
+    private final BukkitScheduler scheduler;
+    
+    /**
+     * 构造函数
+     * @param plugin 插件实例
+     */
+    public BukkitTaskScheduler(Plugin plugin) {
+        this.plugin = plugin;
+        this.scheduler = plugin.getServer().getScheduler();
+    }
+    
+    @Override
+    public String getName() {
+        return "Bukkit";
+    }
+    
+    @Override
+    public boolean isGlobalThread() {
+        return plugin.getServer().isPrimaryThread();
+    }
+    
+    @Override
+    public void runGlobal(Runnable task) {
+        scheduler.runTask(plugin, task);
+    }
+    
+    @Override
+    public Task runGlobalLater(Runnable task, long delayTicks) {
+        return scheduler.runTaskLater(plugin, task, delayTicks)::cancel;
+    }
+    
+    @Override
+    public Task runGlobalTimer(Runnable task, long delayTicks, long periodTicks) {
+        return scheduler.runTaskTimer(plugin, task, delayTicks, periodTicks)::cancel;
+    }
+    
+    @Override
+    public void runAsync(Runnable task) {
+        scheduler.runTaskAsynchronously(plugin, task);
+    }
+    
+    @Override
+    public Task runAsyncTimer(Runnable task, long delayTicks, long periodTicks) {
+        return scheduler.runTaskTimerAsynchronously(plugin, task, delayTicks, periodTicks)::cancel;
+    }
+}
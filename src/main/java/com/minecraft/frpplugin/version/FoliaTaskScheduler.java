@@ -0,0 +1,125 @@
+package com.minecraft.frpplugin.version;
+
+import org.bukkit.Server;
+import org.bukkit.plugin.Plugin;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * 基于Folia全局区域调度器和异步调度器的任务调度器
+ * 插件按Bukkit API编译，Folia的调度器接口通过反射调用
+ * 全局区域调度器以tick为单位且延迟至少为1，异步调度器以时间为单位，这里按每tick 50毫秒换算
+ */
+public class FoliaTaskScheduler implements TaskScheduler {
+    
+    private static final String SCHEDULER_PACKAGE = "io.papermc.paper.threadedregions.scheduler.";
+    private static final long MILLIS_PER_TICK = 50L;
+    
+    private final Plugin plugin;
+    private final Object globalScheduler;
+    private final Object asyncScheduler;
+    private final Method globalExecute;
+    private final Method globalRunDelayed;
+    private final Method globalRunAtFixedRate;
+    private final Method asyncRunNow;
+    private final Method asyncRunAtFixedRate;
+    private final Method taskCancel;
+    private final Method isGlobalTickThread;
+    
+    /**
+     * 构造函数
+     * @param plugin 插件实例
+     * @throws ReflectiveOperationException 如果服务器没有Folia的调度器接口
+     */
+    public FoliaTaskScheduler(Plugin plugin) throws ReflectiveOperationException {
+        this.plugin = plugin;
+        Server server = plugin.getServer();
+        Class<?> globalClass = Class.forName(SCHEDULER_PACKAGE + "GlobalRegionScheduler");
+        Class<?> asyncClass = Class.forName(SCHEDULER_PACKAGE + "AsyncScheduler");
+        Class<?> taskClass = Class.forName(SCHEDULER_PACKAGE + "ScheduledTask");
+        
+        this.globalScheduler = Server.class.getMethod("getGlobalRegionScheduler").invoke(server);
+        this.asyncScheduler = Server.class.getMethod("getAsyncScheduler").invoke(server);
+        this.globalExecute = globalClass.getMethod("execute", Plugin.class, Runnable.class);
+        this.globalRunDelayed = globalClass.getMethod("runDelayed", Plugin.class, Consumer.class, long.class);
+        this.globalRunAtFixedRate = globalClass.getMethod("runAtFixedRate",
+                Plugin.class, Consumer.class, long.class, long.class);
+        this.asyncRunNow = asyncClass.getMethod("runNow", Plugin.class, Consumer.class);
+        this.asyncRunAtFixedRate = asyncClass.getMethod("runAtFixedRate",
+                Plugin.class, Consumer.class, long.class, long.class, TimeUnit.class);
+        this.taskCancel = taskClass.getMethod("cancel");
+        this.isGlobalTickThread = Server.class.getMethod("isGlobalTickThread");
+    }
+    
+    @Override
+    public String getName() {
+        return "Folia";
+    }
+    
+    @Override
+    public boolean isGlobalThread() {
+        return (Boolean) invoke(isGlobalTickThread, plugin.getServer());
+    }
+    
+    @Override
+    public void runGlobal(Runnable task) {
+        invoke(globalExecute, globalScheduler, plugin, task);
+    }
+    
+    @Override
+    public Task runGlobalLater(Runnable task, long delayTicks) {
+        return wrap(invoke(globalRunDelayed, globalScheduler, plugin, consumer(task), Math.max(1L, delayTicks)));
+    }
+    
+    @Override
+    public Task runGlobalTimer(Runnable task, long delayTicks, long periodTicks) {
+        return wrap(invoke(globalRunAtFixedRate, globalScheduler, plugin, consumer(task),
+                Math.max(1L, delayTicks), Math.max(1L, periodTicks)));
+    }
+    
+    @Override
+    public void runAsync(Runnable task) {
+        invoke(asyncRunNow, asyncScheduler, plugin, consumer(task));
+    }
+    
+    @Override
+    public Task runAsyncTimer(Runnable task, long delayTicks, long periodTicks) {
+        return wrap(invoke(asyncRunAtFixedRate, asyncScheduler, plugin, consumer(task),
+                Math.max(1L, delayTicks) * MILLIS_PER_TICK, Math.max(1L, periodTicks) * MILLIS_PER_TICK,
+                TimeUnit.MILLISECONDS));
+    }
+    
+    /**
+     * Folia的任务回调接收ScheduledTask参数，这里不需要它
+     */
+    private static Consumer<Object> consumer(Runnable task) {
+        return scheduledTask -> task.run();
+    }
+    
+    /**
+     * 将Folia的ScheduledTask包装为可取消的任务
+     */
+    private Task wrap(Object scheduledTask) {
+        return () -> invoke(taskCancel, scheduledTask);
+    }
+    
+    /**
+     * 调用反射方法，调度器自身抛出的异常原样抛出
+     */
+    private static Object invoke(Method method, Object target, Object... args) {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IllegalStateException("调用Folia调度器失败: " + method.getName(), cause);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException("调用Folia调度器失败: " + method.getName(), e);
+        }
+    }
+}
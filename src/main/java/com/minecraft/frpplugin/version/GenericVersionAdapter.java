@@ -2,12 +2,16 @@ package com.minecraft.frpplugin.version;
 
 import org.bukkit.plugin.Plugin;
 
+import java.net.InetAddress;
+import java.util.Set;
+
 /**
  * 通用版本适配器，适用于大多数较新的Minecraft版本
  */
 public class GenericVersionAdapter implements VersionAdapter {
     
     protected final Plugin plugin;
+    protected final ProxyProtocolInjector proxyProtocolInjector;
     
     /**
      * 构造函数
@@ -15,6 +19,7 @@ public class GenericVersionAdapter implements VersionAdapter {
      */
     public GenericVersionAdapter(Plugin plugin) {
         this.plugin = plugin;
+        this.proxyProtocolInjector = new ProxyProtocolInjector(plugin);
     }
     
     @Override
@@ -36,4 +41,14 @@ public class GenericVersionAdapter implements VersionAdapter {
     public Object getResource(String resourceName) {
         return null; // 通用适配器没有特定资源
     }
-}
\ No newline at end of file
+    
+    @Override
+    public boolean installProxyProtocol(Set<InetAddress> trustedSources) {
+        return proxyProtocolInjector.install(trustedSources);
+    }
+    
+    @Override
+    public void uninstallProxyProtocol() {
+        proxyProtocolInjector.uninstall();
+    }
+}
@@ -2,6 +2,9 @@ package com.minecraft.frpplugin.version;
 
 import org.bukkit.plugin.Plugin;
 
+import java.net.InetAddress;
+import java.util.Set;
+
 /**
  * 旧版本的适配器实现，用于处理不完全兼容的旧版本Minecraft服务器
  */
@@ -36,4 +39,15 @@ public class LegacyVersionAdapter implements VersionAdapter {
     public Object getResource(String resourceName) {
         return null; // 旧版本适配器没有特定资源
     }
+    
+    @Override
+    public boolean installProxyProtocol(Set<InetAddress> trustedSources) {
+        plugin.getLogger().warning("旧版本服务器不支持PROXY protocol");
+        return false;
+    }
+    
+    @Override
+    public void uninstallProxyProtocol() {
+        // 旧版本没有安装解码器
+    }
 }
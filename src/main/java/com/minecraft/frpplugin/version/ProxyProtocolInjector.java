@@ -0,0 +1,178 @@
+package com.minecraft.frpplugin.version;
+
+import com.minecraft.frpplugin.network.ProxyProtocolDecoder;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import org.bukkit.plugin.Plugin;
+
+import java.lang.reflect.Field;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 通过反射将PROXY protocol解码器注入服务器的Netty管线
+ * 字段按类型而不是名称查找，以兼容不同版本的混淆和映射
+ */
+public class ProxyProtocolInjector {
+    
+    private static final String ACCEPTOR_NAME = "frp_proxy_acceptor";
+    
+    private final Plugin plugin;
+    private final List<Channel> serverChannels = new ArrayList<>();
+    
+    /**
+     * 构造函数
+     * @param plugin 插件实例
+     */
+    public ProxyProtocolInjector(Plugin plugin) {
+        this.plugin = plugin;
+    }
+    
+    /**
+     * 安装解码器
+     * @param trustedSources 可信的来源地址
+     * @return 是否安装成功
+     */
+    public boolean install(Set<InetAddress> trustedSources) {
+        try {
+            Object minecraftServer = plugin.getServer().getClass().getMethod("getServer").invoke(plugin.getServer());
+            Object connection = findFieldValue(minecraftServer, type ->
+                    type.getSimpleName().equals("ServerConnection") || type.getSimpleName().equals("ServerConnectionListener"));
+            if (connection == null) {
+                plugin.getLogger().warning("无法找到服务器的网络监听器，PROXY protocol不可用");
+                return false;
+            }
+            
+            for (ChannelFuture future : findChannelFutures(connection)) {
+                Channel channel = future.channel();
+                channel.pipeline().addFirst(ACCEPTOR_NAME, new Acceptor(trustedSources));
+                serverChannels.add(channel);
+            }
+            if (serverChannels.isEmpty()) {
+                plugin.getLogger().warning("服务器尚未开始监听端口，PROXY protocol不可用");
+                return false;
+            }
+            return true;
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            plugin.getLogger().warning("注入PROXY protocol解码器失败: " + e);
+            uninstall();
+            return false;
+        }
+    }
+    
+    /**
+     * 移除解码器，已建立的连接不受影响
+     */
+    public void uninstall() {
+        for (Channel channel : serverChannels) {
+            try {
+                if (channel.pipeline().get(ACCEPTOR_NAME) != null) {
+                    channel.pipeline().remove(ACCEPTOR_NAME);
+                }
+            } catch (RuntimeException e) {
+                plugin.getLogger().warning("移除PROXY protocol解码器失败: " + e.getMessage());
+            }
+        }
+        serverChannels.clear();
+    }
+    
+    /**
+     * 查找ServerConnection中保存监听端口的ChannelFuture列表
+     */
+    private List<ChannelFuture> findChannelFutures(Object connection) throws IllegalAccessException {
+        List<ChannelFuture> result = new ArrayList<>();
+        for (Class<?> type = connection.getClass(); type != null; type = type.getSuperclass()) {
+            for (Field field : type.getDeclaredFields()) {
+                if (!List.class.isAssignableFrom(field.getType())) {
+                    continue;
+                }
+                field.setAccessible(true);
+                List<?> list = (List<?>) field.get(connection);
+                if (list == null) {
+                    continue;
+                }
+                synchronized (list) {
+                    for (Object element : list) {
+                        if (element instanceof ChannelFuture) {
+                            result.add((ChannelFuture) element);
+                        }
+                    }
+                }
+                if (!result.isEmpty()) {
+                    return result;
+                }
+            }
+        }
+        return result;
+    }
+    
+    /**
+     * 查找第一个类型满足条件的字段值
+     */
+    private static Object findFieldValue(Object target, java.util.function.Predicate<Class<?>> typeFilter)
+            throws IllegalAccessException {
+        for (Class<?> type = target.getClass(); type != null; type = type.getSuperclass()) {
+            for (Field field : type.getDeclaredFields()) {
+                if (typeFilter.test(field.getType())) {
+                    field.setAccessible(true);
+                    return field.get(target);
+                }
+            }
+        }
+        return null;
+    }
+    
+    /**
+     * 将服务器连接对象记录的远程地址替换为真实地址
+     * 服务器的连接对象是管线中名为packet_handler的处理器
+     */
+    private void updateRemoteAddress(ChannelHandlerContext ctx, InetSocketAddress address) {
+        ChannelHandler handler = ctx.pipeline().get("packet_handler");
+        if (handler == null) {
+            return;
+        }
+        try {
+            for (Class<?> type = handler.getClass(); type != null; type = type.getSuperclass()) {
+                for (Field field : type.getDeclaredFields()) {
+                    if (field.getType() == SocketAddress.class) {
+                        field.setAccessible(true);
+                        field.set(handler, address);
+                        return;
+                    }
+                }
+            }
+        } catch (IllegalAccessException e) {
+            plugin.getLogger().warning("更新玩家真实地址失败: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * 挂在监听端口管线最前面，为每个新接入的连接添加解码器
+     * 此时服务器的ChannelInitializer尚未执行，解码器会一直位于连接管线的最前面
+     */
+    @ChannelHandler.Sharable
+    private class Acceptor extends ChannelInboundHandlerAdapter {
+        
+        private final Set<InetAddress> trustedSources;
+        
+        Acceptor(Set<InetAddress> trustedSources) {
+            this.trustedSources = trustedSources;
+        }
+        
+        @Override
+        public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+            if (msg instanceof Channel) {
+                ((Channel) msg).pipeline().addFirst(ProxyProtocolDecoder.HANDLER_NAME,
+                        new ProxyProtocolDecoder(trustedSources, ProxyProtocolInjector.this::updateRemoteAddress));
+            }
+            ctx.fireChannelRead(msg);
+        }
+    }
+}
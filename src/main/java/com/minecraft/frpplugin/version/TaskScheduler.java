@@ -0,0 +1,70 @@
+package com.minecraft.frpplugin.version;
+
+/**
+ * 任务调度器接口，屏蔽Bukkit调度器与Folia区域化调度器之间的差异
+ * Folia上没有唯一的主线程，BukkitScheduler的所有方法都会抛出异常，
+ * 不属于任何实体或区块的任务(广播消息、触发插件事件、定时统计)在全局区域线程执行
+ */
+public interface TaskScheduler {
+    
+    /**
+     * 已提交的可取消任务
+     */
+    interface Task {
+        
+        /**
+         * 取消任务，已经开始执行的任务不受影响
+         */
+        void cancel();
+    }
+    
+    /**
+     * 获取调度器名称
+     * @return 调度器名称
+     */
+    String getName();
+    
+    /**
+     * 检查当前线程是否为主线程(Folia上为全局区域线程)
+     * @return 如果当前线程可以直接执行同步任务则返回true
+     */
+    boolean isGlobalThread();
+    
+    /**
+     * 在主线程(Folia上为全局区域线程)执行任务
+     * @param task 任务
+     */
+    void runGlobal(Runnable task);
+    
+    /**
+     * 延迟一段时间后在主线程(Folia上为全局区域线程)执行任务
+     * @param task 任务
+     * @param delayTicks 延迟(tick)
+     * @return 可取消的任务
+     */
+    Task runGlobalLater(Runnable task, long delayTicks);
+    
+    /**
+     * 在主线程(Folia上为全局区域线程)周期性执行任务
+     * @param task 任务
+     * @param delayTicks 首次执行前的延迟(tick)
+     * @param periodTicks 执行间隔(tick)
+     * @return 可取消的任务
+     */
+    Task runGlobalTimer(Runnable task, long delayTicks, long periodTicks);
+    
+    /**
+     * 在异步线程执行任务
+     * @param task 任务
+     */
+    void runAsync(Runnable task);
+    
+    /**
+     * 在异步线程周期性执行任务
+     * @param task 任务
+     * @param delayTicks 首次执行前的延迟(tick)
+     * @param periodTicks 执行间隔(tick)
+     * @return 可取消的任务
+     */
+    Task runAsyncTimer(Runnable task, long delayTicks, long periodTicks);
+}
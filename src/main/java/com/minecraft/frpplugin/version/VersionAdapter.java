@@ -1,5 +1,8 @@
 package com.minecraft.frpplugin.version;
 
+import java.net.InetAddress;
+import java.util.Set;
+
 /**
  * 版本适配器接口，用于处理不同版本的Minecraft API兼容性
  */
@@ -28,4 +31,16 @@ public interface VersionAdapter {
      * @return 资源对象
      */
     Object getResource(String resourceName);
+    
+    /**
+     * 向服务器的网络管线安装PROXY protocol解码器
+     * @param trustedSources 可信的来源地址，只有来自这些地址的连接才会解析PROXY头部
+     * @return 是否安装成功
+     */
+    boolean installProxyProtocol(Set<InetAddress> trustedSources);
+    
+    /**
+     * 移除PROXY protocol解码器
+     */
+    void uninstallProxyProtocol();
 }
@@ -47,6 +47,38 @@ public class VersionAdapterFactory {
         }
     }
     
+    /**
+     * 根据服务器类型创建任务调度器
+     * Folia(区域化多线程服务器)使用全局区域调度器和异步调度器，其他服务器使用BukkitScheduler
+     * @param plugin 插件实例
+     * @return 任务调度器实例
+     */
+    public static TaskScheduler createScheduler(Plugin plugin) {
+        if (isFolia()) {
+            try {
+                TaskScheduler scheduler = new FoliaTaskScheduler(plugin);
+                plugin.getLogger().info("检测到Folia服务器，使用区域化调度器");
+                return scheduler;
+            } catch (ReflectiveOperationException e) {
+                plugin.getLogger().warning("无法加载Folia调度器，将使用Bukkit调度器: " + e);
+            }
+        }
+        return new BukkitTaskScheduler(plugin);
+    }
+    
+    /**
+     * 检查服务器是否为Folia
+     * @return 如果存在Folia的区域化服务器类则返回true
+     */
+    private static boolean isFolia() {
+        try {
+            Class.forName("io.papermc.paper.threadedregions.RegionizedServer");
+            return true;
+        } catch (ClassNotFoundException e) {
+            return false;
+        }
+    }
+    
     /**
      * 从完整的Bukkit版本字符串中提取主要版本号
      * @param bukkitVersion 完整的Bukkit版本字符串
@@ -0,0 +1,286 @@
+package com.minecraft.frpplugin;
+
+import com.minecraft.frpplugin.api.TunnelState;
+import com.minecraft.frpplugin.metrics.MetricsRegistry;
+import com.minecraft.frpplugin.version.TaskScheduler;
+import org.bukkit.Server;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.bukkit.plugin.Plugin;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * FakeFrpc - 测试用的插件环境，用脚本代替真实的frpc
+ * 数据目录中放置fake-frpc.sh作为frpc可执行文件，它启动的每个进程都会把PID追加到fake-frpc.pids
+ */
+final class FakeFrpc implements AutoCloseable {
+    
+    private static final String CONFIG = String.join("\n",
+            "serverAddr = \"127.0.0.1\"",
+            "serverPort = 7000",
+            "",
+            "[[proxies]]",
+            "name = \"minecraft\"",
+            "type = \"tcp\"",
+            "localIP = \"127.0.0.1\"",
+            "localPort = 25565",
+            "remotePort = 25566",
+            "");
+    
+    private final Path dataFolder;
+    private final YamlConfiguration config = new YamlConfiguration();
+    private final Logger logger = Logger.getLogger("FrpPluginTest");
+    private final Plugin plugin = mock(Plugin.class);
+    private final MetricsRegistry metrics = new MetricsRegistry(logger);
+    private final PluginExecutor executor = new PluginExecutor(logger);
+    private final List<FrpManager> managers = new ArrayList<>();
+    
+    /**
+     * 创建测试环境
+     * @param dataFolder 作为插件数据目录的临时目录
+     * @throws IOException 如果无法写入脚本或配置
+     */
+    FakeFrpc(Path dataFolder) throws IOException {
+        this.dataFolder = dataFolder;
+        // 每次启停都会输出多行日志，只保留警告以上的内容
+        logger.setLevel(Level.WARNING);
+        
+        Path script = dataFolder.resolve("frpc");
+        try (InputStream in = Objects.requireNonNull(getClass().getResourceAsStream("/fake-frpc.sh"))) {
+            Files.copy(in, script, StandardCopyOption.REPLACE_EXISTING);
+        }
+        assertTrue(script.toFile().setExecutable(true), "无法设置frpc替身的可执行权限");
+        Files.writeString(dataFolder.resolve("frpc.toml"), CONFIG);
+        
+        config.set("frpc_log_charset", "UTF-8");
+        config.set("preflight.enabled", false);
+        config.set("shutdown.timeout_ms", 500L);
+        
+        Server server = mock(Server.class);
+        when(server.getPort()).thenReturn(25565);
+        when(plugin.getLogger()).thenReturn(logger);
+        when(plugin.getDataFolder()).thenReturn(dataFolder.toFile());
+        when(plugin.getConfig()).thenReturn(config);
+        when(plugin.getServer()).thenReturn(server);
+        // 未启用的插件不会向调度器提交状态变化事件
+        when(plugin.isEnabled()).thenReturn(false);
+    }
+    
+    /**
+     * 设置下一次启动的frpc替身的行为
+     * @param lines fake-frpc.env中的变量定义，例如"EXIT_AFTER=1"
+     * @throws IOException 如果无法写入文件
+     */
+    void behave(String... lines) throws IOException {
+        Files.writeString(dataFolder.resolve("fake-frpc.env"), String.join("\n", lines) + "\n");
+    }
+    
+    /**
+     * 把frpc换成编译好的原生启动器，由它运行fake-frpc.sh
+     * 脚本本身无法通过进程指纹校验，需要测试独立进程模式的接管时使用
+     * @return 是否成功，系统中没有C编译器时返回false
+     * @throws IOException 如果无法写入文件
+     */
+    boolean useNativeLauncher() throws IOException {
+        Path source = dataFolder.resolve("fake-frpc-launcher.c");
+        try (InputStream in = Objects.requireNonNull(getClass().getResourceAsStream("/fake-frpc-launcher.c"))) {
+            Files.copy(in, source, StandardCopyOption.REPLACE_EXISTING);
+        }
+        Files.copy(dataFolder.resolve("frpc"), dataFolder.resolve("fake-frpc.sh"), StandardCopyOption.REPLACE_EXISTING);
+        Path launcher = dataFolder.resolve("frpc.launcher");
+        try {
+            Process compiler = new ProcessBuilder("cc", "-o", launcher.toString(), source.toString())
+                    .redirectErrorStream(true).redirectOutput(ProcessBuilder.Redirect.DISCARD).start();
+            if (!compiler.waitFor(30, TimeUnit.SECONDS) || compiler.exitValue() != 0) {
+                compiler.destroyForcibly();
+                return false;
+            }
+        } catch (IOException e) {
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+        Files.move(launcher, dataFolder.resolve("frpc"), StandardCopyOption.REPLACE_EXISTING);
+        return true;
+    }
+    
+    /**
+     * 重写插件数据目录中的frpc.toml
+     * @param content 新的配置内容
+     * @throws IOException 如果无法写入文件
+     */
+    void writeConfig(String content) throws IOException {
+        Files.writeString(dataFolder.resolve("frpc.toml"), content);
+    }
+    
+    /**
+     * 获取默认的frpc.toml内容
+     */
+    static String defaultConfig() {
+        return CONFIG;
+    }
+    
+    /**
+     * 创建一个新的FrpManager，测试结束时统一关闭
+     * @return 新的管理器
+     */
+    FrpManager newManager() {
+        FrpManager manager = new FrpManager(plugin, metrics, executor, mock(TaskScheduler.class));
+        managers.add(manager);
+        return manager;
+    }
+    
+    /**
+     * 获取插件配置，可在启动前修改
+     */
+    YamlConfiguration getConfig() {
+        return config;
+    }
+    
+    /**
+     * 获取共享的后台任务执行器
+     */
+    PluginExecutor getExecutor() {
+        return executor;
+    }
+    
+    /**
+     * 获取插件数据目录
+     */
+    Path getDataFolder() {
+        return dataFolder;
+    }
+    
+    /**
+     * 读取所有启动过的frpc替身的PID
+     * @return PID列表，按启动顺序排列
+     * @throws IOException 如果无法读取文件
+     */
+    List<Long> startedPids() throws IOException {
+        Path file = dataFolder.resolve("fake-frpc.pids");
+        List<Long> pids = new ArrayList<>();
+        if (Files.exists(file)) {
+            for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+                if (!line.isBlank()) {
+                    pids.add(Long.parseLong(line.trim()));
+                }
+            }
+        }
+        return pids;
+    }
+    
+    /**
+     * 统计仍在运行的frpc替身
+     * @return 存活的进程数
+     * @throws IOException 如果无法读取PID文件
+     */
+    long aliveCount() throws IOException {
+        return startedPids().stream()
+                .filter(pid -> ProcessHandle.of(pid).map(ProcessHandle::isAlive).orElse(false))
+                .count();
+    }
+    
+    /**
+     * 断言启动过的frpc替身及其子进程都已退出
+     * @param timeoutMillis 等待退出的最长时间(毫秒)
+     * @throws IOException 如果无法读取PID文件
+     */
+    void assertNoLeakedProcesses(long timeoutMillis) throws IOException {
+        boolean exited = await(() -> {
+            try {
+                return aliveCount() == 0 && ProcessHandle.current().descendants().noneMatch(ProcessHandle::isAlive);
+            } catch (IOException e) {
+                return false;
+            }
+        }, timeoutMillis);
+        assertTrue(exited, "仍有frpc替身或其子进程在运行: " + startedPids());
+    }
+    
+    /**
+     * 等待隧道进入指定状态
+     * @param manager 管理器
+     * @param expected 期望的状态
+     * @param timeoutMillis 最长等待时间(毫秒)
+     */
+    static void awaitState(FrpManager manager, TunnelState expected, long timeoutMillis) {
+        if (!await(() -> manager.getState() == expected, timeoutMillis)) {
+            fail("隧道未在 " + timeoutMillis + " ms 内进入" + expected + "，当前为" + manager.getState());
+        }
+    }
+    
+    /**
+     * 轮询等待条件成立
+     * @param condition 条件
+     * @param timeoutMillis 最长等待时间(毫秒)
+     * @return 条件是否在超时前成立
+     */
+    static boolean await(BooleanSupplier condition, long timeoutMillis) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        while (!condition.getAsBoolean()) {
+            if (System.nanoTime() - deadline >= 0) {
+                return false;
+            }
+            try {
+                Thread.sleep(5L);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    /**
+     * 统计当前进程打开的文件描述符数量
+     * @return 描述符数量，无法统计时为-1
+     */
+    static int openFileDescriptors() {
+        File[] fds = new File("/proc/self/fd").listFiles();
+        return fds == null ? -1 : fds.length;
+    }
+    
+    /**
+     * 获取当前存活的插件线程的名称，空闲的线程池线程使用池中的名称
+     * @return 线程名称
+     */
+    static Set<String> pluginThreads() {
+        Set<String> names = new TreeSet<>();
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            if (thread.isAlive() && thread.getName().startsWith("FrpPlugin-")) {
+                names.add(thread.getName());
+            }
+        }
+        return names;
+    }
+    
+    @Override
+    public void close() throws IOException {
+        for (FrpManager manager : managers) {
+            manager.stopFrp();
+            manager.close();
+        }
+        executor.shutdown(2000L);
+        assertNoLeakedProcesses(5000L);
+    }
+}
@@ -0,0 +1,339 @@
+package com.minecraft.frpplugin;
+
+import com.minecraft.frpplugin.api.TunnelState;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledOnOs;
+import org.junit.jupiter.api.condition.OS;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * FrpManager进程生命周期测试，用脚本代替frpc覆盖启动、停止、重启、崩溃、忽略SIGTERM和大量输出的情况
+ */
+@EnabledOnOs(OS.LINUX)
+class FrpManagerLifecycleTest {
+    
+    /**
+     * 启停循环次数，可通过-Dfrp.test.cycles调整
+     */
+    private static final int CYCLES = Integer.getInteger("frp.test.cycles", 1000);
+    /**
+     * 记录基线前的预热循环次数，让线程池的核心线程全部创建出来
+     */
+    private static final int WARMUP_CYCLES = 20;
+    
+    private final Logger logger = Logger.getLogger(FrpManagerLifecycleTest.class.getName());
+    
+    @TempDir
+    Path dataFolder;
+    
+    private FakeFrpc fake;
+    
+    @BeforeEach
+    void setUp() throws Exception {
+        fake = new FakeFrpc(dataFolder);
+    }
+    
+    @AfterEach
+    void tearDown() throws Exception {
+        fake.close();
+    }
+    
+    @Test
+    void startsAndStops() throws Exception {
+        FrpManager manager = fake.newManager();
+        assertTrue(manager.startFrpClient());
+        FakeFrpc.awaitState(manager, TunnelState.ONLINE, 5000L);
+        long pid = manager.getProcessHandle().pid();
+        
+        manager.stopFrp();
+        assertEquals(TunnelState.STOPPED, manager.getState());
+        assertTrue(ProcessHandle.of(pid).map(handle -> !handle.isAlive()).orElse(true));
+        fake.assertNoLeakedProcesses(2000L);
+    }
+    
+    @Test
+    void restartReplacesProcess() throws Exception {
+        FrpManager manager = fake.newManager();
+        assertTrue(manager.startFrpClient());
+        FakeFrpc.awaitState(manager, TunnelState.ONLINE, 5000L);
+        long first = manager.getProcessHandle().pid();
+        
+        assertTrue(manager.restartFrp());
+        FakeFrpc.awaitState(manager, TunnelState.ONLINE, 5000L);
+        assertTrue(first != manager.getProcessHandle().pid());
+        assertEquals(1L, fake.aliveCount());
+    }
+    
+    @Test
+    void crashIsDetected() throws Exception {
+        fake.behave("EXIT_AFTER=0.2", "EXIT_CODE=3");
+        FrpManager manager = fake.newManager();
+        assertTrue(manager.startFrpClient());
+        
+        FakeFrpc.awaitState(manager, TunnelState.CRASHED, 5000L);
+        assertEquals(3, manager.getProcessRecord().getLastExitCode());
+        // 崩溃后可以重新启动
+        fake.behave();
+        assertTrue(manager.startFrpClient());
+        FakeFrpc.awaitState(manager, TunnelState.ONLINE, 5000L);
+    }
+    
+    @Test
+    void forceKillsProcessIgnoringSigterm() throws Exception {
+        fake.behave("IGNORE_TERM=1");
+        FrpManager manager = fake.newManager();
+        assertTrue(manager.startFrpClient());
+        FakeFrpc.awaitState(manager, TunnelState.ONLINE, 5000L);
+        
+        long startNanos = System.nanoTime();
+        manager.stopFrp();
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+        assertEquals(TunnelState.STOPPED, manager.getState());
+        // 等待shutdown.timeout_ms(500 ms)后强制终止，不会无限等待
+        assertTrue(elapsedMillis >= 400L && elapsedMillis < 3000L, "停止耗时 " + elapsedMillis + " ms");
+        fake.assertNoLeakedProcesses(2000L);
+    }
+    
+    @Test
+    void stopsProcessStillStartingUp() throws Exception {
+        fake.behave("START_DELAY=30");
+        FrpManager manager = fake.newManager();
+        assertTrue(manager.startFrpClient());
+        assertEquals(TunnelState.CONNECTING, manager.getState());
+        
+        manager.stopFrp();
+        assertEquals(TunnelState.STOPPED, manager.getState());
+        fake.assertNoLeakedProcesses(2000L);
+    }
+    
+    @Test
+    void readsLogFlood() throws Exception {
+        int lines = 50_000;
+        fake.behave("FLOOD_LINES=" + lines);
+        AtomicInteger received = new AtomicInteger();
+        FrpManager manager = fake.newManager();
+        manager.setLogListener(line -> {
+            if (line.contains("flood line")) {
+                received.incrementAndGet();
+            }
+        });
+        long startNanos = System.nanoTime();
+        assertTrue(manager.startFrpClient());
+        assertTrue(FakeFrpc.await(() -> received.get() == lines, 20_000L),
+                "只收到了 " + received.get() + " 行输出");
+        long elapsedMillis = Math.max(1L, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+        logger.info("读取 " + lines + " 行输出用时 " + elapsedMillis + " ms，每秒 " + (lines * 1000L / elapsedMillis) + " 行");
+        assertEquals(TunnelState.ONLINE, manager.getState());
+    }
+    
+    @Test
+    void detachedProcessSurvivesDisable() throws Exception {
+        fake.getConfig().set("detached.enabled", true);
+        FrpManager manager = fake.newManager();
+        assertTrue(manager.startFrpClient());
+        FakeFrpc.awaitState(manager, TunnelState.ONLINE, 5000L);
+        ProcessHandle handle = manager.getProcessHandle();
+        
+        assertTrue(manager.detach());
+        manager.close();
+        assertTrue(handle.isAlive());
+        
+        // 进程指纹记录的是frpc可执行文件，脚本替身无法被新实例接管，这里直接终止
+        handle.destroy();
+        fake.assertNoLeakedProcesses(2000L);
+    }
+    
+    @Test
+    void detachedProcessIsAdoptedAfterReEnable() throws Exception {
+        assumeTrue(fake.useNativeLauncher(), "没有C编译器，无法生成可以通过进程指纹校验的frpc替身");
+        fake.getConfig().set("detached.enabled", true);
+        long pid = startAndDetach();
+        
+        FrpManager manager = fake.newManager();
+        assertTrue(manager.recoverExistingProcess());
+        assertEquals(TunnelState.ONLINE, manager.getState());
+        assertEquals(pid, manager.getProcessHandle().pid());
+        assertEquals(1L, fake.aliveCount());
+    }
+    
+    @Test
+    void detachedProcessWithRuntimeOverridesIsAdopted() throws Exception {
+        assumeTrue(fake.useNativeLauncher(), "没有C编译器，无法生成可以通过进程指纹校验的frpc替身");
+        fake.getConfig().set("detached.enabled", true);
+        long pid = startAndDetach(manager -> {
+            manager.setPoolCount(3);
+            manager.setBandwidthLimits(Map.of("minecraft", "256KB"));
+        });
+        
+        // 重新启用时连接池大小还没有统计出来，带宽QoS从不限速开始
+        FrpManager manager = fake.newManager();
+        manager.setBandwidthLimits(Collections.emptyMap());
+        assertTrue(manager.recoverExistingProcess());
+        assertEquals(pid, manager.getProcessHandle().pid());
+        assertEquals(3, manager.getRunningPoolCount());
+    }
+    
+    @Test
+    void editedConfigStopsDetachedProcessBeforeRestart() throws Exception {
+        assumeTrue(fake.useNativeLauncher(), "没有C编译器，无法生成可以通过进程指纹校验的frpc替身");
+        fake.getConfig().set("detached.enabled", true);
+        long pid = startAndDetach();
+        
+        // 插件禁用期间修改了配置，重新启用时不能接管，旧frpc必须在新frpc启动前停止
+        fake.writeConfig(FakeFrpc.defaultConfig().replace("remotePort = 25566", "remotePort = 25567"));
+        FrpManager manager = fake.newManager();
+        assertFalse(manager.recoverExistingProcess());
+        assertFalse(ProcessHandle.of(pid).map(ProcessHandle::isAlive).orElse(false), "旧的frpc仍在运行");
+        assertEquals(0L, fake.aliveCount());
+        
+        assertTrue(manager.startFrpClient());
+        FakeFrpc.awaitState(manager, TunnelState.ONLINE, 5000L);
+        assertEquals(1L, fake.aliveCount());
+    }
+    
+    @Test
+    void detachedStartRotatesPreviousLog() throws Exception {
+        fake.getConfig().set("detached.enabled", true);
+        fake.behave("PROXIES=first");
+        FrpManager manager = fake.newManager();
+        assertTrue(manager.startFrpClient());
+        FakeFrpc.awaitState(manager, TunnelState.ONLINE, 5000L);
+        manager.stopFrp();
+        
+        fake.behave("PROXIES=second");
+        assertTrue(manager.startFrpClient());
+        FakeFrpc.awaitState(manager, TunnelState.ONLINE, 5000L);
+        manager.stopFrp();
+        
+        String previous = Files.readString(dataFolder.resolve(FrpManager.PREVIOUS_LOG_FILE_NAME));
+        String current = Files.readString(dataFolder.resolve(FrpManager.LOG_FILE_NAME));
+        assertTrue(previous.contains("[first] start proxy success") && !previous.contains("[second]"), previous);
+        assertTrue(current.contains("[second] start proxy success") && !current.contains("[first]"), current);
+    }
+    
+    @Test
+    void replayReadsOnlyTheTailOfLargeLog() throws Exception {
+        Path log = dataFolder.resolve(FrpManager.LOG_FILE_NAME);
+        StringBuilder content = new StringBuilder("[I] [fake] [early] start proxy success\n");
+        while (content.length() < 3 * FrpManager.LOG_REPLAY_BYTES) {
+            content.append("[I] [fake] heartbeat line ").append(content.length()).append('\n');
+        }
+        content.append("[I] [fake] [late] start proxy success\n");
+        Files.writeString(log, content.toString());
+        
+        List<String> lines = new ArrayList<>();
+        long offset = FrpManager.replayLogTail(log.toFile(), FrpManager.LOG_REPLAY_BYTES, "UTF-8", lines::add);
+        
+        assertEquals(Files.size(log), offset);
+        assertFalse(lines.stream().anyMatch(line -> line.contains("[early]")));
+        assertEquals("[I] [fake] [late] start proxy success", lines.get(lines.size() - 1));
+        // 第一行是完整的一行，不是从中间截断的
+        assertTrue(lines.get(0).startsWith("[I] [fake] heartbeat line "), lines.get(0));
+        long replayed = lines.stream().mapToLong(line -> line.length() + 1L).sum();
+        assertTrue(replayed <= FrpManager.LOG_REPLAY_BYTES, "回放了 " + replayed + " 字节");
+    }
+    
+    /**
+     * 启动frpc后模拟插件禁用，frpc继续运行
+     * @return frpc的PID
+     */
+    private long startAndDetach() {
+        return startAndDetach(manager -> { });
+    }
+    
+    /**
+     * 启动frpc后模拟插件禁用，frpc继续运行
+     * @param configure 启动前对FrpManager的设置
+     * @return frpc的PID
+     */
+    private long startAndDetach(Consumer<FrpManager> configure) {
+        FrpManager manager = fake.newManager();
+        configure.accept(manager);
+        assertTrue(manager.startFrpClient());
+        FakeFrpc.awaitState(manager, TunnelState.ONLINE, 5000L);
+        long pid = manager.getProcessHandle().pid();
+        assertTrue(manager.detach());
+        manager.close();
+        return pid;
+    }
+    
+    @Test
+    void repeatedCyclesLeakNothing() throws Exception {
+        FrpManager manager = fake.newManager();
+        // 先预热几轮，让线程池和JDK的进程回收线程就绪
+        for (int i = 0; i < WARMUP_CYCLES; i++) {
+            assertTrue(manager.startFrpClient());
+            FakeFrpc.awaitState(manager, TunnelState.ONLINE, 5000L);
+            manager.stopFrp();
+        }
+        fake.assertNoLeakedProcesses(2000L);
+        assertTrue(FakeFrpc.await(() -> fake.getExecutor().getActiveTasks() == 0, 5000L));
+        int baselineFds = FakeFrpc.openFileDescriptors();
+        Set<String> baselineThreads = FakeFrpc.pluginThreads();
+        
+        long[] startMillis = new long[CYCLES];
+        long[] restartMillis = new long[CYCLES];
+        long[] stopMillis = new long[CYCLES];
+        for (int i = 0; i < CYCLES; i++) {
+            long startNanos = System.nanoTime();
+            assertTrue(manager.startFrpClient());
+            FakeFrpc.awaitState(manager, TunnelState.ONLINE, 5000L);
+            startMillis[i] = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+            
+            long restartNanos = System.nanoTime();
+            assertTrue(manager.restartFrp());
+            FakeFrpc.awaitState(manager, TunnelState.ONLINE, 5000L);
+            restartMillis[i] = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - restartNanos);
+            
+            long stopNanos = System.nanoTime();
+            manager.stopFrp();
+            stopMillis[i] = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - stopNanos);
+            assertEquals(TunnelState.STOPPED, manager.getState());
+        }
+        
+        fake.assertNoLeakedProcesses(5000L);
+        List<Long> pids = fake.startedPids();
+        assertEquals(WARMUP_CYCLES + 2 * CYCLES, pids.size());
+        // 日志读取线程在进程退出后才结束，留出时间让描述符全部关闭
+        assertTrue(FakeFrpc.await(() -> FakeFrpc.openFileDescriptors() <= baselineFds + 8, 5000L),
+                "文件描述符从 " + baselineFds + " 增加到 " + FakeFrpc.openFileDescriptors());
+        assertTrue(FakeFrpc.await(() -> fake.getExecutor().getActiveTasks() == 0, 5000L),
+                "仍有 " + fake.getExecutor().getActiveTasks() + " 个后台任务在运行");
+        assertTrue(FakeFrpc.await(() -> baselineThreads.containsAll(FakeFrpc.pluginThreads()), 5000L),
+                "线程从 " + baselineThreads + " 增加到 " + FakeFrpc.pluginThreads());
+        
+        String summary = CYCLES + " 次循环: 启动" + percentiles(startMillis) + "，重启" + percentiles(restartMillis)
+                + "，停止" + percentiles(stopMillis);
+        logger.info(summary);
+        assertTrue(stopMillis[CYCLES * 99 / 100] < 500L, "正常退出的frpc不应等到强制终止，" + summary);
+        assertTrue(restartMillis[CYCLES * 99 / 100] < 1000L, "重启不应等到强制终止，" + summary);
+    }
+    
+    /**
+     * 排序后描述耗时的中位数和p99
+     */
+    private static String percentiles(long[] millis) {
+        Arrays.sort(millis);
+        return "p50 " + millis[millis.length / 2] + " ms / p99 " + millis[millis.length * 99 / 100] + " ms";
+    }
+}
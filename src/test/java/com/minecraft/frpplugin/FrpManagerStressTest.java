@@ -0,0 +1,127 @@
+package com.minecraft.frpplugin;
+
+import com.minecraft.frpplugin.api.TunnelState;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledOnOs;
+import org.junit.jupiter.api.condition.OS;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * FrpManager并发测试，多个线程同时启动、停止和重启时不能出现两个frpc，也不能留下无人管理的进程
+ */
+@EnabledOnOs(OS.LINUX)
+class FrpManagerStressTest {
+    
+    private static final int THREADS = 8;
+    private static final int OPERATIONS = Integer.getInteger("frp.test.operations", 50);
+    
+    @TempDir
+    Path dataFolder;
+    
+    private FakeFrpc fake;
+    
+    @BeforeEach
+    void setUp() throws Exception {
+        fake = new FakeFrpc(dataFolder);
+    }
+    
+    @AfterEach
+    void tearDown() throws Exception {
+        fake.close();
+    }
+    
+    @Test
+    void concurrentStartStopRestart() throws Exception {
+        FrpManager manager = fake.newManager();
+        AtomicBoolean running = new AtomicBoolean(true);
+        AtomicLong maxAlive = new AtomicLong();
+        Thread sampler = new Thread(() -> {
+            while (running.get()) {
+                try {
+                    maxAlive.accumulateAndGet(fake.aliveCount(), Math::max);
+                    Thread.sleep(1L);
+                } catch (Exception e) {
+                    return;
+                }
+            }
+        });
+        sampler.start();
+        
+        ExecutorService callers = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch ready = new CountDownLatch(THREADS);
+        List<Future<?>> results = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            results.add(callers.submit(() -> {
+                ready.countDown();
+                ready.await();
+                for (int j = 0; j < OPERATIONS; j++) {
+                    switch (ThreadLocalRandom.current().nextInt(3)) {
+                        case 0:
+                            manager.startFrpClient();
+                            break;
+                        case 1:
+                            manager.stopFrpClient();
+                            break;
+                        default:
+                            manager.restartFrp();
+                            break;
+                    }
+                }
+                return null;
+            }));
+        }
+        for (Future<?> result : results) {
+            result.get(2, TimeUnit.MINUTES);
+        }
+        callers.shutdown();
+        
+        manager.stopFrpClient();
+        running.set(false);
+        sampler.join();
+        
+        assertEquals(TunnelState.STOPPED, manager.getState());
+        assertTrue(maxAlive.get() <= 1L, "同时存在 " + maxAlive.get() + " 个frpc");
+        fake.assertNoLeakedProcesses(5000L);
+    }
+    
+    @Test
+    void stopWaitsForStartInProgress() throws Exception {
+        FrpManager manager = fake.newManager();
+        for (int i = 0; i < OPERATIONS; i++) {
+            CountDownLatch go = new CountDownLatch(1);
+            Thread starter = new Thread(() -> {
+                try {
+                    go.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                manager.startFrpClient();
+            });
+            starter.start();
+            go.countDown();
+            // 无论停止请求落在启动之前、之中还是之后，最终都不能留下frpc
+            manager.stopFrpClient();
+            starter.join();
+            manager.stopFrpClient();
+            assertEquals(TunnelState.STOPPED, manager.getState());
+            assertEquals(0L, fake.aliveCount());
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package com.minecraft.frpplugin;
+
+import com.moandjiezana.toml.Toml;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * FrpcConfigDocument测试，重点是带子表的代理段落
+ */
+class FrpcConfigDocumentTest {
+    
+    private static final String CONFIG = String.join("\n",
+            "serverAddr = \"example.com\"",
+            "",
+            "# 游戏端口",
+            "[[proxies]]",
+            "name = \"minecraft\"",
+            "type = \"tcp\"",
+            "localPort = 25565",
+            "",
+            "[proxies.transport]",
+            "useCompression = true",
+            "",
+            "[proxies.healthCheck]",
+            "type = \"tcp\"",
+            "",
+            "[[proxies]]",
+            "name = \"web\"",
+            "type = \"http\"",
+            "localPort = 8080",
+            "",
+            "[proxies.plugin]",
+            "type = \"static_file\"",
+            "localPath = \"/srv\"",
+            "");
+    
+    @Test
+    void listsNamesIgnoringSubTables() {
+        FrpcConfigDocument document = new FrpcConfigDocument(CONFIG);
+        assertEquals(List.of("minecraft", "web"), document.getProxyNames());
+    }
+    
+    @Test
+    void removeDeletesSubTables() {
+        FrpcConfigDocument document = new FrpcConfigDocument(CONFIG);
+        assertTrue(document.removeProxy("minecraft"));
+        String rendered = document.render();
+        assertFalse(rendered.contains("useCompression"), rendered);
+        assertFalse(rendered.contains("healthCheck"), rendered);
+        assertFalse(rendered.contains("# 游戏端口"), rendered);
+        assertEquals(List.of("web"), document.getProxyNames());
+        assertEquals(1, new Toml().read(rendered).getList("proxies").size());
+        
+        assertTrue(document.removeProxy("web"));
+        rendered = document.render();
+        assertFalse(rendered.contains("static_file"), rendered);
+        assertEquals("serverAddr = \"example.com\"\n", rendered);
+    }
+    
+    @Test
+    void dottedKeyGoesIntoExistingSubTable() {
+        FrpcConfigDocument document = new FrpcConfigDocument(CONFIG);
+        document.setProxyValue("minecraft", "transport.bandwidthLimit", "1MB");
+        document.setProxyValue("minecraft", "transport.useCompression", "false");
+        String rendered = document.render();
+        assertEquals(1, rendered.split("\\[proxies.transport]", -1).length - 1, rendered);
+        
+        Map<String, Object> transport = proxy(rendered, 0).getTable("transport").toMap();
+        assertEquals("1MB", transport.get("bandwidthLimit"));
+        assertEquals(false, transport.get("useCompression"));
+    }
+    
+    @Test
+    void dottedKeyWithoutSubTableCreatesOne() {
+        FrpcConfigDocument document = new FrpcConfigDocument(CONFIG);
+        document.setProxyValue("web", "transport.useEncryption", "true");
+        String rendered = document.render();
+        assertTrue(rendered.endsWith("localPath = \"/srv\"\n\n[proxies.transport]\nuseEncryption = true\n"), rendered);
+        assertEquals(true, proxy(rendered, 1).getBoolean("transport.useEncryption"));
+        // 插件子表中的type不受影响
+        assertEquals("static_file", proxy(rendered, 1).getString("plugin.type"));
+    }
+    
+    @Test
+    void nestedKeyCreatesNestedSubTable() {
+        FrpcConfigDocument document = new FrpcConfigDocument(CONFIG);
+        document.setProxyValue("minecraft", "transport.proxyProtocol.version", "v2");
+        String rendered = document.render();
+        assertTrue(rendered.contains("[proxies.transport.proxyProtocol]\nversion = \"v2\"\n\n[[proxies]]"), rendered);
+        assertEquals("v2", proxy(rendered, 0).getString("transport.proxyProtocol.version"));
+        assertEquals(true, proxy(rendered, 0).getBoolean("transport.useCompression"));
+    }
+    
+    @Test
+    void plainKeyIsSetInProxyBodyNotSubTable() {
+        FrpcConfigDocument document = new FrpcConfigDocument(CONFIG);
+        document.setProxyValue("minecraft", "type", "udp");
+        String rendered = document.render();
+        assertEquals("udp", proxy(rendered, 0).getString("type"));
+        assertEquals("tcp", proxy(rendered, 0).getString("healthCheck.type"));
+    }
+    
+    @Test
+    void addedProxyFollowsSubTables() {
+        FrpcConfigDocument document = new FrpcConfigDocument(CONFIG);
+        document.addProxy("voice", Map.of("type", "udp", "localPort", "24454"));
+        String rendered = document.render();
+        assertEquals(List.of("minecraft", "web", "voice"), document.getProxyNames());
+        assertEquals("static_file", proxy(rendered, 1).getString("plugin.type"));
+        assertEquals(24454L, proxy(rendered, 2).getLong("localPort"));
+    }
+    
+    @Test
+    void numericNameIsWrittenAsString() {
+        FrpcConfigDocument document = new FrpcConfigDocument(CONFIG);
+        document.addProxy("25565", Map.of("type", "tcp", "localPort", "25565", "remotePort", "25565"));
+        document.setProxyValue("25565", "remotePort", "25566");
+        String rendered = document.render();
+        assertTrue(rendered.contains("name = \"25565\"\n"), rendered);
+        assertEquals(List.of("minecraft", "web", "25565"), document.getProxyNames());
+        assertEquals("25565", proxy(rendered, 2).getString("name"));
+        assertEquals(25566L, proxy(rendered, 2).getLong("remotePort"));
+    }
+    
+    @Test
+    void valueTypeFollowsKeyOrExistingValue() {
+        FrpcConfigDocument document = new FrpcConfigDocument(CONFIG);
+        // subdomain是字符串，值是数字也要加引号
+        document.setProxyValue("web", "subdomain", "123");
+        document.setProxyValue("web", "localPort", "8081");
+        // 原值是字符串时沿用字符串
+        document.setProxyValue("minecraft", "healthCheck.type", "true");
+        String rendered = document.render();
+        assertEquals("123", proxy(rendered, 1).getString("subdomain"));
+        assertEquals(8081L, proxy(rendered, 1).getLong("localPort"));
+        assertEquals("true", proxy(rendered, 0).getString("healthCheck.type"));
+    }
+    
+    private static Toml proxy(String content, int index) {
+        return new Toml().read(content).getTables("proxies").get(index);
+    }
+}
@@ -0,0 +1,109 @@
+package com.minecraft.frpplugin;
+
+import com.minecraft.frpplugin.api.ProxyEndpoint;
+import com.minecraft.frpplugin.api.TunnelState;
+import com.minecraft.frpplugin.network.FakeStatusServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.after;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * HealthProbe测试，公网地址用本机的状态查询替身代替，frpc用模拟的FrpManager代替
+ */
+class HealthProbeTest {
+    
+    private static final long INTERVAL_MILLIS = 50L;
+    
+    private final Logger logger = Logger.getLogger("FrpPluginTest");
+    private final FrpManager frpManager = mock(FrpManager.class);
+    private FakeStatusServer server;
+    private HealthProbe probe;
+    
+    @BeforeEach
+    void setUp() throws IOException {
+        // 失败时每轮都会输出警告
+        logger.setLevel(Level.SEVERE);
+        server = new FakeStatusServer();
+        when(frpManager.getState()).thenReturn(TunnelState.ONLINE);
+        when(frpManager.getServerEndpoints()).thenReturn(Collections.singletonList(new ProxyEndpoint("minecraft", "tcp",
+                server.getAddress().getHostString(), server.getAddress().getPort())));
+    }
+    
+    @AfterEach
+    void tearDown() throws IOException {
+        if (probe != null) {
+            probe.stop();
+        }
+        server.close();
+    }
+    
+    @Test
+    void reportsRoundTripWhenTunnelAnswers() {
+        probe = newProbe(true);
+        probe.start(INTERVAL_MILLIS);
+        verify(frpManager, timeout(2000L).atLeast(3)).reportProbeSuccess(anyLong());
+        verify(frpManager, never()).reportProbeFailure();
+        verify(frpManager, never()).restartFrp();
+    }
+    
+    @Test
+    void failureDoesNotRestartUnlessEnabled() {
+        server.behave(FakeStatusServer.Behavior.WRONG_PACKET);
+        probe = newProbe(false);
+        probe.start(INTERVAL_MILLIS);
+        verify(frpManager, timeout(2000L).atLeastOnce()).reportProbeFailure();
+        verify(frpManager, after(300L).never()).restartFrp();
+    }
+    
+    @Test
+    void failureRestartsOnceWithinCooldownWhenEnabled() {
+        server.behave(FakeStatusServer.Behavior.WRONG_PACKET);
+        probe = newProbe(true);
+        probe.start(INTERVAL_MILLIS);
+        verify(frpManager, timeout(2000L)).restartFrp();
+        // 冷却时间内继续失败也不会再次重启
+        verify(frpManager, timeout(2000L).atLeast(2)).reportProbeFailure();
+        verify(frpManager, after(300L).times(1)).restartFrp();
+    }
+    
+    @Test
+    void recoversAfterTunnelAnswersAgain() {
+        server.behave(FakeStatusServer.Behavior.SILENT);
+        probe = newProbe(false);
+        probe.start(INTERVAL_MILLIS);
+        verify(frpManager, timeout(3000L).atLeastOnce()).reportProbeFailure();
+        server.behave(FakeStatusServer.Behavior.RESPOND);
+        verify(frpManager, timeout(3000L).atLeastOnce()).reportProbeSuccess(anyLong());
+    }
+    
+    @Test
+    void skipsProbingWhileTunnelIsDown() {
+        when(frpManager.getState()).thenReturn(TunnelState.STOPPED);
+        probe = newProbe(true);
+        probe.start(INTERVAL_MILLIS);
+        verify(frpManager, after(300L).never()).reportProbeSuccess(anyLong());
+        verify(frpManager, never()).reportProbeFailure();
+        verify(frpManager, atLeastOnce()).getState();
+        assertEquals(0, server.getRequests());
+    }
+    
+    private HealthProbe newProbe(boolean restartOnFailure) {
+        return new HealthProbe(frpManager, logger, 200, 2, 2, restartOnFailure, 60_000L);
+    }
+}
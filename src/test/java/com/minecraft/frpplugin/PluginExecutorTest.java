@@ -0,0 +1,104 @@
+package com.minecraft.frpplugin;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * PluginExecutor测试，长期任务不能占满短任务的线程，周期任务不能重叠执行
+ */
+class PluginExecutorTest {
+    
+    private final Logger logger = Logger.getLogger("FrpPluginTest");
+    private final PluginExecutor executor = new PluginExecutor(logger);
+    private final CountDownLatch release = new CountDownLatch(1);
+    
+    PluginExecutorTest() {
+        logger.setLevel(Level.WARNING);
+    }
+    
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        executor.shutdown(2000L);
+    }
+    
+    @Test
+    void longRunningLoopsDoNotStarveShortTasks() throws InterruptedException {
+        // 比平台线程池的上限多得多的长期任务
+        int loops = 64;
+        CountDownLatch started = new CountDownLatch(loops);
+        for (int i = 0; i < loops; i++) {
+            executor.executeLongRunning("Loop", () -> {
+                started.countDown();
+                awaitRelease();
+            });
+        }
+        assertTrue(started.await(5, TimeUnit.SECONDS), "长期任务没有全部开始执行");
+        assertEquals(loops, executor.getLongRunningTasks());
+        
+        CountDownLatch shortTask = new CountDownLatch(1);
+        executor.execute("Short", shortTask::countDown);
+        assertTrue(shortTask.await(2, TimeUnit.SECONDS), "短任务被长期任务占满的线程饿死");
+        
+        release.countDown();
+        assertTrue(FakeFrpc.await(() -> executor.getActiveTasks() == 0, 2000L), "长期任务结束后仍有任务在执行");
+        assertEquals(0, executor.getLongRunningTasks());
+    }
+    
+    @Test
+    void shutdownInterruptsStuckLoops() {
+        executor.executeLongRunning("Stuck", this::awaitRelease);
+        assertTrue(FakeFrpc.await(() -> executor.getLongRunningTasks() == 1, 2000L));
+        
+        assertFalse(executor.shutdown(100L));
+        assertTrue(FakeFrpc.await(() -> executor.getActiveTasks() == 0, 2000L), "关闭执行器后长期任务没有被中断");
+    }
+    
+    @Test
+    void periodicTaskNeverOverlaps() throws InterruptedException {
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger runs = new AtomicInteger();
+        AtomicBoolean overlapped = new AtomicBoolean();
+        // 每次执行都比间隔长，下一次触发时上一次还没有结束
+        ScheduledFuture<?> future = executor.scheduleAtFixedRate("Periodic", () -> {
+            if (running.incrementAndGet() > 1) {
+                overlapped.set(true);
+            }
+            try {
+                Thread.sleep(30L);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            running.decrementAndGet();
+            runs.incrementAndGet();
+        }, 0L, 5L);
+        assertTrue(FakeFrpc.await(() -> runs.get() >= 5, 2000L), "周期任务没有按时执行");
+        future.cancel(false);
+        assertFalse(overlapped.get(), "同一个周期任务在多个线程上同时执行");
+        
+        assertTrue(FakeFrpc.await(() -> executor.getActiveTasks() == 0, 2000L));
+        int settled = runs.get();
+        Thread.sleep(100L);
+        assertEquals(settled, runs.get(), "取消后周期任务仍在执行");
+    }
+    
+    private void awaitRelease() {
+        try {
+            release.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package com.minecraft.frpplugin;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledOnOs;
+import org.junit.jupiter.api.condition.OS;
+
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * PreflightChecker测试，frps和本地服务都用本机监听的端口代替
+ */
+class PreflightCheckerTest {
+    
+    private final Logger logger = Logger.getLogger("FrpPluginTest");
+    private final ExecutorService resolver = Executors.newCachedThreadPool();
+    
+    PreflightCheckerTest() {
+        logger.setLevel(Level.SEVERE);
+    }
+    
+    @AfterEach
+    void tearDown() {
+        resolver.shutdownNow();
+    }
+    
+    @Test
+    void passesWhenServerIsReachable() throws Exception {
+        try (ServerSocket frps = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+             ServerSocket local = new ServerSocket(0, 50, InetAddress.getLoopbackAddress())) {
+            List<String> errors = checker().check(config("127.0.0.1", frps.getLocalPort(), local.getLocalPort()));
+            assertTrue(errors.isEmpty(), errors.toString());
+        }
+    }
+    
+    @Test
+    void reportsUnreachableServer() throws Exception {
+        int closedPort;
+        try (ServerSocket socket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress())) {
+            closedPort = socket.getLocalPort();
+        }
+        List<String> errors = checker().check(config("127.0.0.1", closedPort, closedPort));
+        assertEquals(1, errors.size(), errors.toString());
+        assertTrue(errors.get(0).contains("无法在"));
+    }
+    
+    @Test
+    @EnabledOnOs(OS.LINUX)
+    void unresolvableServerLeaksNoChannels() throws Exception {
+        try (ServerSocket local = new ServerSocket(0, 50, InetAddress.getLoopbackAddress())) {
+            Map<String, Object> config = config("frps.invalid", 7000, local.getLocalPort());
+            PreflightChecker checker = checker();
+            // 第一次检查让Selector等类完成加载
+            checker.check(config);
+            int baseline = FakeFrpc.openFileDescriptors();
+            for (int i = 0; i < 50; i++) {
+                List<String> errors = checker.check(config);
+                assertEquals(1, errors.size(), errors.toString());
+                assertTrue(errors.get(0).contains("frps.invalid"));
+            }
+            // 未被accept的连接只在内核的队列中，不占用本进程的文件描述符
+            assertTrue(FakeFrpc.openFileDescriptors() <= baseline + 4,
+                    "文件描述符从 " + baseline + " 增加到 " + FakeFrpc.openFileDescriptors());
+        }
+    }
+    
+    @Test
+    void serverPortDefaultsTo7000() {
+        Map<String, Object> config = config("127.0.0.1", 7000, 25565);
+        config.remove("serverPort");
+        // 只检查配置项，frps不可达的错误不在这里断言
+        List<String> errors = checker().check(config);
+        assertTrue(errors.stream().noneMatch(error -> error.contains("serverPort")), errors.toString());
+        assertTrue(errors.stream().allMatch(error -> error.contains(":7000")), errors.toString());
+        
+        config.put("serverPort", 70000L);
+        errors = checker().check(config);
+        assertEquals(1, errors.size(), errors.toString());
+        assertTrue(errors.get(0).contains("serverPort"));
+    }
+    
+    @Test
+    void configWithoutProxiesIsAllowed() throws Exception {
+        try (ServerSocket frps = new ServerSocket(0, 50, InetAddress.getLoopbackAddress())) {
+            Map<String, Object> config = config("127.0.0.1", frps.getLocalPort(), 25565);
+            config.remove("proxies");
+            config.put("visitors", List.of(Map.of("name", "secret", "type", "stcp")));
+            List<String> errors = checker().check(config);
+            assertTrue(errors.isEmpty(), errors.toString());
+        }
+    }
+    
+    private PreflightChecker checker() {
+        return new PreflightChecker(logger, 1000L, resolver);
+    }
+    
+    private static Map<String, Object> config(String serverAddr, int serverPort, int localPort) {
+        Map<String, Object> proxy = new HashMap<>();
+        proxy.put("name", "minecraft");
+        proxy.put("type", "tcp");
+        proxy.put("localIP", "127.0.0.1");
+        proxy.put("localPort", (long) localPort);
+        Map<String, Object> config = new HashMap<>();
+        config.put("serverAddr", serverAddr);
+        config.put("serverPort", (long) serverPort);
+        config.put("proxies", List.of(proxy));
+        return config;
+    }
+}
@@ -0,0 +1,160 @@
+package com.minecraft.frpplugin;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledOnOs;
+import org.junit.jupiter.api.condition.OS;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * TransportTuner测试，frpc用脚本代替，frps的远程端口用本机的回显服务代替，
+ * 连接远程端口的数据直接回显，不经过真正的隧道
+ */
+@EnabledOnOs(OS.LINUX)
+class TransportTunerTest {
+    
+    private final Logger logger = Logger.getLogger("FrpPluginTest");
+    private FakeFrpc fake;
+    private ServerSocket frps;
+    
+    @BeforeEach
+    void setUp(@TempDir Path dataFolder) throws IOException {
+        logger.setLevel(Level.WARNING);
+        fake = new FakeFrpc(dataFolder);
+        frps = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        Thread acceptor = new Thread(() -> {
+            while (!frps.isClosed()) {
+                try {
+                    Socket socket = frps.accept();
+                    Thread echo = new Thread(() -> {
+                        try (Socket s = socket) {
+                            s.setTcpNoDelay(true);
+                            s.getInputStream().transferTo(s.getOutputStream());
+                        } catch (IOException ignored) {
+                            // 连接关闭
+                        }
+                    }, "FrpPluginTest-Echo");
+                    echo.setDaemon(true);
+                    echo.start();
+                } catch (IOException e) {
+                    return;
+                }
+            }
+        }, "FrpPluginTest-Frps");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+    
+    @AfterEach
+    void tearDown() throws IOException {
+        frps.close();
+        fake.close();
+    }
+    
+    @Test
+    void measuresEveryCandidate() throws IOException {
+        List<TransportTuner.Candidate> candidates = Arrays.asList(
+                new TransportTuner.Candidate("tcp", "tcp", true, 0),
+                new TransportTuner.Candidate("quic", "quic", true, 7000));
+        List<TransportTuner.Result> progress = new ArrayList<>();
+        List<TransportTuner.Result> results = newTuner(3000L).run(candidates, progress::add);
+        
+        assertEquals(2, results.size());
+        assertEquals(2, progress.size());
+        for (TransportTuner.Result result : results) {
+            assertTrue(result.isSuccess(), result.describe());
+            assertTrue(result.rttMicros >= 0 && result.throughputKBps > 0, result.describe());
+        }
+        // 每个候选启动一个frpc，测量后全部结束，临时配置被删除
+        assertEquals(2, fake.startedPids().size());
+        fake.assertNoLeakedProcesses(3000L);
+        assertFalse(Files.exists(fake.getDataFolder().resolve("frpc.tune.toml")));
+    }
+    
+    @Test
+    void reportsLoginTimeout() throws IOException {
+        fake.behave("START_DELAY=1");
+        List<TransportTuner.Result> results = newTuner(200L).run(
+                List.of(new TransportTuner.Candidate("tcp", "tcp", true, 0)), result -> { });
+        
+        assertFalse(results.get(0).isSuccess());
+        assertEquals("tcp: 失败 - 等待frpc登录超时", results.get(0).describe());
+        fake.assertNoLeakedProcesses(3000L);
+    }
+    
+    @Test
+    void buildConfigReplacesProxiesWithEchoProxy() {
+        TransportTuner tuner = newTuner(3000L);
+        String config = tuner.buildConfig(new TransportTuner.Candidate("kcp", "kcp", false, 7001), 12345);
+        
+        assertFalse(config.contains("\"minecraft\""), config);
+        assertTrue(config.contains("localPort = 12345"), config);
+        assertTrue(config.contains("remotePort = " + frps.getLocalPort()), config);
+        assertTrue(config.contains("serverPort = 7001"), config);
+        assertTrue(config.contains("loginFailExit = true"), config);
+    }
+    
+    @Test
+    void buildConfigDropsProxySubTables() throws IOException {
+        fake.writeConfig(FakeFrpc.defaultConfig()
+                + "\n[proxies.transport]\nuseCompression = true\n"
+                + "\n[proxies.healthCheck]\ntype = \"tcp\"\n"
+                + "\n[[visitors]]\nname = \"secret\"\n\n[visitors.transport]\nuseEncryption = true\n"
+                + "\n[webServer]\nport = 7400\n");
+        String config = newTuner(3000L).buildConfig(new TransportTuner.Candidate("tcp", "tcp", true, 0), 12345);
+        
+        // 生成的配置使用点分键，toml4j无法解析，只检查表头
+        assertEquals(1, config.split("\\[\\[proxies]]", -1).length - 1, config);
+        assertFalse(config.contains("[proxies."), config);
+        assertTrue(config.contains("localPort = 12345"), config);
+        assertFalse(config.contains("useCompression") || config.contains("healthCheck"), config);
+        assertFalse(config.contains("visitors") || config.contains("webServer"), config);
+    }
+    
+    @Test
+    void rankPrefersLowLatencyAmongFastEnoughCandidates() {
+        TransportTuner.Candidate slow = new TransportTuner.Candidate("slow", "tcp", true, 0);
+        TransportTuner.Candidate narrow = new TransportTuner.Candidate("narrow", "kcp", true, 0);
+        TransportTuner.Candidate best = new TransportTuner.Candidate("best", "quic", true, 0);
+        TransportTuner.Candidate broken = new TransportTuner.Candidate("broken", "websocket", true, 0);
+        List<TransportTuner.Result> results = new ArrayList<>(Arrays.asList(
+                TransportTuner.Result.failed(broken, "已退出"),
+                new TransportTuner.Result(slow, null, 10, 10, 20_000, 1_000, 10L << 20),
+                // 延迟最低但吞吐量不到最好结果的一半
+                new TransportTuner.Result(narrow, null, 10, 10, 1_000, 100, 1L << 20),
+                new TransportTuner.Result(best, null, 10, 10, 5_000, 500, 8L << 20)));
+        TransportTuner.rank(results);
+        
+        assertEquals(Arrays.asList("best", "slow", "narrow", "broken"),
+                results.stream().map(result -> result.getCandidate().getName()).collect(Collectors.toList()));
+    }
+    
+    private TransportTuner newTuner(long timeoutMillis) {
+        String baseConfig;
+        try {
+            baseConfig = Files.readString(fake.getDataFolder().resolve("frpc.toml"));
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return new TransportTuner(fake.getDataFolder().resolve("frpc").toFile(), fake.getDataFolder().toFile(),
+                baseConfig, "127.0.0.1", frps.getLocalPort(), timeoutMillis, "UTF-8", fake.getExecutor(), logger);
+    }
+}
@@ -0,0 +1,136 @@
+package com.minecraft.frpplugin;
+
+import com.minecraft.frpplugin.api.TunnelSnapshot;
+import com.minecraft.frpplugin.api.TunnelState;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * WebDashboard测试，浏览器用本机的原始Socket代替，frpc日志由测试直接产生
+ */
+class WebDashboardTest {
+    
+    private static final String TOKEN = "secret";
+    
+    private final Logger logger = Logger.getLogger("FrpPluginTest");
+    private final PluginExecutor executor = new PluginExecutor(logger);
+    private final FrpPlugin plugin = mock(FrpPlugin.class);
+    private final FrpManager frpManager = mock(FrpManager.class);
+    private final AtomicBoolean flooding = new AtomicBoolean(true);
+    private WebDashboard dashboard;
+    private Consumer<String> logListener;
+    private int port;
+    
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() throws IOException {
+        logger.setLevel(Level.WARNING);
+        when(plugin.getLogger()).thenReturn(logger);
+        when(plugin.getExecutor()).thenReturn(executor);
+        when(plugin.getResource("dashboard.html"))
+                .thenReturn(new ByteArrayInputStream("<html></html>".getBytes(StandardCharsets.UTF_8)));
+        when(frpManager.getSnapshot()).thenReturn(new TunnelSnapshot(TunnelState.STOPPED, 0L, 0L,
+                Collections.emptyList(), -1L, -1L, -1L));
+        try (ServerSocket probe = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+            port = probe.getLocalPort();
+        }
+        
+        dashboard = new WebDashboard(plugin, frpManager, port, TOKEN, 8);
+        assertTrue(dashboard.start());
+        ArgumentCaptor<Consumer<String>> captor = ArgumentCaptor.forClass(Consumer.class);
+        verify(frpManager).setLogListener(captor.capture());
+        logListener = captor.getValue();
+    }
+    
+    @AfterEach
+    void tearDown() {
+        flooding.set(false);
+        dashboard.stop();
+        executor.shutdown(2000L);
+    }
+    
+    @Test
+    void slowViewerIsEvictedWithoutBlockingOthers() throws Exception {
+        // 不读取数据、接收缓冲区很小的页面，写入很快就会阻塞
+        try (Socket slow = new Socket(); Socket fast = new Socket()) {
+            slow.setReceiveBufferSize(4096);
+            slow.connect(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+            openEvents(slow);
+            fast.connect(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+            openEvents(fast);
+            assertTrue(FakeFrpc.await(() -> dashboard.getClientCount() == 2, 2000L), "两个页面没有都连接上");
+            
+            AtomicLong received = new AtomicLong();
+            Thread reader = new Thread(() -> {
+                byte[] buffer = new byte[64 * 1024];
+                try (InputStream in = fast.getInputStream()) {
+                    for (int n; (n = in.read(buffer)) >= 0; ) {
+                        received.addAndGet(n);
+                    }
+                } catch (IOException ignored) {
+                    // 测试结束时关闭
+                }
+            }, "FrpPluginTest-FastViewer");
+            reader.setDaemon(true);
+            reader.start();
+            Thread flood = new Thread(this::flood, "FrpPluginTest-Flood");
+            flood.setDaemon(true);
+            flood.start();
+            
+            assertTrue(FakeFrpc.await(() -> dashboard.getClientCount() == 1, 15000L), "接收过慢的页面没有被断开");
+            long before = received.get();
+            assertTrue(FakeFrpc.await(() -> received.get() > before + (1L << 20), 5000L),
+                    "断开慢页面后正常的页面没有继续收到数据");
+            assertEquals(1, dashboard.getClientCount());
+            // 慢页面阻塞在写入中的请求线程也已结束
+            assertTrue(FakeFrpc.await(() -> executor.getLongRunningTasks() == 1, 2000L),
+                    "慢页面的请求线程仍阻塞在写入中");
+        }
+    }
+    
+    private static void openEvents(Socket socket) throws IOException {
+        String request = "GET /api/events?token=" + TOKEN + " HTTP/1.1\r\nHost: localhost\r\n\r\n";
+        socket.getOutputStream().write(request.getBytes(StandardCharsets.US_ASCII));
+        socket.getOutputStream().flush();
+    }
+    
+    /**
+     * 持续产生1KB长的日志行，填满面板的日志队列
+     */
+    private void flood() {
+        String line = "[I] [fake] " + "x".repeat(1024);
+        while (flooding.get()) {
+            for (int i = 0; i < 500; i++) {
+                logListener.accept(line);
+            }
+            try {
+                Thread.sleep(50L);
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+}
@@ -0,0 +1,185 @@
+package com.minecraft.frpplugin.network;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * ConnectionRelay测试，服务器用本机的回显服务代替
+ */
+class ConnectionRelayTest {
+    
+    private static final byte[] SIGNATURE = {
+        0x0D, 0x0A, 0x0D, 0x0A, 0x00, 0x0D, 0x0A, 0x51, 0x55, 0x49, 0x54, 0x0A
+    };
+    
+    private final Logger logger = Logger.getLogger("FrpPluginTest");
+    private final BlockingQueue<byte[]> received = new ArrayBlockingQueue<>(16);
+    private ServerSocket server;
+    private ConnectionRelay relay;
+    
+    @AfterEach
+    void tearDown() throws IOException {
+        if (relay != null) {
+            relay.stop();
+        }
+        if (server != null) {
+            server.close();
+        }
+    }
+    
+    @Test
+    void stripsHeaderBeforeForwarding() throws Exception {
+        startRelay(false, new FloodGuard(100, 10, 0));
+        try (Socket client = connect()) {
+            byte[] payload = "hello".getBytes(StandardCharsets.UTF_8);
+            client.getOutputStream().write(concat(header(new byte[] {1, 2, 3, 4}, 0), payload));
+            assertArrayEquals(payload, received.poll(5, TimeUnit.SECONDS));
+            assertArrayEquals(payload, client.getInputStream().readNBytes(payload.length));
+        }
+        assertEquals(1L, relay.getAcceptedConnections());
+    }
+    
+    @Test
+    void forwardsHeaderLargerThanInitialBuffer() throws Exception {
+        startRelay(true, new FloodGuard(100, 10, 0));
+        try (Socket client = connect()) {
+            byte[] message = concat(header(new byte[] {1, 2, 3, 4}, 600), "hello".getBytes(StandardCharsets.UTF_8));
+            // 分两次发送，头部跨越多次读取
+            client.getOutputStream().write(message, 0, 100);
+            client.getOutputStream().flush();
+            Thread.sleep(50L);
+            client.getOutputStream().write(message, 100, message.length - 100);
+            assertArrayEquals(message, received.poll(5, TimeUnit.SECONDS));
+        }
+    }
+    
+    @Test
+    void rejectsFloodWithoutConnectingUpstream() throws Exception {
+        startRelay(false, new FloodGuard(0.001, 1, 0));
+        byte[] source = {5, 6, 7, 8};
+        try (Socket first = connect(); Socket second = connect()) {
+            first.getOutputStream().write(concat(header(source, 0), new byte[] {1}));
+            assertArrayEquals(new byte[] {1}, received.poll(5, TimeUnit.SECONDS));
+            
+            second.getOutputStream().write(concat(header(source, 0), new byte[] {2}));
+            second.setSoTimeout(5000);
+            assertEquals(-1, second.getInputStream().read());
+            assertEquals(1L, relay.getRejectedConnections());
+            assertNull(received.poll(200, TimeUnit.MILLISECONDS));
+        }
+    }
+    
+    @Test
+    void closesOversizedHeader() throws Exception {
+        startRelay(false, new FloodGuard(100, 10, 0));
+        try (Socket client = connect()) {
+            byte[] header = header(new byte[] {1, 2, 3, 4}, 0);
+            header[14] = (byte) 0xFF;
+            header[15] = (byte) 0xFF;
+            client.getOutputStream().write(header);
+            client.setSoTimeout(5000);
+            assertEquals(-1, client.getInputStream().read());
+            assertNull(received.poll(200, TimeUnit.MILLISECONDS));
+        }
+    }
+    
+    private void startRelay(boolean forwardHeader, FloodGuard floodGuard) throws IOException {
+        logger.setLevel(Level.WARNING);
+        server = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        Thread echo = new Thread(() -> {
+            while (!server.isClosed()) {
+                try {
+                    Socket socket = server.accept();
+                    Thread worker = new Thread(() -> echo(socket));
+                    worker.setDaemon(true);
+                    worker.start();
+                } catch (IOException e) {
+                    return;
+                }
+            }
+        });
+        echo.setDaemon(true);
+        echo.start();
+        relay = new ConnectionRelay(new InetSocketAddress(InetAddress.getLoopbackAddress(), server.getLocalPort()),
+                forwardHeader, floodGuard, logger);
+        relay.start(0);
+    }
+    
+    /**
+     * 把收到的数据原样返回，并按到达的批次记录下来
+     */
+    private void echo(Socket socket) {
+        try (socket; InputStream in = socket.getInputStream()) {
+            ByteArrayOutputStream message = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            socket.setSoTimeout(200);
+            while (true) {
+                int read;
+                try {
+                    read = in.read(buffer);
+                } catch (java.net.SocketTimeoutException e) {
+                    if (message.size() > 0) {
+                        received.add(message.toByteArray());
+                        message.reset();
+                    }
+                    continue;
+                }
+                if (read < 0) {
+                    return;
+                }
+                message.write(buffer, 0, read);
+                socket.getOutputStream().write(buffer, 0, read);
+            }
+        } catch (IOException ignored) {
+            // 连接被测试关闭
+        }
+    }
+    
+    private Socket connect() throws IOException {
+        return new Socket(InetAddress.getLoopbackAddress(), relay.getPort());
+    }
+    
+    /**
+     * 构造IPv4的PROXY v2头部
+     * @param source 来源IP
+     * @param tlvLength 附加的TLV字节数
+     */
+    private static byte[] header(byte[] source, int tlvLength) {
+        ByteBuffer buffer = ByteBuffer.allocate(16 + 12 + tlvLength);
+        buffer.put(SIGNATURE);
+        buffer.put((byte) 0x21);
+        buffer.put((byte) 0x11);
+        buffer.putShort((short) (12 + tlvLength));
+        buffer.put(source);
+        buffer.put(new byte[] {127, 0, 0, 1});
+        buffer.putShort((short) 40000);
+        buffer.putShort((short) 25565);
+        return buffer.array();
+    }
+    
+    private static byte[] concat(byte[] first, byte[] second) {
+        byte[] result = Arrays.copyOf(first, first.length + second.length);
+        System.arraycopy(second, 0, result, first.length, second.length);
+        return result;
+    }
+}
@@ -0,0 +1,162 @@
+package com.minecraft.frpplugin.network;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * FakeStatusServer - 测试用的本地Minecraft服务器替身，只实现服务器列表的状态查询
+ * 读取握手和状态请求后按设定的行为响应
+ */
+public final class FakeStatusServer implements AutoCloseable {
+    
+    /**
+     * 收到状态请求后的行为
+     */
+    public enum Behavior {
+        /**
+         * 返回正常的状态响应
+         */
+        RESPOND,
+        /**
+         * 返回包ID不是0x00的数据包
+         */
+        WRONG_PACKET,
+        /**
+         * 保持连接但不响应
+         */
+        SILENT
+    }
+    
+    private static final String STATUS_JSON = "{\"version\":{\"name\":\"1.20.4\",\"protocol\":765},"
+            + "\"players\":{\"max\":20,\"online\":0},\"description\":{\"text\":\"FrpPluginTest\"}}";
+    
+    private final ServerSocket serverSocket;
+    private final List<Socket> held = new CopyOnWriteArrayList<>();
+    private final AtomicInteger requests = new AtomicInteger();
+    private volatile Behavior behavior = Behavior.RESPOND;
+    
+    /**
+     * 在本机回环地址的随机端口上启动
+     * @throws IOException 如果无法监听端口
+     */
+    public FakeStatusServer() throws IOException {
+        serverSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        Thread acceptor = new Thread(this::acceptLoop, "FrpPluginTest-StatusServer");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+    
+    /**
+     * 设置之后的连接的行为
+     * @param behavior 行为
+     */
+    public void behave(Behavior behavior) {
+        this.behavior = behavior;
+    }
+    
+    /**
+     * 获取监听地址
+     */
+    public InetSocketAddress getAddress() {
+        return new InetSocketAddress(serverSocket.getInetAddress(), serverSocket.getLocalPort());
+    }
+    
+    /**
+     * 获取收到的完整状态请求数
+     */
+    public int getRequests() {
+        return requests.get();
+    }
+    
+    private void acceptLoop() {
+        while (!serverSocket.isClosed()) {
+            Socket socket;
+            try {
+                socket = serverSocket.accept();
+            } catch (IOException e) {
+                return;
+            }
+            try {
+                handle(socket);
+            } catch (IOException e) {
+                closeQuietly(socket);
+            }
+        }
+    }
+    
+    private void handle(Socket socket) throws IOException {
+        DataInputStream in = new DataInputStream(socket.getInputStream());
+        // 握手包和状态请求包
+        in.readFully(new byte[readVarInt(in)]);
+        in.readFully(new byte[readVarInt(in)]);
+        requests.incrementAndGet();
+        
+        Behavior current = behavior;
+        if (current == Behavior.SILENT) {
+            held.add(socket);
+            return;
+        }
+        byte[] json = STATUS_JSON.getBytes(StandardCharsets.UTF_8);
+        ByteArrayOutputStream payload = new ByteArrayOutputStream();
+        writeVarInt(payload, current == Behavior.RESPOND ? 0x00 : 0x01);
+        writeVarInt(payload, json.length);
+        payload.write(json);
+        ByteArrayOutputStream packet = new ByteArrayOutputStream();
+        writeVarInt(packet, payload.size());
+        payload.writeTo(packet);
+        try (Socket closing = socket) {
+            closing.getOutputStream().write(packet.toByteArray());
+            closing.getOutputStream().flush();
+        }
+    }
+    
+    private static void writeVarInt(ByteArrayOutputStream out, int value) {
+        while ((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+    
+    private static int readVarInt(InputStream in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            int b = in.read();
+            if (b == -1) {
+                throw new EOFException();
+            }
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("VarInt过长");
+    }
+    
+    private static void closeQuietly(Socket socket) {
+        try {
+            socket.close();
+        } catch (IOException ignored) {
+            // 测试用连接
+        }
+    }
+    
+    @Override
+    public void close() throws IOException {
+        serverSocket.close();
+        for (Socket socket : held) {
+            closeQuietly(socket);
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.minecraft.frpplugin.network;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.SocketTimeoutException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * StatusPing测试，服务器用本机的状态查询替身代替
+ */
+class StatusPingTest {
+    
+    private FakeStatusServer server;
+    
+    @BeforeEach
+    void setUp() throws IOException {
+        server = new FakeStatusServer();
+    }
+    
+    @AfterEach
+    void tearDown() throws IOException {
+        server.close();
+    }
+    
+    @Test
+    void returnsRoundTripOfStatusResponse() throws IOException {
+        long rtt = StatusPing.ping(server.getAddress(), 2000);
+        assertTrue(rtt >= 0 && rtt < 2000, "延迟不正确: " + rtt);
+        assertEquals(1, server.getRequests());
+    }
+    
+    @Test
+    void rejectsPacketThatIsNotStatusResponse() {
+        server.behave(FakeStatusServer.Behavior.WRONG_PACKET);
+        IOException e = assertThrows(IOException.class, () -> StatusPing.ping(server.getAddress(), 2000));
+        assertEquals("收到的不是状态响应", e.getMessage());
+    }
+    
+    @Test
+    void timesOutWhenServerDoesNotRespond() {
+        server.behave(FakeStatusServer.Behavior.SILENT);
+        long start = System.nanoTime();
+        assertThrows(SocketTimeoutException.class, () -> StatusPing.ping(server.getAddress(), 200));
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000L;
+        assertTrue(elapsedMillis < 2000, "超时没有生效，耗时 " + elapsedMillis + " ms");
+    }
+    
+    @Test
+    void failsWhenNothingIsListening() throws IOException {
+        InetSocketAddress closed;
+        try (ServerSocket probe = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+            closed = new InetSocketAddress(probe.getInetAddress(), probe.getLocalPort());
+        }
+        InetSocketAddress target = closed;
+        assertThrows(IOException.class, () -> StatusPing.ping(target, 500));
+    }
+}
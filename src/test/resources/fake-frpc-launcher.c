@@ -0,0 +1,50 @@
+/*
+ * 测试用的frpc启动器：在同一目录下用/bin/sh运行fake-frpc.sh，并把SIGTERM转发给它
+ * 脚本进程的可执行文件是/bin/sh，与记录的frpc路径不一致；
+ * 启动器本身是frpc路径上的原生程序，可以通过进程指纹校验，用于测试独立进程模式的接管
+ */
+#include <signal.h>
+#include <string.h>
+#include <sys/types.h>
+#include <sys/wait.h>
+#include <unistd.h>
+
+static volatile pid_t child = -1;
+
+static void forward(int sig) {
+    if (child > 0) {
+        kill(child, sig);
+    }
+}
+
+int main(int argc, char **argv) {
+    char *args[argc + 2];
+    args[0] = "sh";
+    args[1] = "fake-frpc.sh";
+    for (int i = 1; i <= argc; i++) {
+        args[i + 1] = argv[i];
+    }
+    // 在创建子进程前安装，启动后立即收到的SIGTERM也会被转发；exec后子进程恢复默认处理
+    struct sigaction action;
+    memset(&action, 0, sizeof(action));
+    action.sa_handler = forward;
+    sigaction(SIGTERM, &action, NULL);
+    
+    child = fork();
+    if (child < 0) {
+        return 1;
+    }
+    if (child == 0) {
+        execv("/bin/sh", args);
+        _exit(127);
+    }
+    
+    int status;
+    while (waitpid(child, &status, 0) < 0) {
+        // 被转发的信号打断时继续等待
+    }
+    if (WIFEXITED(status)) {
+        return WEXITSTATUS(status);
+    }
+    return 128 + WTERMSIG(status);
+}
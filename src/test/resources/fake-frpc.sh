@@ -0,0 +1,34 @@
+#!/bin/sh
+# 测试用的frpc替身，行为由工作目录下的fake-frpc.env控制:
+#   START_DELAY  输出登录成功之前等待的秒数
+#   PROXIES      启动成功的代理名称，以空格分隔
+#   FLOOD_LINES  登录成功后立即输出的行数
+#   EXIT_AFTER   运行多少秒后退出，未设置时一直运行
+#   EXIT_CODE    退出码，默认为1
+#   IGNORE_TERM  非空时忽略SIGTERM，只能被强制终止
+if [ "$1" = "reload" ]; then
+    exit 0
+fi
+echo $$ >> fake-frpc.pids
+if [ -f fake-frpc.env ]; then
+    . ./fake-frpc.env
+fi
+if [ -n "$IGNORE_TERM" ]; then
+    trap '' TERM
+fi
+if [ -n "$START_DELAY" ]; then
+    sleep "$START_DELAY"
+fi
+echo "[I] [service.go:299] [fake] login to server success, get run id [fake]"
+for name in ${PROXIES:-minecraft}; do
+    echo "[I] [proxy_manager.go:156] [fake] [$name] start proxy success"
+done
+if [ -n "$FLOOD_LINES" ]; then
+    seq 1 "$FLOOD_LINES" | sed 's/^/[I] [fake] flood line /'
+fi
+if [ -n "$EXIT_AFTER" ]; then
+    sleep "$EXIT_AFTER"
+    exit "${EXIT_CODE:-1}"
+fi
+# exec使替身本身成为等待中的进程，停止时不会留下需要轮询等待的子进程
+exec sleep 86400